@@ -28,9 +28,12 @@ import com.walmartlabs.concord.agent.docker.OrphanSweeper;
 import com.walmartlabs.concord.agent.guice.WorkerModule;
 import com.walmartlabs.concord.agent.mmode.MaintenanceModeListener;
 import com.walmartlabs.concord.agent.mmode.MaintenanceModeNotifier;
+import com.walmartlabs.concord.agent.remote.ProcessStatusUpdater;
 import com.walmartlabs.concord.client.ProcessEntry.StatusEnum;
 import com.walmartlabs.concord.common.IOUtils;
 import com.walmartlabs.concord.server.queueclient.QueueClient;
+import com.walmartlabs.concord.server.queueclient.message.Message;
+import com.walmartlabs.concord.server.queueclient.message.ProcessBatchResponse;
 import com.walmartlabs.concord.server.queueclient.message.ProcessRequest;
 import com.walmartlabs.concord.server.queueclient.message.ProcessResponse;
 import org.slf4j.Logger;
@@ -42,8 +45,7 @@ import javax.inject.Singleton;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.Map;
-import java.util.UUID;
+import java.util.*;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicBoolean;
 
@@ -115,22 +117,23 @@ public class Agent {
             // check if the maintenance mode is enabled. If so, hang there indefinitely
             validateMaintenanceMode();
 
-            // TODO parallel acquire?
-            // wait for a free "slot"
+            // wait for a free "slot" and grab all other free slots
+            // to acquire multiple jobs in a single request
             workersAvailable.acquire();
-            log.info("run -> acquired a slot, {}/{} remains", workersAvailable.availablePermits(), workersCount);
+            int slots = 1 + workersAvailable.drainPermits();
+            log.info("run -> acquired {} slot(s), {}/{} remains", slots, workersAvailable.availablePermits(), workersCount);
 
-            // fetch the next job
-            JobRequest jobRequest;
+            // fetch the next jobs
+            List<JobRequest> jobRequests;
             try {
-                jobRequest = take(queueClient);
+                jobRequests = take(queueClient, slots);
             } catch (InterruptedException e) {
                 log.info("run -> interrupted, exiting...");
                 return;
             } catch (Exception e) {
                 log.error("run -> error while fetching a job: {}", e.getMessage(), e);
 
-                workersAvailable.release();
+                workersAvailable.release(slots);
 
                 // wait before retrying
                 // the server is not reachable or unhealthy, no point retrying immediately
@@ -138,28 +141,34 @@ public class Agent {
                 continue;
             }
 
-            if (jobRequest == null) {
-                // can happen on switching to maintenance mode or reconnecting, etc
-                workersAvailable.release();
-                continue;
+            // return the unused slots
+            // can happen on switching to maintenance mode or reconnecting, etc
+            if (jobRequests.size() < slots) {
+                workersAvailable.release(slots - jobRequests.size());
             }
 
-            UUID instanceId = jobRequest.getInstanceId();
+            for (JobRequest jobRequest : jobRequests) {
+                UUID instanceId = jobRequest.getInstanceId();
 
-            // worker will handle the process' lifecycle
-            try {
-                Worker w = injector.createChildInjector(new WorkerModule(agentCfg.getAgentId(), instanceId, jobRequest.getSessionToken()))
-                        .getInstance(WorkerFactory.class)
-                        .create(jobRequest, createStatusCallback(instanceId, workersAvailable));
+                // worker will handle the process' lifecycle
+                try {
+                    Worker w = injector.createChildInjector(new WorkerModule(agentCfg.getAgentId(), instanceId, jobRequest.getSessionToken()))
+                            .getInstance(WorkerFactory.class)
+                            .create(jobRequest, createStatusCallback(instanceId, workersAvailable));
 
-                // register the worker so we can cancel it later
-                activeWorkers.put(instanceId, w);
+                    // register the worker so we can cancel it later
+                    activeWorkers.put(instanceId, w);
 
-                // start a new thread to process the job
-                executor.submit(w);
-            } catch (Exception e) {
-                log.error("run -> error while submitting worker: {}", e.getMessage());
-                workersAvailable.release();
+                    // start a new thread to process the job
+                    executor.submit(w);
+                } catch (Exception e) {
+                    log.error("run -> error while submitting worker: {}", e.getMessage());
+                    activeWorkers.remove(instanceId);
+                    workersAvailable.release();
+
+                    reportFailure(instanceId, jobRequest.getSessionToken());
+                    removePayloadDir(jobRequest);
+                }
             }
         }
     }
@@ -223,17 +232,57 @@ public class Agent {
         };
     }
 
-    private JobRequest take(QueueClient queueClient) throws Exception {
-        Future<ProcessResponse> req = queueClient.request(new ProcessRequest(agentCfg.getCapabilities()));
+    private List<JobRequest> take(QueueClient queueClient, int slots) throws Exception {
+        Future<Message> req = queueClient.request(new ProcessRequest(agentCfg.getCapabilities(), slots));
 
-        ProcessResponse resp = req.get();
+        Message resp = req.get();
         if (resp == null) {
-            return null;
+            return Collections.emptyList();
         }
 
-        Path workDir = IOUtils.createTempDir(agentCfg.getPayloadDir(), "workDir");
+        List<ProcessResponse> processes;
+        if (resp instanceof ProcessBatchResponse) {
+            processes = ((ProcessBatchResponse) resp).getProcesses();
+        } else {
+            // older servers ignore the "slots" value and respond with a single process
+            processes = Collections.singletonList((ProcessResponse) resp);
+        }
 
-        return JobRequest.from(resp, workDir);
+        // the processes are already claimed by this agent, an error in one of them
+        // mustn't prevent the others from starting
+        List<JobRequest> result = new ArrayList<>(processes.size());
+        for (ProcessResponse p : processes) {
+            try {
+                Path workDir = IOUtils.createTempDir(agentCfg.getPayloadDir(), "workDir");
+                result.add(JobRequest.from(p, workDir));
+            } catch (Exception e) {
+                log.error("take ['{}'] -> error while preparing the job: {}", p.getProcessId(), e.getMessage(), e);
+                reportFailure(p.getProcessId(), p.getSessionToken());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Marks a claimed process that couldn't be started as FAILED,
+     * otherwise it stays in the STARTING status.
+     */
+    private void reportFailure(UUID instanceId, String sessionToken) {
+        try {
+            injector.createChildInjector(new WorkerModule(agentCfg.getAgentId(), instanceId, sessionToken))
+                    .getInstance(ProcessStatusUpdater.class)
+                    .update(instanceId, StatusEnum.FAILED);
+        } catch (Exception e) {
+            log.warn("reportFailure ['{}'] -> error while updating the process status: {}", instanceId, e.getMessage());
+        }
+    }
+
+    private static void removePayloadDir(JobRequest jobRequest) {
+        try {
+            IOUtils.deleteRecursively(jobRequest.getPayloadDir());
+        } catch (IOException e) {
+            log.warn("removePayloadDir ['{}'] -> error: {}", jobRequest.getInstanceId(), e.getMessage());
+        }
     }
 
     private void cancel(UUID instanceId) {
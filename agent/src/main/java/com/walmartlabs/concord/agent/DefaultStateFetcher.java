@@ -20,6 +20,8 @@ package com.walmartlabs.concord.agent;
  * =====
  */
 
+import com.walmartlabs.concord.ApiException;
+import com.walmartlabs.concord.agent.cfg.AgentConfiguration;
 import com.walmartlabs.concord.client.ClientUtils;
 import com.walmartlabs.concord.client.ProcessApi;
 import com.walmartlabs.concord.common.IOUtils;
@@ -28,26 +30,50 @@ import org.slf4j.LoggerFactory;
 
 import javax.inject.Inject;
 import java.io.File;
+import java.io.InputStream;
 import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
+import java.util.zip.GZIPInputStream;
 
 public class DefaultStateFetcher implements StateFetcher {
 
     private static final Logger log = LoggerFactory.getLogger(DefaultStateFetcher.class);
 
+    private static final String TAR_GZIP = "application/x-gtar";
+
     private final ProcessApi processApi;
+    private final boolean streaming;
+    private final long maxSize;
+    private final int maxEntries;
 
     @Inject
-    public DefaultStateFetcher(ProcessApi processApi) {
+    public DefaultStateFetcher(ProcessApi processApi, AgentConfiguration cfg) {
         this.processApi = processApi;
+        this.streaming = cfg.isStreamingStateTransfer();
+        this.maxSize = cfg.getStateMaxSize();
+        this.maxEntries = cfg.getStateMaxEntries();
     }
 
     @Override
     public void downloadState(JobRequest job) throws Exception {
+        if (streaming) {
+            try {
+                downloadStateArchive(job);
+                return;
+            } catch (ApiException e) {
+                if (e.getCode() != 404 && e.getCode() != 405) {
+                    throw e;
+                }
+
+                // older servers don't have the endpoint
+                log.warn("downloadState ['{}'] -> streaming is not supported by the server, falling back to ZIP", job.getInstanceId());
+            }
+        }
+
         File payload = null;
         try {
             payload = ClientUtils.withRetry(AgentConstants.API_CALL_MAX_RETRIES, AgentConstants.API_CALL_RETRY_DELAY, () -> processApi.downloadState(job.getInstanceId()));
-            IOUtils.unzip(payload.toPath(), job.getPayloadDir(), StandardCopyOption.REPLACE_EXISTING);
+            IOUtils.unzip(payload.toPath(), job.getPayloadDir(), maxSize, maxEntries, StandardCopyOption.REPLACE_EXISTING);
         } finally {
             if (payload != null) {
                 delete(payload.toPath());
@@ -55,6 +81,23 @@ public class DefaultStateFetcher implements StateFetcher {
         }
     }
 
+    /**
+     * Unpacks the state while it is being downloaded, without saving the archive
+     * into a temporary file. Retries overwrite the partially unpacked files.
+     */
+    private void downloadStateArchive(JobRequest job) throws Exception {
+        String path = "/api/v1/process/" + job.getInstanceId() + "/state/archive";
+
+        ClientUtils.withRetry(AgentConstants.API_CALL_MAX_RETRIES, AgentConstants.API_CALL_RETRY_DELAY, () -> {
+            ClientUtils.getStream(processApi.getApiClient(), path, TAR_GZIP, in -> {
+                try (InputStream gz = new GZIPInputStream(in)) {
+                    IOUtils.untar(gz, job.getPayloadDir(), maxSize, maxEntries, StandardCopyOption.REPLACE_EXISTING);
+                }
+            });
+            return null;
+        });
+    }
+
     private static void delete(Path dir) {
         if (dir == null) {
             return;
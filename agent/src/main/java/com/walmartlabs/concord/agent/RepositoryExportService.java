@@ -0,0 +1,345 @@
+package com.walmartlabs.concord.agent;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2018 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.hash.Hashing;
+import com.google.common.util.concurrent.Striped;
+import com.walmartlabs.concord.agent.cfg.GitConfiguration;
+import com.walmartlabs.concord.agent.cfg.RepositoryCacheConfiguration;
+import com.walmartlabs.concord.agent.cfg.RepositoryCacheConfiguration.ExportMode;
+import com.walmartlabs.concord.common.IOUtils;
+import com.walmartlabs.concord.repository.*;
+import com.walmartlabs.concord.sdk.Secret;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.stream.Stream;
+
+/**
+ * Exports repositories into process directories. Shared by all workers, so
+ * the repository locks are held across concurrently running processes.
+ * <p>
+ * In the {@link ExportMode#SNAPSHOT} and {@link ExportMode#HARDLINK} modes each
+ * commit is exported once into a read-only snapshot. The repository lock is
+ * held only while the snapshot is created; processes copy or link
+ * the snapshot's files without holding the lock.
+ */
+@Named
+@Singleton
+public class RepositoryExportService {
+
+    private static final Logger log = LoggerFactory.getLogger(RepositoryExportService.class);
+
+    private final RepositoryProviders providers;
+    private final RepositoryCache repositoryCache;
+
+    private final ExportMode exportMode;
+    private final Path snapshotDir;
+    private final long snapshotMaxAge;
+
+    /**
+     * Processes hold the read lock while they use a snapshot,
+     * the cleanup takes the write lock to remove it.
+     */
+    private final Striped<ReadWriteLock> snapshotLocks;
+
+    private final AtomicLong exportCount = new AtomicLong();
+    private final AtomicLong snapshotHits = new AtomicLong();
+    private final AtomicLong lockWaitTime = new AtomicLong();
+    private final AtomicLong exportTime = new AtomicLong();
+
+    private long nextSnapshotCleanup;
+
+    @Inject
+    public RepositoryExportService(GitConfiguration gitCfg,
+                                   RepositoryCacheConfiguration cacheCfg,
+                                   ObjectMapper objectMapper) throws IOException {
+
+        this(new RepositoryProviders(Collections.singletonList(new GitCliRepositoryProvider(clientCfg(gitCfg)))), cacheCfg, objectMapper);
+    }
+
+    RepositoryExportService(RepositoryProviders providers,
+                            RepositoryCacheConfiguration cacheCfg,
+                            ObjectMapper objectMapper) throws IOException {
+
+        this.providers = providers;
+
+        this.repositoryCache = new RepositoryCache(cacheCfg.getCacheDir(),
+                cacheCfg.getInfoDir(),
+                cacheCfg.getLockTimeout(),
+                cacheCfg.getMaxAge(),
+                cacheCfg.getLockCount(),
+                objectMapper);
+
+        this.exportMode = cacheCfg.getExportMode();
+        this.snapshotDir = cacheCfg.getSnapshotDir();
+        this.snapshotMaxAge = cacheCfg.getMaxAge().toMillis();
+        this.snapshotLocks = Striped.readWriteLock(cacheCfg.getLockCount());
+        this.nextSnapshotCleanup = System.currentTimeMillis() + snapshotMaxAge;
+
+        log.info("init -> export mode: {}", exportMode);
+    }
+
+    public void export(String repoUrl, String branch, String commitId, String repoPath, Path dest, Secret secret, List<String> ignorePatterns) throws IOException {
+        long t1 = System.currentTimeMillis();
+
+        long lockWait;
+        boolean snapshotHit = false;
+        if (exportMode == ExportMode.COPY || commitId == null) {
+            // without a commit ID the branch's HEAD can change at any time, nothing to share
+            lockWait = exportFromCache(repoUrl, branch, commitId, repoPath, dest, secret, ignorePatterns, t1);
+        } else {
+            Path snapshot = snapshotDir.resolve(snapshotName(repoUrl, commitId, repoPath, ignorePatterns));
+
+            Lock l = snapshotLock(snapshot).readLock();
+            l.lock();
+            try {
+                if (Files.exists(snapshot)) {
+                    lockWait = 0;
+                    snapshotHit = true;
+                } else {
+                    lockWait = createSnapshot(repoUrl, branch, commitId, repoPath, snapshot, secret, ignorePatterns, t1);
+                }
+
+                // the snapshot's modification time is used as the last access time
+                Files.setLastModifiedTime(snapshot, FileTime.fromMillis(System.currentTimeMillis()));
+
+                materialize(snapshot, dest, exportMode == ExportMode.HARDLINK);
+            } finally {
+                l.unlock();
+            }
+
+            cleanupSnapshots();
+        }
+
+        long t2 = System.currentTimeMillis();
+
+        long count = exportCount.incrementAndGet();
+        long hits = snapshotHit ? snapshotHits.incrementAndGet() : snapshotHits.get();
+        long totalLockWait = lockWaitTime.addAndGet(lockWait);
+        long totalExportTime = exportTime.addAndGet(t2 - t1);
+
+        log.info("export ['{}', '{}'] -> took {}ms, lock wait {}ms, snapshot reused: {} (total: {} export(s), {} reused, lock wait {}ms, export time {}ms)",
+                repoUrl, commitId, (t2 - t1), lockWait, snapshotHit, count, hits, totalLockWait, totalExportTime);
+    }
+
+    /**
+     * @return the time spent waiting for the repository lock, ms.
+     */
+    private long exportFromCache(String repoUrl, String branch, String commitId, String repoPath, Path dest, Secret secret, List<String> ignorePatterns, long t1) {
+        Path cacheDir = repositoryCache.getPath(repoUrl);
+
+        return repositoryCache.withLock(repoUrl, () -> {
+            long lockWait = System.currentTimeMillis() - t1;
+
+            // TODO: checkRemoteCommitId read from configuration
+            Repository repo = providers.fetch(repoUrl, branch, commitId, repoPath, secret, false, cacheDir);
+            repo.export(dest, ignorePatterns);
+
+            return lockWait;
+        });
+    }
+
+    /**
+     * @return the time spent waiting for the repository lock, ms.
+     */
+    private long createSnapshot(String repoUrl, String branch, String commitId, String repoPath, Path snapshot, Secret secret, List<String> ignorePatterns, long t1) {
+        Path cacheDir = repositoryCache.getPath(repoUrl);
+
+        return repositoryCache.withLock(repoUrl, () -> {
+            long lockWait = System.currentTimeMillis() - t1;
+
+            // created by another process while we were waiting for the lock
+            if (Files.exists(snapshot)) {
+                return lockWait;
+            }
+
+            Repository repo = providers.fetch(repoUrl, branch, commitId, repoPath, secret, false, cacheDir);
+
+            Path tmp = IOUtils.createTempDir(snapshotDir, snapshot.getFileName().toString());
+            try {
+                repo.export(tmp, ignorePatterns);
+                Files.move(tmp, snapshot, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                if (Files.exists(tmp)) {
+                    IOUtils.deleteRecursively(tmp);
+                }
+            }
+
+            return lockWait;
+        });
+    }
+
+    private void cleanupSnapshots() {
+        if (snapshotMaxAge <= 0) {
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        synchronized (this) {
+            if (nextSnapshotCleanup > now) {
+                return;
+            }
+            nextSnapshotCleanup = now + snapshotMaxAge;
+        }
+
+        int removed = removeSnapshots(now);
+        log.info("cleanupSnapshots -> {} snapshot(s) removed", removed);
+    }
+
+    /**
+     * Removes the snapshots not used since {@code now - maxAge}.
+     *
+     * @return the number of removed snapshots.
+     */
+    int removeSnapshots(long now) {
+        int removed = 0;
+        try (Stream<Path> s = Files.list(snapshotDir)) {
+            for (Path p : (Iterable<Path>) s::iterator) {
+                if (removeSnapshot(p, now)) {
+                    removed++;
+                }
+            }
+        } catch (IOException e) {
+            log.warn("removeSnapshots -> error: {}", e.getMessage());
+        }
+
+        return removed;
+    }
+
+    private boolean removeSnapshot(Path snapshot, long now) {
+        // snapshots in use are skipped, they will be removed on the next cleanup
+        Lock l = snapshotLock(snapshot).writeLock();
+        if (!l.tryLock()) {
+            return false;
+        }
+
+        Path tmp = snapshot.resolveSibling(snapshot.getFileName() + ".old");
+        try {
+            if (Files.getLastModifiedTime(snapshot).toMillis() + snapshotMaxAge > now) {
+                return false;
+            }
+
+            Files.move(snapshot, tmp, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.warn("removeSnapshot ['{}'] -> move error: {}", snapshot, e.getMessage());
+            return false;
+        } finally {
+            l.unlock();
+        }
+
+        try {
+            IOUtils.deleteRecursively(tmp);
+        } catch (IOException e) {
+            log.warn("removeSnapshot ['{}'] -> delete error: {}", snapshot, e.getMessage());
+        }
+
+        return true;
+    }
+
+    ReadWriteLock snapshotLock(Path snapshot) {
+        return snapshotLocks.get(snapshot);
+    }
+
+    /**
+     * Copies or hardlinks the snapshot's files into the destination directory.
+     * Falls back to copying if the files can't be linked, e.g. when
+     * the destination is on a different file system.
+     */
+    private static void materialize(Path src, Path dst, boolean hardlink) throws IOException {
+        boolean[] link = {hardlink};
+
+        Files.walkFileTree(src, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                Path d = dst.resolve(src.relativize(dir));
+                if (!Files.exists(d)) {
+                    Files.createDirectories(d);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                Path target = dst.resolve(src.relativize(file));
+                Files.deleteIfExists(target);
+
+                if (attrs.isSymbolicLink()) {
+                    Files.createSymbolicLink(target, Files.readSymbolicLink(file));
+                    return FileVisitResult.CONTINUE;
+                }
+
+                if (link[0]) {
+                    try {
+                        Files.createLink(target, file);
+                        return FileVisitResult.CONTINUE;
+                    } catch (UnsupportedOperationException | FileSystemException e) {
+                        log.warn("materialize ['{}'] -> can't create hardlinks, copying the files instead: {}", src, e.getMessage());
+                        link[0] = false;
+                    }
+                }
+
+                Files.copy(file, target);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    private static GitClientConfiguration clientCfg(GitConfiguration gitCfg) {
+        return GitClientConfiguration.builder()
+                .oauthToken(gitCfg.getToken())
+                .shallowClone(gitCfg.isShallowClone())
+                .defaultOperationTimeout(gitCfg.getDefaultOperationTimeout())
+                .fetchTimeout(gitCfg.getFetchTimeout())
+                .httpLowSpeedLimit(gitCfg.getHttpLowSpeedLimit())
+                .httpLowSpeedTime(gitCfg.getHttpLowSpeedTime())
+                .sshTimeout(gitCfg.getSshTimeout())
+                .sshTimeoutRetryCount(gitCfg.getSshTimeoutRetryCount())
+                .build();
+    }
+
+    private static String snapshotName(String repoUrl, String commitId, String repoPath, List<String> ignorePatterns) {
+        StringBuilder sb = new StringBuilder()
+                .append(repoUrl).append('\n')
+                .append(commitId).append('\n')
+                .append(repoPath != null ? repoPath : "").append('\n');
+
+        if (ignorePatterns != null) {
+            ignorePatterns.forEach(p -> sb.append(p).append('\n'));
+        }
+
+        return Hashing.sha256().hashString(sb, StandardCharsets.UTF_8).toString();
+    }
+}
@@ -20,12 +20,8 @@ package com.walmartlabs.concord.agent;
  * =====
  */
 
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.walmartlabs.concord.agent.cfg.GitConfiguration;
-import com.walmartlabs.concord.agent.cfg.RepositoryCacheConfiguration;
 import com.walmartlabs.concord.client.SecretClient;
 import com.walmartlabs.concord.imports.Import.SecretDefinition;
-import com.walmartlabs.concord.repository.*;
 import com.walmartlabs.concord.sdk.Secret;
 
 import javax.inject.Inject;
@@ -34,40 +30,19 @@ import java.nio.file.Path;
 import java.util.Collections;
 import java.util.List;
 
+/**
+ * Per-worker facade of {@link RepositoryExportService}, retrieves the repository
+ * secrets using the process' session token.
+ */
 public class RepositoryManager {
 
     private final SecretClient secretClient;
-    private final RepositoryProviders providers;
-    private final RepositoryCache repositoryCache;
+    private final RepositoryExportService exportService;
 
     @Inject
-    public RepositoryManager(SecretClient secretClient,
-                             GitConfiguration gitCfg,
-                             RepositoryCacheConfiguration cacheCfg,
-                             ObjectMapper objectMapper) throws IOException {
-
+    public RepositoryManager(SecretClient secretClient, RepositoryExportService exportService) {
         this.secretClient = secretClient;
-
-        GitClientConfiguration clientCfg = GitClientConfiguration.builder()
-                .oauthToken(gitCfg.getToken())
-                .shallowClone(gitCfg.isShallowClone())
-                .defaultOperationTimeout(gitCfg.getDefaultOperationTimeout())
-                .fetchTimeout(gitCfg.getFetchTimeout())
-                .httpLowSpeedLimit(gitCfg.getHttpLowSpeedLimit())
-                .httpLowSpeedTime(gitCfg.getHttpLowSpeedTime())
-                .sshTimeout(gitCfg.getSshTimeout())
-                .sshTimeoutRetryCount(gitCfg.getSshTimeoutRetryCount())
-                .build();
-
-        List<RepositoryProvider> providers = Collections.singletonList(new GitCliRepositoryProvider(clientCfg));
-        this.providers = new RepositoryProviders(providers);
-
-        this.repositoryCache = new RepositoryCache(cacheCfg.getCacheDir(),
-                cacheCfg.getInfoDir(),
-                cacheCfg.getLockTimeout(),
-                cacheCfg.getMaxAge(),
-                cacheCfg.getLockCount(),
-                objectMapper);
+        this.exportService = exportService;
     }
 
     public void export(String repoUrl, String commitId, String repoPath, Path dest, SecretDefinition secretDefinition) throws ExecutionException {
@@ -77,14 +52,11 @@ public class RepositoryManager {
     public void export(String repoUrl, String branch, String commitId, String repoPath, Path dest, SecretDefinition secretDefinition, List<String> ignorePatterns) throws ExecutionException {
         Secret secret = getSecret(secretDefinition);
 
-        Path cacheDir = repositoryCache.getPath(repoUrl);
-
-        repositoryCache.withLock(repoUrl, () -> {
-            // TODO: checkRemoteCommitId read from configuration
-            Repository repo = providers.fetch(repoUrl, branch, commitId, repoPath, secret, false, cacheDir);
-            repo.export(dest, ignorePatterns);
-            return null;
-        });
+        try {
+            exportService.export(repoUrl, branch, commitId, repoPath, dest, secret, ignorePatterns);
+        } catch (IOException e) {
+            throw new ExecutionException("Error while exporting the repository '" + repoUrl + "': " + e.getMessage(), e);
+        }
     }
 
     private Secret getSecret(SecretDefinition secret) throws ExecutionException {
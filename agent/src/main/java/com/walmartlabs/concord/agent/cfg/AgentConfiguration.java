@@ -50,6 +50,14 @@ public class AgentConfiguration {
 
     private final Path logDir;
     private final long logMaxDelay;
+    private final boolean logBatchEnabled;
+    private final long logBatchFlushWindow;
+    private final long logBatchMaxSize;
+    private final boolean logBatchCompress;
+
+    private final boolean streamingStateTransfer;
+    private final long stateMaxSize;
+    private final int stateMaxEntries;
 
     private final int workersCount;
     private final long pollInterval;
@@ -69,6 +77,14 @@ public class AgentConfiguration {
 
         this.logDir = getOrCreatePath(cfg, "logDir");
         this.logMaxDelay = cfg.getDuration("logMaxDelay", TimeUnit.MILLISECONDS);
+        this.logBatchEnabled = cfg.getBoolean("logBatch.enabled");
+        this.logBatchFlushWindow = cfg.getDuration("logBatch.flushWindow", TimeUnit.MILLISECONDS);
+        this.logBatchMaxSize = cfg.getBytes("logBatch.maxSize");
+        this.logBatchCompress = cfg.getBoolean("logBatch.compress");
+
+        this.streamingStateTransfer = cfg.getBoolean("streamingStateTransfer");
+        this.stateMaxSize = cfg.getBytes("stateMaxSize");
+        this.stateMaxEntries = cfg.getInt("stateMaxEntries");
 
         this.workersCount = cfg.getInt("workersCount");
         this.maintenanceModeListenerPort = cfg.getInt("maintenanceModeListenerPort");
@@ -104,6 +120,34 @@ public class AgentConfiguration {
         return logMaxDelay;
     }
 
+    public boolean isLogBatchEnabled() {
+        return logBatchEnabled;
+    }
+
+    public long getLogBatchFlushWindow() {
+        return logBatchFlushWindow;
+    }
+
+    public long getLogBatchMaxSize() {
+        return logBatchMaxSize;
+    }
+
+    public boolean isLogBatchCompress() {
+        return logBatchCompress;
+    }
+
+    public boolean isStreamingStateTransfer() {
+        return streamingStateTransfer;
+    }
+
+    public long getStateMaxSize() {
+        return stateMaxSize;
+    }
+
+    public int getStateMaxEntries() {
+        return stateMaxEntries;
+    }
+
     public int getWorkersCount() {
         return workersCount;
     }
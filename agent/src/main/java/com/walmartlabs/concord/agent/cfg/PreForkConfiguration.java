@@ -33,11 +33,13 @@ public class PreForkConfiguration {
 
     private final long maxAge;
     private final int maxCount;
+    private final int maxPerHash;
 
     @Inject
     public PreForkConfiguration(Config cfg) {
         this.maxAge = cfg.getDuration("prefork.maxAge", TimeUnit.MILLISECONDS);
         this.maxCount = cfg.getInt("prefork.maxCount");
+        this.maxPerHash = cfg.getInt("prefork.maxPerHash");
     }
 
     public long getMaxAge() {
@@ -47,4 +49,8 @@ public class PreForkConfiguration {
     public int getMaxCount() {
         return maxCount;
     }
+
+    public int getMaxPerHash() {
+        return maxPerHash;
+    }
 }
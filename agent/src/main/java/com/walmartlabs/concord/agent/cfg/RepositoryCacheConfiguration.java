@@ -39,6 +39,8 @@ public class RepositoryCacheConfiguration {
     private final int lockCount;
     private final Duration maxAge;
     private final Path infoDir;
+    private final ExportMode exportMode;
+    private final Path snapshotDir;
 
     @Inject
     public RepositoryCacheConfiguration(Config cfg) {
@@ -47,6 +49,8 @@ public class RepositoryCacheConfiguration {
         this.lockCount = cfg.getInt("repositoryCache.lockCount");
         this.maxAge = cfg.getDuration("repositoryCache.maxAge");
         this.infoDir = getOrCreatePath(cfg, "repositoryCache.cacheInfoDir");
+        this.exportMode = ExportMode.valueOf(cfg.getString("repositoryCache.exportMode").toUpperCase());
+        this.snapshotDir = getOrCreatePath(cfg, "repositoryCache.snapshotDir");
     }
 
     public Path getCacheDir() {
@@ -68,4 +72,34 @@ public class RepositoryCacheConfiguration {
     public Path getInfoDir() {
         return infoDir;
     }
+
+    public ExportMode getExportMode() {
+        return exportMode;
+    }
+
+    public Path getSnapshotDir() {
+        return snapshotDir;
+    }
+
+    public enum ExportMode {
+
+        /**
+         * Copy the files directly from the repository cache while holding
+         * the repository lock.
+         */
+        COPY,
+
+        /**
+         * Export each commit once into a shared snapshot directory and copy
+         * the snapshot without holding the repository lock.
+         */
+        SNAPSHOT,
+
+        /**
+         * Same as {@link #SNAPSHOT}, but the snapshot's files are hardlinked
+         * instead of copied. Processes must not modify the repository files
+         * in place.
+         */
+        HARDLINK
+    }
 }
@@ -33,41 +33,84 @@ import javax.inject.Singleton;
 import java.io.IOException;
 import java.nio.file.Path;
 import java.util.*;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Pool of pre-forked JVMs, one queue per JVM command line hash.
+ * <p>
+ * {@link #take(HashCode, ProcessLauncher)} never waits for other workers:
+ * the pre-forked processes are started asynchronously. The number of processes
+ * kept for each hash follows the recent demand: hashes taken more often get more
+ * processes (up to {@code prefork.maxPerHash}), the total is limited by
+ * {@code prefork.maxCount}. The demand decays with the {@code prefork.maxAge}
+ * time constant, so unused hashes are eventually dropped.
+ */
 @Named
 @Singleton
 public class ProcessPool {
 
     private static final Logger log = LoggerFactory.getLogger(ProcessPool.class);
 
-    private static final long CLEANUP_PERIOD = 30000;
+    private static final long MIN_MAINTENANCE_PERIOD = 1000;
+    private static final long MAX_MAINTENANCE_PERIOD = 30000;
+    private static final long STATS_PERIOD = 60000;
+
+    /**
+     * Hashes with a lower demand get no pre-forked processes.
+     */
+    private static final double MIN_DEMAND = 0.25;
+
+    /**
+     * Hashes with a lower demand and no processes are removed.
+     */
+    private static final double STALE_DEMAND = 0.01;
 
     private final long maxEntryAge;
     private final int maxEntryCount;
-    private final Map<HashCode, Queue<ProcessEntry>> pool = new HashMap<>();
+    private final int maxEntriesPerHash;
+    private final ConcurrentMap<HashCode, Slot> pool = new ConcurrentHashMap<>();
     private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final Object rebalanceMutex = new Object();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong warmUps = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong firstOutputCount = new AtomicLong();
+    private final AtomicLong firstOutputTime = new AtomicLong();
 
     @Inject
     public ProcessPool(PreForkConfiguration cfg) {
         this.maxEntryAge = cfg.getMaxAge();
         this.maxEntryCount = cfg.getMaxCount();
+        this.maxEntriesPerHash = cfg.getMaxPerHash();
         init();
     }
 
     public void init() {
+        long period = Math.max(MIN_MAINTENANCE_PERIOD, Math.min(MAX_MAINTENANCE_PERIOD, maxEntryAge / 4));
+
         Thread t = new Thread(() -> {
-            log.info("run -> starting cleanup thread, max entry age {}ms, max entry count {}", maxEntryAge, maxEntryCount);
+            log.info("run -> starting cleanup thread, max entry age {}ms, max entry count {}, max entries per hash {}",
+                    maxEntryAge, maxEntryCount, maxEntriesPerHash);
 
+            long nextStats = System.currentTimeMillis() + STATS_PERIOD;
             while (!Thread.currentThread().isInterrupted()) {
-                Utils.sleep(CLEANUP_PERIOD);
+                Utils.sleep(period);
 
                 try {
-                    maintenance();
+                    rebalance();
                 } catch (Exception e) {
                     log.warn("pool -> error while performing maintenance: {}", e.getMessage());
                 }
+
+                long now = System.currentTimeMillis();
+                if (now >= nextStats) {
+                    log.info("pool -> {}", getStats());
+                    nextStats = now + STATS_PERIOD;
+                }
             }
         }, "process-pool-cleanup");
 
@@ -75,95 +118,153 @@ public class ProcessPool {
     }
 
     public ProcessEntry take(HashCode hc, ProcessLauncher launcher) throws ExecutionException {
-        synchronized (pool) {
-            Queue<ProcessEntry> q = pool.computeIfAbsent(hc, k -> new LinkedList<>());
+        long now = System.currentTimeMillis();
 
-            ProcessEntry entry = q.poll();
-            if (entry == null) {
-                try {
-                    entry = launcher.start();
-                } catch (IOException e) {
-                    throw new ExecutionException("Error while starting a new process", e);
-                }
+        Slot slot = pool.computeIfAbsent(hc, Slot::new);
+        slot.launcher = launcher;
+        slot.onDemand(now, maxEntryAge);
 
-                log.info("take -> started a new process: {}", entry.procDir);
-            } else {
-                log.info("take -> using a pre-forked instance: {}", entry.procDir);
+        ProcessEntry entry = poll(slot, now);
+        if (entry == null) {
+            misses.incrementAndGet();
+
+            try {
+                entry = launcher.start();
+            } catch (IOException e) {
+                throw new ExecutionException("Error while starting a new process", e);
             }
 
-            executor.submit(() -> populate(hc, launcher));
+            log.info("take -> started a new process: {}", entry.procDir);
+        } else {
+            hits.incrementAndGet();
+            entry.preforked = true;
 
-            return entry;
+            log.info("take -> using a pre-forked instance: {}", entry.procDir);
         }
-    }
 
-    private void populate(HashCode hc, ProcessLauncher launcher) {
-        synchronized (pool) {
-            // calculate the total number of processes in the pool
-            int total = 0;
-            for (Map.Entry<HashCode, Queue<ProcessEntry>> e : pool.entrySet()) {
-                total += e.getValue().size();
-            }
+        entry.takenAt = now;
 
-            if (total >= maxEntryCount) {
-                // mark the oldest entry for removal
-                ProcessEntry oldest = null;
-                for (Map.Entry<HashCode, Queue<ProcessEntry>> q : pool.entrySet()) {
-                    for (ProcessEntry e : q.getValue()) {
-                        if (oldest == null || oldest.timestamp > e.timestamp) {
-                            oldest = e;
-                        }
-                    }
-                }
+        // refill the pool asynchronously
+        executor.submit(this::rebalance);
 
-                // it's never null
-                assert oldest != null;
-
-                oldest.remove = true;
-            }
+        return entry;
+    }
 
-            // add a new pool entry
-            Queue<ProcessEntry> q = pool.computeIfAbsent(hc, k -> new LinkedList<>());
-            try {
-                q.add(launcher.start());
-            } catch (IOException e) {
-                log.error("populate -> error while starting a new process", e);
-            }
+    /**
+     * Records the time between {@link #take(HashCode, ProcessLauncher)} and
+     * the first output of the process. Processes not taken from the pool are ignored.
+     */
+    public void onFirstOutput(ProcessEntry entry) {
+        if (entry.takenAt <= 0) {
+            return;
         }
+
+        firstOutputCount.incrementAndGet();
+        firstOutputTime.addAndGet(System.currentTimeMillis() - entry.takenAt);
     }
 
-    private void maintenance() {
-        List<HashCode> queuesToRemove = new ArrayList<>();
-        List<Process> processesToKill = new ArrayList<>();
+    public Stats getStats() {
+        return new Stats(hits.get(), misses.get(), warmUps.get(), evictions.get(), firstOutputCount.get(), firstOutputTime.get());
+    }
 
-        long t = System.currentTimeMillis();
+    private ProcessEntry poll(Slot slot, long now) {
+        ProcessEntry e;
+        while ((e = slot.queue.pollLast()) != null) {
+            if (e.process.isAlive() && now - e.timestamp < maxEntryAge) {
+                return e;
+            }
+            evict(e);
+        }
+        return null;
+    }
 
-        synchronized (pool) {
-            pool.forEach((hc, q) -> {
-                q.removeIf(e -> {
-                    if (e.remove || t - e.timestamp >= maxEntryAge) {
-                        processesToKill.add(e.process);
+    /**
+     * Removes the expired processes and the processes of hashes without
+     * enough demand, starts new processes for the most demanded hashes.
+     * The processes are started and killed outside of the mutex.
+     */
+    private void rebalance() {
+        List<ProcessEntry> toKill = new ArrayList<>();
+        List<Slot> toStart = new ArrayList<>();
+
+        synchronized (rebalanceMutex) {
+            long now = System.currentTimeMillis();
+
+            List<Slot> slots = new ArrayList<>(pool.values());
+            Map<Slot, Double> demand = new HashMap<>(slots.size());
+            for (Slot s : slots) {
+                demand.put(s, s.demandAt(now, maxEntryAge));
+            }
+            slots.sort((a, b) -> Double.compare(demand.get(b), demand.get(a)));
+
+            int budget = maxEntryCount;
+            for (Slot s : slots) {
+                // drop expired and dead processes (the oldest are at the head)
+                s.queue.removeIf(e -> {
+                    if (!e.process.isAlive() || now - e.timestamp >= maxEntryAge) {
+                        toKill.add(e);
                         return true;
                     }
                     return false;
                 });
 
-                if (q.isEmpty()) {
-                    queuesToRemove.add(hc);
+                double d = demand.get(s);
+                int target = (int) Math.min(maxEntriesPerHash, Math.ceil(d - MIN_DEMAND));
+                target = Math.max(0, Math.min(target, budget));
+                budget -= target;
+
+                int current = s.queue.size() + s.pending.get();
+                for (int i = current; i > target; i--) {
+                    ProcessEntry e = s.queue.pollFirst();
+                    if (e == null) {
+                        // the rest are still starting, will be removed on the next run
+                        break;
+                    }
+                    toKill.add(e);
                 }
-            });
 
-            for (HashCode hc : queuesToRemove) {
-                pool.remove(hc);
+                for (int i = current; i < target; i++) {
+                    s.pending.incrementAndGet();
+                    toStart.add(s);
+                }
+
+                if (d < STALE_DEMAND && s.queue.isEmpty() && s.pending.get() == 0) {
+                    pool.remove(s.hc, s);
+                }
             }
         }
 
-        log.info("maintenance -> removed {} queues", queuesToRemove.size());
+        for (ProcessEntry e : toKill) {
+            evict(e);
+        }
 
-        for (Process p : processesToKill) {
-            Utils.kill(p);
+        for (Slot s : toStart) {
+            executor.submit(() -> warmUp(s));
         }
-        log.info("maintenance -> killed {} processes", processesToKill.size());
+    }
+
+    private void warmUp(Slot slot) {
+        try {
+            ProcessEntry e = slot.launcher.start();
+            warmUps.incrementAndGet();
+
+            if (pool.get(slot.hc) != slot) {
+                // the slot was removed while the process was starting
+                evict(e);
+                return;
+            }
+
+            slot.queue.addLast(e);
+        } catch (IOException e) {
+            log.error("warmUp -> error while starting a new process", e);
+        } finally {
+            slot.pending.decrementAndGet();
+        }
+    }
+
+    private void evict(ProcessEntry e) {
+        evictions.incrementAndGet();
+        Utils.kill(e.process);
     }
 
     public interface ProcessLauncher {
@@ -177,7 +278,8 @@ public class ProcessPool {
         private final Process process;
         private final Path procDir;
 
-        private boolean remove = false;
+        private volatile boolean preforked = false;
+        private volatile long takenAt;
 
         public ProcessEntry(Process process, Path procDir) {
             this.timestamp = System.currentTimeMillis();
@@ -192,5 +294,102 @@ public class ProcessPool {
         public Path getProcDir() {
             return procDir;
         }
+
+        /**
+         * @return {@code true} if the process was taken from the pool.
+         */
+        public boolean isPreforked() {
+            return preforked;
+        }
+    }
+
+    public static final class Stats {
+
+        private final long hits;
+        private final long misses;
+        private final long warmUps;
+        private final long evictions;
+        private final long firstOutputCount;
+        private final long firstOutputTime;
+
+        private Stats(long hits, long misses, long warmUps, long evictions, long firstOutputCount, long firstOutputTime) {
+            this.hits = hits;
+            this.misses = misses;
+            this.warmUps = warmUps;
+            this.evictions = evictions;
+            this.firstOutputCount = firstOutputCount;
+            this.firstOutputTime = firstOutputTime;
+        }
+
+        public long getHits() {
+            return hits;
+        }
+
+        public long getMisses() {
+            return misses;
+        }
+
+        public double getHitRate() {
+            long total = hits + misses;
+            return total > 0 ? (double) hits / total : 0;
+        }
+
+        public long getWarmUps() {
+            return warmUps;
+        }
+
+        public long getEvictions() {
+            return evictions;
+        }
+
+        /**
+         * @return average time between taking a process and its first output, ms.
+         */
+        public long getAvgTimeToFirstOutput() {
+            return firstOutputCount > 0 ? firstOutputTime / firstOutputCount : 0;
+        }
+
+        @Override
+        public String toString() {
+            return "Stats{" +
+                    "hits=" + hits +
+                    ", misses=" + misses +
+                    ", hitRate=" + String.format("%.2f", getHitRate()) +
+                    ", warmUps=" + warmUps +
+                    ", evictions=" + evictions +
+                    ", avgTimeToFirstOutput=" + getAvgTimeToFirstOutput() +
+                    '}';
+        }
+    }
+
+    private static final class Slot {
+
+        private final HashCode hc;
+        private final Deque<ProcessEntry> queue = new ConcurrentLinkedDeque<>();
+        private final AtomicInteger pending = new AtomicInteger();
+
+        private volatile ProcessLauncher launcher;
+
+        private double demand;
+        private long demandUpdatedAt;
+
+        private Slot(HashCode hc) {
+            this.hc = hc;
+        }
+
+        private synchronized void onDemand(long now, long timeConstant) {
+            demand = demandAt(now, timeConstant) + 1;
+            demandUpdatedAt = now;
+        }
+
+        /**
+         * @return exponentially decayed number of takes.
+         */
+        private synchronized double demandAt(long now, long timeConstant) {
+            if (demandUpdatedAt == 0 || timeConstant <= 0) {
+                return demand;
+            }
+            return demand * Math.exp(-(double) (now - demandUpdatedAt) / timeConstant);
+        }
     }
 }
@@ -51,6 +51,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.annotation.Nullable;
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URI;
@@ -251,7 +252,7 @@ public class RunnerJobExecutor implements JobExecutor {
 
         try {
             // save the process' log
-            processLog.log(proc.getInputStream());
+            processLog.log(new FirstOutputInputStream(proc.getInputStream(), () -> processPool.onFirstOutput(pe)));
 
             // wait for the process to finish
             int code;
@@ -315,6 +316,8 @@ public class RunnerJobExecutor implements JobExecutor {
 
         long t2 = System.currentTimeMillis();
 
+        log.info("resolveDeps ['{}'] -> took {}ms, {}", job.getInstanceId(), (t2 - t1), dependencyManager.getStats());
+
         if (job.isDebugMode()) {
             job.getLog().info("Dependency resolution took {}ms", (t2 - t1));
             logDependencies(job, paths);
@@ -702,4 +705,43 @@ public class RunnerJobExecutor implements JobExecutor {
             return cancelled;
         }
     }
+
+    /**
+     * Calls the callback once, when the first byte is read from the process' output.
+     */
+    private static class FirstOutputInputStream extends FilterInputStream {
+
+        private final Runnable callback;
+        private boolean notified = false;
+
+        private FirstOutputInputStream(InputStream in, Runnable callback) {
+            super(in);
+            this.callback = callback;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                onRead();
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                onRead();
+            }
+            return n;
+        }
+
+        private void onRead() {
+            if (!notified) {
+                notified = true;
+                callback.run();
+            }
+        }
+    }
 }
\ No newline at end of file
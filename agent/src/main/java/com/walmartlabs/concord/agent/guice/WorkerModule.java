@@ -26,6 +26,8 @@ import com.google.inject.Singleton;
 import com.walmartlabs.concord.ApiClient;
 import com.walmartlabs.concord.agent.DefaultStateFetcher;
 import com.walmartlabs.concord.agent.StateFetcher;
+import com.walmartlabs.concord.agent.cfg.AgentConfiguration;
+import com.walmartlabs.concord.agent.logging.BatchingLogAppender;
 import com.walmartlabs.concord.agent.logging.LogAppender;
 import com.walmartlabs.concord.agent.logging.ProcessLog;
 import com.walmartlabs.concord.agent.logging.RemoteLogAppender;
@@ -63,6 +65,17 @@ public class WorkerModule extends AbstractModule {
         return new RemoteProcessLog(instanceId, new RemoteLogAppender(apiClient));
     }
 
+    @Provides
+    @Singleton
+    LogAppender getLogAppender(AgentConfiguration cfg, ApiClient apiClient) {
+        RemoteLogAppender appender = new RemoteLogAppender(apiClient);
+        if (!cfg.isLogBatchEnabled()) {
+            return appender;
+        }
+
+        return new BatchingLogAppender(appender, apiClient, cfg.getLogBatchFlushWindow(), cfg.getLogBatchMaxSize(), cfg.isLogBatchCompress());
+    }
+
     @Provides
     @Singleton
     SecretClient getSecretClient(ApiClient apiClient) {
@@ -84,7 +97,6 @@ public class WorkerModule extends AbstractModule {
     @Override
     protected void configure() {
         bind(StateFetcher.class).to(DefaultStateFetcher.class);
-        bind(LogAppender.class).to(RemoteLogAppender.class);
 
         bind(AgentImportManager.class).toProvider(AgentImportManagerProvider.class);
         bind(AgentDependencyManager.class).toProvider(AgentDependencyManagerProvider.class);
@@ -0,0 +1,228 @@
+package com.walmartlabs.concord.agent.logging;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2020 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+import com.walmartlabs.concord.ApiClient;
+import com.walmartlabs.concord.ApiException;
+import com.walmartlabs.concord.agent.AgentConstants;
+import com.walmartlabs.concord.client.ClientUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.*;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Buffers segment log chunks and sends them to the server in bulk.
+ * <p>
+ * An appender is created for each process and uses the process' session
+ * token, so each batch contains the chunks of all segments of a single
+ * process. Batching the chunks of multiple processes would require
+ * the agent's own API key to have write access to the logs of all
+ * processes.
+ * <p>
+ * Buffered chunks are kept until the server accepts them, so a failed
+ * flush is retried with the next one and the order of chunks is preserved.
+ * When the buffer is full and can't be flushed, new chunks are rejected
+ * and the caller is expected to retry later.
+ * <p>
+ * If the server doesn't support bulk appends (e.g. older versions), batching
+ * is disabled and the chunks are sent separately using the delegate.
+ */
+public class BatchingLogAppender implements LogAppender {
+
+    private static final Logger log = LoggerFactory.getLogger(BatchingLogAppender.class);
+
+    private static final String BATCH_PATH = "/api/v2/process/log/batch";
+
+    private final LogAppender delegate;
+    private final ApiClient apiClient;
+    private final long flushWindow;
+    private final long maxSize;
+    private final boolean compress;
+
+    private final List<Chunk> buffer = new ArrayList<>();
+    private long bufferSize;
+    private long bufferedSince;
+    private boolean batchingDisabled;
+
+    public BatchingLogAppender(LogAppender delegate, ApiClient apiClient, long flushWindow, long maxSize, boolean compress) {
+        this.delegate = delegate;
+        this.apiClient = apiClient;
+        this.flushWindow = flushWindow;
+        this.maxSize = maxSize;
+        this.compress = compress;
+    }
+
+    @Override
+    public void appendLog(UUID instanceId, byte[] ab) {
+        delegate.appendLog(instanceId, ab);
+    }
+
+    @Override
+    public synchronized boolean appendLog(UUID instanceId, long segmentId, byte[] ab) {
+        if (batchingDisabled) {
+            return sendSeparately() && delegate.appendLog(instanceId, segmentId, ab);
+        }
+
+        if (bufferSize >= maxSize && !send()) {
+            return false;
+        }
+
+        if (buffer.isEmpty()) {
+            bufferedSince = System.currentTimeMillis();
+        }
+
+        buffer.add(new Chunk(instanceId, segmentId, ab));
+        bufferSize += ab.length;
+
+        return true;
+    }
+
+    @Override
+    public Long createSegment(UUID instanceId, UUID correlationId, String segmentName, Date createdAt) {
+        return delegate.createSegment(instanceId, correlationId, segmentName, createdAt);
+    }
+
+    @Override
+    public synchronized boolean updateSegment(UUID instanceId, long segmentId, LogSegmentStats stats) {
+        // send the segment's data before its final status
+        send();
+        return delegate.updateSegment(instanceId, segmentId, stats);
+    }
+
+    @Override
+    public synchronized void flush(boolean force) {
+        if (buffer.isEmpty()) {
+            return;
+        }
+
+        if (force || bufferSize >= maxSize || System.currentTimeMillis() - bufferedSince >= flushWindow) {
+            send();
+        }
+    }
+
+    private boolean send() {
+        if (buffer.isEmpty()) {
+            return true;
+        }
+
+        if (batchingDisabled) {
+            return sendSeparately();
+        }
+
+        byte[] body;
+        try {
+            body = serialize(buffer, compress);
+        } catch (IOException e) {
+            log.warn("send -> error while serializing {} chunk(s): {}", buffer.size(), e.getMessage());
+            return false;
+        }
+
+        Map<String, String> headers = new HashMap<>();
+        headers.put("Content-Type", "application/octet-stream");
+        if (compress) {
+            headers.put("Content-Encoding", "gzip");
+        }
+
+        try {
+            ClientUtils.withRetry(AgentConstants.API_CALL_MAX_RETRIES, AgentConstants.API_CALL_RETRY_DELAY, () -> {
+                ClientUtils.postData(apiClient, BATCH_PATH, body, headers, null);
+                return null;
+            });
+        } catch (ApiException e) {
+            if (e.getCode() == 404 || e.getCode() == 405) {
+                log.warn("send -> bulk log appends are not supported by the server, sending the chunks separately");
+                batchingDisabled = true;
+                return sendSeparately();
+            }
+
+            if (e.getCode() == 413) {
+                log.warn("send -> the batch is too large ({} bytes), sending the chunks separately", body.length);
+                return sendSeparately();
+            }
+
+            log.warn("send -> error while sending {} chunk(s), will retry later: {}", buffer.size(), e.getMessage());
+            return false;
+        }
+
+        buffer.clear();
+        bufferSize = 0;
+        return true;
+    }
+
+    /**
+     * Sends the buffered chunks one by one, in order. The chunks that weren't
+     * sent are kept in the buffer.
+     */
+    private boolean sendSeparately() {
+        Iterator<Chunk> it = buffer.iterator();
+        while (it.hasNext()) {
+            Chunk c = it.next();
+            if (!delegate.appendLog(c.instanceId, c.segmentId, c.data)) {
+                return false;
+            }
+
+            it.remove();
+            bufferSize -= c.data.length;
+        }
+
+        return true;
+    }
+
+    /**
+     * Serializes the chunks using the format expected by the server's bulk append endpoint:
+     * {@code (instanceId: 2 x int64, segmentId: int64, length: int32, data: byte[length])}.
+     */
+    private static byte[] serialize(List<Chunk> chunks, boolean compress) throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+
+        OutputStream out = compress ? new GZIPOutputStream(baos) : baos;
+        try (DataOutputStream dos = new DataOutputStream(out)) {
+            for (Chunk c : chunks) {
+                dos.writeLong(c.instanceId.getMostSignificantBits());
+                dos.writeLong(c.instanceId.getLeastSignificantBits());
+                dos.writeLong(c.segmentId);
+                dos.writeInt(c.data.length);
+                dos.write(c.data);
+            }
+        }
+
+        return baos.toByteArray();
+    }
+
+    private static final class Chunk {
+
+        private final UUID instanceId;
+        private final long segmentId;
+        private final byte[] data;
+
+        private Chunk(UUID instanceId, long segmentId, byte[] data) { // NOSONAR
+            this.instanceId = instanceId;
+            this.segmentId = segmentId;
+            this.data = data;
+        }
+    }
+}
@@ -78,9 +78,11 @@ public final class FileWatcher<T> implements Closeable {
     private void run(Supplier<Boolean> stopCondition) throws IOException {
         while (!Thread.currentThread().isInterrupted()) {
             processFiles();
+            listener.afterPass();
 
             if (stopCondition.get()) {
                 processFiles();
+                listener.afterPass();
                 break;
             }
 
@@ -180,6 +182,13 @@ public final class FileWatcher<T> implements Closeable {
          * @return new file offset or -1 if file no longer tracked (e.g. all file read)
          */
         long onChanged(T fileName, RandomAccessFile in) throws IOException;
+
+        /**
+         * Called after each pass over the watched files.
+         */
+        default void afterPass() {
+            // do nothing
+        }
     }
 
     public interface FileNameParser<T> {
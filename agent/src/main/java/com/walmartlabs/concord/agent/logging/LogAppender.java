@@ -32,4 +32,14 @@ public interface LogAppender {
     Long createSegment(UUID instanceId, UUID correlationId, String segmentName, Date createdAt);
 
     boolean updateSegment(UUID instanceId, long segmentId, LogSegmentStats stats);
+
+    /**
+     * Sends out the buffered log data, if any.
+     *
+     * @param force if {@code true} the data is sent regardless of the appender's
+     *              flush window
+     */
+    default void flush(boolean force) {
+        // do nothing
+    }
 }
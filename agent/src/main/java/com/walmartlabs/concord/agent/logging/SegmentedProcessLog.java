@@ -48,6 +48,15 @@ public class SegmentedProcessLog extends RedirectedProcessLog {
 
     @Override
     public void run(Supplier<Boolean> stopCondition) throws Exception {
+        try {
+            watch(stopCondition);
+        } finally {
+            // send out whatever is left in the appender's buffer
+            appender.flush(true);
+        }
+    }
+
+    private void watch(Supplier<Boolean> stopCondition) throws IOException {
         FileWatcher.FileReader fileReader = new FileWatcher.ByteArrayFileReader();
 
         FileWatcher.watch(logsDir, stopCondition, logSteamMaxDelay, new LogSegmentNameParser(), new FileWatcher.FileListener<LogSegment>() {
@@ -87,6 +96,11 @@ public class SegmentedProcessLog extends RedirectedProcessLog {
                     return result.readPos();
                 });
             }
+
+            @Override
+            public void afterPass() {
+                appender.flush(false);
+            }
         });
     }
 
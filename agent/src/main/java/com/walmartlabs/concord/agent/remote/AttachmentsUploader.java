@@ -21,25 +21,37 @@ package com.walmartlabs.concord.agent.remote;
  */
 
 import com.walmartlabs.concord.ApiClient;
+import com.walmartlabs.concord.ApiException;
 import com.walmartlabs.concord.agent.AgentConstants;
+import com.walmartlabs.concord.agent.cfg.AgentConfiguration;
 import com.walmartlabs.concord.client.ClientUtils;
 import com.walmartlabs.concord.common.IOUtils;
 import com.walmartlabs.concord.common.TemporaryPath;
 import com.walmartlabs.concord.sdk.Constants;
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
 import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import javax.inject.Inject;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.UUID;
+import java.util.zip.GZIPOutputStream;
 
 public class AttachmentsUploader {
 
+    private static final Logger log = LoggerFactory.getLogger(AttachmentsUploader.class);
+
+    private static final String TAR_GZIP = "application/x-gtar";
+
     private final ApiClient apiClient;
+    private final boolean streaming;
 
     @Inject
-    public AttachmentsUploader(ApiClient apiClient) {
+    public AttachmentsUploader(ApiClient apiClient, AgentConfiguration cfg) {
         this.apiClient = apiClient;
+        this.streaming = cfg.isStreamingStateTransfer();
     }
 
     public void upload(UUID instanceId, Path payloadDir) throws Exception {
@@ -48,17 +60,48 @@ public class AttachmentsUploader {
             return;
         }
 
+        String path = "/api/v1/process/" + instanceId + "/attachment";
+
+        if (streaming) {
+            try {
+                uploadArchive(path, attachmentsDir);
+                return;
+            } catch (ApiException e) {
+                if (e.getCode() != 415) {
+                    throw e;
+                }
+
+                // older servers accept only ZIP archives
+                log.warn("upload ['{}'] -> streaming is not supported by the server, falling back to ZIP", instanceId);
+            }
+        }
+
         try (TemporaryPath tmp = IOUtils.tempFile("attachments", ".zip")) {
             try (ZipArchiveOutputStream zip = new ZipArchiveOutputStream(Files.newOutputStream(tmp.path()))) {
                 IOUtils.zip(zip, attachmentsDir);
             }
 
-            String path = "/api/v1/process/" + instanceId + "/attachment";
-
             ClientUtils.withRetry(AgentConstants.API_CALL_MAX_RETRIES, AgentConstants.API_CALL_RETRY_DELAY, () -> {
                 ClientUtils.postData(apiClient, path, tmp.path().toFile());
                 return null;
             });
         }
     }
+
+    /**
+     * Creates the archive while it is being sent.
+     */
+    private void uploadArchive(String path, Path attachmentsDir) throws Exception {
+        ClientUtils.withRetry(AgentConstants.API_CALL_MAX_RETRIES, AgentConstants.API_CALL_RETRY_DELAY, () -> {
+            ClientUtils.postStream(apiClient, path, TAR_GZIP, out -> {
+                GZIPOutputStream gz = new GZIPOutputStream(out);
+                TarArchiveOutputStream tar = new TarArchiveOutputStream(gz);
+                IOUtils.tar(tar, attachmentsDir);
+                tar.finish();
+                gz.finish();
+                gz.flush();
+            }, null);
+            return null;
+        });
+    }
 }
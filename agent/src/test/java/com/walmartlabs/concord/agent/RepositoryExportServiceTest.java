@@ -0,0 +1,246 @@
+package com.walmartlabs.concord.agent;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2019 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.walmartlabs.concord.agent.cfg.RepositoryCacheConfiguration;
+import com.walmartlabs.concord.agent.cfg.RepositoryCacheConfiguration.ExportMode;
+import com.walmartlabs.concord.common.IOUtils;
+import com.walmartlabs.concord.repository.RepositoryInfo;
+import com.walmartlabs.concord.repository.RepositoryProvider;
+import com.walmartlabs.concord.repository.RepositoryProviders;
+import com.walmartlabs.concord.repository.Snapshot;
+import com.walmartlabs.concord.sdk.Secret;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class RepositoryExportServiceTest {
+
+    private static final String REPO_URL = "test://repo";
+    private static final String COMMIT_ID = "abc";
+
+    private Path snapshotDir;
+    private TestProvider provider;
+
+    @Before
+    public void setUp() {
+        provider = new TestProvider();
+    }
+
+    @Test
+    public void testCopy() throws Exception {
+        RepositoryExportService service = newService(ExportMode.COPY);
+
+        Path a = export(service, COMMIT_ID);
+        Path b = export(service, COMMIT_ID);
+
+        assertContent(a);
+        assertContent(b);
+
+        // each export fetches the repository, no snapshots are created
+        assertEquals(2, provider.fetchCount.get());
+        assertTrue(listSnapshots().isEmpty());
+    }
+
+    @Test
+    public void testSnapshot() throws Exception {
+        RepositoryExportService service = newService(ExportMode.SNAPSHOT);
+
+        Path a = export(service, COMMIT_ID);
+        Path b = export(service, COMMIT_ID);
+
+        assertContent(a);
+        assertContent(b);
+
+        // the commit is fetched once, the second export reuses the snapshot
+        assertEquals(1, provider.fetchCount.get());
+
+        List<Path> snapshots = listSnapshots();
+        assertEquals(1, snapshots.size());
+
+        // the files are copies, changes in the process directory don't affect the snapshot
+        Path snapshot = snapshots.get(0);
+        assertFalse(Files.isSameFile(snapshot.resolve("concord.yml"), a.resolve("concord.yml")));
+
+        Files.write(a.resolve("concord.yml"), "changed".getBytes(StandardCharsets.UTF_8));
+        assertContent(snapshot);
+        assertContent(b);
+    }
+
+    @Test
+    public void testHardlink() throws Exception {
+        RepositoryExportService service = newService(ExportMode.HARDLINK);
+
+        Path a = export(service, COMMIT_ID);
+        Path b = export(service, COMMIT_ID);
+
+        assertContent(a);
+        assertContent(b);
+        assertEquals(1, provider.fetchCount.get());
+
+        List<Path> snapshots = listSnapshots();
+        assertEquals(1, snapshots.size());
+
+        Path snapshot = snapshots.get(0);
+        assertTrue(Files.isSameFile(snapshot.resolve("concord.yml"), a.resolve("concord.yml")));
+        assertTrue(Files.isSameFile(snapshot.resolve("dir/file.txt"), b.resolve("dir/file.txt")));
+    }
+
+    @Test
+    public void testSnapshotPerCommit() throws Exception {
+        RepositoryExportService service = newService(ExportMode.SNAPSHOT);
+
+        export(service, COMMIT_ID);
+        export(service, "def");
+        assertEquals(2, provider.fetchCount.get());
+        assertEquals(2, listSnapshots().size());
+
+        // exports without a commit ID don't use snapshots
+        Path dest = export(service, null);
+        assertContent(dest);
+        assertEquals(3, provider.fetchCount.get());
+        assertEquals(2, listSnapshots().size());
+    }
+
+    @Test
+    public void testCleanup() throws Exception {
+        RepositoryExportService service = newService(ExportMode.SNAPSHOT);
+
+        export(service, COMMIT_ID);
+
+        Path snapshot = listSnapshots().get(0);
+
+        // recently used snapshots are kept
+        assertEquals(0, service.removeSnapshots(System.currentTimeMillis()));
+        assertTrue(Files.exists(snapshot));
+
+        long later = System.currentTimeMillis() + Duration.ofHours(2).toMillis();
+
+        // snapshots in use are skipped
+        Lock l = service.snapshotLock(snapshot).readLock();
+        l.lock();
+        try {
+            assertEquals(0, service.removeSnapshots(later));
+            assertTrue(Files.exists(snapshot));
+        } finally {
+            l.unlock();
+        }
+
+        assertEquals(1, service.removeSnapshots(later));
+        assertFalse(Files.exists(snapshot));
+        assertTrue(listSnapshots().isEmpty());
+
+        // the next export creates a new snapshot
+        Path dest = export(service, COMMIT_ID);
+        assertContent(dest);
+        assertEquals(2, provider.fetchCount.get());
+    }
+
+    private RepositoryExportService newService(ExportMode exportMode) throws IOException {
+        snapshotDir = Files.createTempDirectory("snapshots");
+
+        RepositoryCacheConfiguration cfg = mock(RepositoryCacheConfiguration.class);
+        when(cfg.getCacheDir()).thenReturn(Files.createTempDirectory("cache"));
+        when(cfg.getInfoDir()).thenReturn(Files.createTempDirectory("info"));
+        when(cfg.getLockTimeout()).thenReturn(Duration.ofSeconds(10));
+        when(cfg.getLockCount()).thenReturn(16);
+        when(cfg.getMaxAge()).thenReturn(Duration.ofHours(1));
+        when(cfg.getExportMode()).thenReturn(exportMode);
+        when(cfg.getSnapshotDir()).thenReturn(snapshotDir);
+
+        RepositoryProviders providers = new RepositoryProviders(Collections.singletonList(provider));
+        return new RepositoryExportService(providers, cfg, new ObjectMapper());
+    }
+
+    private static Path export(RepositoryExportService service, String commitId) throws IOException {
+        Path dest = Files.createTempDirectory("dest");
+        service.export(REPO_URL, null, commitId, null, dest, null, null);
+        return dest;
+    }
+
+    private List<Path> listSnapshots() throws IOException {
+        try (Stream<Path> s = Files.list(snapshotDir)) {
+            return s.collect(Collectors.toList());
+        }
+    }
+
+    private static void assertContent(Path dir) throws IOException {
+        assertEquals("flows: {}", new String(Files.readAllBytes(dir.resolve("concord.yml")), StandardCharsets.UTF_8));
+        assertEquals("hello", new String(Files.readAllBytes(dir.resolve("dir/file.txt")), StandardCharsets.UTF_8));
+    }
+
+    private static class TestProvider implements RepositoryProvider {
+
+        private final AtomicInteger fetchCount = new AtomicInteger();
+
+        @Override
+        public String getBranchOrDefault(String branch) {
+            return branch != null ? branch : "master";
+        }
+
+        @Override
+        public boolean canHandle(String url) {
+            return true;
+        }
+
+        @Override
+        public String fetch(String uri, String branch, String commitId, Secret secret, boolean checkRemoteCommitId, Path dst) {
+            fetchCount.incrementAndGet();
+
+            try {
+                Files.createDirectories(dst.resolve("dir"));
+                Files.write(dst.resolve("concord.yml"), "flows: {}".getBytes(StandardCharsets.UTF_8));
+                Files.write(dst.resolve("dir/file.txt"), "hello".getBytes(StandardCharsets.UTF_8));
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+
+            return commitId;
+        }
+
+        @Override
+        public Snapshot export(Path src, Path dst, List<String> ignorePatterns) throws IOException {
+            IOUtils.copy(src, dst);
+            return null;
+        }
+
+        @Override
+        public RepositoryInfo getInfo(Path path) {
+            return null;
+        }
+    }
+}
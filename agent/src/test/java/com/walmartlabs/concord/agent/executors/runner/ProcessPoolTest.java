@@ -0,0 +1,274 @@
+package com.walmartlabs.concord.agent.executors.runner;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2019 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+import com.google.common.hash.HashCode;
+import com.walmartlabs.concord.agent.cfg.PreForkConfiguration;
+import com.walmartlabs.concord.agent.executors.runner.ProcessPool.ProcessEntry;
+import com.walmartlabs.concord.agent.executors.runner.ProcessPool.ProcessLauncher;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class ProcessPoolTest {
+
+    private static final HashCode HASH_A = HashCode.fromInt(1);
+    private static final HashCode HASH_B = HashCode.fromInt(2);
+
+    @Test(timeout = 30000)
+    public void testWarmUp() throws Exception {
+        ProcessPool pool = newPool(60000, 10, 2);
+        TestLauncher launcher = new TestLauncher();
+
+        // nothing is pre-forked before the first request
+        ProcessEntry a = take(pool, launcher, HASH_A);
+        assertFalse(a.isPreforked());
+        assertEquals(1, launcher.started());
+
+        waitFor(() -> launcher.idle() == 1);
+
+        ProcessEntry b = take(pool, launcher, HASH_A);
+        assertTrue(b.isPreforked());
+        assertNotSame(a, b);
+
+        // the demand grows, more processes are kept, up to the per-hash limit
+        waitFor(() -> launcher.idle() == 2);
+        take(pool, launcher, HASH_A);
+        take(pool, launcher, HASH_A);
+        waitFor(() -> launcher.idle() == 2);
+
+        Thread.sleep(200);
+        assertEquals(2, launcher.idle());
+
+        ProcessPool.Stats stats = pool.getStats();
+        assertEquals(1, stats.getMisses());
+        assertEquals(3, stats.getHits());
+    }
+
+    @Test(timeout = 30000)
+    public void testMaxCount() throws Exception {
+        ProcessPool pool = newPool(60000, 1, 5);
+        TestLauncher launcherA = new TestLauncher();
+        TestLauncher launcherB = new TestLauncher();
+
+        take(pool, launcherA, HASH_A);
+        waitFor(() -> launcherA.idle() == 1);
+
+        Thread.sleep(50);
+
+        // B is more recent, its process replaces A's
+        take(pool, launcherB, HASH_B);
+        waitFor(() -> launcherB.idle() == 1);
+        waitFor(() -> launcherA.idle() == 0);
+
+        assertTrue(pool.getStats().getEvictions() >= 1);
+    }
+
+    @Test(timeout = 30000)
+    public void testEviction() throws Exception {
+        ProcessPool pool = newPool(200, 10, 2);
+        TestLauncher launcher = new TestLauncher();
+
+        take(pool, launcher, HASH_A);
+        waitFor(() -> launcher.started() == 2);
+
+        // without new requests the pre-forked process expires and is not replaced
+        waitFor(() -> launcher.idle() == 0);
+        assertTrue(pool.getStats().getEvictions() >= 1);
+
+        Thread.sleep(1500);
+        assertEquals(2, launcher.started());
+    }
+
+    @Test(timeout = 30000)
+    public void testDeadProcess() throws Exception {
+        ProcessPool pool = newPool(60000, 10, 1);
+        TestLauncher launcher = new TestLauncher();
+
+        take(pool, launcher, HASH_A);
+        waitFor(() -> launcher.idle() == 1);
+
+        launcher.idleProcesses().forEach(p -> p.alive = false);
+
+        // dead processes are not handed out
+        ProcessEntry e = take(pool, launcher, HASH_A);
+        assertFalse(e.isPreforked());
+        assertTrue(e.getProcess().isAlive());
+        assertEquals(1, pool.getStats().getEvictions());
+    }
+
+    @Test(timeout = 60000)
+    public void testConcurrentTake() throws Exception {
+        ProcessPool pool = newPool(60000, 10, 5);
+        TestLauncher launcher = new TestLauncher();
+
+        int threads = 8;
+        int takesPerThread = 50;
+
+        Set<ProcessEntry> taken = ConcurrentHashMap.newKeySet();
+        CyclicBarrier barrier = new CyclicBarrier(threads);
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                futures.add(executor.submit(() -> {
+                    barrier.await();
+                    for (int j = 0; j < takesPerThread; j++) {
+                        ProcessEntry e = take(pool, launcher, HASH_A);
+                        assertTrue(e.getProcess().isAlive());
+                        // each process is handed out only once
+                        assertTrue(taken.add(e));
+                        Thread.sleep(1);
+                    }
+                    return null;
+                }));
+            }
+
+            for (Future<?> f : futures) {
+                f.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(threads * takesPerThread, taken.size());
+
+        ProcessPool.Stats stats = pool.getStats();
+        assertEquals(threads * takesPerThread, stats.getHits() + stats.getMisses());
+        assertTrue(stats.getHits() > 0);
+    }
+
+    private static ProcessPool newPool(long maxAge, int maxCount, int maxPerHash) {
+        PreForkConfiguration cfg = mock(PreForkConfiguration.class);
+        when(cfg.getMaxAge()).thenReturn(maxAge);
+        when(cfg.getMaxCount()).thenReturn(maxCount);
+        when(cfg.getMaxPerHash()).thenReturn(maxPerHash);
+        return new ProcessPool(cfg);
+    }
+
+    private static ProcessEntry take(ProcessPool pool, TestLauncher launcher, HashCode hc) throws Exception {
+        ProcessEntry e = pool.take(hc, launcher);
+        launcher.onTaken(e);
+        return e;
+    }
+
+    private static void waitFor(BooleanSupplier condition) throws InterruptedException {
+        while (!condition.getAsBoolean()) {
+            Thread.sleep(10);
+        }
+
+        // started processes are added to the pool right after the launcher returns
+        Thread.sleep(50);
+    }
+
+    private static class TestLauncher implements ProcessLauncher {
+
+        private final List<TestProcess> processes = new CopyOnWriteArrayList<>();
+        private final Set<Process> taken = ConcurrentHashMap.newKeySet();
+
+        @Override
+        public ProcessEntry start() {
+            TestProcess p = new TestProcess();
+            processes.add(p);
+            return new ProcessEntry(p, Paths.get("proc" + processes.size()));
+        }
+
+        void onTaken(ProcessEntry e) {
+            taken.add(e.getProcess());
+        }
+
+        int started() {
+            return processes.size();
+        }
+
+        /**
+         * @return the number of live processes not handed out yet.
+         */
+        int idle() {
+            return idleProcesses().size();
+        }
+
+        List<TestProcess> idleProcesses() {
+            List<TestProcess> result = new ArrayList<>();
+            for (TestProcess p : processes) {
+                if (p.alive && !taken.contains(p)) {
+                    result.add(p);
+                }
+            }
+            return result;
+        }
+    }
+
+    private static class TestProcess extends Process {
+
+        private volatile boolean alive = true;
+
+        @Override
+        public OutputStream getOutputStream() {
+            return new ByteArrayOutputStream();
+        }
+
+        @Override
+        public InputStream getInputStream() {
+            return new ByteArrayInputStream(new byte[0]);
+        }
+
+        @Override
+        public InputStream getErrorStream() {
+            return new ByteArrayInputStream(new byte[0]);
+        }
+
+        @Override
+        public int waitFor() {
+            return 0;
+        }
+
+        @Override
+        public int exitValue() {
+            if (alive) {
+                throw new IllegalThreadStateException();
+            }
+            return 0;
+        }
+
+        @Override
+        public void destroy() {
+            alive = false;
+        }
+
+        @Override
+        public boolean isAlive() {
+            return alive;
+        }
+    }
+}
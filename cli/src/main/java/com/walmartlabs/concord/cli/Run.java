@@ -208,13 +208,23 @@ public class Run implements Callable<Integer> {
     }
 
     private static ImmutableProcessConfiguration.Builder from(ProcessDefinitionConfiguration cfg) {
-        return ProcessConfiguration.builder()
+        ImmutableProcessConfiguration.Builder b = ProcessConfiguration.builder()
                 .debug(cfg.debug())
                 .entryPoint(cfg.entryPoint())
                 .arguments(cfg.arguments())
                 .meta(cfg.meta())
                 .events(cfg.events())
                 .out(cfg.out());
+
+        if (cfg.maxParallelism() != null) {
+            b.maxParallelism(cfg.maxParallelism());
+        }
+
+        if (cfg.virtualThreads() != null) {
+            b.virtualThreads(cfg.virtualThreads());
+        }
+
+        return b;
     }
 
     private static Map<String, Object> getProfilesArguments(ProcessDefinition processDefinition, List<String> profiles) {
@@ -37,6 +37,7 @@ import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.lang.reflect.Type;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -154,6 +155,65 @@ public final class ClientUtils {
         return client.execute(c, returnType);
     }
 
+    /**
+     * Sends the data produced by the specified {@code writer} as the request's body.
+     * The data is written directly into the connection without buffering.
+     * The {@code writer} can be called again if the request is retried.
+     */
+    public static <T> ApiResponse<T> postStream(ApiClient client, String path, String contentType, StreamWriter writer, Type returnType) throws ApiException {
+        List<Pair> queryParams = new ArrayList<>();
+        Map<String, String> headerParams = new HashMap<>();
+
+        Map<String, Authentication> auths = client.getAuthentications();
+        for (Map.Entry<String, Authentication> e : auths.entrySet()) {
+            Authentication a = e.getValue();
+            a.applyToParams(queryParams, headerParams);
+        }
+
+        String url = client.buildUrl(path, queryParams, null);
+        Request.Builder b = new Request.Builder().url(url);
+        client.processHeaderParams(headerParams, b);
+
+        RequestBody body = new StreamingRequestBody(MediaType.parse(contentType), writer);
+        Request request = b.method("POST", body).build();
+
+        OkHttpClient ok = client.getHttpClient();
+        Call c = ok.newCall(request);
+
+        return client.execute(c, returnType);
+    }
+
+    /**
+     * Passes the response's body to the specified {@code reader} while it is
+     * being received. Unlike the generated API methods, the response is not
+     * saved into a temporary file.
+     */
+    public static void getStream(ApiClient client, String path, String accept, StreamReader reader) throws ApiException {
+        Set<String> auths = client.getAuthentications().keySet();
+        String[] authNames = auths.toArray(new String[0]);
+
+        Map<String, String> headerParams = new HashMap<>();
+        headerParams.put("Accept", accept);
+
+        Call call = client.buildCall(path, "GET", new ArrayList<>(), new ArrayList<>(),
+                null, headerParams, new HashMap<>(), authNames, null);
+
+        try {
+            Response resp = call.execute();
+            try (ResponseBody body = resp.body()) {
+                if (!resp.isSuccessful()) {
+                    throw new ApiException(resp.message(), resp.code(), resp.headers().toMultimap(), body.string());
+                }
+
+                try (InputStream in = body.byteStream()) {
+                    reader.read(in);
+                }
+            }
+        } catch (IOException e) {
+            throw new ApiException(e);
+        }
+    }
+
     public static MultipartBuilder createMultipartBody(Map<String, Object> data) {
         MultipartBuilder b = new MultipartBuilder().type(MultipartBuilder.FORM);
         for (Map.Entry<String, Object> e : data.entrySet()) {
@@ -218,6 +278,37 @@ public final class ClientUtils {
         }
     }
 
+    public static final class StreamingRequestBody extends RequestBody {
+
+        private final MediaType contentType;
+        private final StreamWriter writer;
+
+        public StreamingRequestBody(MediaType contentType, StreamWriter writer) {
+            this.contentType = contentType;
+            this.writer = writer;
+        }
+
+        @Override
+        public MediaType contentType() {
+            return contentType;
+        }
+
+        @Override
+        public void writeTo(BufferedSink sink) throws IOException {
+            writer.write(sink.outputStream());
+        }
+    }
+
+    public interface StreamWriter {
+
+        void write(OutputStream out) throws IOException;
+    }
+
+    public interface StreamReader {
+
+        void read(InputStream in) throws IOException;
+    }
+
     public static class PathRequestBody extends RequestBody {
 
         private final Path path;
@@ -20,6 +20,9 @@ package com.walmartlabs.concord.common;
  * =====
  */
 
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
 import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
 import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
 import org.apache.commons.compress.archivers.zip.ZipFile;
@@ -153,11 +156,27 @@ public final class IOUtils {
     }
 
     public static void unzip(Path in, Path targetDir, boolean skipExisting, FileVisitor visitor, CopyOption... options) throws IOException {
+        unzip(in, targetDir, skipExisting, visitor, -1, -1, options);
+    }
+
+    /**
+     * Unpacks a ZIP archive. Fails if the archive contains more than {@code maxEntries}
+     * entries or more than {@code maxSize} bytes of uncompressed data.
+     * Non-positive values disable the corresponding limit.
+     */
+    public static void unzip(Path in, Path targetDir, long maxSize, int maxEntries, CopyOption... options) throws IOException {
+        unzip(in, targetDir, false, null, maxSize, maxEntries, options);
+    }
+
+    private static void unzip(Path in, Path targetDir, boolean skipExisting, FileVisitor visitor, long maxSize, int maxEntries, CopyOption... options) throws IOException {
         try (ZipFile zip = new ZipFile(in.toFile())) {
             Enumeration<ZipArchiveEntry> entries = zip.getEntries();
 
+            int entryCount = 0;
+            long size = 0;
             while (entries.hasMoreElements()) {
                 ZipArchiveEntry e = entries.nextElement();
+                assertEntryCount(++entryCount, maxEntries);
 
                 Path p = targetDir.resolve(e.getName());
                 if (skipExisting && Files.exists(p)) {
@@ -172,8 +191,9 @@ public final class IOUtils {
                         Files.createDirectories(parent);
                     }
 
-                    try (InputStream src = zip.getInputStream(e)) {
+                    try (LimitedInputStream src = new LimitedInputStream(zip.getInputStream(e), maxSize, size)) {
                         Files.copy(src, p, options);
+                        size = src.getCount();
                     }
 
                     int unixMode = e.getUnixMode();
@@ -190,6 +210,99 @@ public final class IOUtils {
         }
     }
 
+    public static void tarFile(TarArchiveOutputStream tar, Path src, String name) throws IOException {
+        TarArchiveEntry e = new TarArchiveEntry(name);
+
+        Set<PosixFilePermission> permissions = Files.getPosixFilePermissions(src);
+        e.setMode(Posix.unixMode(permissions));
+
+        e.setSize(Files.size(src));
+
+        tar.putArchiveEntry(e);
+        Files.copy(src, tar);
+        tar.closeArchiveEntry();
+    }
+
+    /**
+     * Writes the content of the specified directory into a TAR archive.
+     * Unlike ZIP archives, TAR archives can be unpacked while they are being
+     * read from a stream, see {@link #untar(InputStream, Path, CopyOption...)}.
+     */
+    public static void tar(TarArchiveOutputStream tar, Path srcDir) throws IOException {
+        tar.setLongFileMode(TarArchiveOutputStream.LONGFILE_POSIX);
+        tar.setBigNumberMode(TarArchiveOutputStream.BIGNUMBER_POSIX);
+
+        Files.walkFileTree(srcDir, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                if (!Files.isRegularFile(file)) {
+                    return FileVisitResult.CONTINUE;
+                }
+
+                tarFile(tar, file, srcDir.relativize(file).toString());
+
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    /**
+     * Unpacks a TAR archive while it is being read from the specified stream.
+     * Only regular files and directories are extracted. The stream is not closed.
+     * Fails if the archive contains more than {@code maxEntries} entries or more
+     * than {@code maxSize} bytes of file data. Non-positive values disable
+     * the corresponding limit.
+     */
+    public static void untar(InputStream in, Path targetDir, long maxSize, int maxEntries, CopyOption... options) throws IOException {
+        Path root = targetDir.normalize();
+
+        TarArchiveInputStream tar = new TarArchiveInputStream(in);
+        LimitedInputStream src = new LimitedInputStream(tar, maxSize, 0);
+
+        int entryCount = 0;
+        TarArchiveEntry e;
+        while ((e = tar.getNextTarEntry()) != null) {
+            assertEntryCount(++entryCount, maxEntries);
+
+            Path p = root.resolve(e.getName()).normalize();
+            if (!p.startsWith(root)) {
+                throw new IOException("Invalid archive entry: " + e.getName());
+            }
+
+            if (e.isDirectory()) {
+                Files.createDirectories(p);
+                continue;
+            }
+
+            if (!e.isFile()) {
+                continue;
+            }
+
+            Path parent = p.getParent();
+            if (!Files.exists(parent)) {
+                Files.createDirectories(parent);
+            }
+
+            // fail before reading the data, if the entry's size is already known to exceed the limit
+            src.assertLimit(src.getCount() + e.getSize());
+
+            Files.copy(src, p, options);
+
+            int unixMode = e.getMode() & 0777;
+            if (unixMode <= 0) {
+                unixMode = Posix.DEFAULT_UNIX_MODE;
+            }
+
+            Files.setPosixFilePermissions(p, Posix.posix(unixMode));
+        }
+    }
+
+    private static void assertEntryCount(int count, int maxEntries) throws IOException {
+        if (maxEntries > 0 && count > maxEntries) {
+            throw new IOException("Too many archive entries, max: " + maxEntries);
+        }
+    }
+
     public static void copy(InputStream in, OutputStream out) throws IOException {
         byte[] ab = new byte[4096];
         int read;
@@ -359,6 +472,58 @@ public final class IOUtils {
         return patterns.stream().anyMatch(what::matches);
     }
 
+    /**
+     * Counts the bytes read from the underlying stream and fails if the total exceeds the limit.
+     */
+    private static final class LimitedInputStream extends FilterInputStream {
+
+        private final long limit;
+        private long count;
+
+        private LimitedInputStream(InputStream in, long limit, long count) {
+            super(in);
+            this.limit = limit;
+            this.count = count;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                assertLimit(++count);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                count += n;
+                assertLimit(count);
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            count += skipped;
+            assertLimit(count);
+            return skipped;
+        }
+
+        private long getCount() {
+            return count;
+        }
+
+        private void assertLimit(long size) throws IOException {
+            if (limit > 0 && size > limit) {
+                throw new IOException("The archive's uncompressed size exceeds the limit of " + limit + " bytes");
+            }
+        }
+    }
+
     private IOUtils() {
     }
 }
@@ -20,8 +20,8 @@ package com.walmartlabs.concord.common;
  * =====
  */
 
-import java.util.Collection;
-import java.util.Map;
+import java.util.*;
+import java.util.regex.Pattern;
 
 public final class MapMatcher {
 
@@ -33,6 +33,96 @@ public final class MapMatcher {
         return compareNodes(data, conditions);
     }
 
+    /**
+     * Pre-compiles the specified conditions (including the regular expressions)
+     * for repeated use. The returned matcher is immutable and thread-safe, its
+     * results are the same as {@link #matches(Map, Map)}.
+     */
+    public static Compiled compile(Map<String, Object> conditions) {
+        if (conditions == null || conditions.isEmpty()) {
+            return new Compiled(null);
+        }
+
+        return new Compiled(compileNode(conditions));
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static Node compileNode(Object conditions) {
+        if (conditions == null) {
+            return Objects::isNull;
+        }
+
+        if (conditions instanceof Map) {
+            Map<String, Node> fields = new LinkedHashMap<>();
+            ((Map<String, Object>) conditions).forEach((k, v) -> fields.put(k, compileNode(v)));
+
+            return data -> {
+                if (data == null) {
+                    return false;
+                }
+
+                if (!(data instanceof Map)) {
+                    return compareValues(data, conditions);
+                }
+
+                Map<String, Object> m = (Map<String, Object>) data;
+                for (Map.Entry<String, Node> e : fields.entrySet()) {
+                    if (!e.getValue().matches(m.get(e.getKey()))) {
+                        return false;
+                    }
+                }
+                return true;
+            };
+        }
+
+        if (conditions instanceof String) {
+            Pattern p = Pattern.compile((String) conditions);
+
+            return data -> {
+                if (data == null) {
+                    return p.matcher("").matches();
+                } else if (data instanceof String) {
+                    return p.matcher((String) data).matches();
+                }
+                return compareValues(data, conditions);
+            };
+        }
+
+        if (conditions instanceof Collection) {
+            Collection c = (Collection) conditions;
+
+            List<Node> elements = new ArrayList<>(c.size());
+            for (Object o : c) {
+                elements.add(compileNode(o));
+            }
+
+            return data -> {
+                if (data == null) {
+                    return false;
+                }
+
+                if (!(data instanceof Collection)) {
+                    // the data is used as a condition for the collection elements
+                    return matchAny(data, c);
+                }
+
+                Collection<Object> dataElements = (Collection<Object>) data;
+                if (elements.size() > dataElements.size()) {
+                    return false;
+                }
+
+                for (Node n : elements) {
+                    if (dataElements.stream().noneMatch(n::matches)) {
+                        return false;
+                    }
+                }
+                return true;
+            };
+        }
+
+        return data -> data != null && compareValues(data, conditions);
+    }
+
     @SuppressWarnings({"unchecked", "rawtypes"})
     private static boolean compareNodes(Object data, Object conditions) {
         if (data == null && conditions == null) {
@@ -104,4 +194,26 @@ public final class MapMatcher {
 
     private MapMatcher() {
     }
+
+    public static final class Compiled {
+
+        private final Node root;
+
+        private Compiled(Node root) {
+            this.root = root;
+        }
+
+        public boolean matches(Map<String, Object> data) {
+            if (root == null) {
+                return true;
+            }
+
+            return root.matches(data);
+        }
+    }
+
+    private interface Node {
+
+        boolean matches(Object data);
+    }
 }
@@ -20,15 +20,20 @@ package com.walmartlabs.concord.common;
  * =====
  */
 
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
 import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
 import org.junit.Test;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFilePermissions;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
@@ -57,6 +62,90 @@ public class IOUtilsTest {
         assertTrue(Files.exists(dst.resolve("b").resolve("c.txt")));
     }
 
+    @Test
+    public void testTarUntar() throws Exception {
+        Path src = Files.createTempDirectory("test-tar");
+        Files.write(src.resolve("a.txt"), "hello".getBytes());
+        Files.createDirectory(src.resolve("b"));
+        Path script = src.resolve("b").resolve("c.sh");
+        Files.write(script, "#!/bin/sh".getBytes());
+        Files.setPosixFilePermissions(script, PosixFilePermissions.fromString("rwxr-x---"));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (TarArchiveOutputStream tar = new TarArchiveOutputStream(out)) {
+            IOUtils.tar(tar, src);
+        }
+
+        IOUtils.deleteRecursively(src);
+
+        Path dst = Files.createTempDirectory("test");
+        IOUtils.untar(new ByteArrayInputStream(out.toByteArray()), dst, -1, -1);
+        assertEquals("hello", new String(Files.readAllBytes(dst.resolve("a.txt"))));
+        assertEquals("rwxr-x---", PosixFilePermissions.toString(Files.getPosixFilePermissions(dst.resolve("b").resolve("c.sh"))));
+    }
+
+    @Test
+    public void testUntarLimits() throws Exception {
+        Path src = Files.createTempDirectory("test-tar");
+        Files.write(src.resolve("a.txt"), new byte[100]);
+        Files.write(src.resolve("b.txt"), new byte[100]);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (TarArchiveOutputStream tar = new TarArchiveOutputStream(out)) {
+            IOUtils.tar(tar, src);
+        }
+
+        IOUtils.deleteRecursively(src);
+
+        // exactly at the limits
+        IOUtils.untar(new ByteArrayInputStream(out.toByteArray()), Files.createTempDirectory("test"), 200, 2);
+
+        try {
+            IOUtils.untar(new ByteArrayInputStream(out.toByteArray()), Files.createTempDirectory("test"), 199, -1);
+            fail("exception expected");
+        } catch (IOException e) {
+            assertTrue(e.getMessage().contains("exceeds the limit"));
+        }
+
+        try {
+            IOUtils.untar(new ByteArrayInputStream(out.toByteArray()), Files.createTempDirectory("test"), -1, 1);
+            fail("exception expected");
+        } catch (IOException e) {
+            assertTrue(e.getMessage().contains("Too many archive entries"));
+        }
+    }
+
+    @Test
+    public void testUnzipLimits() throws Exception {
+        Path src = Files.createTempDirectory("test-zip");
+        Files.write(src.resolve("a.txt"), new byte[100]);
+        Files.write(src.resolve("b.txt"), new byte[100]);
+
+        Path archive = Files.createTempFile("archive", "zip");
+        try (ZipArchiveOutputStream zip = new ZipArchiveOutputStream(Files.newOutputStream(archive))) {
+            IOUtils.zip(zip, src);
+        }
+
+        IOUtils.deleteRecursively(src);
+
+        // exactly at the limits
+        IOUtils.unzip(archive, Files.createTempDirectory("test"), 200, 2);
+
+        try {
+            IOUtils.unzip(archive, Files.createTempDirectory("test"), 199, -1);
+            fail("exception expected");
+        } catch (IOException e) {
+            assertTrue(e.getMessage().contains("exceeds the limit"));
+        }
+
+        try {
+            IOUtils.unzip(archive, Files.createTempDirectory("test"), -1, 1);
+            fail("exception expected");
+        } catch (IOException e) {
+            assertTrue(e.getMessage().contains("Too many archive entries"));
+        }
+    }
+
     @Test
     public void testCopy() throws Exception {
         Path src = Files.createTempDirectory("test");
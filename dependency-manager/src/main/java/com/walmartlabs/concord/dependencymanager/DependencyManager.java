@@ -20,6 +20,7 @@ package com.walmartlabs.concord.dependencymanager;
  * =====
  */
 
+import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.walmartlabs.concord.common.ExceptionUtils;
 import org.apache.maven.repository.internal.MavenRepositorySystemUtils;
@@ -29,7 +30,9 @@ import org.eclipse.aether.artifact.DefaultArtifact;
 import org.eclipse.aether.collection.CollectRequest;
 import org.eclipse.aether.connector.basic.BasicRepositoryConnectorFactory;
 import org.eclipse.aether.graph.Dependency;
+import org.eclipse.aether.graph.DependencyNode;
 import org.eclipse.aether.impl.DefaultServiceLocator;
+import org.eclipse.aether.impl.SyncContextFactory;
 import org.eclipse.aether.repository.LocalRepository;
 import org.eclipse.aether.repository.Proxy;
 import org.eclipse.aether.repository.RemoteRepository;
@@ -44,6 +47,7 @@ import org.eclipse.aether.transport.file.FileTransporterFactory;
 import org.eclipse.aether.transport.http.HttpTransporterFactory;
 import org.eclipse.aether.util.artifact.JavaScopes;
 import org.eclipse.aether.util.repository.AuthenticationBuilder;
+import org.eclipse.aether.version.VersionConstraint;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -58,6 +62,7 @@ import java.nio.file.*;
 import java.security.MessageDigest;
 import java.util.*;
 import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 
 public class DependencyManager {
@@ -70,6 +75,8 @@ public class DependencyManager {
     private static final long RETRY_INTERVAL = 5000;
 
     private static final String FILES_CACHE_DIR = "files";
+    private static final String RESOLVED_CACHE_DIR = "resolved";
+    private static final String RESOLVED_CACHE_VERSION = "1";
     public static final String MAVEN_SCHEME = "mvn";
 
     private static final MavenRepository MAVEN_CENTRAL = MavenRepository.builder()
@@ -83,11 +90,39 @@ public class DependencyManager {
 
     private static final List<MavenRepository> DEFAULT_REPOS = Collections.singletonList(MAVEN_CENTRAL);
 
+    private static final TypeReference<List<Map<String, String>>> RESOLVED_LIST_TYPE = new TypeReference<List<Map<String, String>>>() {
+    };
+
+    /**
+     * Guards the artifacts and metadata files in the local repository.
+     * Shared by all instances as they use the same local repository.
+     */
+    private static final LocalRepositorySyncContextFactory SYNC_CONTEXT_FACTORY = new LocalRepositorySyncContextFactory();
+
+    /**
+     * Striped locks, shared by all instances as they typically use the same
+     * cache directories. Only the requests for the same file or list of
+     * dependencies are serialized.
+     */
+    private static final Object[] LOCKS = new Object[64];
+
+    static {
+        for (int i = 0; i < LOCKS.length; i++) {
+            LOCKS[i] = new Object();
+        }
+    }
+
     private final Path cacheDir;
     private final Path localCacheDir;
     private final List<RemoteRepository> repositories;
-    private final Object mutex = new Object();
+    private final String repositoriesKey;
     private final RepositorySystem maven = newMavenRepositorySystem();
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final AtomicLong cacheHits = new AtomicLong();
+    private final AtomicLong cacheMisses = new AtomicLong();
+    private final AtomicLong resolutionCount = new AtomicLong();
+    private final AtomicLong resolutionTime = new AtomicLong();
 
     public DependencyManager(Path cacheDir) throws IOException {
         this(cacheDir, getRepositories());
@@ -106,6 +141,14 @@ public class DependencyManager {
 
         log.info("init -> using repositories: {}", repositories);
         this.repositories = toRemote(repositories);
+        this.repositoriesKey = toKey(this.repositories, localCacheDir);
+    }
+
+    /**
+     * @return the resolution cache and timing statistics of this instance.
+     */
+    public ResolutionStats getStats() {
+        return new ResolutionStats(cacheHits.get(), cacheMisses.get(), resolutionCount.get(), resolutionTime.get());
     }
 
     public Collection<DependencyEntity> resolve(Collection<URI> items) throws IOException {
@@ -141,9 +184,7 @@ public class DependencyManager {
 
         result.addAll(resolveDirectLinks(deps.directLinks));
 
-        result.addAll(resolveMavenTransitiveDependencies(deps.mavenTransitiveDependencies).stream()
-                .map(DependencyManager::toDependency)
-                .collect(Collectors.toList()));
+        result.addAll(resolveMavenTransitiveDependencies(deps.mavenTransitiveDependencies));
 
         result.addAll(resolveMavenSingleDependencies(deps.mavenSingleDependencies).stream()
                 .map(DependencyManager::toDependency)
@@ -211,7 +252,7 @@ public class DependencyManager {
 
         Path dst = baseDir.resolve(name);
 
-        synchronized (mutex) {
+        synchronized (lockFor(dst.toString())) {
             if (!skipCache && Files.exists(dst)) {
                 log.info("resolveFile -> using a cached copy of {}...", uri);
                 return dst;
@@ -251,8 +292,12 @@ public class DependencyManager {
     }
 
     private static String hash(String s) {
+        return hash("MD5", s);
+    }
+
+    private static String hash(String algorithm, String s) {
         try {
-            MessageDigest md = MessageDigest.getInstance("MD5");
+            MessageDigest md = MessageDigest.getInstance(algorithm);
             md.update(s.getBytes());
             return DatatypeConverter.printHexBinary(md.digest()).toUpperCase();
         } catch (Exception e) {
@@ -267,13 +312,14 @@ public class DependencyManager {
         req.setArtifact(dep.artifact);
         req.setRepositories(repositories);
 
-        synchronized (mutex) {
-            try {
-                ArtifactResult r = maven.resolveArtifact(session, req);
-                return r.getArtifact();
-            } catch (ArtifactResolutionException e) {
-                throw new IOException(e);
-            }
+        long t1 = System.currentTimeMillis();
+        try {
+            ArtifactResult r = maven.resolveArtifact(session, req);
+            return r.getArtifact();
+        } catch (ArtifactResolutionException e) {
+            throw new IOException(e);
+        } finally {
+            onResolved(t1);
         }
     }
 
@@ -285,30 +331,139 @@ public class DependencyManager {
         return paths;
     }
 
-    private Collection<Artifact> resolveMavenTransitiveDependencies(Collection<MavenDependency> deps) throws IOException {
-        RepositorySystem system = newMavenRepositorySystem();
-        RepositorySystemSession session = newRepositorySystemSession(system);
+    private Collection<DependencyEntity> resolveMavenTransitiveDependencies(Collection<MavenDependency> deps) throws IOException {
+        if (deps.isEmpty()) {
+            return Collections.emptySet();
+        }
 
-        CollectRequest req = new CollectRequest();
-        req.setDependencies(deps.stream()
-                .map(d -> new Dependency(d.artifact, d.scope))
-                .collect(Collectors.toList()));
-        req.setRepositories(repositories);
+        String key = hash("SHA-256", toKey(deps) + repositoriesKey);
+        boolean cacheable = deps.stream().allMatch(d -> isCacheable(d.artifact));
 
-        DependencyRequest dependencyRequest = new DependencyRequest(req, null);
+        synchronized (lockFor(key)) {
+            if (cacheable) {
+                Collection<DependencyEntity> cached = readResolved(key);
+                if (cached != null) {
+                    cacheHits.incrementAndGet();
+                    return cached;
+                }
+                cacheMisses.incrementAndGet();
+            }
+
+            RepositorySystemSession session = newRepositorySystemSession(maven);
 
-        synchronized (mutex) {
+            CollectRequest req = new CollectRequest();
+            req.setDependencies(deps.stream()
+                    .map(d -> new Dependency(d.artifact, d.scope))
+                    .collect(Collectors.toList()));
+            req.setRepositories(repositories);
+
+            DependencyRequest dependencyRequest = new DependencyRequest(req, null);
+
+            DependencyResult dependencyResult;
+            long t1 = System.currentTimeMillis();
             try {
-                return system.resolveDependencies(session, dependencyRequest)
-                        .getArtifactResults().stream()
-                        .map(ArtifactResult::getArtifact)
-                        .collect(Collectors.toSet());
+                dependencyResult = maven.resolveDependencies(session, dependencyRequest);
             } catch (DependencyResolutionException e) {
                 throw new IOException(e);
+            } finally {
+                onResolved(t1);
             }
+
+            Collection<Artifact> artifacts = dependencyResult.getArtifactResults().stream()
+                    .map(ArtifactResult::getArtifact)
+                    .collect(Collectors.toSet());
+
+            Collection<DependencyEntity> result = artifacts.stream()
+                    .map(DependencyManager::toDependency)
+                    .collect(Collectors.toList());
+
+            // SNAPSHOTs can be updated in the remote repositories at any time,
+            // ranges in the POMs of transitive dependencies can match new versions
+            if (cacheable && artifacts.stream().noneMatch(Artifact::isSnapshot) && isFixed(dependencyResult.getRoot())) {
+                writeResolved(key, result);
+            }
+
+            return result;
         }
     }
 
+    /**
+     * Returns the previously resolved list of dependencies or {@code null}
+     * if there's no such list or if some of the files no longer exist.
+     */
+    Collection<DependencyEntity> readResolved(String key) {
+        Path src = cacheDir.resolve(RESOLVED_CACHE_DIR).resolve(key + ".json");
+        if (!Files.exists(src)) {
+            return null;
+        }
+
+        List<Map<String, String>> items;
+        try (InputStream in = Files.newInputStream(src)) {
+            items = objectMapper.readValue(in, RESOLVED_LIST_TYPE);
+        } catch (IOException e) {
+            log.warn("readResolved -> error while reading {}: {}", src, e.getMessage());
+            return null;
+        }
+
+        Collection<DependencyEntity> result = new ArrayList<>(items.size());
+        for (Map<String, String> i : items) {
+            String path = i.get("path");
+            if (path == null) {
+                return null;
+            }
+
+            Path p = Paths.get(path);
+            if (!Files.exists(p)) {
+                log.info("readResolved -> {} is missing, resolving again...", p);
+                return null;
+            }
+            result.add(new DependencyEntity(p, i.get("groupId"), i.get("artifactId"), i.get("version")));
+        }
+        return result;
+    }
+
+    void writeResolved(String key, Collection<DependencyEntity> deps) {
+        List<Map<String, String>> items = new ArrayList<>(deps.size());
+        for (DependencyEntity d : deps) {
+            Map<String, String> m = new LinkedHashMap<>();
+            m.put("groupId", d.getArtifact().getGroupId());
+            m.put("artifactId", d.getArtifact().getArtifactId());
+            m.put("version", d.getArtifact().getVersion());
+            m.put("path", d.getPath().toAbsolutePath().toString());
+            items.add(m);
+        }
+
+        Path baseDir = cacheDir.resolve(RESOLVED_CACHE_DIR);
+        Path tmp = null;
+        try {
+            if (!Files.exists(baseDir)) {
+                Files.createDirectories(baseDir);
+            }
+
+            tmp = Files.createTempFile(baseDir, key, ".tmp");
+            try (OutputStream out = Files.newOutputStream(tmp)) {
+                objectMapper.writeValue(out, items);
+            }
+            Files.move(tmp, baseDir.resolve(key + ".json"), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            // the cache is optional
+            log.warn("writeResolved -> error while saving the resolved dependencies: {}", e.getMessage());
+        } finally {
+            if (tmp != null) {
+                try {
+                    Files.deleteIfExists(tmp);
+                } catch (IOException e) {
+                    // ignore
+                }
+            }
+        }
+    }
+
+    private void onResolved(long startTime) {
+        resolutionCount.incrementAndGet();
+        resolutionTime.addAndGet(System.currentTimeMillis() - startTime);
+    }
+
     private DefaultRepositorySystemSession newRepositorySystemSession(RepositorySystem system) {
         DefaultRepositorySystemSession session = MavenRepositorySystemUtils.newSession();
         session.setChecksumPolicy(RepositoryPolicy.CHECKSUM_POLICY_IGNORE);
@@ -367,11 +522,82 @@ public class DependencyManager {
         return "file".equalsIgnoreCase(u.getScheme()) || u.getPath().contains("SNAPSHOT");
     }
 
+    /**
+     * Only fixed, non-SNAPSHOT versions can be cached. Ranges, LATEST or RELEASE
+     * must be resolved again each time.
+     */
+    static boolean isCacheable(Artifact a) {
+        String v = a.getVersion();
+        return !a.isSnapshot()
+                && !"LATEST".equals(v) && !"RELEASE".equals(v)
+                && v.indexOf('[') < 0 && v.indexOf('(') < 0 && v.indexOf(',') < 0;
+    }
+
+    /**
+     * Checks if all dependencies in the resolved graph, including the transitive
+     * ones, were requested using fixed versions.
+     */
+    static boolean isFixed(DependencyNode root) {
+        Set<DependencyNode> visited = Collections.newSetFromMap(new IdentityHashMap<>());
+        Deque<DependencyNode> queue = new ArrayDeque<>();
+        queue.add(root);
+
+        while (!queue.isEmpty()) {
+            DependencyNode n = queue.poll();
+            if (!visited.add(n)) {
+                continue;
+            }
+
+            VersionConstraint c = n.getVersionConstraint();
+            if (c != null) {
+                if (c.getRange() != null) {
+                    return false;
+                }
+
+                String v = String.valueOf(c.getVersion());
+                if ("LATEST".equals(v) || "RELEASE".equals(v)) {
+                    return false;
+                }
+            }
+
+            queue.addAll(n.getChildren());
+        }
+
+        return true;
+    }
+
+    private static Object lockFor(String key) {
+        return LOCKS[(key.hashCode() & 0x7fffffff) % LOCKS.length];
+    }
+
+    private static String toKey(Collection<MavenDependency> deps) {
+        return deps.stream()
+                .map(d -> d.artifact + " " + d.scope)
+                .sorted()
+                .collect(Collectors.joining("\n", RESOLVED_CACHE_VERSION + "\n", "\n"));
+    }
+
+    private static String toKey(List<RemoteRepository> repositories, Path localCacheDir) {
+        StringBuilder sb = new StringBuilder();
+        for (RemoteRepository r : repositories) {
+            sb.append(r.getId()).append(' ')
+                    .append(r.getContentType()).append(' ')
+                    .append(r.getUrl()).append(' ')
+                    .append(r.getPolicy(false).isEnabled()).append(' ')
+                    .append(r.getPolicy(true).isEnabled()).append(' ')
+                    .append(r.getProxy() != null ? r.getProxy().getHost() + ":" + r.getProxy().getPort() : "-")
+                    .append('\n');
+        }
+        sb.append(localCacheDir.toAbsolutePath());
+        return sb.toString();
+    }
+
     private static RepositorySystem newMavenRepositorySystem() {
         DefaultServiceLocator locator = MavenRepositorySystemUtils.newServiceLocator();
         locator.addService(RepositoryConnectorFactory.class, BasicRepositoryConnectorFactory.class);
         locator.addService(TransporterFactory.class, FileTransporterFactory.class);
         locator.addService(TransporterFactory.class, HttpTransporterFactory.class);
+        locator.setServices(SyncContextFactory.class, SYNC_CONTEXT_FACTORY);
 
         locator.setErrorHandler(new DefaultServiceLocator.ErrorHandler() {
             @Override
@@ -451,6 +677,59 @@ public class DependencyManager {
         }
     }
 
+    public static final class ResolutionStats {
+
+        private final long cacheHits;
+        private final long cacheMisses;
+        private final long resolutionCount;
+        private final long resolutionTime;
+
+        private ResolutionStats(long cacheHits, long cacheMisses, long resolutionCount, long resolutionTime) {
+            this.cacheHits = cacheHits;
+            this.cacheMisses = cacheMisses;
+            this.resolutionCount = resolutionCount;
+            this.resolutionTime = resolutionTime;
+        }
+
+        /**
+         * @return number of transitive resolutions served from the cache.
+         */
+        public long getCacheHits() {
+            return cacheHits;
+        }
+
+        /**
+         * @return number of cacheable transitive resolutions not found in the cache.
+         */
+        public long getCacheMisses() {
+            return cacheMisses;
+        }
+
+        /**
+         * @return number of actual Maven resolutions.
+         */
+        public long getResolutionCount() {
+            return resolutionCount;
+        }
+
+        /**
+         * @return total time spent in Maven resolutions, ms.
+         */
+        public long getResolutionTime() {
+            return resolutionTime;
+        }
+
+        @Override
+        public String toString() {
+            return "ResolutionStats{" +
+                    "cacheHits=" + cacheHits +
+                    ", cacheMisses=" + cacheMisses +
+                    ", resolutionCount=" + resolutionCount +
+                    ", resolutionTime=" + resolutionTime +
+                    '}';
+        }
+    }
+
     private static final class DependencyList {
 
         private final List<MavenDependency> mavenTransitiveDependencies;
@@ -0,0 +1,126 @@
+package com.walmartlabs.concord.dependencymanager;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2019 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+import org.eclipse.aether.RepositorySystemSession;
+import org.eclipse.aether.SyncContext;
+import org.eclipse.aether.artifact.Artifact;
+import org.eclipse.aether.impl.SyncContextFactory;
+import org.eclipse.aether.metadata.Metadata;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Guards the local repository directories of artifacts and metadata files.
+ * <p>
+ * The resolver's default {@link SyncContextFactory} doesn't lock anything.
+ * Concurrent resolutions that need the same artifact would write the same
+ * files in the local repository. With this factory only such resolutions
+ * wait for each other, resolutions of different artifacts run concurrently.
+ * <p>
+ * The resolver can open nested contexts, e.g. to resolve the metadata of
+ * an artifact while holding the artifact's context. The locks are acquired
+ * with a timeout, so contexts nested in a different order can't block
+ * each other forever.
+ */
+final class LocalRepositorySyncContextFactory implements SyncContextFactory {
+
+    private static final int STRIPES = 256;
+    private static final long LOCK_TIMEOUT = TimeUnit.MINUTES.toMillis(5);
+
+    private final ReentrantLock[] locks = new ReentrantLock[STRIPES];
+
+    LocalRepositorySyncContextFactory() {
+        for (int i = 0; i < locks.length; i++) {
+            locks[i] = new ReentrantLock();
+        }
+    }
+
+    @Override
+    public SyncContext newInstance(RepositorySystemSession session, boolean shared) {
+        // shared contexts are used for reading, but the readers must still wait
+        // for the files being written, so all contexts are exclusive
+        return new Context(session.getLocalRepository().getBasedir().getAbsolutePath());
+    }
+
+    private int stripe(String baseDir, String groupId, String artifactId, String version) {
+        String key = baseDir + "/" + groupId + ":" + artifactId + ":" + version;
+        return (key.hashCode() & 0x7fffffff) % locks.length;
+    }
+
+    private final class Context implements SyncContext {
+
+        private final String baseDir;
+        private final Deque<ReentrantLock> acquired = new ArrayDeque<>();
+
+        private Context(String baseDir) {
+            this.baseDir = baseDir;
+        }
+
+        @Override
+        public void acquire(Collection<? extends Artifact> artifacts, Collection<? extends Metadata> metadatas) {
+            // the stripes are always locked in the same order
+            SortedSet<Integer> stripes = new TreeSet<>();
+
+            if (artifacts != null) {
+                for (Artifact a : artifacts) {
+                    stripes.add(stripe(baseDir, a.getGroupId(), a.getArtifactId(), a.getBaseVersion()));
+                }
+            }
+
+            if (metadatas != null) {
+                // version-level metadata is stored next to the artifacts of the same version
+                for (Metadata m : metadatas) {
+                    stripes.add(stripe(baseDir, m.getGroupId(), m.getArtifactId(), m.getVersion()));
+                }
+            }
+
+            for (int i : stripes) {
+                ReentrantLock l = locks[i];
+
+                boolean locked;
+                try {
+                    locked = l.tryLock(LOCK_TIMEOUT, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    close();
+                    throw new IllegalStateException("Interrupted while waiting for a local repository lock", e);
+                }
+
+                if (!locked) {
+                    close();
+                    throw new IllegalStateException("Timeout while waiting for a local repository lock (" + LOCK_TIMEOUT + "ms)");
+                }
+
+                acquired.push(l);
+            }
+        }
+
+        @Override
+        public void close() {
+            while (!acquired.isEmpty()) {
+                acquired.pop().unlock();
+            }
+        }
+    }
+}
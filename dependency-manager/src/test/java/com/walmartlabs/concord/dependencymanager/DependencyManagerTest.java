@@ -20,23 +20,24 @@ package com.walmartlabs.concord.dependencymanager;
  * =====
  */
 
+import org.eclipse.aether.artifact.DefaultArtifact;
+import org.eclipse.aether.graph.DefaultDependencyNode;
+import org.eclipse.aether.graph.Dependency;
+import org.eclipse.aether.util.version.GenericVersionScheme;
 import org.junit.Ignore;
 import org.junit.Test;
 
 import java.net.URI;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.Arrays;
-import java.util.Collection;
-import java.util.Collections;
-import java.util.List;
+import java.util.*;
 
-import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.*;
 
-@Ignore
 public class DependencyManagerTest {
 
     @Test(timeout = 30000)
+    @Ignore
     public void test() throws Exception {
         Path tmpDir = Files.createTempDirectory("test");
         URI uriA = new URI("mvn://com.walmartlabs.concord:concord-project-model:0.44.0?scope=runtime");
@@ -48,6 +49,7 @@ public class DependencyManagerTest {
     }
 
     @Test(timeout = 30000)
+    @Ignore
     public void testProxy() throws Exception {
         Path tmpDir = Files.createTempDirectory("test");
 
@@ -65,4 +67,80 @@ public class DependencyManagerTest {
         DependencyManager m = new DependencyManager(tmpDir, repositories);
         m.resolveSingle(new URI("mvn://com.walmartlabs.concord:concord-sdk:1.54.0"));
     }
+
+    @Test
+    public void testResolvedCache() throws Exception {
+        Path tmpDir = Files.createTempDirectory("test");
+        Path jar = Files.createFile(tmpDir.resolve("a.jar"));
+
+        DependencyManager m = new DependencyManager(tmpDir, Collections.emptyList());
+        assertNull(m.readResolved("key"));
+
+        m.writeResolved("key", Collections.singletonList(new DependencyEntity(jar, "com.example", "a", "1.0.0")));
+
+        Collection<DependencyEntity> cached = m.readResolved("key");
+        assertNotNull(cached);
+        assertEquals(1, cached.size());
+
+        DependencyEntity e = cached.iterator().next();
+        assertEquals(jar.toAbsolutePath(), e.getPath());
+        assertEquals("com.example", e.getArtifact().getGroupId());
+        assertEquals("a", e.getArtifact().getArtifactId());
+        assertEquals("1.0.0", e.getArtifact().getVersion());
+
+        // the entries are shared between instances
+        assertEquals(cached, new DependencyManager(tmpDir, Collections.emptyList()).readResolved("key"));
+
+        // the cached entry is ignored if some of its files are removed
+        Files.delete(jar);
+        assertNull(m.readResolved("key"));
+    }
+
+    @Test
+    public void testInvalidResolvedCache() throws Exception {
+        Path tmpDir = Files.createTempDirectory("test");
+
+        Path dir = Files.createDirectories(tmpDir.resolve("resolved"));
+        Files.write(dir.resolve("key.json"), "{".getBytes());
+
+        DependencyManager m = new DependencyManager(tmpDir, Collections.emptyList());
+        assertNull(m.readResolved("key"));
+    }
+
+    @Test
+    public void testIsCacheable() {
+        assertTrue(DependencyManager.isCacheable(new DefaultArtifact("com.example:a:1.0.0")));
+        assertTrue(DependencyManager.isCacheable(new DefaultArtifact("com.example:a:jar:tests:1.0.0")));
+
+        assertFalse(DependencyManager.isCacheable(new DefaultArtifact("com.example:a:1.0.0-SNAPSHOT")));
+        assertFalse(DependencyManager.isCacheable(new DefaultArtifact("com.example:a:LATEST")));
+        assertFalse(DependencyManager.isCacheable(new DefaultArtifact("com.example:a:RELEASE")));
+        assertFalse(DependencyManager.isCacheable(new DefaultArtifact("com.example:a:[1.0,2.0)")));
+        assertFalse(DependencyManager.isCacheable(new DefaultArtifact("com.example:a:(,2.0]")));
+    }
+
+    @Test
+    public void testIsFixed() throws Exception {
+        DefaultDependencyNode a = node("com.example:a:1.0.0", "1.0.0");
+        DefaultDependencyNode b = node("com.example:b:2.0.0", "2.0.0");
+        a.setChildren(new ArrayList<>(Collections.singletonList(b)));
+
+        DefaultDependencyNode root = new DefaultDependencyNode((Dependency) null);
+        root.setChildren(new ArrayList<>(Collections.singletonList(a)));
+        assertTrue(DependencyManager.isFixed(root));
+
+        // a range in the POM of a transitive dependency
+        DefaultDependencyNode c = node("com.example:c:1.5.0", "[1.0,2.0)");
+        b.setChildren(new ArrayList<>(Collections.singletonList(c)));
+        assertFalse(DependencyManager.isFixed(root));
+
+        c.setVersionConstraint(new GenericVersionScheme().parseVersionConstraint("LATEST"));
+        assertFalse(DependencyManager.isFixed(root));
+    }
+
+    private static DefaultDependencyNode node(String coords, String constraint) throws Exception {
+        DefaultDependencyNode n = new DefaultDependencyNode(new Dependency(new DefaultArtifact(coords), "compile"));
+        n.setVersionConstraint(new GenericVersionScheme().parseVersionConstraint(constraint));
+        return n;
+    }
 }
@@ -51,6 +51,8 @@ public class ConcordTaskCommon {
     private static final Logger log = LoggerFactory.getLogger(ConcordTaskCommon.class);
 
     private static final long DEFAULT_KILL_TIMEOUT = 10000;
+    private static final long DEFAULT_WAIT_TIMEOUT = 30000;
+    private static final int MAX_WAIT_IDS = 1000;
     private static final long DEFAULT_POLL_DELAY = 5000;
 
     private static final int MAX_EXECUTOR_THREADS = 20;
@@ -74,6 +76,9 @@ public class ConcordTaskCommon {
     private final Path workDir;
     private final ConcordTaskSuspender suspender;
 
+    // older servers don't have the /api/v2/process/wait endpoint
+    private volatile boolean waitEndpointAvailable = true;
+
     public ConcordTaskCommon(String sessionToken, ApiClientFactory apiClientFactory, String processLinkTemplate, UUID currentProcessId, String currentOrgName, Path workDir, ConcordTaskSuspender suspender) {
         this.sessionToken = sessionToken;
         this.apiClientFactory = apiClientFactory;
@@ -126,48 +131,104 @@ public class ConcordTaskCommon {
     }
 
     public <T> Map<String, T> waitForCompletion(List<UUID> ids, long timeout, Function<ProcessEntry, T> processor) {
-        Map<String, T> result = new HashMap<>();
+        Map<String, T> result = new ConcurrentHashMap<>();
 
-        ids.parallelStream().forEach(id -> {
+        Set<UUID> pending = new LinkedHashSet<>();
+        for (UUID id : ids) {
             log.info("Waiting for {}, URL: {}", id, getProcessUrl(id));
+            pending.add(id);
+        }
 
-            long t1 = System.currentTimeMillis();
-            while (true) {
-                try {
-                    ProcessEntry e = ClientUtils.withRetry(3, 1000,
-                            () -> withClient(client -> {
-                                ProcessApi api = new ProcessApi(client);
-                                return api.get(id);
-                            }));
-
-                    ProcessEntry.StatusEnum s = e.getStatus();
-
-                    if (isFinalStatus(s)) {
-                        T t = processor.apply(e);
-                        if (t != null) {
-                            result.put(id.toString(), t);
-                        }
-                        break;
-                    } else {
-                        long t2 = System.currentTimeMillis();
-                        if (timeout > 0) {
-                            long dt = t2 - t1;
-                            if (dt >= timeout) {
-                                throw new TimeoutException("Timeout waiting for " + id + ": " + dt);
-                            }
-                        }
-
-                        Thread.sleep(DEFAULT_POLL_DELAY);
+        long t1 = System.currentTimeMillis();
+        try {
+            while (!pending.isEmpty()) {
+                long waitTimeout = DEFAULT_WAIT_TIMEOUT;
+                if (timeout > 0) {
+                    long dt = System.currentTimeMillis() - t1;
+                    if (dt >= timeout) {
+                        throw new TimeoutException("Timeout waiting for " + pending + ": " + dt);
                     }
-                } catch (Exception e) {
-                    throw new RuntimeException(e);
+                    waitTimeout = Math.min(waitTimeout, timeout - dt);
                 }
+
+                // the server holds the request until any of the processes is finished or the timeout expires
+                List<UUID> batch = pending.stream()
+                        .limit(MAX_WAIT_IDS)
+                        .collect(Collectors.toList());
+
+                List<ProcessEntry> entries = waitForAny(batch, waitTimeout);
+
+                List<ProcessEntry> finished = entries.stream()
+                        .filter(e -> isFinalStatus(e.getStatus()))
+                        .collect(Collectors.toList());
+
+                finished.forEach(e -> pending.remove(e.getInstanceId()));
+
+                finished.parallelStream().forEach(e -> {
+                    T t = processor.apply(e);
+                    if (t != null) {
+                        result.put(e.getInstanceId().toString(), t);
+                    }
+                });
             }
-        });
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
 
         return result;
     }
 
+    /**
+     * Waits until any of the specified processes is finished or until the timeout expires.
+     * Falls back to polling if the server doesn't support waiting for processes.
+     */
+    private List<ProcessEntry> waitForAny(List<UUID> ids, long timeout) throws Exception {
+        if (waitEndpointAvailable) {
+            try {
+                return ClientUtils.withRetry(3, 1000, () -> withClient(client -> {
+                    ProcessV2Api api = new ProcessV2Api(client);
+                    return api.waitForCompletion(ids, "ANY", timeout);
+                }));
+            } catch (ApiException e) {
+                if (e.getCode() != 404 && e.getCode() != 405) {
+                    throw e;
+                }
+            }
+
+            // 404 is also returned for unknown processes, polling fails in that case
+            List<ProcessEntry> entries = pollForAny(ids, timeout);
+
+            log.info("waitForAny -> the server doesn't support waiting for processes, polling is used instead");
+            waitEndpointAvailable = false;
+
+            return entries;
+        }
+
+        return pollForAny(ids, timeout);
+    }
+
+    private List<ProcessEntry> pollForAny(List<UUID> ids, long timeout) throws Exception {
+        long t1 = System.currentTimeMillis();
+        while (true) {
+            List<ProcessEntry> entries = new ArrayList<>(ids.size());
+            for (UUID id : ids) {
+                entries.add(ClientUtils.withRetry(3, 1000, () -> withClient(client -> {
+                    ProcessApi api = new ProcessApi(client);
+                    return api.get(id);
+                })));
+            }
+
+            long remaining = timeout - (System.currentTimeMillis() - t1);
+            if (remaining <= 0 || entries.stream().anyMatch(e -> isFinalStatus(e.getStatus()))) {
+                return entries;
+            }
+
+            Thread.sleep(Math.min(DEFAULT_POLL_DELAY, remaining));
+        }
+    }
+
     public void kill(KillParams in) throws Exception {
         for (UUID id : in.ids()) {
             withClient(client -> {
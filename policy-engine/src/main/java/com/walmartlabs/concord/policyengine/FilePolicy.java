@@ -21,13 +21,11 @@ package com.walmartlabs.concord.policyengine;
  */
 
 import java.io.IOException;
-import java.nio.file.FileVisitResult;
-import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.SimpleFileVisitor;
-import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 import static com.walmartlabs.concord.policyengine.Utils.matchAny;
 
@@ -39,66 +37,102 @@ public class FilePolicy {
         this.rules = rules;
     }
 
+    /**
+     * Returns {@code true} if the policy needs to walk the workspace.
+     */
+    public boolean requiresScan() {
+        return rules != null && !rules.isEmpty();
+    }
+
     public CheckResult<FileRule, Path> check(Path p) throws IOException {
         if (rules == null || rules.isEmpty()) {
             return new CheckResult<>();
         }
 
+        return check(WorkspaceScan.scan(p));
+    }
+
+    /**
+     * Checks the files using the result of a previous {@link WorkspaceScan}.
+     */
+    public CheckResult<FileRule, Path> check(WorkspaceScan scan) throws IOException {
+        if (rules == null || rules.isEmpty()) {
+            return new CheckResult<>();
+        }
+
         List<CheckResult.Item<FileRule, Path>> warn = new ArrayList<>();
         List<CheckResult.Item<FileRule, Path>> deny = new ArrayList<>();
 
-        Files.walkFileTree(p, new SimpleFileVisitor<Path>() {
+        // directories matching "allow" rules are skipped with their content
+        Set<Path> skippedDirs = new HashSet<>();
 
-            @Override
-            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
-                for(FileRule r : rules.getAllow()) {
-                    if (matchRule(dir, r, FileRule.Type.DIR)) {
-                        return FileVisitResult.SKIP_SUBTREE;
+        for (WorkspaceScan.Entry e : scan.getEntries()) {
+            if (isSkipped(e.getPath(), skippedDirs)) {
+                continue;
+            }
+
+            if (e.isDirectory()) {
+                for (FileRule r : rules.getAllow()) {
+                    if (matchRule(e, r, FileRule.Type.DIR)) {
+                        skippedDirs.add(e.getPath());
+                        break;
                     }
                 }
+                continue;
+            }
+
+            checkFile(e, warn, deny);
+        }
+
+        return new CheckResult<>(warn, deny);
+    }
 
-                return FileVisitResult.CONTINUE;
+    private void checkFile(WorkspaceScan.Entry e, List<CheckResult.Item<FileRule, Path>> warn, List<CheckResult.Item<FileRule, Path>> deny) throws IOException {
+        for (FileRule r : rules.getAllow()) {
+            if (matchRule(e, r, FileRule.Type.FILE)) {
+                return;
             }
+        }
 
-            @Override
-            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
-                for(FileRule r : rules.getAllow()) {
-                    if (matchRule(file, r, FileRule.Type.FILE)) {
-                        return FileVisitResult.CONTINUE;
-                    }
-                }
+        for (FileRule r : rules.getDeny()) {
+            if (matchRule(e, r, FileRule.Type.FILE)) {
+                deny.add(new CheckResult.Item<>(r, e.getPath()));
+                return;
+            }
+        }
 
-                for(FileRule r : rules.getDeny()) {
-                    if (matchRule(file, r, FileRule.Type.FILE)) {
-                        deny.add(new CheckResult.Item<>(r, file));
-                        return FileVisitResult.CONTINUE;
-                    }
-                }
+        for (FileRule r : rules.getWarn()) {
+            if (matchRule(e, r, FileRule.Type.FILE)) {
+                warn.add(new CheckResult.Item<>(r, e.getPath()));
+                return;
+            }
+        }
+    }
 
-                for(FileRule r : rules.getWarn()) {
-                    if (matchRule(file, r, FileRule.Type.FILE)) {
-                        warn.add(new CheckResult.Item<>(r, file));
-                        return FileVisitResult.CONTINUE;
-                    }
-                }
+    private static boolean isSkipped(Path p, Set<Path> skippedDirs) {
+        if (skippedDirs.isEmpty()) {
+            return false;
+        }
 
-                return FileVisitResult.CONTINUE;
+        for (Path parent = p.getParent(); parent != null; parent = parent.getParent()) {
+            if (skippedDirs.contains(parent)) {
+                return true;
             }
-        });
+        }
 
-        return new CheckResult<>(warn, deny);
+        return false;
     }
 
-    private boolean matchRule(Path file, FileRule ri, FileRule.Type type) throws IOException {
+    private static boolean matchRule(WorkspaceScan.Entry e, FileRule ri, FileRule.Type type) throws IOException {
         if (ri.getType() != type) {
             return false;
         }
 
-        if (!ri.getNames().isEmpty() && !matchAny(ri.getNames(), file.getFileName().toString())) {
+        if (!ri.getNames().isEmpty() && !matchAny(ri.getNames(), e.getPath().getFileName().toString())) {
             return false;
         }
 
-        if (ri.getMaxSizeInBytes() != null && Files.size(file) < ri.getMaxSizeInBytes()) {
+        if (ri.getMaxSizeInBytes() != null && e.getSize() < ri.getMaxSizeInBytes()) {
             return false;
         }
 
@@ -0,0 +1,66 @@
+package com.walmartlabs.concord.policyengine;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2018 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+import java.util.regex.Pattern;
+
+/**
+ * A pre-compiled rule pattern. Invalid patterns are reported when
+ * the pattern is used, the same way as with {@link Utils#matches(String, String)}.
+ */
+final class RulePattern {
+
+    public static RulePattern caseInsensitive(String pattern) {
+        return compile(pattern, Pattern.CASE_INSENSITIVE);
+    }
+
+    public static RulePattern caseSensitive(String pattern) {
+        return compile(pattern, 0);
+    }
+
+    private static RulePattern compile(String pattern, int flags) {
+        try {
+            return new RulePattern(Pattern.compile(pattern, flags), null);
+        } catch (RuntimeException e) {
+            return new RulePattern(null, e);
+        }
+    }
+
+    private final Pattern pattern;
+    private final RuntimeException error;
+
+    private RulePattern(Pattern pattern, RuntimeException error) {
+        this.pattern = pattern;
+        this.error = error;
+    }
+
+    public boolean isValid() {
+        return error == null;
+    }
+
+    public boolean matches(String value) {
+        if (error != null) {
+            throw error;
+        }
+
+        return pattern.matcher(value).matches();
+    }
+}
@@ -21,7 +21,7 @@ package com.walmartlabs.concord.policyengine;
  */
 
 import java.io.IOException;
-import java.nio.file.*;
+import java.nio.file.Path;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayList;
 import java.util.List;
@@ -79,11 +79,34 @@ public class StatePolicy {
     }
 
     public CheckResult<StateRule, Path> check(Path src, BiFunction<Path, BasicFileAttributes, Boolean> filter) throws IOException {
+        if (!requiresScan()) {
+            return CheckResult.success();
+        }
+
+        return check(WorkspaceScan.scan(src), filter);
+    }
+
+    /**
+     * Returns {@code true} if the policy needs to walk the state files.
+     */
+    public boolean requiresScan() {
+        if (rules == null || rules.isEmpty()) {
+            return false;
+        }
+
+        return rules.getWarn().stream().anyMatch(r -> !r.getPatterns().isEmpty())
+                || rules.getDeny().stream().anyMatch(r -> !r.getPatterns().isEmpty());
+    }
+
+    /**
+     * Checks the state files using the result of a previous {@link WorkspaceScan}.
+     */
+    public CheckResult<StateRule, Path> check(WorkspaceScan scan, BiFunction<Path, BasicFileAttributes, Boolean> filter) {
         if (rules == null || rules.isEmpty()) {
             return CheckResult.success();
         }
 
-        if (Files.notExists(src)) {
+        if (!scan.exists()) {
             return CheckResult.success();
         }
 
@@ -96,23 +119,23 @@ public class StatePolicy {
         List<CheckResult.Item<StateRule, Path>> warn = new ArrayList<>();
         List<CheckResult.Item<StateRule, Path>> deny = new ArrayList<>();
 
-        Files.walkFileTree(src, new SimpleFileVisitor<Path>() {
-            @Override
-            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
-                if (!filter.apply(file, attrs)) {
-                    return FileVisitResult.CONTINUE;
-                }
-
-                if (!Files.isRegularFile(file, LinkOption.NOFOLLOW_LINKS)) {
-                    return FileVisitResult.CONTINUE;
-                }
+        for (WorkspaceScan.Entry e : scan.getEntries()) {
+            if (e.isDirectory()) {
+                continue;
+            }
 
-                checkPatterns(warnRules, file, warn);
-                checkPatterns(denyRules, file, deny);
+            Path file = e.getPath();
+            if (!filter.apply(file, e.getAttributes())) {
+                continue;
+            }
 
-                return FileVisitResult.CONTINUE;
+            if (!e.isRegularFile()) {
+                continue;
             }
-        });
+
+            checkPatterns(warnRules, file, warn);
+            checkPatterns(denyRules, file, deny);
+        }
 
         return new CheckResult<>(warn, deny);
     }
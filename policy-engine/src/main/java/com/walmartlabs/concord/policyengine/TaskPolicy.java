@@ -25,38 +25,69 @@ import com.walmartlabs.concord.sdk.Context;
 
 import java.io.Serializable;
 import java.util.*;
-import java.util.stream.Collectors;
-
-import static com.walmartlabs.concord.policyengine.Utils.matches;
+import java.util.concurrent.ConcurrentHashMap;
 
+/**
+ * Checks task calls. The rules are compiled once: the patterns are
+ * pre-compiled, the parameter names are pre-split and the rules that
+ * apply to a specific task are indexed by the task's name.
+ */
 public class TaskPolicy {
 
-    private final PolicyRules<TaskRule> rules;
+    /**
+     * Max number of task names in the index. Task names are usually
+     * a small, fixed set, the limit is just a safeguard.
+     */
+    private static final int MAX_INDEX_SIZE = 1024;
+
+    private final CompiledRule[] allow;
+    private final CompiledRule[] deny;
+    private final CompiledRule[] warn;
+    private final Set<String> taskResultNames;
+
+    private final Map<String, TaskRules> byTaskName = new ConcurrentHashMap<>();
 
     public TaskPolicy(PolicyRules<TaskRule> rules) {
-        this.rules = rules;
+        if (rules == null || rules.isEmpty()) {
+            this.allow = new CompiledRule[0];
+            this.deny = new CompiledRule[0];
+            this.warn = new CompiledRule[0];
+            this.taskResultNames = Collections.emptySet();
+        } else {
+            this.allow = compile(rules.getAllow());
+            this.deny = compile(rules.getDeny());
+            this.warn = compile(rules.getWarn());
+
+            Set<String> result = new HashSet<>();
+            rules.getAllow().forEach(r -> collectTaskNames(r.getTaskResults(), result));
+            rules.getDeny().forEach(r -> collectTaskNames(r.getTaskResults(), result));
+            rules.getWarn().forEach(r -> collectTaskNames(r.getTaskResults(), result));
+            this.taskResultNames = Collections.unmodifiableSet(result);
+        }
     }
 
     public CheckResult<TaskRule, String> check(String taskName, String methodName, Object[] params, Map<String, List<Serializable>> taskResults) {
-        if (rules == null || rules.isEmpty()) {
+        if (allow.length == 0 && deny.length == 0 && warn.length == 0) {
             return CheckResult.success();
         }
 
-        for (TaskRule r : rules.getAllow()) {
-            if (matchRule(taskName, methodName, params, taskResults, r)) {
+        TaskRules rules = getRules(taskName);
+
+        for (CompiledRule r : rules.allow) {
+            if (r.matches(taskName, methodName, params, taskResults)) {
                 return CheckResult.success();
             }
         }
 
-        for (TaskRule r : rules.getDeny()) {
-            if (matchRule(taskName, methodName, params, taskResults, r)) {
-                return CheckResult.error(new CheckResult.Item<>(r, methodName));
+        for (CompiledRule r : rules.deny) {
+            if (r.matches(taskName, methodName, params, taskResults)) {
+                return CheckResult.error(new CheckResult.Item<>(r.rule, methodName));
             }
         }
 
-        for (TaskRule r : rules.getWarn()) {
-            if (matchRule(taskName, methodName, params, taskResults, r)) {
-                return CheckResult.warn(new CheckResult.Item<>(r, methodName));
+        for (CompiledRule r : rules.warn) {
+            if (r.matches(taskName, methodName, params, taskResults)) {
+                return CheckResult.warn(new CheckResult.Item<>(r.rule, methodName));
             }
         }
 
@@ -64,58 +95,58 @@ public class TaskPolicy {
     }
 
     public Set<String> getTaskResults() {
-        if (rules == null || rules.isEmpty()) {
-            return Collections.emptySet();
-        }
-
-        Set<String> result = new HashSet<>();
-        rules.getAllow().forEach(r -> collectTaskNames(r.getTaskResults(), result));
-        rules.getDeny().forEach(r -> collectTaskNames(r.getTaskResults(), result));
-        rules.getWarn().forEach(r -> collectTaskNames(r.getTaskResults(), result));
-        return result;
+        return taskResultNames;
     }
 
-    private static void collectTaskNames(List<TaskRule.TaskResult> taskResults, Set<String> result) {
-        for (TaskRule.TaskResult tr : taskResults) {
-            result.add(tr.getTask());
+    private TaskRules getRules(String taskName) {
+        TaskRules result = byTaskName.get(taskName);
+        if (result != null) {
+            return result;
         }
-    }
 
-    private boolean matchRule(String taskName, String methodName, Object[] params, Map<String, List<Serializable>> taskResults, TaskRule r) {
-        if (!matches(r.getTaskName(), taskName)) {
-            return false;
+        result = new TaskRules(filter(allow, taskName), filter(deny, taskName), filter(warn, taskName));
+        if (byTaskName.size() < MAX_INDEX_SIZE) {
+            byTaskName.put(taskName, result);
         }
+        return result;
+    }
 
-        if (r.getMethod() != null && !matches(r.getMethod(), methodName)) {
-            return false;
+    private static CompiledRule[] filter(CompiledRule[] rules, String taskName) {
+        List<CompiledRule> result = new ArrayList<>(rules.length);
+        for (CompiledRule r : rules) {
+            // invalid patterns are kept to report the error when the rule is evaluated
+            if (!r.taskName.isValid() || r.taskName.matches(taskName)) {
+                result.add(r);
+            }
         }
+        return result.toArray(new CompiledRule[0]);
+    }
 
-        if (paramsMatches(r.getParams(), params)) {
-            return true;
+    private static CompiledRule[] compile(List<TaskRule> rules) {
+        CompiledRule[] result = new CompiledRule[rules.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = new CompiledRule(rules.get(i));
         }
+        return result;
+    }
 
-        if (taskResultsMatches(r.getTaskResults(), taskResults)) {
-            return true;
+    private static void collectTaskNames(List<TaskRule.TaskResult> taskResults, Set<String> result) {
+        for (TaskRule.TaskResult tr : taskResults) {
+            result.add(tr.getTask());
         }
-
-        return false;
     }
 
-    private static boolean paramsMatches(List<TaskRule.Param> r, Object[] params) {
+    private static boolean paramsMatches(CompiledParam[] r, Object[] params) {
         if (params == null) {
-            return r.isEmpty();
+            return r.length == 0;
         }
 
-        for (TaskRule.Param p : r) {
-            if (p.getIndex() >= params.length) {
+        for (CompiledParam p : r) {
+            if (p.index >= params.length) {
                 return false;
             }
 
-            if (!paramMatches(
-                    Optional.ofNullable(p.getName()).map(n -> n.split("\\.")).orElse(null),
-                    0,
-                    p.getValues(), params[p.getIndex()],
-                    p.isProtected())) {
+            if (!paramMatches(p.names, 0, p.values, params[p.index], p.isProtected)) {
                 return false;
             }
         }
@@ -124,9 +155,9 @@ public class TaskPolicy {
     }
 
     @SuppressWarnings("unchecked")
-    private static boolean paramMatches(String[] names, int nameIndex, List<Object> values, Object param, boolean isProtected) {
+    private static boolean paramMatches(String[] names, int nameIndex, CompiledValues values, Object param, boolean isProtected) {
         if (param == null) {
-            return values.contains(null);
+            return values.values.contains(null);
         }
 
         if (param instanceof Map) {
@@ -159,9 +190,14 @@ public class TaskPolicy {
             Object v = ctx.variables().get(name);
             return paramMatches(names, nameIndex, values, v, isProtected);
         } else if (param instanceof String) {
-            return Utils.matchAny(values.stream().map(Object::toString).collect(Collectors.toList()), param.toString());
+            String s = param.toString();
+            for (RulePattern p : values.patterns) {
+                if (p.matches(s)) {
+                    return true;
+                }
+            }
         } else {
-            for (Object v : values) {
+            for (Object v : values.values) {
                 if (v != null && v.equals(param)) {
                     return true;
                 }
@@ -171,20 +207,16 @@ public class TaskPolicy {
         return false;
     }
 
-    private static boolean taskResultsMatches(List<TaskRule.TaskResult> rule, Map<String, List<Serializable>> taskResults) {
-        if (rule.isEmpty() || taskResults == null) {
+    private static boolean taskResultsMatches(CompiledTaskResult[] rule, Map<String, List<Serializable>> taskResults) {
+        if (rule.length == 0 || taskResults == null) {
             return false;
         }
 
-        for (TaskRule.TaskResult tr : rule) {
-            String taskName = tr.getTask();
-            List<Serializable> results = taskResults.getOrDefault(taskName, Collections.emptyList());
-            String resultName = tr.getResult();
+        for (CompiledTaskResult tr : rule) {
+            List<Serializable> results = taskResults.getOrDefault(tr.task, Collections.emptyList());
 
             for (Object result : results) {
-                if (paramMatches(
-                        Optional.ofNullable(resultName).map(n -> n.split("\\.")).orElse(null),
-                        0, tr.getValues(), result, false)) {
+                if (paramMatches(tr.names, 0, tr.values, result, false)) {
                     return true;
                 }
             }
@@ -192,4 +224,117 @@ public class TaskPolicy {
 
         return false;
     }
+
+    private static String[] splitName(String name) {
+        return name != null ? name.split("\\.") : null;
+    }
+
+    private static final class TaskRules {
+
+        private final CompiledRule[] allow;
+        private final CompiledRule[] deny;
+        private final CompiledRule[] warn;
+
+        private TaskRules(CompiledRule[] allow, CompiledRule[] deny, CompiledRule[] warn) { // NOSONAR
+            this.allow = allow;
+            this.deny = deny;
+            this.warn = warn;
+        }
+    }
+
+    private static final class CompiledRule {
+
+        private final TaskRule rule;
+        private final RulePattern taskName;
+        private final RulePattern method;
+        private final CompiledParam[] params;
+        private final CompiledTaskResult[] taskResults;
+
+        private CompiledRule(TaskRule rule) {
+            this.rule = rule;
+            this.taskName = RulePattern.caseInsensitive(rule.getTaskName());
+            this.method = rule.getMethod() != null ? RulePattern.caseInsensitive(rule.getMethod()) : null;
+
+            List<TaskRule.Param> params = rule.getParams();
+            this.params = new CompiledParam[params.size()];
+            for (int i = 0; i < this.params.length; i++) {
+                this.params[i] = new CompiledParam(params.get(i));
+            }
+
+            List<TaskRule.TaskResult> taskResults = rule.getTaskResults();
+            this.taskResults = new CompiledTaskResult[taskResults.size()];
+            for (int i = 0; i < this.taskResults.length; i++) {
+                this.taskResults[i] = new CompiledTaskResult(taskResults.get(i));
+            }
+        }
+
+        /**
+         * Matches the rule, assuming the task's name is already matched
+         * or the task name pattern is invalid, see {@link TaskPolicy#filter(CompiledRule[], String)}.
+         */
+        private boolean matches(String taskName, String methodName, Object[] params, Map<String, List<Serializable>> taskResults) {
+            if (!this.taskName.isValid()) {
+                // throws the pattern's error
+                this.taskName.matches(taskName);
+            }
+
+            if (method != null && !method.matches(methodName)) {
+                return false;
+            }
+
+            if (paramsMatches(this.params, params)) {
+                return true;
+            }
+
+            return taskResultsMatches(this.taskResults, taskResults);
+        }
+    }
+
+    private static final class CompiledParam {
+
+        private final int index;
+        private final String[] names;
+        private final CompiledValues values;
+        private final boolean isProtected;
+
+        private CompiledParam(TaskRule.Param p) {
+            this.index = p.getIndex();
+            this.names = splitName(p.getName());
+            this.values = new CompiledValues(p.getValues());
+            this.isProtected = p.isProtected();
+        }
+    }
+
+    private static final class CompiledTaskResult {
+
+        private final String task;
+        private final String[] names;
+        private final CompiledValues values;
+
+        private CompiledTaskResult(TaskRule.TaskResult tr) {
+            this.task = tr.getTask();
+            this.names = splitName(tr.getResult());
+            this.values = new CompiledValues(tr.getValues());
+        }
+    }
+
+    private static final class CompiledValues {
+
+        private final List<Object> values;
+
+        /**
+         * Values as patterns, used to match string parameters.
+         */
+        private final RulePattern[] patterns;
+
+        private CompiledValues(List<Object> values) {
+            this.values = values;
+
+            this.patterns = new RulePattern[values.size()];
+            for (int i = 0; i < patterns.length; i++) {
+                Object v = values.get(i);
+                patterns[i] = RulePattern.caseInsensitive(v != null ? v.toString() : null);
+            }
+        }
+    }
 }
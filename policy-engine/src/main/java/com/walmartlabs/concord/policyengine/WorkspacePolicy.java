@@ -21,11 +21,8 @@ package com.walmartlabs.concord.policyengine;
  */
 
 import java.io.IOException;
-import java.nio.file.FileVisitResult;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.SimpleFileVisitor;
-import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
@@ -34,12 +31,32 @@ import java.util.Set;
 public class WorkspacePolicy {
 
     private final WorkspaceRule rule;
+    private final RulePattern[] ignoredFiles;
 
     public WorkspacePolicy(WorkspaceRule rule) {
         this.rule = rule;
+        this.ignoredFiles = compile(rule != null ? rule.getIgnoredFiles() : null);
+    }
+
+    /**
+     * Returns {@code true} if the policy needs to walk the workspace.
+     */
+    public boolean requiresScan() {
+        return rule != null && rule.getMaxSizeInBytes() != null;
     }
 
     public CheckResult<WorkspaceRule, Path> check(Path p) throws IOException {
+        return check(p, null);
+    }
+
+    /**
+     * Checks the workspace using the result of a previous {@link WorkspaceScan}.
+     */
+    public CheckResult<WorkspaceRule, Path> check(WorkspaceScan scan) throws IOException {
+        return check(scan.getRoot(), scan);
+    }
+
+    private CheckResult<WorkspaceRule, Path> check(Path p, WorkspaceScan scan) throws IOException {
         if (rule == null) {
             return CheckResult.success();
         }
@@ -51,41 +68,49 @@ public class WorkspacePolicy {
         } else if (!Files.isDirectory(p)) {
             deny.add(new CheckResult.Item<>(rule, p, "Not a directory: " + p));
         } else if (rule.getMaxSizeInBytes() != null) {
-            Long[] size = { 0L };
-
-            Files.walkFileTree(p, new SimpleFileVisitor<Path>() {
-
-                @Override
-                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
-                    if (isIgnored(file, rule.getIgnoredFiles())) {
-                        return FileVisitResult.CONTINUE;
-                    }
-
-                    size[0] += Files.size(file);
+            if (scan == null) {
+                scan = WorkspaceScan.scan(p);
+            }
 
-                    return FileVisitResult.CONTINUE;
+            long size = 0;
+            for (WorkspaceScan.Entry e : scan.getEntries()) {
+                if (e.isDirectory() || isIgnored(e.getPath())) {
+                    continue;
                 }
-            });
 
-            if (size[0] > rule.getMaxSizeInBytes()) {
-                deny.add(new CheckResult.Item<>(rule, p, "Workspace too big: " + size[0] + " byte(s)"));
+                size += e.getSize();
+            }
+
+            if (size > rule.getMaxSizeInBytes()) {
+                deny.add(new CheckResult.Item<>(rule, p, "Workspace too big: " + size + " byte(s)"));
             }
         }
 
         return new CheckResult<>(Collections.emptyList(), deny);
     }
 
-    private static boolean isIgnored(Path p, Set<String> patterns) {
-        if (patterns == null) {
+    private boolean isIgnored(Path p) {
+        if (ignoredFiles.length == 0) {
             return false;
         }
 
-        for (String s : patterns) {
-            if (p.toString().matches(s)) {
+        String s = p.toString();
+        for (RulePattern pattern : ignoredFiles) {
+            if (pattern.matches(s)) {
                 return true;
             }
         }
 
         return false;
     }
+
+    private static RulePattern[] compile(Set<String> patterns) {
+        if (patterns == null) {
+            return new RulePattern[0];
+        }
+
+        return patterns.stream()
+                .map(RulePattern::caseSensitive)
+                .toArray(RulePattern[]::new);
+    }
 }
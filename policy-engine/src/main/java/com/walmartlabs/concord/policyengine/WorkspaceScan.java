@@ -0,0 +1,226 @@
+package com.walmartlabs.concord.policyengine;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2018 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.PosixFileAttributes;
+import java.nio.file.attribute.PosixFilePermission;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Result of a single walk of a directory. Can be used to check multiple
+ * policies and to import the files without walking the directory again.
+ * <p/>
+ * Entries are in the same (pre-)order as with {@link Files#walkFileTree(Path, FileVisitor)}:
+ * each directory precedes its content. Symlinks are not followed.
+ */
+public final class WorkspaceScan {
+
+    /**
+     * Walks the specified directory.
+     */
+    public static WorkspaceScan scan(Path root) throws IOException {
+        return scan(root, null);
+    }
+
+    /**
+     * Walks the specified directory. If {@code pool} is not {@code null}
+     * the subdirectories are listed in parallel using the pool.
+     */
+    public static WorkspaceScan scan(Path root, ForkJoinPool pool) throws IOException {
+        if (Files.notExists(root)) {
+            return new WorkspaceScan(root, false, false, Collections.emptyList());
+        }
+
+        // the root itself can be a symlink
+        Entry rootEntry = new Entry(root, Files.readAttributes(root, BasicFileAttributes.class));
+        if (!rootEntry.isDirectory()) {
+            return new WorkspaceScan(root, true, false, Collections.singletonList(rootEntry));
+        }
+
+        List<Entry> entries;
+        if (pool != null) {
+            try {
+                entries = pool.invoke(new ScanTask(rootEntry, true));
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        } else {
+            entries = new ArrayList<>();
+            entries.add(rootEntry);
+            scanDirectory(root, entries);
+        }
+
+        return new WorkspaceScan(root, true, true, Collections.unmodifiableList(entries));
+    }
+
+    private final Path root;
+    private final boolean exists;
+    private final boolean directory;
+    private final List<Entry> entries;
+
+    private WorkspaceScan(Path root, boolean exists, boolean directory, List<Entry> entries) {
+        this.root = root;
+        this.exists = exists;
+        this.directory = directory;
+        this.entries = entries;
+    }
+
+    public Path getRoot() {
+        return root;
+    }
+
+    public boolean exists() {
+        return exists;
+    }
+
+    public boolean isDirectory() {
+        return directory;
+    }
+
+    /**
+     * All entries including the root directory.
+     */
+    public List<Entry> getEntries() {
+        return entries;
+    }
+
+    public static final class Entry {
+
+        private final Path path;
+        private final BasicFileAttributes attrs;
+
+        private Entry(Path path, BasicFileAttributes attrs) {
+            this.path = path;
+            this.attrs = attrs;
+        }
+
+        public Path getPath() {
+            return path;
+        }
+
+        /**
+         * Attributes of the entry itself, i.e. symlinks are not followed.
+         */
+        public BasicFileAttributes getAttributes() {
+            return attrs;
+        }
+
+        public boolean isDirectory() {
+            return attrs.isDirectory();
+        }
+
+        public boolean isRegularFile() {
+            return attrs.isRegularFile();
+        }
+
+        /**
+         * The size of the file. Symlinks are followed, the same way as
+         * {@link Files#size(Path)} does.
+         */
+        public long getSize() throws IOException {
+            if (attrs.isSymbolicLink()) {
+                return Files.size(path);
+            }
+            return attrs.size();
+        }
+
+        public Set<PosixFilePermission> getPermissions() throws IOException {
+            if (attrs instanceof PosixFileAttributes) {
+                return ((PosixFileAttributes) attrs).permissions();
+            }
+            return Files.getPosixFilePermissions(path, LinkOption.NOFOLLOW_LINKS);
+        }
+    }
+
+    private static void scanDirectory(Path dir, List<Entry> result) throws IOException {
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+            for (Path p : stream) {
+                Entry e = new Entry(p, readAttributes(p));
+                result.add(e);
+                if (e.isDirectory()) {
+                    scanDirectory(p, result);
+                }
+            }
+        }
+    }
+
+    private static BasicFileAttributes readAttributes(Path p) throws IOException {
+        // read POSIX attributes where supported, saves a separate call to get the permissions
+        if (p.getFileSystem().supportedFileAttributeViews().contains("posix")) {
+            return Files.readAttributes(p, PosixFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+        }
+        return Files.readAttributes(p, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+    }
+
+    private static final class ScanTask extends RecursiveTask<List<Entry>> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final Entry dir;
+        private final boolean includeSelf;
+
+        private ScanTask(Entry dir, boolean includeSelf) {
+            this.dir = dir;
+            this.includeSelf = includeSelf;
+        }
+
+        @Override
+        protected List<Entry> compute() {
+            // each item is either an Entry or a forked ScanTask, joined in order
+            List<Object> items = new ArrayList<>();
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir.getPath())) {
+                for (Path p : stream) {
+                    Entry e = new Entry(p, readAttributes(p));
+                    items.add(e);
+                    if (e.isDirectory()) {
+                        items.add(new ScanTask(e, false).fork());
+                    }
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+
+            List<Entry> result = new ArrayList<>(items.size() + 1);
+            if (includeSelf) {
+                result.add(dir);
+            }
+
+            for (Object i : items) {
+                if (i instanceof Entry) {
+                    result.add((Entry) i);
+                } else {
+                    result.addAll(((ScanTask) i).join());
+                }
+            }
+
+            return result;
+        }
+    }
+}
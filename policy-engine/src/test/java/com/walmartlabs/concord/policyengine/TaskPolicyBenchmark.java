@@ -0,0 +1,81 @@
+package com.walmartlabs.concord.policyengine;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2018 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cost of {@link TaskPolicy#check(String, String, Object[], Map)}
+ * depending on the number of rules.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TaskPolicyBenchmark {
+
+    @Param({"10", "100", "1000"})
+    public int rules;
+
+    private TaskPolicy policy;
+    private Object[] params;
+
+    @Setup
+    public void setup() {
+        List<TaskRule> deny = new ArrayList<>(rules);
+        List<TaskRule> warn = new ArrayList<>(rules);
+        for (int i = 0; i < rules; i++) {
+            TaskRule.Param p = new TaskRule.Param(0, "cfg.url", false, Collections.singletonList("https://example" + i + "\\.com/.*"));
+            deny.add(new TaskRule("deny #" + i, "task" + i + "-.*", "execute", Collections.singletonList(p), null));
+            warn.add(new TaskRule("warn #" + i, "task" + i, null, null, null));
+        }
+
+        policy = new TaskPolicy(new PolicyRules<>(null, warn, deny));
+
+        Map<String, Object> cfg = new HashMap<>();
+        cfg.put("url", "https://example.com/foo");
+        params = new Object[]{Collections.singletonMap("cfg", cfg)};
+    }
+
+    @Benchmark
+    public CheckResult<TaskRule, String> matchingTask() {
+        return policy.check("task0-http", "execute", params, Collections.emptyMap());
+    }
+
+    @Benchmark
+    public CheckResult<TaskRule, String> nonMatchingTask() {
+        return policy.check("log", "execute", params, Collections.emptyMap());
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(TaskPolicyBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
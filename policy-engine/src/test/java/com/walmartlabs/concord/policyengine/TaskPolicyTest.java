@@ -24,6 +24,7 @@ import org.junit.Test;
 
 import java.io.Serializable;
 import java.util.*;
+import java.util.regex.PatternSyntaxException;
 
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
@@ -169,6 +170,37 @@ public class TaskPolicyTest {
         assertDenyByTaskResults(policy, "taskName-12", "foo", Collections.singletonMap("taskName-12", taskResults));
     }
 
+    @Test
+    public void testMultipleTasks() {
+        TaskRule allowRule = new TaskRule(null, "taskName-1", null, null, null);
+        TaskRule denyRule = new TaskRule(null, "TASKNAME-.*", "foo", null, null);
+
+        PolicyRules<TaskRule> rules = new PolicyRules<>(Collections.singletonList(allowRule), null, Collections.singletonList(denyRule));
+
+        TaskPolicy policy = new TaskPolicy(rules);
+
+        // ---
+        for (int i = 0; i < 2; i++) {
+            assertAllow(policy, "taskName-1", "foo");
+            assertDeny(policy, "taskName-2", "foo");
+            assertAllow(policy, "taskName-2", "bar");
+            assertAllow(policy, "otherTask", "foo");
+        }
+    }
+
+    @Test(expected = PatternSyntaxException.class)
+    public void testInvalidTaskNamePattern() {
+        TaskRule allowRule = new TaskRule(null, "*", null, null, null);
+        TaskRule denyRule = new TaskRule(null, "taskName-.*", null, null, null);
+
+        PolicyRules<TaskRule> rules = new PolicyRules<>(Collections.singletonList(allowRule), null, Collections.singletonList(denyRule));
+
+        TaskPolicy policy = new TaskPolicy(rules);
+
+        // ---
+        policy.check("taskName-1234", "foo", new Object[0], null);
+    }
+
     private static void assertDeny(TaskPolicy policy, String taskName, String methodName, Object...params) {
         CheckResult<TaskRule, String> result = policy.check(taskName, methodName, params, null);
         assertFalse(result.getDeny().isEmpty());
@@ -0,0 +1,85 @@
+package com.walmartlabs.concord.policyengine;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2018 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Measures the cost of {@link WorkspacePolicy#check(Path)} for a workspace
+ * with many files and a few ignored file patterns.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WorkspacePolicyBenchmark {
+
+    @Param({"100", "10000"})
+    public int files;
+
+    private Path workDir;
+    private WorkspacePolicy policy;
+
+    @Setup
+    public void setup() throws IOException {
+        workDir = Files.createTempDirectory("workspace");
+        for (int i = 0; i < files; i++) {
+            Path dir = workDir.resolve("dir" + (i % 100));
+            Files.createDirectories(dir);
+            Files.write(dir.resolve("file" + i + (i % 10 == 0 ? ".log" : ".txt")), new byte[]{1, 2, 3});
+        }
+
+        policy = new WorkspacePolicy(new WorkspaceRule("too big", Long.MAX_VALUE,
+                new HashSet<>(Arrays.asList(".*/\\.git/.*", ".*/target/.*", ".*\\.log"))));
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        try (Stream<Path> s = Files.walk(workDir)) {
+            s.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    public CheckResult<WorkspaceRule, Path> check() throws IOException {
+        return policy.check(workDir);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(WorkspacePolicyBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
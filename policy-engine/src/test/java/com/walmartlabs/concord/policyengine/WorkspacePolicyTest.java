@@ -26,6 +26,7 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardOpenOption;
+import java.util.Collections;
 
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
@@ -46,6 +47,19 @@ public class WorkspacePolicyTest {
         assertAllow(tenBytes, p);
     }
 
+    @Test
+    public void testIgnoredFiles() throws Exception {
+        Path p = Files.createTempDirectory("test2");
+        Files.write(p.resolve("test.bin"), new byte[]{0, 1, 2, 3, 4, 5}, StandardOpenOption.CREATE_NEW);
+        Files.write(p.resolve("test.log"), new byte[]{0, 1, 2, 3, 4, 5}, StandardOpenOption.CREATE_NEW);
+
+        WorkspacePolicy policy = new WorkspacePolicy(new WorkspaceRule("10 bytes", 10L, Collections.singleton(".*\\.log")));
+
+        // ---
+
+        assertAllow(policy, p);
+    }
+
     private static void assertAllow(WorkspacePolicy policy, Path p) throws IOException {
         CheckResult<WorkspaceRule, Path> result = policy.check(p);
         assertTrue(result.getDeny().isEmpty());
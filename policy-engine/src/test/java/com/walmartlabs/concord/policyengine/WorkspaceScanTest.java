@@ -0,0 +1,83 @@
+package com.walmartlabs.concord.policyengine;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2018 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+import org.junit.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class WorkspaceScanTest {
+
+    @Test
+    public void testParallelScan() throws Exception {
+        Path root = Files.createTempDirectory("test");
+        for (int i = 0; i < 10; i++) {
+            Path dir = Files.createDirectories(root.resolve("dir" + i).resolve("nested"));
+            Files.write(dir.resolve("file.txt"), new byte[]{0, 1, 2});
+            Files.write(dir.getParent().resolve("file.txt"), new byte[]{0, 1});
+        }
+
+        WorkspaceScan sequential = WorkspaceScan.scan(root);
+
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            WorkspaceScan parallel = WorkspaceScan.scan(root, pool);
+            assertEquals(paths(sequential), paths(parallel));
+        } finally {
+            pool.shutdown();
+        }
+
+        // root + 10 * (dir, nested dir, 2 files)
+        assertEquals(41, sequential.getEntries().size());
+        assertEquals(root, sequential.getEntries().get(0).getPath());
+
+        // directories precede their content
+        List<Path> paths = paths(sequential);
+        for (Path p : paths) {
+            if (!p.equals(root)) {
+                assertTrue(paths.indexOf(p.getParent()) < paths.indexOf(p));
+            }
+        }
+    }
+
+    @Test
+    public void testMissingDir() throws Exception {
+        Path root = Files.createTempDirectory("test").resolve("missing");
+
+        WorkspaceScan scan = WorkspaceScan.scan(root);
+        assertFalse(scan.exists());
+        assertTrue(scan.getEntries().isEmpty());
+    }
+
+    private static List<Path> paths(WorkspaceScan scan) {
+        return scan.getEntries().stream()
+                .map(WorkspaceScan.Entry::getPath)
+                .collect(Collectors.toList());
+    }
+}
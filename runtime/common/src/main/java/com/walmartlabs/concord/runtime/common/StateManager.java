@@ -40,7 +40,16 @@ public final class StateManager {
     private static final String RESUME_MARKER = Constants.Files.RESUME_MARKER_FILE_NAME;
     private static final String SUSPEND_MARKER = Constants.Files.SUSPEND_MARKER_FILE_NAME;
 
+    /**
+     * Name of the file with the serialized process state.
+     */
+    public static final String INSTANCE_FILE_NAME = "instance";
+
     public static void finalizeSuspendedState(Path baseDir, Serializable state, Set<String> eventNames) throws IOException {
+        finalizeSuspendedState(baseDir, stateDir -> writeInstance(stateDir, state), eventNames);
+    }
+
+    public static void finalizeSuspendedState(Path baseDir, StateWriter writer, Set<String> eventNames) throws IOException {
         Path stateDir = baseDir.resolve(Constants.Files.JOB_ATTACHMENTS_DIR_NAME)
                 .resolve(Constants.Files.JOB_STATE_DIR_NAME);
 
@@ -61,7 +70,7 @@ public final class StateManager {
         Path marker = stateDir.resolve(SUSPEND_MARKER);
         Files.write(marker, eventNames);
 
-        saveProcessState(baseDir, state);
+        saveProcessState(baseDir, writer);
     }
 
     public static void cleanupState(Path baseDir) throws IOException {
@@ -105,6 +114,21 @@ public final class StateManager {
         }
     }
 
+    /**
+     * Reads the process state using the provided {@link StateReader} from
+     * the standard location inside the provided {@code baseDir}.
+     */
+    public static <T> T readProcessState(Path baseDir, StateReader<T> reader) {
+        Path stateDir = baseDir.resolve(Constants.Files.JOB_ATTACHMENTS_DIR_NAME)
+                .resolve(Constants.Files.JOB_STATE_DIR_NAME);
+
+        try {
+            return reader.read(stateDir);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
     /**
      * Reads a serialized process state object from
      * the standard location inside the provided {@code baseDir}.
@@ -114,7 +138,7 @@ public final class StateManager {
         Path stateDir = baseDir.resolve(Constants.Files.JOB_ATTACHMENTS_DIR_NAME)
                 .resolve(Constants.Files.JOB_STATE_DIR_NAME);
 
-        Path p = stateDir.resolve("instance");
+        Path p = stateDir.resolve(INSTANCE_FILE_NAME);
         if (Files.notExists(p)) {
             return null;
         }
@@ -131,6 +155,14 @@ public final class StateManager {
      * in the standard location inside the provided {@code baseDir}.
      */
     public static void saveProcessState(Path baseDir, Serializable state) throws IOException {
+        saveProcessState(baseDir, stateDir -> writeInstance(stateDir, state));
+    }
+
+    /**
+     * Saves the process state using the provided {@link StateWriter}
+     * into the standard location inside the provided {@code baseDir}.
+     */
+    public static void saveProcessState(Path baseDir, StateWriter writer) throws IOException {
         Path stateDir = baseDir.resolve(Constants.Files.JOB_ATTACHMENTS_DIR_NAME)
                 .resolve(Constants.Files.JOB_STATE_DIR_NAME);
 
@@ -138,19 +170,16 @@ public final class StateManager {
             Files.createDirectories(stateDir);
         }
 
-        Path dst = stateDir.resolve("instance");
-
-        try (TemporaryPath tmp = IOUtils.tempFile("instance", "state");
-             OutputStream out = Files.newOutputStream(tmp.path())) {
-
-            SerializationUtils.serialize(out, state);
-            Files.move(tmp.path(), dst, REPLACE_EXISTING);
-        }
+        writer.write(stateDir);
     }
 
     public static void archive(Path baseDir, Serializable state, Path result) throws IOException {
+        archive(baseDir, stateDir -> writeInstance(stateDir, state), result);
+    }
+
+    public static void archive(Path baseDir, StateWriter writer, Path result) throws IOException {
         try (TemporaryPath tmp = IOUtils.tempDir("state-archive")) {
-            saveProcessState(tmp.path(), state);
+            saveProcessState(tmp.path(), writer);
 
             try (ZipArchiveOutputStream zip = new ZipArchiveOutputStream(Files.newOutputStream(result))) {
                 zip(zip, Constants.Files.JOB_ATTACHMENTS_DIR_NAME + "/", tmp.path().resolve(Constants.Files.JOB_ATTACHMENTS_DIR_NAME));
@@ -189,6 +218,17 @@ public final class StateManager {
         }
     }
 
+    private static void writeInstance(Path stateDir, Serializable state) throws IOException {
+        Path dst = stateDir.resolve(INSTANCE_FILE_NAME);
+
+        try (TemporaryPath tmp = IOUtils.tempFile("instance", "state");
+             OutputStream out = Files.newOutputStream(tmp.path())) {
+
+            SerializationUtils.serialize(out, state);
+            Files.move(tmp.path(), dst, REPLACE_EXISTING);
+        }
+    }
+
     private static void zip(ZipArchiveOutputStream zip, String name, Path src) throws IOException {
         if (Files.notExists(src)) {
             return;
@@ -196,6 +236,22 @@ public final class StateManager {
         IOUtils.zip(zip, name, src);
     }
 
+    /**
+     * Writes the process state files into the specified state directory.
+     */
+    public interface StateWriter {
+
+        void write(Path stateDir) throws IOException;
+    }
+
+    /**
+     * Reads the process state files from the specified state directory.
+     */
+    public interface StateReader<T> {
+
+        T read(Path stateDir) throws IOException;
+    }
+
     private StateManager() {
     }
 }
@@ -43,7 +43,8 @@ public class LockServiceImpl implements LockService {
 
     private static final int RETRY_COUNT = 3;
     private static final long RETRY_INTERVAL = 5000;
-    private static final long LOCK_RETRY_INTERVAL = 10000; // TODO custom intervals?
+    private static final long LOCK_WAIT_TIMEOUT = 30000;
+    private static final long LOCK_RETRY_INTERVAL = 10000;
 
     private final ApiClientFactory apiClientFactory;
 
@@ -61,16 +62,39 @@ public class LockServiceImpl implements LockService {
         UUID instanceId = ContextUtils.getTxId(ctx);
         ProcessLocksApi api = new ProcessLocksApi(apiClientFactory.create(ctx));
 
+        boolean acquireAvailable = true;
+
         // TODO: timeout
         while (!Thread.currentThread().isInterrupted()) {
-            LockResult lock = withRetry(() -> api.tryLock(instanceId, lockName, LockScope.PROJECT.name()));
+            LockResult lock;
+            if (acquireAvailable) {
+                try {
+                    // the server holds the request until the lock is handed over to the process or the timeout expires
+                    lock = withRetry(() -> api.acquire(instanceId, lockName, LockScope.PROJECT.name(), LOCK_WAIT_TIMEOUT));
+                } catch (ApiException e) {
+                    if (e.getCode() != 404 && e.getCode() != 405) {
+                        throw e;
+                    }
+
+                    // older servers don't have the endpoint, poll using tryLock
+                    log.info("the server doesn't support waiting for locks, polling...");
+                    acquireAvailable = false;
+                    continue;
+                }
+            } else {
+                lock = withRetry(() -> api.tryLock(instanceId, lockName, LockScope.PROJECT.name()));
+            }
+
             if (lock.isAcquired()) {
                 log.info("successfully acquired lock '{}' in '{}' scope...", lockName, LockScope.PROJECT);
                 return;
             }
 
             log.info("waiting for lock '{}' in '{}' scope...", lockName, LockScope.PROJECT);
-            sleep(LOCK_RETRY_INTERVAL);
+
+            if (!acquireAvailable) {
+                sleep(LOCK_RETRY_INTERVAL);
+            }
         }
     }
 
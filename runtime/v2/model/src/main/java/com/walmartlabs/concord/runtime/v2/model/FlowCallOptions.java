@@ -50,6 +50,13 @@ public interface FlowCallOptions extends StepOptions {
     @Nullable
     WithItems withItems();
 
+    /**
+     * Max number of {@link #withItems()} items processed in parallel.
+     * If not set the items are processed sequentially.
+     */
+    @Nullable
+    Integer parallelism();
+
     @Nullable
     Retry retry();
 
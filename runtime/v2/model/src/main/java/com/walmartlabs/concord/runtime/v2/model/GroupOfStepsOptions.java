@@ -46,6 +46,13 @@ public interface GroupOfStepsOptions extends StepOptions {
     @Nullable
     WithItems withItems();
 
+    /**
+     * Max number of {@link #withItems()} items processed in parallel.
+     * If not set the items are processed sequentially.
+     */
+    @Nullable
+    Integer parallelism();
+
     static ImmutableGroupOfStepsOptions.Builder builder() {
         return ImmutableGroupOfStepsOptions.builder();
     }
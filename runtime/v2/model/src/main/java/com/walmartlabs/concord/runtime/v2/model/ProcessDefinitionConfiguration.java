@@ -102,6 +102,12 @@ public interface ProcessDefinitionConfiguration extends Serializable {
     @Nullable
     String template();
 
+    @Nullable
+    Integer maxParallelism();
+
+    @Nullable
+    Boolean virtualThreads();
+
     static ImmutableProcessDefinitionConfiguration.Builder builder() {
         return ImmutableProcessDefinitionConfiguration.builder();
     }
@@ -116,6 +122,8 @@ public interface ProcessDefinitionConfiguration extends Serializable {
                 .arguments(ConfigurationUtils.deepMerge(a.arguments(), b.arguments()))
                 .addAllOut(b.out())
                 .template(b.template() != null ? b.template() : a.template())
+                .maxParallelism(b.maxParallelism() != null ? b.maxParallelism() : a.maxParallelism())
+                .virtualThreads(b.virtualThreads() != null ? b.virtualThreads() : a.virtualThreads())
                 .build();
     }
 }
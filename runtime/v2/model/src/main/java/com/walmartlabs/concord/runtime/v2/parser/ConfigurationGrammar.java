@@ -79,7 +79,9 @@ public final class ConfigurationGrammar {
                                     optional("out", stringArrayVal.map(o::addAllOut)),
                                     optional("arguments", mapVal.map(o::arguments)),
                                     optional("debug", booleanVal.map(o::debug)),
-                                    optional("template", stringVal.map(o::template))))
+                                    optional("template", stringVal.map(o::template)),
+                                    optional("maxParallelism", intVal.map(o::maxParallelism)),
+                                    optional("virtualThreads", booleanVal.map(o::virtualThreads))))
                             .map(ImmutableProcessDefinitionConfiguration.Builder::build));
 
     public static final Parser<Atom, ProcessDefinitionConfiguration> processCfgVal =
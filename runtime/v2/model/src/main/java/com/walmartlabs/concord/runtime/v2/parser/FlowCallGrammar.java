@@ -43,6 +43,7 @@ public final class FlowCallGrammar {
                         optional("out", stringOrArrayVal.map(o::out)),
                         optional("meta", mapVal.map(o::putAllMeta)),
                         optional("withItems", nonNullVal.map(v -> o.withItems(WithItems.of(v)))),
+                        optional("parallelism", intVal.map(o::parallelism)),
                         optional("retry", retryVal.map(o::retry)),
                         optional("error", stepsVal.map(o::errorSteps))
                 ))
@@ -64,6 +64,10 @@ public class TaskCallStepSerializer extends StdSerializer<TaskCall> {
             gen.writeObjectField("withItems", o.withItems());
         }
 
+        if (o.parallelism() != null) {
+            gen.writeObjectField("parallelism", o.parallelism());
+        }
+
         if (o.retry() != null) {
             gen.writeObjectField("retry", o.retry());
         }
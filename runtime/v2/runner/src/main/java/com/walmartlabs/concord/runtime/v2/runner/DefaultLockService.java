@@ -39,6 +39,7 @@ public class DefaultLockService implements LockService {
 
     private static final int RETRY_COUNT = 3;
     private static final long RETRY_INTERVAL = 5000;
+    private static final long LOCK_WAIT_TIMEOUT = 30000;
     private static final long LOCK_RETRY_INTERVAL = 10000;
 
     private final InstanceId instanceId;
@@ -54,16 +55,39 @@ public class DefaultLockService implements LockService {
     public void projectLock(String lockName) throws Exception {
         ProcessLocksApi api = new ProcessLocksApi(apiClient);
 
+        boolean acquireAvailable = true;
+
         // TODO: timeout
         while (!Thread.currentThread().isInterrupted()) {
-            LockResult lock = withRetry(() -> api.tryLock(instanceId.getValue(), lockName, LockScope.PROJECT.name()));
+            LockResult lock;
+            if (acquireAvailable) {
+                try {
+                    // the server holds the request until the lock is handed over to the process or the timeout expires
+                    lock = withRetry(() -> api.acquire(instanceId.getValue(), lockName, LockScope.PROJECT.name(), LOCK_WAIT_TIMEOUT));
+                } catch (ApiException e) {
+                    if (e.getCode() != 404 && e.getCode() != 405) {
+                        throw e;
+                    }
+
+                    // older servers don't have the endpoint, poll using tryLock
+                    log.info("the server doesn't support waiting for locks, polling...");
+                    acquireAvailable = false;
+                    continue;
+                }
+            } else {
+                lock = withRetry(() -> api.tryLock(instanceId.getValue(), lockName, LockScope.PROJECT.name()));
+            }
+
             if (lock.isAcquired()) {
                 log.info("successfully acquired lock '{}' in '{}' scope...", lockName, LockScope.PROJECT);
                 return;
             }
 
             log.info("waiting for lock '{}' in '{}' scope...", lockName, LockScope.PROJECT);
-            sleep(LOCK_RETRY_INTERVAL);
+
+            if (!acquireAvailable) {
+                sleep(LOCK_RETRY_INTERVAL);
+            }
         }
     }
 
@@ -77,6 +101,10 @@ public class DefaultLockService implements LockService {
         log.info("unlocking '{}' with scope '{}' -> done", lockName, LockScope.PROJECT);
     }
 
+    private enum LockScope {
+        ORG, PROJECT
+    }
+
     private static void sleep(long t) {
         try {
             Thread.sleep(t);
@@ -85,10 +113,6 @@ public class DefaultLockService implements LockService {
         }
     }
 
-    private enum LockScope {
-        ORG, PROJECT
-    }
-
     private static <T> T withRetry(Callable<T> c) throws ApiException {
         return ClientUtils.withRetry(RETRY_COUNT, RETRY_INTERVAL, c);
     }
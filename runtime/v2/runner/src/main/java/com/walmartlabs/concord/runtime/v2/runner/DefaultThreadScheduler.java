@@ -0,0 +1,164 @@
+package com.walmartlabs.concord.runtime.v2.runner;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2019 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Method;
+import java.util.Queue;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs VM threads using either a pool of platform threads or virtual
+ * threads (if supported by the JVM). The number of concurrently running
+ * VM threads is limited by {@code maxParallelism}, the rest are queued
+ * without allocating any threads.
+ */
+public class DefaultThreadScheduler implements ThreadScheduler {
+
+    private static final Logger log = LoggerFactory.getLogger(DefaultThreadScheduler.class);
+
+    private final ExecutorService executor;
+    private final Semaphore permits;
+    private final Queue<Runnable> queue = new ConcurrentLinkedQueue<>();
+    private final ThreadLocal<Boolean> managedThread = new ThreadLocal<>();
+
+    private final AtomicInteger running = new AtomicInteger();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicInteger maxRunning = new AtomicInteger();
+    private final AtomicInteger maxQueued = new AtomicInteger();
+
+    /**
+     * @param maxParallelism max number of concurrently running VM threads,
+     *                       {@code 0} or less means unlimited.
+     * @param virtualThreads if {@code true} and the JVM supports virtual threads
+     *                       the VM threads are executed using virtual threads.
+     */
+    public DefaultThreadScheduler(int maxParallelism, boolean virtualThreads) {
+        ExecutorService executor = virtualThreads ? createVirtualThreadExecutor() : null;
+        if (executor == null) {
+            if (virtualThreads) {
+                log.warn("Virtual threads are not supported by the current JVM, using platform threads instead");
+            }
+            executor = Executors.newCachedThreadPool();
+        }
+
+        this.executor = executor;
+        this.permits = maxParallelism > 0 ? new Semaphore(maxParallelism) : null;
+    }
+
+    @Override
+    public void submit(Runnable task) {
+        if (permits == null) {
+            executor.execute(() -> run(task));
+            return;
+        }
+
+        queue.add(task);
+        updateMax(maxQueued, queued.incrementAndGet());
+
+        drain();
+    }
+
+    @Override
+    public <T> T block(Callable<T> callable) throws Exception {
+        if (permits == null || managedThread.get() == null) {
+            return callable.call();
+        }
+
+        // let the queued VM threads run while we're waiting
+        running.decrementAndGet();
+        permits.release();
+        drain();
+
+        try {
+            return callable.call();
+        } finally {
+            permits.acquireUninterruptibly();
+            updateMax(maxRunning, running.incrementAndGet());
+        }
+    }
+
+    @Override
+    public int runningCount() {
+        return running.get();
+    }
+
+    @Override
+    public int queuedCount() {
+        return queued.get();
+    }
+
+    @Override
+    public String toString() {
+        return "running: " + running.get() + " (max " + maxRunning.get() + "), " +
+                "queued: " + queued.get() + " (max " + maxQueued.get() + ")";
+    }
+
+    private void drain() {
+        while (!queue.isEmpty() && permits.tryAcquire()) {
+            Runnable task = queue.poll();
+            if (task == null) {
+                // someone else took the task
+                permits.release();
+                continue;
+            }
+
+            queued.decrementAndGet();
+            executor.execute(() -> run(task));
+        }
+    }
+
+    private void run(Runnable task) {
+        managedThread.set(Boolean.TRUE);
+        updateMax(maxRunning, running.incrementAndGet());
+        try {
+            task.run();
+        } finally {
+            running.decrementAndGet();
+            managedThread.remove();
+
+            if (permits != null) {
+                permits.release();
+                drain();
+            }
+        }
+    }
+
+    private static void updateMax(AtomicInteger max, int value) {
+        max.accumulateAndGet(value, Math::max);
+    }
+
+    private static ExecutorService createVirtualThreadExecutor() {
+        try {
+            Method m = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) m.invoke(null);
+        } catch (NoSuchMethodException e) {
+            return null;
+        } catch (Exception e) {
+            // e.g. a preview feature that is not enabled
+            log.warn("createVirtualThreadExecutor -> error: {}", e.getMessage());
+            return null;
+        }
+    }
+}
@@ -134,7 +134,7 @@ public class Main {
         //  - continuing from a checkpoint
         //  - resuming after suspend
 
-        ProcessSnapshot snapshot = StateManager.readProcessState(workDir);
+        ProcessSnapshot snapshot = StateManager.readProcessState(workDir, ProcessSnapshotSerializer::read);
         Set<String> events = StateManager.readResumeEvents(workDir); // TODO make it an interface?
 
         switch (currentAction(snapshot, events)) {
@@ -163,7 +163,7 @@ public class Main {
         }
 
         if (isSuspended(snapshot)) {
-            StateManager.finalizeSuspendedState(workDir, snapshot, getEvents(snapshot)); // TODO make it an interface?
+            StateManager.finalizeSuspendedState(workDir, ProcessSnapshotSerializer.writer(snapshot), getEvents(snapshot)); // TODO make it an interface?
         } else {
             StateManager.cleanupState(workDir); // TODO make it an interface
         }
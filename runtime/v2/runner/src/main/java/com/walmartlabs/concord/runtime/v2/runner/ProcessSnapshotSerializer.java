@@ -0,0 +1,384 @@
+package com.walmartlabs.concord.runtime.v2.runner;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2019 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hashing;
+import com.walmartlabs.concord.runtime.common.StateManager;
+import com.walmartlabs.concord.runtime.v2.model.ProcessDefinition;
+
+import java.io.*;
+import java.lang.ref.WeakReference;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+
+/**
+ * Reads and writes {@link ProcessSnapshot} in a compact, versioned format.
+ * <p/>
+ * The process definition is stored in a separate file and referenced from
+ * the snapshot by its SHA-256 hash. The definition doesn't change during
+ * the process execution, so its serialized form is computed only once and
+ * the definition file is rewritten only if the definition changes.
+ * Both the definition and the snapshot are compressed.
+ * <p/>
+ * Checkpoint archives include the definition file. The server stores
+ * the definition once per process and replaces it in the stored
+ * checkpoints with a reference.
+ * <p/>
+ * Snapshots saved using plain Java serialization can still be read.
+ */
+public final class ProcessSnapshotSerializer {
+
+    public static final String DEFINITION_FILE_NAME = "definition";
+
+    private static final byte[] MAGIC = {'C', 'S', 'N', 'P'};
+    private static final int VERSION = 1;
+
+    private static final Object cacheMutex = new Object();
+    private static SerializedDefinition lastDefinition;
+
+    private static Path lastDefinitionFile;
+    private static HashCode lastDefinitionFileHash;
+
+    /**
+     * Returns a {@link StateManager.StateWriter} that writes the specified snapshot.
+     */
+    public static StateManager.StateWriter writer(ProcessSnapshot snapshot) {
+        return stateDir -> save(stateDir, snapshot);
+    }
+
+    /**
+     * Saves the snapshot and its process definition into the specified state directory.
+     */
+    public static void save(Path stateDir, ProcessSnapshot snapshot) throws IOException {
+        SerializedDefinition def = serializeDefinition(snapshot.processDefinition());
+
+        Path definitionFile = stateDir.resolve(DEFINITION_FILE_NAME);
+        if (!hasDefinition(definitionFile, def.hash)) {
+            writeAtomically(definitionFile, out -> out.write(def.data));
+            rememberDefinition(definitionFile, def.hash);
+        }
+
+        writeAtomically(stateDir.resolve(StateManager.INSTANCE_FILE_NAME), out -> serialize(out, snapshot, def.hash));
+    }
+
+    /**
+     * Reads the snapshot from the specified state directory.
+     * Can be used as a {@link StateManager.StateReader}.
+     * Returns {@code null} if there's no saved snapshot.
+     */
+    public static ProcessSnapshot read(Path stateDir) throws IOException {
+        Path instanceFile = stateDir.resolve(StateManager.INSTANCE_FILE_NAME);
+        if (Files.notExists(instanceFile)) {
+            return null;
+        }
+
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(instanceFile))) {
+            return deserialize(in, hash -> readDefinition(stateDir.resolve(DEFINITION_FILE_NAME), hash));
+        }
+    }
+
+    /**
+     * Writes the snapshot without its process definition. The definition is replaced
+     * with a reference using the specified hash.
+     */
+    public static void serialize(OutputStream out, ProcessSnapshot snapshot, HashCode definitionHash) throws IOException {
+        DataOutputStream header = new DataOutputStream(out);
+        header.write(MAGIC);
+        header.writeInt(VERSION);
+        header.writeInt(definitionHash.bits() / 8);
+        header.write(definitionHash.asBytes());
+        header.flush();
+
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            DeflaterOutputStream deflated = new DeflaterOutputStream(new NonClosingOutputStream(out), deflater);
+            try (ObjectOutputStream oos = new SnapshotOutputStream(deflated, snapshot.processDefinition(), definitionHash)) {
+                oos.writeObject(snapshot);
+            }
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * Reads a snapshot. Supports both the compact format and plain Java serialization.
+     */
+    public static ProcessSnapshot deserialize(InputStream in, DefinitionResolver resolver) throws IOException {
+        if (!in.markSupported()) {
+            in = new BufferedInputStream(in);
+        }
+
+        in.mark(MAGIC.length);
+        byte[] magic = new byte[MAGIC.length];
+        int n = 0;
+        while (n < magic.length) {
+            int r = in.read(magic, n, magic.length - n);
+            if (r < 0) {
+                break;
+            }
+            n += r;
+        }
+        in.reset();
+
+        try {
+            if (n != MAGIC.length || !Arrays.equals(magic, MAGIC)) {
+                // plain Java serialization, saved by an older version
+                try (ObjectInputStream ois = new ObjectInputStream(in)) {
+                    return (ProcessSnapshot) ois.readObject();
+                }
+            }
+
+            DataInputStream header = new DataInputStream(in);
+            header.readFully(magic);
+
+            int version = header.readInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported snapshot version: " + version);
+            }
+
+            byte[] hash = new byte[header.readInt()];
+            header.readFully(hash);
+
+            ProcessDefinition definition = resolver.resolve(HashCode.fromBytes(hash));
+
+            try (ObjectInputStream ois = new SnapshotInputStream(new InflaterInputStream(in), definition, HashCode.fromBytes(hash))) {
+                return (ProcessSnapshot) ois.readObject();
+            }
+        } catch (ClassNotFoundException e) {
+            throw new IOException("Can't deserialize a process snapshot: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Serializes and compresses the process definition. The result of the last call
+     * is cached, so subsequent calls with the same definition are cheap.
+     */
+    public static SerializedDefinition serializeDefinition(ProcessDefinition definition) throws IOException {
+        synchronized (cacheMutex) {
+            SerializedDefinition last = lastDefinition;
+            if (last != null && last.definition.get() == definition) {
+                return last;
+            }
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try (ObjectOutputStream oos = new ObjectOutputStream(new DeflaterOutputStream(out, deflater))) {
+            oos.writeObject(definition);
+        } finally {
+            deflater.end();
+        }
+
+        byte[] data = out.toByteArray();
+        SerializedDefinition result = new SerializedDefinition(definition, Hashing.sha256().hashBytes(data), data);
+
+        synchronized (cacheMutex) {
+            lastDefinition = result;
+        }
+
+        return result;
+    }
+
+    public static ProcessDefinition deserializeDefinition(InputStream in) throws IOException {
+        try (ObjectInputStream ois = new ObjectInputStream(new InflaterInputStream(in))) {
+            return (ProcessDefinition) ois.readObject();
+        } catch (ClassNotFoundException e) {
+            throw new IOException("Can't deserialize a process definition: " + e.getMessage(), e);
+        }
+    }
+
+    private static ProcessDefinition readDefinition(Path definitionFile, HashCode expectedHash) throws IOException {
+        if (Files.notExists(definitionFile)) {
+            throw new IOException("Process definition file not found: " + definitionFile);
+        }
+
+        byte[] data = Files.readAllBytes(definitionFile);
+
+        HashCode hash = Hashing.sha256().hashBytes(data);
+        if (!hash.equals(expectedHash)) {
+            throw new IOException("Process definition hash mismatch, expected " + expectedHash + ", got " + hash);
+        }
+
+        return deserializeDefinition(new ByteArrayInputStream(data));
+    }
+
+    /**
+     * Checks if the definition file contains the definition with the specified hash.
+     * The hash of the last written or read file is kept in memory, so the file
+     * is hashed at most once.
+     */
+    private static boolean hasDefinition(Path definitionFile, HashCode expectedHash) throws IOException {
+        if (Files.notExists(definitionFile)) {
+            return false;
+        }
+
+        synchronized (cacheMutex) {
+            if (definitionFile.equals(lastDefinitionFile)) {
+                return lastDefinitionFileHash.equals(expectedHash);
+            }
+        }
+
+        HashCode hash = Hashing.sha256().hashBytes(Files.readAllBytes(definitionFile));
+        rememberDefinition(definitionFile, hash);
+        return hash.equals(expectedHash);
+    }
+
+    private static void rememberDefinition(Path definitionFile, HashCode hash) {
+        synchronized (cacheMutex) {
+            lastDefinitionFile = definitionFile;
+            lastDefinitionFileHash = hash;
+        }
+    }
+
+    /**
+     * Writes the data into a temporary file next to {@code dst} and renames it,
+     * so the readers never see a partially written file.
+     */
+    private static void writeAtomically(Path dst, StreamWriter writer) throws IOException {
+        Path tmp = Files.createTempFile(dst.getParent(), dst.getFileName().toString(), ".tmp");
+        try {
+            try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(tmp))) {
+                writer.write(out);
+            }
+            Files.move(tmp, dst, ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    public interface DefinitionResolver {
+
+        ProcessDefinition resolve(HashCode hash) throws IOException;
+    }
+
+    private interface StreamWriter {
+
+        void write(OutputStream out) throws IOException;
+    }
+
+    public static final class SerializedDefinition {
+
+        private final WeakReference<ProcessDefinition> definition;
+        private final HashCode hash;
+        private final byte[] data;
+
+        private SerializedDefinition(ProcessDefinition definition, HashCode hash, byte[] data) { // NOSONAR
+            this.definition = new WeakReference<>(definition);
+            this.hash = hash;
+            this.data = data;
+        }
+
+        public HashCode getHash() {
+            return hash;
+        }
+
+        public byte[] getData() {
+            return data;
+        }
+    }
+
+    /**
+     * A placeholder for the process definition in the serialized snapshot.
+     */
+    private static final class DefinitionRef implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private final byte[] hash;
+
+        private DefinitionRef(byte[] hash) { // NOSONAR
+            this.hash = hash;
+        }
+    }
+
+    private static final class SnapshotOutputStream extends ObjectOutputStream {
+
+        private final ProcessDefinition definition;
+        private final DefinitionRef ref;
+
+        private SnapshotOutputStream(OutputStream out, ProcessDefinition definition, HashCode hash) throws IOException {
+            super(out);
+            this.definition = definition;
+            this.ref = new DefinitionRef(hash.asBytes());
+            enableReplaceObject(true);
+        }
+
+        @Override
+        protected Object replaceObject(Object obj) {
+            if (obj == definition) {
+                return ref;
+            }
+            return obj;
+        }
+    }
+
+    private static final class SnapshotInputStream extends ObjectInputStream {
+
+        private final ProcessDefinition definition;
+        private final HashCode hash;
+
+        private SnapshotInputStream(InputStream in, ProcessDefinition definition, HashCode hash) throws IOException {
+            super(in);
+            this.definition = definition;
+            this.hash = hash;
+            enableResolveObject(true);
+        }
+
+        @Override
+        protected Object resolveObject(Object obj) throws IOException {
+            if (obj instanceof DefinitionRef) {
+                HashCode h = HashCode.fromBytes(((DefinitionRef) obj).hash);
+                if (!h.equals(hash)) {
+                    throw new IOException("Unexpected process definition reference: " + h);
+                }
+                return definition;
+            }
+            return obj;
+        }
+    }
+
+    private static final class NonClosingOutputStream extends FilterOutputStream {
+
+        private NonClosingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush();
+        }
+    }
+
+    private ProcessSnapshotSerializer() {
+    }
+}
@@ -70,7 +70,7 @@ public class Runner {
         log.debug("start ['{}'] -> running...", processConfiguration.entryPoint());
 
         Command cmd = CompilerUtils.compile(compiler, processConfiguration, processDefinition, processConfiguration.entryPoint());
-        State state = new InMemoryState(cmd);
+        State state = new ConcurrentState(cmd);
 
         VM vm = createVM(processDefinition);
         // update the global variables using the input map by running a special command
@@ -78,7 +78,7 @@ public class Runner {
         // start the normal execution
         vm.start(state);
 
-        log.debug("start ['{}'] -> done", processConfiguration.entryPoint());
+        log.debug("start ['{}'] -> done, VM threads: {}", processConfiguration.entryPoint(), injector.getInstance(ThreadScheduler.class));
 
         return ProcessSnapshot.builder()
                 .vmState(state)
@@ -98,7 +98,7 @@ public class Runner {
         // resume normally
         vm.resume(state, eventRef);
 
-        log.debug("resume ['{}'] -> done", eventRef);
+        log.debug("resume ['{}'] -> done, VM threads: {}", eventRef, injector.getInstance(ThreadScheduler.class));
 
         return ProcessSnapshot.builder()
                 .from(snapshot)
@@ -0,0 +1,52 @@
+package com.walmartlabs.concord.runtime.v2.runner;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2019 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+import java.util.concurrent.Callable;
+
+/**
+ * Runs VM threads spawned by {@link com.walmartlabs.concord.svm.Runtime#spawn}.
+ */
+public interface ThreadScheduler {
+
+    /**
+     * Schedules the execution of a VM thread. The task can be queued
+     * if the max number of running VM threads is reached.
+     */
+    void submit(Runnable task);
+
+    /**
+     * Executes a blocking operation, e.g. waiting for other VM threads
+     * to complete. The calling VM thread's slot is released while the
+     * operation blocks.
+     */
+    <T> T block(Callable<T> callable) throws Exception;
+
+    /**
+     * Returns the number of currently running VM threads.
+     */
+    int runningCount();
+
+    /**
+     * Returns the number of VM threads waiting for a free slot.
+     */
+    int queuedCount();
+}
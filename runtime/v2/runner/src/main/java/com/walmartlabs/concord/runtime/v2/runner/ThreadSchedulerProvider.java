@@ -0,0 +1,41 @@
+package com.walmartlabs.concord.runtime.v2.runner;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2019 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+import com.walmartlabs.concord.runtime.v2.sdk.ProcessConfiguration;
+
+import javax.inject.Inject;
+import javax.inject.Provider;
+
+public class ThreadSchedulerProvider implements Provider<ThreadScheduler> {
+
+    private final ProcessConfiguration processConfiguration;
+
+    @Inject
+    public ThreadSchedulerProvider(ProcessConfiguration processConfiguration) {
+        this.processConfiguration = processConfiguration;
+    }
+
+    @Override
+    public ThreadScheduler get() {
+        return new DefaultThreadScheduler(processConfiguration.maxParallelism(), processConfiguration.virtualThreads());
+    }
+}
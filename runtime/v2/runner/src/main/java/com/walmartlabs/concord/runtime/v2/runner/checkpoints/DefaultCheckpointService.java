@@ -29,6 +29,7 @@ import com.walmartlabs.concord.runtime.common.cfg.RunnerConfiguration;
 import com.walmartlabs.concord.runtime.common.injector.InstanceId;
 import com.walmartlabs.concord.runtime.v2.runner.ExecutionMode;
 import com.walmartlabs.concord.runtime.v2.runner.ProcessSnapshot;
+import com.walmartlabs.concord.runtime.v2.runner.ProcessSnapshotSerializer;
 import com.walmartlabs.concord.runtime.v2.sdk.WorkingDirectory;
 import com.walmartlabs.concord.sdk.Constants;
 import com.walmartlabs.concord.svm.Runtime;
@@ -103,7 +104,7 @@ public class DefaultCheckpointService implements CheckpointService {
         }
 
         Path result = checkpointDir.resolve(checkpointId + "_" + checkpointName + ".zip");
-        StateManager.archive(workingDirectory.getValue(), snapshot, result);
+        StateManager.archive(workingDirectory.getValue(), ProcessSnapshotSerializer.writer(snapshot), result);
         return result;
     }
 
@@ -51,7 +51,7 @@ public class FlowCallCompiler implements StepCompiler<FlowCall> {
 
         WithItems withItems = options.withItems();
         if (withItems != null) {
-            cmd = new WithItemsWrapper(cmd, withItems, options.out());
+            cmd = new WithItemsWrapper(cmd, withItems, options.out(), options.parallelism());
         }
 
         List<Step> errorSteps = options.errorSteps();
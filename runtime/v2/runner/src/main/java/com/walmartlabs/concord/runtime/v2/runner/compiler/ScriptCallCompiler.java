@@ -52,7 +52,7 @@ public final class ScriptCallCompiler implements StepCompiler<ScriptCall> {
 
         WithItems withItems = options.withItems();
         if (withItems != null) {
-            cmd = new WithItemsWrapper(cmd, withItems, Collections.emptyList());
+            cmd = new WithItemsWrapper(cmd, withItems, Collections.emptyList(), options.parallelism());
         }
 
         List<Step> errorSteps = options.errorSteps();
@@ -52,7 +52,7 @@ public final class TaskCallCompiler implements StepCompiler<TaskCall> {
 
         WithItems withItems = options.withItems();
         if (withItems != null) {
-            cmd = new WithItemsWrapper(cmd, withItems, Collections.singletonList(options.out()));
+            cmd = new WithItemsWrapper(cmd, withItems, Collections.singletonList(options.out()), options.parallelism());
         }
 
         List<Step> errorSteps = options.errorSteps();
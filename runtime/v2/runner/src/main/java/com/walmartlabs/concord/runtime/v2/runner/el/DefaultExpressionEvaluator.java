@@ -23,11 +23,13 @@ package com.walmartlabs.concord.runtime.v2.runner.el;
 import com.walmartlabs.concord.runtime.v2.runner.tasks.TaskProviders;
 
 import javax.inject.Inject;
+import javax.inject.Singleton;
 import java.util.ArrayList;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
+@Singleton
 public class DefaultExpressionEvaluator implements ExpressionEvaluator {
 
     private final LazyExpressionEvaluator delegate;
@@ -20,6 +20,8 @@ package com.walmartlabs.concord.runtime.v2.runner.el;
  * =====
  */
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.walmartlabs.concord.runtime.v2.runner.el.functions.AllVariablesFunction;
 import com.walmartlabs.concord.runtime.v2.runner.el.functions.HasVariableFunction;
 import com.walmartlabs.concord.runtime.v2.runner.el.resolvers.BeanELResolver;
@@ -39,13 +41,40 @@ import static com.walmartlabs.concord.runtime.v2.runner.el.ThreadLocalEvalContex
  */
 public class LazyExpressionEvaluator implements ExpressionEvaluator {
 
+    private static final int EXPRESSION_CACHE_SIZE = 4096;
+
     private final ExpressionFactory expressionFactory = ExpressionFactory.newInstance();
     private final TaskProviders taskProviders;
     private final FunctionMapper functionMapper;
 
+    /**
+     * Parsed expressions. {@link ValueExpression} instances don't hold any
+     * evaluation state and can be shared between threads.
+     */
+    private final Cache<ExpressionKey, ValueExpression> expressionCache;
+
+    /**
+     * Context-independent resolvers, shared between evaluations.
+     */
+    private final ELResolver streamResolver;
+    private final ELResolver staticFieldResolver = new StaticFieldELResolver();
+    private final ELResolver mapResolver = new MapELResolver();
+    private final ELResolver resourceBundleResolver = new ResourceBundleELResolver();
+    private final ELResolver listResolver = new ListELResolver();
+    private final ELResolver arrayResolver = new ArrayELResolver();
+    private final ELResolver beanResolver = new BeanELResolver();
+
     public LazyExpressionEvaluator(TaskProviders taskProviders) {
+        this(taskProviders, EXPRESSION_CACHE_SIZE);
+    }
+
+    LazyExpressionEvaluator(TaskProviders taskProviders, int expressionCacheSize) {
         this.taskProviders = taskProviders;
         this.functionMapper = createFunctionMapper();
+        this.expressionCache = CacheBuilder.newBuilder()
+                .maximumSize(expressionCacheSize)
+                .build();
+        this.streamResolver = expressionFactory.getStreamELResolver();
     }
 
     @Override
@@ -123,18 +152,18 @@ public class LazyExpressionEvaluator implements ExpressionEvaluator {
 
     @Override
     public void setValue(EvalContext ctx, String expr, Object value) {
-        ELResolver resolver = createResolver(LazyEvalContext.of(ctx, null), expressionFactory);
+        ELResolver resolver = createResolver(LazyEvalContext.of(ctx, null));
 
         StandardELContext sc = new StandardELContext(expressionFactory);
         sc.putContext(ExpressionFactory.class, expressionFactory);
         sc.addELResolver(resolver);
 
-        ValueExpression x = expressionFactory.createValueExpression(sc, expr, Object.class);
+        ValueExpression x = getExpression(expr, Object.class);
         x.setValue(sc, value);
     }
 
     private <T> T evalExpr(LazyEvalContext ctx, String expr, Class<T> type) {
-        ELResolver resolver = createResolver(ctx, expressionFactory);
+        ELResolver resolver = createResolver(ctx);
 
         StandardELContext sc = new StandardELContext(expressionFactory) {
             @Override
@@ -149,7 +178,7 @@ public class LazyExpressionEvaluator implements ExpressionEvaluator {
         };
         sc.putContext(ExpressionFactory.class, expressionFactory);
 
-        ValueExpression x = expressionFactory.createValueExpression(sc, expr, type);
+        ValueExpression x = getExpression(expr, type);
         try {
             Object v = withEvalContext(ctx, () -> x.getValue(sc));
             return type.cast(v);
@@ -162,13 +191,37 @@ public class LazyExpressionEvaluator implements ExpressionEvaluator {
         }
     }
 
+    /**
+     * Returns a parsed expression. The functions are bound at parse time,
+     * the resolvers are provided by the evaluation context.
+     */
+    private ValueExpression getExpression(String expr, Class<?> type) {
+        ExpressionKey k = new ExpressionKey(expr, type);
+
+        ValueExpression x = expressionCache.getIfPresent(k);
+        if (x != null) {
+            return x;
+        }
+
+        StandardELContext sc = new StandardELContext(expressionFactory) {
+            @Override
+            public FunctionMapper getFunctionMapper() {
+                return functionMapper;
+            }
+        };
+
+        // parsing errors are not cached and thrown as is
+        x = expressionFactory.createValueExpression(sc, expr, type);
+        expressionCache.put(k, x);
+        return x;
+    }
+
     /**
      * Based on the original code from {@link StandardELContext#getELResolver()}.
      * Creates a {@link ELResolver} instance with "sub-resolvers" in the original order.
+     * Only the context-dependent resolvers are created for each call.
      */
-    private ELResolver createResolver(LazyEvalContext evalContext,
-                                      ExpressionFactory expressionFactory) {
-
+    private ELResolver createResolver(LazyEvalContext evalContext) {
         CompositeELResolver r = new CompositeELResolver();
         if (evalContext.scope() != null) {
             r.add(new VariableResolver(evalContext.scope()));
@@ -177,16 +230,16 @@ public class LazyExpressionEvaluator implements ExpressionEvaluator {
         if (evalContext.context() != null) {
             r.add(new TaskResolver(evalContext.context(), taskProviders));
         }
-        r.add(expressionFactory.getStreamELResolver());
-        r.add(new StaticFieldELResolver());
-        r.add(new MapELResolver());
-        r.add(new ResourceBundleELResolver());
-        r.add(new ListELResolver());
-        r.add(new ArrayELResolver());
+        r.add(streamResolver);
+        r.add(staticFieldResolver);
+        r.add(mapResolver);
+        r.add(resourceBundleResolver);
+        r.add(listResolver);
+        r.add(arrayResolver);
         if (evalContext.context() != null) {
             r.add(new TaskMethodResolver(evalContext.context()));
         }
-        r.add(new BeanELResolver());
+        r.add(beanResolver);
         return r;
     }
 
@@ -200,4 +253,28 @@ public class LazyExpressionEvaluator implements ExpressionEvaluator {
     private static boolean hasExpression(String s) {
         return s.contains("${");
     }
+
+    private static final class ExpressionKey {
+
+        private final String expr;
+        private final Class<?> type;
+
+        private ExpressionKey(String expr, Class<?> type) {
+            this.expr = expr;
+            this.type = type;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            ExpressionKey that = (ExpressionKey) o;
+            return expr.equals(that.expr) && type.equals(that.type);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * expr.hashCode() + type.hashCode();
+        }
+    }
 }
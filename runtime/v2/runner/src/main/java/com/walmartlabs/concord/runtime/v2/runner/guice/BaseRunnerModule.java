@@ -21,6 +21,7 @@ package com.walmartlabs.concord.runtime.v2.runner.guice;
  */
 
 import com.google.inject.AbstractModule;
+import com.google.inject.Singleton;
 import com.google.inject.multibindings.Multibinder;
 import com.walmartlabs.concord.policyengine.PolicyEngine;
 import com.walmartlabs.concord.runtime.common.FormService;
@@ -48,7 +49,7 @@ public class BaseRunnerModule extends AbstractModule {
         bind(ContextFactory.class).to(DefaultContextFactory.class);
         bind(FileService.class).to(DefaultFileService.class);
         bind(Compiler.class).to(DefaultCompiler.class);
-        bind(PolicyEngine.class).toProvider(PolicyEngineProvider.class);
+        bind(PolicyEngine.class).toProvider(PolicyEngineProvider.class).in(Singleton.class);
         bind(SynchronizationService.class).to(DefaultSynchronizationService.class);
         bind(ExpressionEvaluator.class).to(DefaultExpressionEvaluator.class);
         bind(ScriptEvaluator.class).to(DefaultScriptEvaluator.class);
@@ -56,6 +57,7 @@ public class BaseRunnerModule extends AbstractModule {
         bind(TaskResultService.class);
         bind(FormService.class).toProvider(FormServiceProvider.class);
         bind(Context.class).toProvider(ContextProvider.class);
+        bind(ThreadScheduler.class).toProvider(ThreadSchedulerProvider.class).in(Singleton.class);
 
         Multibinder<TaskProvider> taskProviders = Multibinder.newSetBinder(binder(), TaskProvider.class);
         taskProviders.addBinding().to(TaskV2Provider.class);
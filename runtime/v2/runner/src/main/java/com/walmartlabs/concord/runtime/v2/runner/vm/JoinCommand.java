@@ -20,6 +20,7 @@ package com.walmartlabs.concord.runtime.v2.runner.vm;
  * =====
  */
 
+import com.walmartlabs.concord.runtime.v2.runner.ThreadScheduler;
 import com.walmartlabs.concord.svm.Runtime;
 import com.walmartlabs.concord.svm.*;
 import org.slf4j.Logger;
@@ -27,6 +28,7 @@ import org.slf4j.LoggerFactory;
 
 import java.util.Collection;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 public class JoinCommand implements Command {
@@ -34,6 +36,8 @@ public class JoinCommand implements Command {
     private static final Logger log = LoggerFactory.getLogger(JoinCommand.class);
     private static final long serialVersionUID = 1L;
 
+    private static final long STATUS_CHECK_TIMEOUT = 1000;
+
     private final Collection<ThreadId> ids;
 
     public JoinCommand(Collection<ThreadId> ids) {
@@ -42,16 +46,17 @@ public class JoinCommand implements Command {
 
     @Override
     public void eval(Runtime runtime, State state, ThreadId threadId) {
-        // Here's a very dumb but working solution to the problem
-        // of monitoring the child "threads" state - just a loop
-        // waiting on a monitor . On each iteration it decides whether
-        // the join command can be removed from the stack (and thus
-        // continuing the execution) or not.
+        // Monitor the child "threads" state in a loop. The loop waits
+        // for a status change of the child threads signalled by the state. On each
+        // iteration it decides whether the join command can be removed
+        // from the stack (and thus continuing the execution) or not.
         // We could've used futures instead, but it's way more
         // complicated - especially when suspend/resume are involved.
 
+        ThreadScheduler scheduler = runtime.getService(ThreadScheduler.class);
+
+        Map<ThreadId, ThreadStatus> status = state.threadStatus();
         while (true) {
-            Map<ThreadId, ThreadStatus> status = state.threadStatus();
 
             boolean allDone = status.entrySet().stream()
                     .map(e -> ids.contains(e.getKey()) ? e.getValue() : ThreadStatus.DONE)
@@ -86,11 +91,17 @@ public class JoinCommand implements Command {
                         .collect(Collectors.toList()));
             }
 
-            // some children are still running, wait for a bit and then check again
+            // some children are still running, wait until any of them changes its status
+            // the timeout is just a safety net, the state notifies the waiters on each change
+            // the scheduler can run the children while the current thread is waiting
+            Map<ThreadId, ThreadStatus> snapshot = status;
             try {
-                Thread.sleep(1000); // a "good enough™" value
+                status = scheduler.block(() -> state.awaitStatusChange(ids, snapshot, STATUS_CHECK_TIMEOUT, TimeUnit.MILLISECONDS));
             } catch (InterruptedException e) {
                 Thread.currentThread().interrupt();
+                status = state.threadStatus();
+            } catch (Exception e) {
+                throw new RuntimeException(e);
             }
         }
     }
@@ -37,6 +37,10 @@ import java.util.stream.Collectors;
  * Wraps a command into a loop specified by {@code withItems} option.
  * Creates a new call frame and keeps the item list, the current item
  * and the index as frame-local variables.
+ * <p/>
+ * If {@code parallelism} is specified the items are processed in separate
+ * threads, up to {@code parallelism} items at a time. The {@code out}
+ * variables are collected in the order of items.
  */
 public class WithItemsWrapper implements Command {
 
@@ -50,11 +54,17 @@ public class WithItemsWrapper implements Command {
     private final Command cmd;
     private final WithItems withItems;
     private final List<String> outVariables;
+    private final Integer parallelism;
 
     public WithItemsWrapper(Command cmd, WithItems withItems, List<String> outVariables) {
+        this(cmd, withItems, outVariables, null);
+    }
+
+    public WithItemsWrapper(Command cmd, WithItems withItems, List<String> outVariables, Integer parallelism) {
         this.cmd = cmd;
         this.withItems = withItems;
         this.outVariables = outVariables;
+        this.parallelism = parallelism;
     }
 
     @Override
@@ -107,7 +117,7 @@ public class WithItemsWrapper implements Command {
         }
 
         for (int i = 0; i < items.size(); i++) {
-            Object item = items.get(0);
+            Object item = items.get(i);
             if (item == null || item instanceof Serializable) {
                 continue;
             }
@@ -115,6 +125,11 @@ public class WithItemsWrapper implements Command {
             throw new IllegalStateException("Can't use non-serializable values in 'withItems': " + item + " (" + item.getClass() + ")");
         }
 
+        if (parallelism != null) {
+            forkItems(state, threadId, frame, items);
+            return;
+        }
+
         Frame loop = Frame.builder()
                 .nonRoot()
                 .build();
@@ -138,6 +153,46 @@ public class WithItemsWrapper implements Command {
         state.pushFrame(threadId, cmdFrame);
     }
 
+    /**
+     * Splits the items into batches of {@link #parallelism} items. Each item
+     * of a batch is processed in a separate thread, the batches are separated
+     * by {@link JoinCommand}.
+     */
+    private void forkItems(State state, ThreadId threadId, Frame frame, ArrayList<Object> items) {
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException("'parallelism' must be a positive number, got: " + parallelism);
+        }
+
+        List<String> outVars = outVariables.stream()
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+
+        // the results are stored by the item index, so the order is the same as in the sequential mode
+        Frame targetFrame = VMUtils.assertNearestRoot(state, threadId);
+        for (String outVar : outVars) {
+            VMUtils.putLocal(targetFrame, outVar, new ArrayList<>(Collections.nCopies(items.size(), null)));
+        }
+
+        List<Command> commands = new ArrayList<>();
+        for (int start = 0; start < items.size(); start += parallelism) {
+            int end = Math.min(start + parallelism, items.size());
+
+            Set<ThreadId> forkIds = new HashSet<>();
+            for (int i = start; i < end; i++) {
+                ThreadId forkId = state.nextThreadId();
+                forkIds.add(forkId);
+                commands.add(new ForkCommand(forkId, new ForkedItem(cmd, items, i, outVars, targetFrame)));
+            }
+
+            commands.add(new JoinCommand(forkIds));
+        }
+
+        // to preserve the original order the commands must be added onto
+        // the stack in the reversed order
+        Collections.reverse(commands);
+        commands.forEach(frame::push);
+    }
+
     public static class WithItemsNext implements Command {
 
         private static final long serialVersionUID = 1L;
@@ -183,6 +238,48 @@ public class WithItemsWrapper implements Command {
         }
     }
 
+    /**
+     * Runs the wrapped command for a single item in a forked thread.
+     * The thread's root frame is used as the loop frame.
+     */
+    private static class ForkedItem implements Command {
+
+        private static final long serialVersionUID = 1L;
+
+        private final Command cmd;
+        private final ArrayList<Object> items;
+        private final int index;
+        private final List<String> outVariables;
+        private final Frame targetFrame;
+
+        private ForkedItem(Command cmd, ArrayList<Object> items, int index, List<String> outVariables, Frame targetFrame) {
+            this.cmd = cmd;
+            this.items = items;
+            this.index = index;
+            this.outVariables = outVariables;
+            this.targetFrame = targetFrame;
+        }
+
+        @Override
+        public void eval(Runtime runtime, State state, ThreadId threadId) {
+            Frame loop = state.peekFrame(threadId);
+            loop.pop();
+
+            loop.setLocal(CURRENT_ITEMS, items);
+            loop.setLocal(CURRENT_INDEX, index);
+            loop.setLocal(CURRENT_ITEM, (Serializable) items.get(index));
+
+            Frame cmdFrame = Frame.builder()
+                    .commands(cmd)
+                    .root()
+                    .build();
+
+            loop.push(new SetItemVariablesCommand(outVariables, index, cmdFrame, targetFrame));
+
+            state.pushFrame(threadId, cmdFrame);
+        }
+    }
+
     private static class PrepareOutVariables implements Command {
 
         private static final long serialVersionUID = 1L;
@@ -247,6 +344,46 @@ public class WithItemsWrapper implements Command {
         }
     }
 
+    /**
+     * Sets values of the specified variables from the source frame into
+     * list variables in the target frame using the specified index.
+     */
+    private static class SetItemVariablesCommand implements Command {
+
+        private static final long serialVersionUID = 1L;
+
+        private final List<String> variables;
+        private final int index;
+        private final Frame sourceFrame;
+        private final Frame targetFrame;
+
+        private SetItemVariablesCommand(List<String> variables, int index, Frame sourceFrame, Frame targetFrame) {
+            this.variables = variables;
+            this.index = index;
+            this.sourceFrame = sourceFrame;
+            this.targetFrame = targetFrame;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public void eval(Runtime runtime, State state, ThreadId threadId) {
+            Frame frame = state.peekFrame(threadId);
+            frame.pop();
+
+            for (String v : variables) {
+                Serializable result = null;
+                if (sourceFrame.hasLocal(v)) {
+                    result = sourceFrame.getLocal(v);
+                }
+
+                ArrayList<Serializable> results = (ArrayList<Serializable>) targetFrame.getLocal(v);
+                synchronized (results) {
+                    results.set(index, result);
+                }
+            }
+        }
+    }
+
     private static class SerializableEntry implements Map.Entry<Serializable, Serializable>, Serializable {
 
         private static final long serialVersionUID = 1L;
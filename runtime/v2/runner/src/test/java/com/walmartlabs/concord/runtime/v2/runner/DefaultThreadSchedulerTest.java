@@ -0,0 +1,99 @@
+package com.walmartlabs.concord.runtime.v2.runner;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2019 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class DefaultThreadSchedulerTest {
+
+    @Test(timeout = 30000)
+    public void testMaxParallelism() throws Exception {
+        int maxParallelism = 4;
+        int tasks = 100;
+
+        DefaultThreadScheduler scheduler = new DefaultThreadScheduler(maxParallelism, false);
+
+        AtomicInteger maxRunning = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(tasks);
+
+        for (int i = 0; i < tasks; i++) {
+            scheduler.submit(() -> {
+                maxRunning.accumulateAndGet(scheduler.runningCount(), Math::max);
+                sleep(5);
+                done.countDown();
+            });
+        }
+
+        assertTrue(scheduler.queuedCount() > 0);
+
+        done.await();
+
+        assertTrue("max running: " + maxRunning.get(), maxRunning.get() <= maxParallelism);
+        assertEquals(0, scheduler.queuedCount());
+    }
+
+    @Test(timeout = 30000)
+    public void testBlockingParents() throws Exception {
+        // more blocked "parent" threads than available slots, the children must still run
+        int parents = 8;
+        int childrenPerParent = 4;
+
+        DefaultThreadScheduler scheduler = new DefaultThreadScheduler(2, false);
+
+        CountDownLatch done = new CountDownLatch(parents);
+
+        for (int i = 0; i < parents; i++) {
+            scheduler.submit(() -> {
+                CountDownLatch children = new CountDownLatch(childrenPerParent);
+                for (int j = 0; j < childrenPerParent; j++) {
+                    scheduler.submit(children::countDown);
+                }
+
+                try {
+                    scheduler.block(() -> children.await(20, TimeUnit.SECONDS));
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+
+                if (children.getCount() == 0) {
+                    done.countDown();
+                }
+            });
+        }
+
+        assertTrue(done.await(20, TimeUnit.SECONDS));
+    }
+
+    private static void sleep(long ms) {
+        try {
+            Thread.sleep(ms);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -513,6 +513,18 @@ public class MainTest {
         assertLog(log, ".*result: \\[10, 20, 30\\].*");
     }
 
+    @Test
+    public void testParallelWithItems() throws Exception {
+        deploy("parallelWithItems");
+
+        save(ProcessConfiguration.builder()
+                .build());
+
+        byte[] log = run();
+        assertLog(log, ".*x: \\[10, 20, 30, 40, 50, 60, 70\\].*");
+        assertLog(log, ".*y: \\[a-0, b-1, c-2\\].*");
+    }
+
     @Test
     public void testUnknownMethod() throws Exception {
         deploy("unknownMethod");
@@ -675,6 +687,22 @@ public class MainTest {
         assertLog(log, ".*y: 234.*");
     }
 
+    @Test(timeout = 10000)
+    public void testParallelJoin() throws Exception {
+        deploy("parallelJoin");
+
+        save(ProcessConfiguration.builder()
+                .build());
+
+        // 20 sequential joins, each one used to take at least a second
+        long t1 = System.currentTimeMillis();
+        byte[] log = run();
+        long t2 = System.currentTimeMillis();
+
+        assertLog(log, ".*a: 20, b: 200, c: 2000.*");
+        assertTrue("Expected the joins to complete without polling, took " + (t2 - t1) + "ms", t2 - t1 < 5000);
+    }
+
     @Test
     public void testReentrant() throws Exception {
         deploy("reentrantTask");
@@ -0,0 +1,151 @@
+package com.walmartlabs.concord.runtime.v2.runner;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2020 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+import com.walmartlabs.concord.runtime.v2.model.ProcessDefinition;
+import com.walmartlabs.concord.runtime.v2.parser.YamlParserV2;
+import com.walmartlabs.concord.svm.ConcurrentState;
+import com.walmartlabs.concord.svm.Frame;
+import com.walmartlabs.concord.svm.State;
+import com.walmartlabs.concord.svm.ThreadId;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the time and the size of {@link ProcessSnapshot} serialization
+ * using plain Java serialization and {@link ProcessSnapshotSerializer}.
+ * The snapshot sizes are printed during the setup.
+ */
+@org.openjdk.jmh.annotations.State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ProcessSnapshotBenchmark {
+
+    @Param({"10", "100", "1000"})
+    public int flows;
+
+    @Param({"10", "1000"})
+    public int variables;
+
+    private ProcessSnapshot snapshot;
+
+    @Setup
+    public void setup() throws Exception {
+        ProcessDefinition pd = createDefinition(flows);
+
+        State state = new ConcurrentState(Frame.builder().root().build());
+        ThreadId rootThreadId = state.getRootThreadId();
+
+        Frame frame = state.peekFrame(rootThreadId);
+        for (int i = 0; i < variables; i++) {
+            Map<String, Object> m = new HashMap<>();
+            m.put("id", i);
+            m.put("name", "item_" + i);
+            frame.setLocal("var" + i, new HashMap<>(m));
+        }
+
+        snapshot = ProcessSnapshot.builder()
+                .vmState(state)
+                .processDefinition(pd)
+                .build();
+
+        ByteArrayOutputStream plain = new ByteArrayOutputStream();
+        javaSerialization(plain);
+
+        ByteArrayOutputStream compact = new ByteArrayOutputStream();
+        compact(compact);
+
+        int definitionSize = ProcessSnapshotSerializer.serializeDefinition(pd).getData().length;
+
+        System.out.printf("%nflows=%d, variables=%d: java=%d bytes, compact=%d bytes (+%d bytes of the definition, written once)%n",
+                flows, variables, plain.size(), compact.size(), definitionSize);
+    }
+
+    @Benchmark
+    public int javaSerialization() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        javaSerialization(out);
+        return out.size();
+    }
+
+    @Benchmark
+    public int compact() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        compact(out);
+        return out.size();
+    }
+
+    private void javaSerialization(OutputStream out) throws IOException {
+        try (ObjectOutputStream oos = new ObjectOutputStream(out)) {
+            oos.writeObject(snapshot);
+        }
+    }
+
+    private void compact(OutputStream out) throws IOException {
+        ProcessSnapshotSerializer.SerializedDefinition def = ProcessSnapshotSerializer.serializeDefinition(snapshot.processDefinition());
+        ProcessSnapshotSerializer.serialize(out, snapshot, def.getHash());
+    }
+
+    private static ProcessDefinition createDefinition(int flows) throws IOException {
+        List<String> lines = new ArrayList<>();
+        lines.add("flows:");
+        for (int i = 0; i < flows; i++) {
+            lines.add("  flow" + i + ":");
+            lines.add("    - log: \"flow #" + i + ", ${x}\"");
+            lines.add("    - set:");
+            lines.add("        x: \"${x + 1}\"");
+            lines.add("    - if: ${x > 10}");
+            lines.add("      then:");
+            lines.add("        - call: flow" + ((i + 1) % flows));
+        }
+
+        Path tmp = Files.createTempFile("concord", ".yml");
+        try {
+            Files.write(tmp, lines);
+            return new YamlParserV2().parse(tmp.getParent(), tmp);
+        } finally {
+            Files.delete(tmp);
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(ProcessSnapshotBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
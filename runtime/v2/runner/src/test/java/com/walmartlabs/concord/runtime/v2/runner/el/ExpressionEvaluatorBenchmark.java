@@ -0,0 +1,97 @@
+package com.walmartlabs.concord.runtime.v2.runner.el;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2020 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+import com.walmartlabs.concord.runtime.v2.runner.tasks.TaskProviders;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the expression evaluation throughput for typical flow expressions,
+ * e.g. the ones used in {@code withItems} loops. {@code cacheSize = 0} disables
+ * the parsed expression cache.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ExpressionEvaluatorBenchmark {
+
+    private static final String[] EXPRESSIONS = {
+            "${item.name}",
+            "Processing ${item.name} (${item.id}) of ${items.size()}",
+            "${item.id % 2 == 0 ? 'even' : 'odd'}",
+            "${hasVariable('retries') ? retries : 3}",
+            "${item.enabled && item.id > 10}"
+    };
+
+    @Param({"0", "4096"})
+    public int cacheSize;
+
+    private LazyExpressionEvaluator evaluator;
+    private List<EvalContext> contexts;
+
+    @Setup
+    public void setup() {
+        evaluator = new LazyExpressionEvaluator(new TaskProviders(), cacheSize);
+
+        List<Map<String, Object>> items = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            Map<String, Object> item = new HashMap<>();
+            item.put("id", i);
+            item.put("name", "item-" + i);
+            item.put("enabled", i % 3 != 0);
+            items.add(item);
+        }
+
+        contexts = new ArrayList<>(items.size());
+        for (Map<String, Object> item : items) {
+            Map<String, Object> vars = new HashMap<>();
+            vars.put("item", item);
+            vars.put("items", items);
+            contexts.add(EvalContextFactory.global(new SingleFrameContext(vars)));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(500)
+    public void eval(Blackhole bh) {
+        for (EvalContext ctx : contexts) {
+            for (String expr : EXPRESSIONS) {
+                bh.consume(evaluator.eval(ctx, expr, Object.class));
+            }
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(ExpressionEvaluatorBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -47,6 +47,29 @@ public class ExpressionEvaluatorTest {
         assertEquals("Hello ${Concord}", str);
     }
 
+    @Test
+    public void testCachedExpressions() {
+        ExpressionEvaluator ee = new DefaultExpressionEvaluator(new TaskProviders());
+
+        for (int i = 0; i < 3; i++) {
+            Map<String, Object> vars = Collections.singletonMap("x", i);
+
+            assertEquals("x=" + i, ee.eval(global(vars), "x=${x}", String.class));
+            assertEquals(i + 1L, (long) ee.eval(global(vars), "${x + 1}", Long.class));
+            assertEquals(true, ee.eval(global(vars), "${hasVariable('x')}", Boolean.class));
+        }
+
+        // parse errors are not cached
+        for (int i = 0; i < 2; i++) {
+            try {
+                ee.eval(global(Collections.emptyMap()), "${x +}", Object.class);
+                fail("exception expected");
+            } catch (javax.el.ELException e) {
+                // expected
+            }
+        }
+    }
+
     @Test
     public void testStrict() {
         ExpressionEvaluator ee = new DefaultExpressionEvaluator(new TaskProviders());
@@ -29,10 +29,12 @@ import com.walmartlabs.concord.svm.Runtime;
 import com.walmartlabs.concord.svm.*;
 
 import javax.annotation.Nullable;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.TimeUnit;
 
 public class SingleFrameContext extends DummyContext {
 
@@ -119,6 +121,11 @@ public class SingleFrameContext extends DummyContext {
                         throw new IllegalStateException("Not implemented");
                     }
 
+                    @Override
+                    public Map<ThreadId, ThreadStatus> awaitStatusChange(Collection<ThreadId> ids, Map<ThreadId, ThreadStatus> snapshot, long timeout, TimeUnit unit) {
+                        throw new IllegalStateException("Not implemented");
+                    }
+
                     @Override
                     public void setEventRef(ThreadId threadId, String eventRef) {
                         throw new IllegalStateException("Not implemented");
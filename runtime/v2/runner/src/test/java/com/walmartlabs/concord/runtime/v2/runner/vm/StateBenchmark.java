@@ -0,0 +1,140 @@
+package com.walmartlabs.concord.runtime.v2.runner.vm;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2020 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+import com.walmartlabs.concord.svm.Runtime;
+import com.walmartlabs.concord.svm.*;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.*;
+
+/**
+ * Measures the VM's command throughput (commands per second) depending on
+ * the number of concurrently running VM threads and the {@link State}
+ * implementation.
+ */
+@org.openjdk.jmh.annotations.State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StateBenchmark {
+
+    private static final int TOTAL_COMMANDS = 100_000;
+
+    @Param({"inMemory", "concurrent"})
+    public String stateType;
+
+    @Param({"1", "8", "64", "200"})
+    public int threads;
+
+    private ExecutorService executor;
+    private VM vm;
+    private Runtime runtime;
+
+    @Setup
+    public void setup() {
+        executor = Executors.newFixedThreadPool(threads);
+        vm = new VM(v -> null, Collections.emptyList());
+        runtime = new Runtime() {
+            @Override
+            public void spawn(State state, ThreadId threadId) {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public <T> T getService(Class<T> klass) {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    @TearDown
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(TOTAL_COMMANDS)
+    public void eval() throws Exception {
+        State state = createState();
+
+        int commandsPerThread = TOTAL_COMMANDS / threads;
+
+        List<ThreadId> ids = new ArrayList<>(threads);
+        for (int i = 0; i < threads; i++) {
+            Command[] cmds = new Command[commandsPerThread];
+            for (int j = 0; j < commandsPerThread; j++) {
+                cmds[j] = new NoopCommand();
+            }
+
+            ThreadId id = state.nextThreadId();
+            state.fork(state.getRootThreadId(), id, cmds);
+            ids.add(id);
+        }
+
+        List<Future<?>> futures = new ArrayList<>(threads);
+        for (ThreadId id : ids) {
+            futures.add(executor.submit(() -> {
+                vm.eval(runtime, state, id);
+                return null;
+            }));
+        }
+
+        for (Future<?> f : futures) {
+            f.get();
+        }
+    }
+
+    private State createState() {
+        switch (stateType) {
+            case "inMemory":
+                return new InMemoryState(new NoopCommand());
+            case "concurrent":
+                return new ConcurrentState(new NoopCommand());
+            default:
+                throw new IllegalArgumentException("Unknown state type: " + stateType);
+        }
+    }
+
+    private static class NoopCommand implements Command {
+
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public void eval(Runtime runtime, State state, ThreadId threadId) {
+            state.peekFrame(threadId).pop();
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(StateBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -101,6 +101,23 @@ public interface ProcessConfiguration extends Serializable {
         return Collections.emptyList();
     }
 
+    /**
+     * Max number of concurrently running VM threads, e.g. {@code parallel} branches.
+     * The rest of the threads are queued. {@code 0} means unlimited.
+     */
+    @Value.Default
+    default int maxParallelism() {
+        return 128;
+    }
+
+    /**
+     * Run the VM threads using virtual threads if the JVM supports them.
+     */
+    @Value.Default
+    default boolean virtualThreads() {
+        return false;
+    }
+
     static ImmutableProcessConfiguration.Builder builder() {
         return ImmutableProcessConfiguration.builder();
     }
@@ -0,0 +1,229 @@
+package com.walmartlabs.concord.svm;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2019 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Serializable;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * {@link State} implementation suitable for flows with many concurrent threads.
+ * Unlike {@link InMemoryState} it doesn't use a single lock: each thread has
+ * its own frame stack, thread statuses are kept in a concurrent map and
+ * thread IDs are generated atomically. The threads waiting in
+ * {@link #awaitStatusChange(Collection, Map, long, TimeUnit)} are woken up
+ * only by the status changes of the threads they wait for.
+ */
+public class ConcurrentState implements Serializable, State {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final Logger log = LoggerFactory.getLogger(ConcurrentState.class);
+
+    private final ConcurrentMap<ThreadId, Deque<Frame>> frames = new ConcurrentHashMap<>();
+    private final ConcurrentMap<ThreadId, ThreadStatus> threadStatus = new ConcurrentHashMap<>();
+    private final ConcurrentMap<ThreadId, Set<ThreadId>> children = new ConcurrentHashMap<>();
+    private final ConcurrentMap<ThreadId, String> eventRefs = new ConcurrentHashMap<>();
+    private final ConcurrentMap<ThreadId, Exception> threadErrors = new ConcurrentHashMap<>();
+
+    private final StatusWaiters statusWaiters = new StatusWaiters();
+    private final AtomicLong threadIdSeq = new AtomicLong();
+
+    private final ThreadId rootThreadId;
+
+    public ConcurrentState(Frame rootFrame) {
+        this.rootThreadId = nextThreadId();
+        pushFrame(rootThreadId, rootFrame);
+    }
+
+    public ConcurrentState(Command cmd) {
+        this(Frame.builder()
+                .root()
+                .commands(cmd)
+                .build());
+    }
+
+    @Override
+    public void pushFrame(ThreadId threadId, Frame frame) {
+        log.trace("pushFrame {}", threadId);
+
+        frames.computeIfAbsent(threadId, key -> new ConcurrentLinkedDeque<>())
+                .addFirst(frame);
+    }
+
+    @Override
+    public Frame peekFrame(ThreadId threadId) {
+        Deque<Frame> l = frames.get(threadId);
+        if (l == null) {
+            return null;
+        }
+
+        return l.peekFirst();
+    }
+
+    @Override
+    public void popFrame(ThreadId threadId) {
+        log.trace("popFrame {}", threadId);
+
+        Deque<Frame> l = frames.get(threadId);
+        if (l == null) {
+            throw new IllegalStateException("Call frame doesn't exist: " + threadId);
+        }
+
+        l.pollFirst();
+    }
+
+    @Override
+    public List<Frame> getFrames(ThreadId threadId) {
+        Deque<Frame> l = frames.get(threadId);
+        if (l == null) {
+            throw new IllegalStateException("Call frame doesn't exist: " + threadId);
+        }
+
+        return Collections.unmodifiableList(new ArrayList<>(l));
+    }
+
+    @Override
+    public void dropAllFrames() {
+        frames.clear();
+    }
+
+    @Override
+    public void setStatus(ThreadId threadId, ThreadStatus status) {
+        ThreadStatus prev = threadStatus.put(threadId, status);
+        if (prev != status) {
+            statusWaiters.signal(threadId);
+        }
+    }
+
+    @Override
+    public ThreadStatus getStatus(ThreadId threadId) {
+        return threadStatus.get(threadId);
+    }
+
+    @Override
+    public ThreadId getRootThreadId() {
+        return rootThreadId;
+    }
+
+    @Override
+    public void fork(ThreadId parentThreadId, ThreadId threadId, Command... cmds) {
+        pushFrame(threadId, Frame.builder()
+                .root()
+                .commands(cmds)
+                .build());
+
+        children.computeIfAbsent(parentThreadId, k -> ConcurrentHashMap.newKeySet())
+                .add(threadId);
+
+        // the thread becomes visible as READY only after its frame is ready
+        setStatus(threadId, ThreadStatus.READY);
+    }
+
+    @Override
+    public Map<ThreadId, ThreadStatus> threadStatus() {
+        return new HashMap<>(threadStatus);
+    }
+
+    @Override
+    public Map<ThreadId, ThreadStatus> awaitStatusChange(Collection<ThreadId> ids, Map<ThreadId, ThreadStatus> snapshot, long timeout, TimeUnit unit) throws InterruptedException {
+        statusWaiters.await(ids, snapshot, threadStatus::get, timeout, unit);
+        return threadStatus();
+    }
+
+    @Override
+    public ThreadId nextThreadId() {
+        return new ThreadId(threadIdSeq.getAndIncrement());
+    }
+
+    @Override
+    public void setEventRef(ThreadId threadId, String eventRef) {
+        // TODO check for uniqueness
+
+        String old = eventRefs.putIfAbsent(threadId, eventRef);
+        if (old != null) {
+            throw new IllegalStateException("Thread " + threadId + " already had an unprocessed event ref registered: " + old);
+        }
+    }
+
+    @Override
+    public ThreadId removeEventRef(String eventRef) {
+        for (Map.Entry<ThreadId, String> e : eventRefs.entrySet()) {
+            if (eventRef.equals(e.getValue()) && eventRefs.remove(e.getKey(), eventRef)) {
+                return e.getKey();
+            }
+        }
+
+        return null;
+    }
+
+    @Override
+    public Map<ThreadId, String> getEventRefs() {
+        return Collections.unmodifiableMap(eventRefs);
+    }
+
+    @Override
+    public void setThreadError(ThreadId threadId, Exception error) {
+        if (error == null) {
+            threadErrors.remove(threadId);
+            return;
+        }
+
+        threadErrors.put(threadId, error);
+    }
+
+    @Override
+    public Exception clearThreadError(ThreadId threadId) {
+        return threadErrors.remove(threadId);
+    }
+
+    @Override
+    public void gc() {
+        List<ThreadId> ids = new ArrayList<>();
+        for (Map.Entry<ThreadId, ThreadStatus> e : threadStatus.entrySet()) {
+            ThreadStatus s = e.getValue();
+            if (s == ThreadStatus.DONE || (s == ThreadStatus.FAILED && !threadErrors.containsKey(e.getKey()))) {
+                ids.add(e.getKey());
+            }
+        }
+
+        if (ids.isEmpty()) {
+            return;
+        }
+
+        for (ThreadId k : ids) {
+            threadErrors.remove(k);
+            threadStatus.remove(k);
+            frames.remove(k);
+            eventRefs.remove(k);
+            children.remove(k);
+
+            statusWaiters.signal(k);
+        }
+    }
+}
@@ -25,6 +25,7 @@ import org.slf4j.LoggerFactory;
 
 import java.io.Serializable;
 import java.util.*;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -42,6 +43,7 @@ public class InMemoryState implements Serializable, State {
     private final Map<ThreadId, Set<ThreadId>> children = new HashMap<>();
     private final Map<ThreadId, String> eventRefs = new HashMap<>();
     private final Map<ThreadId, Exception> threadErrors = new HashMap<>();
+    private final StatusWaiters statusWaiters = new StatusWaiters();
 
     private final ThreadId rootThreadId;
 
@@ -117,7 +119,11 @@ public class InMemoryState implements Serializable, State {
     @Override
     public void setStatus(ThreadId threadId, ThreadStatus status) {
         synchronized (this) {
-            threadStatus.put(threadId, status);
+            ThreadStatus prev = threadStatus.put(threadId, status);
+            if (prev != status) {
+                // wake up the threads waiting in awaitStatusChange
+                statusWaiters.signal(threadId);
+            }
         }
     }
 
@@ -154,6 +160,13 @@ public class InMemoryState implements Serializable, State {
         }
     }
 
+    @Override
+    public Map<ThreadId, ThreadStatus> awaitStatusChange(Collection<ThreadId> ids, Map<ThreadId, ThreadStatus> snapshot, long timeout, TimeUnit unit) throws InterruptedException {
+        // waits without holding the state's lock
+        statusWaiters.await(ids, snapshot, this::getStatus, timeout, unit);
+        return threadStatus();
+    }
+
     @Override
     public ThreadId nextThreadId() {
         synchronized (this) {
@@ -236,6 +249,7 @@ public class InMemoryState implements Serializable, State {
                         frames.remove(k);
                         eventRefs.remove(k);
                         children.remove(k);
+                        statusWaiters.signal(k);
                     });
         }
     }
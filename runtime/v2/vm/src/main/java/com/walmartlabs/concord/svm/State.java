@@ -21,8 +21,10 @@ package com.walmartlabs.concord.svm;
  */
 
 import java.io.Serializable;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Describes the state of the VM.
@@ -81,6 +83,14 @@ public interface State extends Serializable {
      */
     Map<ThreadId, ThreadStatus> threadStatus();
 
+    /**
+     * Waits until the status of any of the specified threads differs from
+     * the snapshot or until the timeout expires. Changes of other threads
+     * don't wake up the caller. Returns a new snapshot of the current thread
+     * statuses.
+     */
+    Map<ThreadId, ThreadStatus> awaitStatusChange(Collection<ThreadId> ids, Map<ThreadId, ThreadStatus> snapshot, long timeout, TimeUnit unit) throws InterruptedException;
+
     /**
      * Returns a next thread ID. Unique per {@link State} instance.
      */
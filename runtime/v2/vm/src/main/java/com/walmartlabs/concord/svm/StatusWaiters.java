@@ -0,0 +1,108 @@
+package com.walmartlabs.concord.svm;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2019 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+import java.io.Serializable;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Threads waiting for status changes of specific threads.
+ * A status change wakes up only the waiters registered for the changed thread.
+ * <p>
+ * The waiters are not serialized, a deserialized instance has none.
+ */
+final class StatusWaiters implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private transient ConcurrentMap<ThreadId, Set<Waiter>> waiters = new ConcurrentHashMap<>();
+
+    /**
+     * Waits until the status of any of the specified threads differs from
+     * the snapshot or until the timeout expires.
+     *
+     * @param currentStatus returns the current status of a thread, called
+     *                      after the waiter is registered, so a concurrent
+     *                      change is never missed
+     */
+    void await(Collection<ThreadId> ids, Map<ThreadId, ThreadStatus> snapshot,
+               Function<ThreadId, ThreadStatus> currentStatus,
+               long timeout, TimeUnit unit) throws InterruptedException {
+
+        Waiter w = new Waiter();
+
+        for (ThreadId id : ids) {
+            waiters.compute(id, (k, s) -> {
+                if (s == null) {
+                    s = ConcurrentHashMap.newKeySet();
+                }
+                s.add(w);
+                return s;
+            });
+        }
+
+        try {
+            for (ThreadId id : ids) {
+                if (!Objects.equals(currentStatus.apply(id), snapshot.get(id))) {
+                    return;
+                }
+            }
+
+            w.latch.await(timeout, unit);
+        } finally {
+            for (ThreadId id : ids) {
+                waiters.computeIfPresent(id, (k, s) -> {
+                    s.remove(w);
+                    return s.isEmpty() ? null : s;
+                });
+            }
+        }
+    }
+
+    /**
+     * Wakes up the threads waiting for a status change of the specified thread.
+     */
+    void signal(ThreadId id) {
+        Set<Waiter> s = waiters.get(id);
+        if (s == null) {
+            return;
+        }
+
+        s.forEach(w -> w.latch.countDown());
+    }
+
+    private Object readResolve() {
+        return new StatusWaiters();
+    }
+
+    private static final class Waiter {
+
+        private final CountDownLatch latch = new CountDownLatch(1);
+    }
+}
@@ -70,6 +70,10 @@ public final class PgUtils {
         return DSL.field("upper({0})", Integer.class, field);
     }
 
+    public static Field<Integer> lowerRange(Field<Object> field) {
+        return DSL.field("lower({0})", Integer.class, field);
+    }
+
     public static Field<Long> length(Field<byte[]> field) {
         return DSL.field("length({0})", Long.class, field);
     }
@@ -25,16 +25,17 @@ import com.walmartlabs.concord.server.agent.AgentWorkerEntry;
 
 import java.util.Collection;
 import java.util.Map;
-import java.util.function.Function;
 import java.util.stream.Collectors;
 
 public final class AgentWorkerUtils {
 
     public static Map<Object, Long> groupBy(Collection<AgentWorkerEntry> data, String[] path) {
+        // each agent can ask for multiple processes at once, count the slots
         return data.stream()
-                .map(e -> ConfigurationUtils.get(e.capabilities(), path))
-                .map(e -> e != null ? e : "n/a")
-                .collect(Collectors.groupingBy(Function.identity(), Collectors.counting()));
+                .collect(Collectors.groupingBy(e -> {
+                    Object v = ConfigurationUtils.get(e.capabilities(), path);
+                    return v != null ? v : "n/a";
+                }, Collectors.summingLong(AgentWorkerEntry::slots)));
     }
 
     private AgentWorkerUtils() {
@@ -30,6 +30,8 @@ import javax.inject.Inject;
 import javax.inject.Named;
 import javax.inject.Singleton;
 import java.sql.CallableStatement;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 
 /**
  * Locking mechanism based on DB (advisory) locks
@@ -39,6 +41,8 @@ import java.sql.CallableStatement;
 public class Locks {
 
     private static final String LOCK_SQL = "{ call pg_advisory_xact_lock(?) }";
+    private static final String TRY_LOCK_SQL = "select pg_try_advisory_xact_lock(?)";
+    private static final String LOCK_PAIR_SQL = "{ call pg_advisory_xact_lock(?, ?) }";
 
     private final LockingConfiguration cfg;
 
@@ -61,6 +65,39 @@ public class Locks {
         });
     }
 
+    /**
+     * Acquires a transaction-level lock on a pair of keys. The keys of the pair
+     * form a separate key space: such locks never conflict with the locks
+     * acquired with a single key.
+     */
+    @WithTimer
+    public void lock(DSLContext tx, int namespace, int key) {
+        tx.connection(conn -> {
+            try (CallableStatement cs = conn.prepareCall(LOCK_PAIR_SQL)) {
+                cs.setInt(1, namespace);
+                cs.setInt(2, key);
+                cs.execute();
+            }
+        });
+    }
+
+    /**
+     * Tries to acquire a transaction-level lock without waiting.
+     *
+     * @return {@code true} if the lock was acquired
+     */
+    @WithTimer
+    public boolean tryLock(DSLContext tx, long key) {
+        return tx.connectionResult(conn -> {
+            try (PreparedStatement ps = conn.prepareStatement(TRY_LOCK_SQL)) {
+                ps.setLong(1, key);
+                try (ResultSet rs = ps.executeQuery()) {
+                    return rs.next() && rs.getBoolean(1);
+                }
+            }
+        });
+    }
+
     @SuppressWarnings("UnstableApiUsage")
     private long hash(String key) {
         HashCode hc = HashCode.fromBytes(key.getBytes());
@@ -65,7 +65,7 @@ public abstract class PeriodicTask implements BackgroundTask {
             try {
                 boolean isContinue = performTask();
                 if (!isContinue) {
-                    sleep(interval);
+                    idle(interval);
                 }
             } catch (Exception e) {
                 log.warn("run -> task {} error: {}. Will retry in {}ms...", taskName(), e.getMessage(), errorDelay, e);
@@ -80,6 +80,13 @@ public abstract class PeriodicTask implements BackgroundTask {
 
     protected abstract boolean performTask() throws Exception;
 
+    /**
+     * Called when there's nothing to do. Subclasses can override it to wake up earlier.
+     */
+    protected void idle(long ms) {
+        sleep(ms);
+    }
+
     protected static void sleep(long ms) {
         try {
             Thread.sleep(ms);
@@ -72,6 +72,7 @@ public class AgentManager {
                         .agentId(r.getKey().getAgentId())
                         .userAgent(r.getKey().getUserAgent())
                         .capabilities(r.getValue().getCapabilities())
+                        .slots(r.getValue().getSlots())
                         .build())
                 .collect(Collectors.toList());
     }
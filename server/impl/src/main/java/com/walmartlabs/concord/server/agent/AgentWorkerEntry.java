@@ -45,6 +45,14 @@ public interface AgentWorkerEntry {
     @Nullable
     Map<String, Object> capabilities();
 
+    /**
+     * Number of processes the worker is ready to accept.
+     */
+    @Value.Default
+    default int slots() {
+        return 1;
+    }
+
     static ImmutableAgentWorkerEntry.Builder builder() {
         return ImmutableAgentWorkerEntry.builder();
     }
@@ -145,6 +145,8 @@ public class HttpServer {
             }
 
             FilterHolder holder = new FilterHolder(filter);
+            // required for the async requests of the servlets behind the filter
+            holder.setAsyncSupported(true);
             for (String pathSpec : annotation.value()) {
                 log.info("Servlet -> {} @ {}", filter.getClass(), pathSpec);
                 contextHandler.addFilter(holder, pathSpec, EnumSet.allOf(DispatcherType.class));
@@ -157,6 +159,7 @@ public class HttpServer {
                 continue;
             }
 
+            holder.setAsyncSupported(true);
             for (String pathSpec : annotation.value()) {
                 log.info("Filter -> {} @ {}", holder.getClass(), pathSpec);
                 contextHandler.addFilter(holder, pathSpec, EnumSet.of(DispatcherType.REQUEST, DispatcherType.FORWARD, DispatcherType.INCLUDE, DispatcherType.ERROR));
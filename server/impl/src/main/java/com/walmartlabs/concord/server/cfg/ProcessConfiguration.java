@@ -83,10 +83,50 @@ public class ProcessConfiguration implements Serializable {
     @Config("process.logSizeLimit")
     private int logSizeLimit;
 
+    @Inject
+    @Config("process.logBatchMaxSize")
+    private int logBatchMaxSize;
+
     @Inject
     @Config("process.checkLogPermissions")
     private boolean checkLogPermissions;
 
+    @Inject
+    @Config("process.logArchiveInterval")
+    private Duration logArchiveInterval;
+
+    @Inject
+    @Config("process.logArchiveDelay")
+    private String logArchiveDelay;
+
+    @Inject
+    @Config("process.logArchiveBatchSize")
+    private int logArchiveBatchSize;
+
+    @Inject
+    @Config("process.logArchiveMaxSize")
+    private int logArchiveMaxSize;
+
+    @Inject
+    @Config("process.logTailCacheSize")
+    private long logTailCacheSize;
+
+    @Inject
+    @Config("process.logTailCacheSegmentSize")
+    private int logTailCacheSegmentSize;
+
+    @Inject
+    @Config("process.workspaceScanParallelism")
+    private int workspaceScanParallelism;
+
+    @Inject
+    @Config("process.attachmentsMaxSize")
+    private long attachmentsMaxSize;
+
+    @Inject
+    @Config("process.attachmentsMaxEntries")
+    private int attachmentsMaxEntries;
+
     @Inject
     public ProcessConfiguration(@Config("process.signingKeyPath") @Nullable String signingKeyPath) {
         this.signingKeyPath = signingKeyPath != null ? Paths.get(signingKeyPath) : null;
@@ -145,7 +185,47 @@ public class ProcessConfiguration implements Serializable {
         return logSizeLimit;
     }
 
+    public int getLogBatchMaxSize() {
+        return logBatchMaxSize;
+    }
+
     public boolean isCheckLogPermissions() {
         return checkLogPermissions;
     }
+
+    public Duration getLogArchiveInterval() {
+        return logArchiveInterval;
+    }
+
+    public String getLogArchiveDelay() {
+        return logArchiveDelay;
+    }
+
+    public int getLogArchiveBatchSize() {
+        return logArchiveBatchSize;
+    }
+
+    public int getLogArchiveMaxSize() {
+        return logArchiveMaxSize;
+    }
+
+    public long getLogTailCacheSize() {
+        return logTailCacheSize;
+    }
+
+    public int getLogTailCacheSegmentSize() {
+        return logTailCacheSegmentSize;
+    }
+
+    public int getWorkspaceScanParallelism() {
+        return workspaceScanParallelism;
+    }
+
+    public long getAttachmentsMaxSize() {
+        return attachmentsMaxSize;
+    }
+
+    public int getAttachmentsMaxEntries() {
+        return attachmentsMaxEntries;
+    }
 }
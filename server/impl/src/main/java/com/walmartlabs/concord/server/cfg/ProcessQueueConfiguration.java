@@ -40,6 +40,14 @@ public class ProcessQueueConfiguration implements Serializable {
     @Config("queue.dispatcher.batchSize")
     private int dispatcherBatchSize;
 
+    @Inject
+    @Config("queue.dispatcher.mode")
+    private String dispatcherMode;
+
+    @Inject
+    @Config("queue.dispatcher.shardCount")
+    private int dispatcherShardCount;
+
     public Duration getDispatcherPollDelay() {
         return dispatcherPollDelay;
     }
@@ -47,4 +55,26 @@ public class ProcessQueueConfiguration implements Serializable {
     public int getDispatcherBatchSize() {
         return dispatcherBatchSize;
     }
+
+    public DispatcherMode getDispatcherMode() {
+        return DispatcherMode.valueOf(dispatcherMode.toUpperCase());
+    }
+
+    public int getDispatcherShardCount() {
+        return dispatcherShardCount;
+    }
+
+    public enum DispatcherMode {
+
+        /**
+         * All server nodes share a single DB lock while dispatching.
+         */
+        GLOBAL,
+
+        /**
+         * The queue is split into shards by organization, each shard is
+         * locked separately. Busy shards are skipped instead of waited on.
+         */
+        SHARDED
+    }
 }
@@ -25,6 +25,7 @@ import com.walmartlabs.ollie.config.Config;
 import javax.inject.Inject;
 import javax.inject.Named;
 import javax.inject.Singleton;
+import java.time.Duration;
 import java.util.List;
 import java.util.Map;
 
@@ -48,6 +49,18 @@ public class TriggersConfiguration {
     @Config("triggers.defaultConfiguration")
     private Map<String, Object> defaultConfiguration;
 
+    @Inject
+    @Config("triggers.indexRefreshPeriod")
+    private Duration indexRefreshPeriod;
+
+    @Inject
+    @Config("triggers.cronWorkers")
+    private int cronWorkers;
+
+    @Inject
+    @Config("triggers.cronBatchSize")
+    private int cronBatchSize;
+
     public boolean isDisableAll() {
         return disableAll;
     }
@@ -64,4 +77,16 @@ public class TriggersConfiguration {
         return defaultConfiguration;
     }
 
+    public Duration getIndexRefreshPeriod() {
+        return indexRefreshPeriod;
+    }
+
+    public int getCronWorkers() {
+        return cronWorkers;
+    }
+
+    public int getCronBatchSize() {
+        return cronBatchSize;
+    }
+
 }
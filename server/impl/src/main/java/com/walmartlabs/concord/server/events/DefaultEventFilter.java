@@ -22,6 +22,7 @@ package com.walmartlabs.concord.server.events;
 
 import com.walmartlabs.concord.common.MapMatcher;
 import com.walmartlabs.concord.server.org.triggers.TriggerEntry;
+import com.walmartlabs.concord.server.org.triggers.TriggerIndex.CompiledTrigger;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -40,6 +41,20 @@ public final class DefaultEventFilter {
         }
     }
 
+    public static boolean filter(Map<String, Object> conditions, CompiledTrigger t) {
+        MapMatcher.Compiled matcher = t.getMatcher();
+        if (matcher == null) {
+            return filter(conditions, t.getTrigger());
+        }
+
+        try {
+            return matcher.matches(conditions);
+        } catch (Exception e) {
+            log.warn("filter [{}, {}] -> error while matching events: {}", conditions, t.getTrigger(), e.getMessage());
+            return false;
+        }
+    }
+
     private DefaultEventFilter() {
     }
 }
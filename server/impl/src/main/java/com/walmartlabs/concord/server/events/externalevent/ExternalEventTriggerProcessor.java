@@ -22,7 +22,8 @@ package com.walmartlabs.concord.server.events.externalevent;
 
 import com.walmartlabs.concord.server.events.DefaultEventFilter;
 import com.walmartlabs.concord.server.org.triggers.TriggerEntry;
-import com.walmartlabs.concord.server.org.triggers.TriggersDao;
+import com.walmartlabs.concord.server.org.triggers.TriggerIndex;
+import com.walmartlabs.concord.server.org.triggers.TriggerIndex.CompiledTrigger;
 
 import javax.inject.Inject;
 import java.util.Collections;
@@ -32,23 +33,23 @@ import java.util.Map;
 
 public abstract class ExternalEventTriggerProcessor {
 
-    private final TriggersDao dao;
+    private final TriggerIndex triggerIndex;
     private final int version;
 
     @Inject
-    public ExternalEventTriggerProcessor(TriggersDao dao, int version) {
-        this.dao = dao;
+    public ExternalEventTriggerProcessor(TriggerIndex triggerIndex, int version) {
+        this.triggerIndex = triggerIndex;
         this.version = version;
     }
 
     public void process(String eventName, Map<String, Object> event, List<Result> result) {
-        List<TriggerEntry> triggers = listTriggers(eventName);
+        List<CompiledTrigger> triggers = listTriggers(eventName);
 
         Map<String, Object> updatedEvent = buildEvent(event);
 
-        for (TriggerEntry t : triggers) {
+        for (CompiledTrigger t : triggers) {
             if (DefaultEventFilter.filter(updatedEvent, t)) {
-                result.add(ExternalEventTriggerProcessor.Result.from(updatedEvent, t));
+                result.add(ExternalEventTriggerProcessor.Result.from(updatedEvent, t.getTrigger()));
             }
         }
     }
@@ -59,8 +60,8 @@ public abstract class ExternalEventTriggerProcessor {
         return m;
     }
 
-    private List<TriggerEntry> listTriggers(String eventName) {
-        return dao.list(eventName, version, null);
+    private List<CompiledTrigger> listTriggers(String eventName) {
+        return triggerIndex.list(eventName, version);
     }
 
     public static class Result {
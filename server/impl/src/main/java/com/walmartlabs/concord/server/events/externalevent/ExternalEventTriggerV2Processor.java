@@ -20,7 +20,7 @@ package com.walmartlabs.concord.server.events.externalevent;
  * =====
  */
 
-import com.walmartlabs.concord.server.org.triggers.TriggersDao;
+import com.walmartlabs.concord.server.org.triggers.TriggerIndex;
 
 import javax.inject.Inject;
 import javax.inject.Named;
@@ -31,7 +31,7 @@ import javax.inject.Singleton;
 public class ExternalEventTriggerV2Processor extends ExternalEventTriggerProcessor {
 
     @Inject
-    public ExternalEventTriggerV2Processor(TriggersDao dao) {
-        super(dao, 2);
+    public ExternalEventTriggerV2Processor(TriggerIndex triggerIndex) {
+        super(triggerIndex, 2);
     }
 }
\ No newline at end of file
@@ -26,7 +26,8 @@ import com.walmartlabs.concord.server.events.DefaultEventFilter;
 import com.walmartlabs.concord.server.org.project.RepositoryDao;
 import com.walmartlabs.concord.server.org.project.RepositoryEntry;
 import com.walmartlabs.concord.server.org.triggers.TriggerEntry;
-import com.walmartlabs.concord.server.org.triggers.TriggersDao;
+import com.walmartlabs.concord.server.org.triggers.TriggerIndex;
+import com.walmartlabs.concord.server.org.triggers.TriggerIndex.CompiledTrigger;
 import com.walmartlabs.concord.server.sdk.metrics.WithTimer;
 import com.walmartlabs.concord.server.security.github.GithubKey;
 
@@ -45,12 +46,12 @@ public class GithubTriggerV2Processor implements GithubTriggerProcessor {
 
     private static final int VERSION_ID = 2;
 
-    private final TriggersDao dao;
+    private final TriggerIndex triggerIndex;
     private final List<EventEnricher> eventEnrichers;
 
     @Inject
-    public GithubTriggerV2Processor(TriggersDao dao, List<EventEnricher> eventEnrichers) {
-        this.dao = dao;
+    public GithubTriggerV2Processor(TriggerIndex triggerIndex, List<EventEnricher> eventEnrichers) {
+        this.triggerIndex = triggerIndex;
         this.eventEnrichers = eventEnrichers;
     }
 
@@ -60,17 +61,27 @@ public class GithubTriggerV2Processor implements GithubTriggerProcessor {
         GithubKey githubKey = GithubKey.getCurrent();
         UUID projectId = githubKey.getProjectId();
 
-        List<TriggerEntry> triggers = listTriggers(projectId, payload.getOrg(), payload.getRepo());
-        for (TriggerEntry t : triggers) {
+        List<CompiledTrigger> triggers = listTriggers(projectId, payload.getOrg(), payload.getRepo());
+        if (triggers.isEmpty()) {
+            return;
+        }
+
+        boolean emptyPush = GithubUtils.isEmptyPush(eventName, payload);
+        Map<String, Object> baseEvent = buildEvent(eventName, payload);
+
+        for (CompiledTrigger ct : triggers) {
+            TriggerEntry t = ct.getTrigger();
+
             // skip empty push events if the trigger's configuration says so
-            if (GithubUtils.ignoreEmptyPush(t) && GithubUtils.isEmptyPush(eventName, payload)) {
+            if (emptyPush && GithubUtils.ignoreEmptyPush(t)) {
                 continue;
             }
 
-            Map<String, Object> event = buildEvent(eventName, payload);
+            // enrichers can add trigger-specific values
+            Map<String, Object> event = new HashMap<>(baseEvent);
             enrichEventConditions(payload, t, event);
 
-            if (DefaultEventFilter.filter(event, t)) {
+            if (DefaultEventFilter.filter(event, ct)) {
                 result.add(Result.from(event, t));
             }
         }
@@ -83,7 +94,7 @@ public class GithubTriggerV2Processor implements GithubTriggerProcessor {
     }
 
     @WithTimer
-    List<TriggerEntry> listTriggers(UUID projectId, String org, String repo) {
+    List<CompiledTrigger> listTriggers(UUID projectId, String org, String repo) {
         Map<String, String> conditions = new HashMap<>();
 
         if (org != null) {
@@ -94,7 +105,7 @@ public class GithubTriggerV2Processor implements GithubTriggerProcessor {
             conditions.put(GITHUB_REPO_KEY, repo);
         }
 
-        return dao.list(projectId, EVENT_SOURCE, VERSION_ID, conditions);
+        return triggerIndex.list(projectId, EVENT_SOURCE, VERSION_ID, conditions);
     }
 
     private Map<String, Object> buildEvent(String eventName, Payload payload) {
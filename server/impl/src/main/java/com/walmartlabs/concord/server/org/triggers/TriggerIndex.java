@@ -0,0 +1,302 @@
+package com.walmartlabs.concord.server.org.triggers;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2020 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.walmartlabs.concord.common.MapMatcher;
+import com.walmartlabs.concord.server.PeriodicTask;
+import com.walmartlabs.concord.server.cfg.TriggersConfiguration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+import static com.walmartlabs.concord.server.events.github.Constants.GITHUB_ORG_KEY;
+import static com.walmartlabs.concord.server.events.github.Constants.GITHUB_REPO_KEY;
+
+/**
+ * In-memory index of triggers with pre-compiled conditions. Used to match
+ * external events (GitHub notifications, external events, etc) without
+ * querying the DB for each event.
+ * <p>
+ * Triggers are grouped by the event source and the version. Triggers with
+ * literal (non-regex) {@code githubOrg} and {@code githubRepo} conditions are
+ * additionally grouped by those values.
+ * <p>
+ * {@link TriggerManager} invalidates the index after each change, the index
+ * is reloaded on the next lookup. Changes made by other server nodes are
+ * detected by comparing the trigger IDs' hash every
+ * {@link TriggersConfiguration#getIndexRefreshPeriod()}.
+ */
+@Named
+@Singleton
+public class TriggerIndex extends PeriodicTask {
+
+    private static final Logger log = LoggerFactory.getLogger(TriggerIndex.class);
+
+    private static final long ERROR_DELAY = TimeUnit.SECONDS.toMillis(10);
+    private static final String DEFAULT_VERSION = "1";
+    private static final String VERSION_KEY = "version";
+    private static final Pattern LITERAL = Pattern.compile("[A-Za-z0-9_\\-]+");
+
+    private final TriggersDao dao;
+    private final boolean enabled;
+
+    private final Object reloadMutex = new Object();
+    private volatile Snapshot snapshot;
+    private volatile boolean dirty = true;
+
+    private final Meter reloadMeter;
+
+    @Inject
+    public TriggerIndex(TriggersConfiguration cfg,
+                        TriggersDao dao,
+                        MetricRegistry metricRegistry) {
+
+        super(cfg.getIndexRefreshPeriod().toMillis(), ERROR_DELAY);
+
+        this.dao = dao;
+        this.enabled = cfg.getIndexRefreshPeriod().toMillis() > 0;
+
+        this.reloadMeter = metricRegistry.meter("trigger-index-reloads");
+        metricRegistry.gauge("trigger-index-size", () -> () -> {
+            Snapshot s = snapshot;
+            return s != null ? s.size : 0;
+        });
+    }
+
+    /**
+     * Marks the index as stale. The index is reloaded on the next lookup.
+     */
+    public void invalidate() {
+        dirty = true;
+    }
+
+    /**
+     * Returns the triggers of the specified event source and version.
+     * The caller must match the triggers' conditions with the event.
+     *
+     * @see TriggersDao#list(String, Integer, Map)
+     */
+    public List<CompiledTrigger> list(String eventSource, int version) {
+        return list(null, eventSource, version, null);
+    }
+
+    /**
+     * Returns the triggers of the specified event source and version.
+     * If the {@code conditions} contain both {@code githubOrg} and
+     * {@code githubRepo} only the triggers that can match those values
+     * are returned. The caller must match the triggers' conditions with
+     * the event.
+     *
+     * @see TriggersDao#list(UUID, String, Integer, Map)
+     */
+    public List<CompiledTrigger> list(UUID projectId, String eventSource, int version, Map<String, String> conditions) {
+        if (!enabled) {
+            return dao.list(projectId, eventSource, version, conditions).stream()
+                    .map(t -> new CompiledTrigger(t, null))
+                    .collect(Collectors.toList());
+        }
+
+        Bucket b = snapshot().buckets.get(new BucketKey(eventSource, String.valueOf(version)));
+        if (b == null) {
+            return Collections.emptyList();
+        }
+
+        List<CompiledTrigger> result = new ArrayList<>();
+
+        String key = conditions != null ? literalKey(conditions.get(GITHUB_ORG_KEY), conditions.get(GITHUB_REPO_KEY)) : null;
+        if (key != null) {
+            filter(b.byRepo.getOrDefault(key, Collections.emptyList()), projectId, result);
+            filter(b.wildcards, projectId, result);
+        } else {
+            b.byRepo.values().forEach(l -> filter(l, projectId, result));
+            filter(b.wildcards, projectId, result);
+        }
+
+        return result;
+    }
+
+    @Override
+    protected boolean performTask() {
+        Snapshot s = snapshot;
+        if (s == null || dirty || !Objects.equals(s.fingerprint, dao.fingerprint())) {
+            reload();
+        }
+        return false;
+    }
+
+    private Snapshot snapshot() {
+        Snapshot s = snapshot;
+        if (s != null && !dirty) {
+            return s;
+        }
+
+        synchronized (reloadMutex) {
+            if (snapshot == null || dirty) {
+                reload();
+            }
+            return snapshot;
+        }
+    }
+
+    private void reload() {
+        synchronized (reloadMutex) {
+            long t1 = System.currentTimeMillis();
+
+            // clear the flag first, the invalidations made during the reload cause another one
+            dirty = false;
+
+            String fingerprint = dao.fingerprint();
+            List<TriggerEntry> triggers = dao.listAll();
+
+            Map<BucketKey, Bucket> buckets = new HashMap<>();
+            for (TriggerEntry t : triggers) {
+                Map<String, Object> conditions = t.getConditions() != null ? t.getConditions() : Collections.emptyMap();
+
+                Object v = conditions.get(VERSION_KEY);
+                BucketKey bk = new BucketKey(t.getEventSource(), v != null ? String.valueOf(v) : DEFAULT_VERSION);
+                Bucket b = buckets.computeIfAbsent(bk, k -> new Bucket());
+
+                CompiledTrigger ct = new CompiledTrigger(t, compile(t));
+
+                String key = literalKey(conditions.get(GITHUB_ORG_KEY), conditions.get(GITHUB_REPO_KEY));
+                if (key != null) {
+                    b.byRepo.computeIfAbsent(key, k -> new ArrayList<>()).add(ct);
+                } else {
+                    b.wildcards.add(ct);
+                }
+            }
+
+            this.snapshot = new Snapshot(fingerprint, buckets, triggers.size());
+            reloadMeter.mark();
+
+            long t2 = System.currentTimeMillis();
+            log.info("reload -> done, {} trigger(s), took {}ms", triggers.size(), (t2 - t1));
+        }
+    }
+
+    private static MapMatcher.Compiled compile(TriggerEntry t) {
+        try {
+            return MapMatcher.compile(t.getConditions());
+        } catch (Exception e) {
+            // invalid conditions never match, the error is logged when the trigger is matched
+            return null;
+        }
+    }
+
+    private static void filter(List<CompiledTrigger> src, UUID projectId, List<CompiledTrigger> dst) {
+        if (projectId == null) {
+            dst.addAll(src);
+            return;
+        }
+
+        for (CompiledTrigger t : src) {
+            if (projectId.equals(t.getTrigger().getProjectId())) {
+                dst.add(t);
+            }
+        }
+    }
+
+    private static String literalKey(Object org, Object repo) {
+        if (!isLiteral(org) || !isLiteral(repo)) {
+            return null;
+        }
+        return org + "/" + repo;
+    }
+
+    private static boolean isLiteral(Object v) {
+        return v instanceof String && LITERAL.matcher((String) v).matches();
+    }
+
+    public static final class CompiledTrigger {
+
+        private final TriggerEntry trigger;
+        private final MapMatcher.Compiled matcher;
+
+        private CompiledTrigger(TriggerEntry trigger, MapMatcher.Compiled matcher) {
+            this.trigger = trigger;
+            this.matcher = matcher;
+        }
+
+        public TriggerEntry getTrigger() {
+            return trigger;
+        }
+
+        /**
+         * @return the pre-compiled conditions or {@code null} if the conditions
+         * must be evaluated as is (e.g. if they can't be compiled).
+         */
+        public MapMatcher.Compiled getMatcher() {
+            return matcher;
+        }
+    }
+
+    private static final class Snapshot {
+
+        private final String fingerprint;
+        private final Map<BucketKey, Bucket> buckets;
+        private final int size;
+
+        private Snapshot(String fingerprint, Map<BucketKey, Bucket> buckets, int size) {
+            this.fingerprint = fingerprint;
+            this.buckets = buckets;
+            this.size = size;
+        }
+    }
+
+    private static final class Bucket {
+
+        private final Map<String, List<CompiledTrigger>> byRepo = new HashMap<>();
+        private final List<CompiledTrigger> wildcards = new ArrayList<>();
+    }
+
+    private static final class BucketKey {
+
+        private final String eventSource;
+        private final String version;
+
+        private BucketKey(String eventSource, String version) {
+            this.eventSource = eventSource;
+            this.version = version;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            BucketKey bucketKey = (BucketKey) o;
+            return eventSource.equals(bucketKey.eventSource) && version.equals(bucketKey.version);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(eventSource, version);
+        }
+    }
+}
@@ -57,6 +57,7 @@ public class TriggerManager extends AbstractDao {
     private final TriggersDao triggersDao;
     private final PolicyManager policyManager;
     private final TriggersConfiguration triggersCfg;
+    private final TriggerIndex triggerIndex;
 
     private final CronTriggerProcessor cronTriggerProcessor;
     private final GithubTriggerEnricher githubTriggerEnricher;
@@ -67,6 +68,7 @@ public class TriggerManager extends AbstractDao {
                           TriggersDao triggersDao,
                           PolicyManager policyManager,
                           TriggersConfiguration triggersCfg,
+                          TriggerIndex triggerIndex,
                           CronTriggerProcessor cronTriggerProcessor,
                           GithubTriggerEnricher githubTriggerEnricher) {
 
@@ -76,6 +78,7 @@ public class TriggerManager extends AbstractDao {
         this.triggersDao = triggersDao;
         this.policyManager = policyManager;
         this.triggersCfg = triggersCfg;
+        this.triggerIndex = triggerIndex;
 
         this.cronTriggerProcessor = cronTriggerProcessor;
         this.githubTriggerEnricher = githubTriggerEnricher;
@@ -118,6 +121,8 @@ public class TriggerManager extends AbstractDao {
             }
         });
 
+        triggerIndex.invalidate();
+
         log.info("refresh ['{}', '{}'] -> done, triggers count: {}", projectId, repoId, pd.triggers().size());
     }
 
@@ -29,12 +29,16 @@ import com.walmartlabs.concord.server.jooq.tables.Projects;
 import com.walmartlabs.concord.server.jooq.tables.Repositories;
 import com.walmartlabs.concord.server.jooq.tables.Triggers;
 import org.jooq.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import javax.inject.Inject;
 import javax.inject.Named;
+import java.time.Duration;
 import java.time.OffsetDateTime;
 import java.time.ZoneId;
 import java.util.*;
+import java.util.stream.Collectors;
 
 import static com.walmartlabs.concord.server.jooq.Tables.*;
 import static com.walmartlabs.concord.server.jooq.tables.TriggerSchedule.TRIGGER_SCHEDULE;
@@ -44,6 +48,8 @@ import static org.jooq.impl.DSL.*;
 @Named
 public class TriggerScheduleDao extends AbstractDao {
 
+    private static final Logger log = LoggerFactory.getLogger(TriggerScheduleDao.class);
+
     private final ConcordObjectMapper objectMapper;
 
     @Inject
@@ -54,97 +60,86 @@ public class TriggerScheduleDao extends AbstractDao {
         this.objectMapper = objectMapper;
     }
 
-    public TriggerSchedulerEntry findNext() {
+    /**
+     * Claims up to {@code limit} due triggers and moves them to their next
+     * execution time. Triggers claimed by other server nodes are skipped.
+     * Triggers that can't be rescheduled are removed from the schedule.
+     */
+    public Batch poll(int limit) {
         return txResult(tx -> {
-            // TODO fetch everything in a single request?
-            Map<String, Object> e = tx.select(TRIGGER_SCHEDULE.TRIGGER_ID, TRIGGER_SCHEDULE.FIRE_AT)
+            List<Record2<UUID, OffsetDateTime>> due = tx.select(TRIGGER_SCHEDULE.TRIGGER_ID, TRIGGER_SCHEDULE.FIRE_AT)
                     .from(TRIGGER_SCHEDULE)
                     .where(TRIGGER_SCHEDULE.FIRE_AT.le(currentOffsetDateTime()))
-                    .limit(1)
+                    .orderBy(TRIGGER_SCHEDULE.FIRE_AT)
+                    .limit(limit)
                     .forUpdate()
                     .skipLocked()
-                    .fetchOneMap();
+                    .fetch();
 
-            if (e == null) {
-                return null;
+            if (due.isEmpty()) {
+                return new Batch(null, Collections.emptyList());
             }
 
-            UUID id = (UUID) e.get(TRIGGER_SCHEDULE.TRIGGER_ID.getName());
-            OffsetDateTime fireAt = (OffsetDateTime) e.get(TRIGGER_SCHEDULE.FIRE_AT.getName());
-
-            Triggers t = TRIGGERS.as("t");
-            Projects p = PROJECTS.as("p");
-            Repositories r = REPOSITORIES.as("r");
-            Organizations o = ORGANIZATIONS.as("o");
-
-            Field<UUID> orgIdField = select(p.ORG_ID).from(p).where(p.PROJECT_ID.eq(t.PROJECT_ID)).asField();
-
-            Record13<UUID, UUID, String, UUID, String, UUID, String, String[], JSONB, JSONB, JSONB, OffsetDateTime, String> record = tx.select(
-                    t.TRIGGER_ID,
-                    orgIdField,
-                    o.ORG_NAME,
-                    t.PROJECT_ID,
-                    p.PROJECT_NAME,
-                    t.REPO_ID,
-                    r.REPO_NAME,
-                    t.ACTIVE_PROFILES,
-                    t.ARGUMENTS,
-                    t.TRIGGER_CFG,
-                    t.CONDITIONS,
-                    currentOffsetDateTime(),
-                    t.EVENT_SOURCE)
-                    .from(t, p, r, o)
-                    .where(t.TRIGGER_ID.eq(id).
-                            and(t.PROJECT_ID.eq(p.PROJECT_ID)).
-                            and(p.PROJECT_ID.eq(r.PROJECT_ID)).
-                            and(p.ORG_ID.eq(o.ORG_ID)).
-                            and(t.REPO_ID.eq(r.REPO_ID)))
-                    .fetchOne();
-
-            if (record == null) {
-                return null;
+            List<UUID> ids = due.stream()
+                    .map(Record2::value1)
+                    .collect(Collectors.toList());
+
+            Map<UUID, Record12<UUID, UUID, String, UUID, String, UUID, String, String[], JSONB, JSONB, JSONB, String>> records = new HashMap<>();
+            for (Record12<UUID, UUID, String, UUID, String, UUID, String, String[], JSONB, JSONB, JSONB, String> r : selectEntries(tx, ids)) {
+                records.put(r.value1(), r);
             }
 
-            UUID triggerId = record.value1();
-            UUID orgId = record.value2();
-            String organizationName = record.value3();
-            UUID projectId = record.value4();
-            String projectName = record.value5();
-            UUID repoId = record.value6();
-            String repositoryName = record.value7();
-            List<String> activeProfiles = toList(record.value8());
-            Map<String, Object> arguments = objectMapper.fromJSONB(record.value9());
-            Map<String, Object> cfg = objectMapper.fromJSONB(record.value10());
-            Map<String, Object> conditions = objectMapper.fromJSONB(record.value11());
-            OffsetDateTime now = record.value12();
-            String eventSource = record.value13();
-
-            TriggerSchedulerEntry result = new TriggerSchedulerEntry(
-                    fireAt,
-                    triggerId,
-                    orgId,
-                    organizationName,
-                    projectId,
-                    projectName,
-                    repoId,
-                    repositoryName,
-                    conditions,
-                    cfg,
-                    activeProfiles,
-                    arguments,
-                    eventSource);
-
-            ZoneId zoneId = null;
-            if (conditions.get(Constants.Trigger.CRON_TIMEZONE) != null) {
-                zoneId = TimeZone.getTimeZone((String) conditions.get(Constants.Trigger.CRON_TIMEZONE)).toZoneId();
+            OffsetDateTime now = tx.select(currentOffsetDateTime()).fetchOne(Record1::value1);
+
+            List<TriggerSchedulerEntry> result = new ArrayList<>(due.size());
+            Map<UUID, OffsetDateTime> next = new LinkedHashMap<>();
+            List<UUID> unschedulable = new ArrayList<>();
+
+            for (Record2<UUID, OffsetDateTime> d : due) {
+                UUID id = d.value1();
+
+                Record12<UUID, UUID, String, UUID, String, UUID, String, String[], JSONB, JSONB, JSONB, String> r = records.get(id);
+                TriggerSchedulerEntry e = r != null ? toEntry(d.value2(), r) : null;
+
+                OffsetDateTime fireAt = e != null ? nextExecution(now, e) : null;
+                if (fireAt == null) {
+                    log.warn("poll -> can't reschedule trigger '{}', removing it from the schedule", id);
+                    unschedulable.add(id);
+                    continue;
+                }
+
+                next.put(id, fireAt);
+                result.add(e);
             }
 
-            updateFireAt(tx, id, CronUtils.nextExecution(now, (String) conditions.get(Constants.Trigger.CRON_SPEC), zoneId));
+            updateFireAt(tx, next);
 
-            return result;
+            if (!unschedulable.isEmpty()) {
+                tx.deleteFrom(TRIGGER_SCHEDULE)
+                        .where(TRIGGER_SCHEDULE.TRIGGER_ID.in(unschedulable))
+                        .execute();
+            }
+
+            return new Batch(now, result);
         });
     }
 
+    /**
+     * @return the time left until the next scheduled trigger (negative if
+     * the trigger is overdue) or {@code null} if there are no scheduled triggers.
+     */
+    public Duration nextFireDelay() {
+        Record2<OffsetDateTime, OffsetDateTime> r = dsl().select(min(TRIGGER_SCHEDULE.FIRE_AT), currentOffsetDateTime())
+                .from(TRIGGER_SCHEDULE)
+                .fetchOne();
+
+        if (r.value1() == null) {
+            return null;
+        }
+
+        return Duration.between(r.value2(), r.value1());
+    }
+
     public OffsetDateTime now() {
         return txResult(tx -> tx.select(currentOffsetDateTime().as("now"))
                 .fetchOne(field("now", OffsetDateTime.class)));
@@ -157,11 +152,81 @@ public class TriggerScheduleDao extends AbstractDao {
                 .execute();
     }
 
-    private void updateFireAt(DSLContext tx, UUID triggerId, OffsetDateTime fireAt) {
-        tx.update(TRIGGER_SCHEDULE)
-                .set(TRIGGER_SCHEDULE.FIRE_AT, fireAt)
-                .where(TRIGGER_SCHEDULE.TRIGGER_ID.eq(triggerId))
-                .execute();
+    private void updateFireAt(DSLContext tx, Map<UUID, OffsetDateTime> fireAt) {
+        if (fireAt.isEmpty()) {
+            return;
+        }
+
+        BatchBindStep q = tx.batch(tx.update(TRIGGER_SCHEDULE)
+                .set(TRIGGER_SCHEDULE.FIRE_AT, (OffsetDateTime) null)
+                .where(TRIGGER_SCHEDULE.TRIGGER_ID.eq((UUID) null)));
+
+        fireAt.forEach((id, t) -> q.bind(t, id));
+
+        q.execute();
+    }
+
+    private SelectConditionStep<Record12<UUID, UUID, String, UUID, String, UUID, String, String[], JSONB, JSONB, JSONB, String>> selectEntries(DSLContext tx, Collection<UUID> ids) {
+        Triggers t = TRIGGERS.as("t");
+        Projects p = PROJECTS.as("p");
+        Repositories r = REPOSITORIES.as("r");
+        Organizations o = ORGANIZATIONS.as("o");
+
+        return tx.select(
+                t.TRIGGER_ID,
+                p.ORG_ID,
+                o.ORG_NAME,
+                t.PROJECT_ID,
+                p.PROJECT_NAME,
+                t.REPO_ID,
+                r.REPO_NAME,
+                t.ACTIVE_PROFILES,
+                t.ARGUMENTS,
+                t.TRIGGER_CFG,
+                t.CONDITIONS,
+                t.EVENT_SOURCE)
+                .from(t, p, r, o)
+                .where(t.TRIGGER_ID.in(ids).
+                        and(t.PROJECT_ID.eq(p.PROJECT_ID)).
+                        and(p.PROJECT_ID.eq(r.PROJECT_ID)).
+                        and(p.ORG_ID.eq(o.ORG_ID)).
+                        and(t.REPO_ID.eq(r.REPO_ID)));
+    }
+
+    private TriggerSchedulerEntry toEntry(OffsetDateTime fireAt, Record12<UUID, UUID, String, UUID, String, UUID, String, String[], JSONB, JSONB, JSONB, String> r) {
+        return new TriggerSchedulerEntry(
+                fireAt,
+                r.value1(),
+                r.value2(),
+                r.value3(),
+                r.value4(),
+                r.value5(),
+                r.value6(),
+                r.value7(),
+                objectMapper.fromJSONB(r.value11()),
+                objectMapper.fromJSONB(r.value10()),
+                toList(r.value8()),
+                objectMapper.fromJSONB(r.value9()),
+                r.value12());
+    }
+
+    private static OffsetDateTime nextExecution(OffsetDateTime now, TriggerSchedulerEntry e) {
+        Map<String, Object> conditions = e.getConditions();
+        if (conditions == null) {
+            return null;
+        }
+
+        ZoneId zoneId = null;
+        if (conditions.get(Constants.Trigger.CRON_TIMEZONE) != null) {
+            zoneId = TimeZone.getTimeZone((String) conditions.get(Constants.Trigger.CRON_TIMEZONE)).toZoneId();
+        }
+
+        try {
+            return CronUtils.nextExecution(now, (String) conditions.get(Constants.Trigger.CRON_SPEC), zoneId);
+        } catch (Exception ex) {
+            log.warn("nextExecution ['{}'] -> error: {}", e.getTriggerId(), ex.getMessage());
+            return null;
+        }
     }
 
     private static <E> List<E> toList(E[] arr) {
@@ -170,4 +235,26 @@ public class TriggerScheduleDao extends AbstractDao {
         }
         return Arrays.asList(arr);
     }
+
+    public static final class Batch {
+
+        private final OffsetDateTime claimedAt;
+        private final List<TriggerSchedulerEntry> entries;
+
+        private Batch(OffsetDateTime claimedAt, List<TriggerSchedulerEntry> entries) {
+            this.claimedAt = claimedAt;
+            this.entries = entries;
+        }
+
+        /**
+         * @return the DB time of the claim or {@code null} if the batch is empty.
+         */
+        public OffsetDateTime getClaimedAt() {
+            return claimedAt;
+        }
+
+        public List<TriggerSchedulerEntry> getEntries() {
+            return entries;
+        }
+    }
 }
@@ -20,29 +20,37 @@ package com.walmartlabs.concord.server.org.triggers;
  * =====
  */
 
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
 import com.walmartlabs.concord.common.DateTimeUtils;
 import com.walmartlabs.concord.sdk.Constants;
+import com.walmartlabs.concord.server.PeriodicTask;
 import com.walmartlabs.concord.server.cfg.TriggersConfiguration;
 import com.walmartlabs.concord.server.org.project.RepositoryDao;
 import com.walmartlabs.concord.server.process.*;
 import com.walmartlabs.concord.server.sdk.PartialProcessKey;
-import com.walmartlabs.concord.server.sdk.ScheduledTask;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.inject.Inject;
 import javax.inject.Named;
 import javax.inject.Singleton;
+import java.time.Duration;
 import java.time.OffsetDateTime;
-import java.util.Collection;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.UUID;
-import java.util.concurrent.TimeUnit;
-
-@Named("trigger-scheduler")
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Starts processes of the due cron triggers. Due triggers are claimed in
+ * batches (each server node claims its own), the processes are started
+ * using a bounded pool of workers. Between the batches the scheduler sleeps
+ * until the next scheduled trigger, but no longer than {@link #MAX_IDLE_TIME}
+ * to pick up the triggers added by other server nodes.
+ */
+@Named
 @Singleton
-public class TriggerScheduler implements ScheduledTask {
+public class TriggerScheduler extends PeriodicTask {
 
     private static final Logger log = LoggerFactory.getLogger(TriggerScheduler.class);
 
@@ -51,19 +59,30 @@ public class TriggerScheduler implements ScheduledTask {
 
     private static final String EVENT_SOURCE = "cron";
 
+    private static final long MAX_IDLE_TIME = TimeUnit.SECONDS.toMillis(10);
+    private static final long MIN_IDLE_TIME = 100;
+    private static final long ERROR_DELAY = TimeUnit.SECONDS.toMillis(10);
+
     private final OffsetDateTime startedAt;
     private final TriggerScheduleDao scheduleDao;
     private final RepositoryDao repositoryDao;
     private final ProcessManager processManager;
     private final ProcessSecurityContext processSecurityContext;
     private final TriggersConfiguration triggerCfg;
+    private final ExecutorService executor;
+
+    private final Histogram lagHistogram;
+    private final Meter firedMeter;
 
     @Inject
     public TriggerScheduler(TriggerScheduleDao scheduleDao,
                             RepositoryDao repositoryDao,
                             ProcessManager processManager,
                             ProcessSecurityContext processSecurityContext,
-                            TriggersConfiguration triggerCfg) {
+                            TriggersConfiguration triggerCfg,
+                            MetricRegistry metricRegistry) {
+
+        super(MAX_IDLE_TIME, ERROR_DELAY);
 
         this.startedAt = OffsetDateTime.now();
         this.scheduleDao = scheduleDao;
@@ -71,26 +90,86 @@ public class TriggerScheduler implements ScheduledTask {
         this.processManager = processManager;
         this.processSecurityContext = processSecurityContext;
         this.triggerCfg = triggerCfg;
+        this.executor = Executors.newFixedThreadPool(triggerCfg.getCronWorkers());
+
+        this.lagHistogram = metricRegistry.histogram("cron-trigger-lag");
+        this.firedMeter = metricRegistry.meter("cron-triggers-fired");
+    }
+
+    @Override
+    protected boolean performTask() {
+        int batchSize = triggerCfg.getCronBatchSize();
+
+        TriggerScheduleDao.Batch batch = scheduleDao.poll(batchSize);
+        List<TriggerSchedulerEntry> entries = batch.getEntries();
+        if (entries.isEmpty()) {
+            return false;
+        }
+
+        // the lag is measured using the DB clock (FIRE_AT values and the claim time)
+        // plus the time elapsed on this node since the claim
+        OffsetDateTime claimedAt = batch.getClaimedAt();
+        long claimedAtNanos = System.nanoTime();
+
+        List<Future<?>> futures = new ArrayList<>(entries.size());
+        for (TriggerSchedulerEntry e : entries) {
+            if (e.getFireAt().isAfter(startedAt)) {
+                futures.add(executor.submit(() -> fire(e, claimedAt, claimedAtNanos)));
+            }
+        }
+
+        // wait for the whole batch to avoid claiming more triggers than the workers can handle
+        for (Future<?> f : futures) {
+            try {
+                f.get();
+            } catch (ExecutionException e) {
+                log.error("performTask -> error", e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+
+        // continue immediately if there are more due triggers
+        return entries.size() >= batchSize;
     }
 
     @Override
-    public long getIntervalInSec() {
-        return TimeUnit.MINUTES.toSeconds(1);
+    protected void idle(long ms) {
+        Duration delay = scheduleDao.nextFireDelay();
+        if (delay != null) {
+            ms = Math.min(ms, Math.max(delay.toMillis(), MIN_IDLE_TIME));
+        }
+
+        sleep(ms);
     }
 
     @Override
-    public void performTask() {
-        while (!Thread.currentThread().isInterrupted()) {
-            TriggerSchedulerEntry e = scheduleDao.findNext();
-            if (e == null) {
-                break;
-            }
-            if (e.getFireAt().isAfter(startedAt)) {
-                startProcess(e);
+    public void stop() {
+        super.stop();
+
+        executor.shutdown();
+
+        try {
+            if (executor.awaitTermination(1, TimeUnit.MINUTES)) {
+                log.info("stop -> done");
+            } else {
+                log.info("stop -> timeout");
             }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         }
     }
 
+    private void fire(TriggerSchedulerEntry t, OffsetDateTime claimedAt, long claimedAtNanos) {
+        long lag = Duration.between(t.getFireAt(), claimedAt).toMillis()
+                + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - claimedAtNanos);
+        lagHistogram.update(lag);
+        firedMeter.mark();
+
+        startProcess(t);
+    }
+
     private void startProcess(TriggerSchedulerEntry t) {
         if (isDisabled(EVENT_SOURCE)) {
             log.warn("startProcess ['{}'] -> disabled, skipping", t);
@@ -40,6 +40,7 @@ import java.util.UUID;
 import static com.walmartlabs.concord.db.PgUtils.jsonbText;
 import static com.walmartlabs.concord.server.jooq.Tables.*;
 import static com.walmartlabs.concord.server.jooq.tables.Triggers.TRIGGERS;
+import static org.jooq.impl.DSL.field;
 import static org.jooq.impl.DSL.select;
 import static org.jooq.impl.DSL.value;
 
@@ -127,6 +128,21 @@ public class TriggersDao extends AbstractDao {
                 .fetch(this::toEntity);
     }
 
+    public List<TriggerEntry> listAll() {
+        return selectTriggers(dsl())
+                .fetch(this::toEntity);
+    }
+
+    /**
+     * Returns a hash of all trigger IDs. Triggers are never updated in place,
+     * so the hash changes whenever triggers are added or removed.
+     */
+    public String fingerprint() {
+        return dsl().select(field("md5(string_agg(cast({0} as text), ',' order by {0}))", String.class, TRIGGERS.TRIGGER_ID))
+                .from(TRIGGERS)
+                .fetchOne(Record1::value1);
+    }
+
     public List<TriggerEntry> list(UUID orgId, UUID projectId, UUID repositoryId, String type) {
         SelectJoinStep<Record12<UUID, UUID, String, UUID, String, UUID, String, String, String[], JSONB, JSONB, JSONB>> query = selectTriggers(dsl());
 
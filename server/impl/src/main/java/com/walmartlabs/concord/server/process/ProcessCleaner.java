@@ -33,16 +33,21 @@ import javax.inject.Inject;
 import javax.inject.Named;
 import javax.inject.Singleton;
 import java.time.OffsetDateTime;
+import java.util.List;
 import java.util.UUID;
 
 import static com.walmartlabs.concord.db.PgUtils.interval;
+import static com.walmartlabs.concord.server.jooq.Tables.PROCESS_LOG_ARCHIVE;
 import static com.walmartlabs.concord.server.jooq.Tables.PROCESS_LOG_DATA;
 import static com.walmartlabs.concord.server.jooq.Tables.PROCESS_LOG_SEGMENTS;
 import static com.walmartlabs.concord.server.jooq.tables.ProcessCheckpoints.PROCESS_CHECKPOINTS;
 import static com.walmartlabs.concord.server.jooq.tables.ProcessEvents.PROCESS_EVENTS;
 import static com.walmartlabs.concord.server.jooq.tables.ProcessQueue.PROCESS_QUEUE;
 import static com.walmartlabs.concord.server.jooq.tables.ProcessState.PROCESS_STATE;
+import static com.walmartlabs.concord.server.jooq.tables.ProcessStateBlobs.PROCESS_STATE_BLOBS;
 import static org.jooq.impl.DSL.currentOffsetDateTime;
+import static org.jooq.impl.DSL.notExists;
+import static org.jooq.impl.DSL.selectOne;
 
 @Named("process-cleaner")
 @Singleton
@@ -75,11 +80,17 @@ public class ProcessCleaner implements ScheduledTask {
         Field<OffsetDateTime> cutoff = currentOffsetDateTime().minus(interval(cfg.getMaxStateAge()));
         cleanerDao.deleteOldState(cutoff, cfg);
         cleanerDao.deleteOrphans(cfg);
+
+        if (cfg.isStateCleanup()) {
+            cleanerDao.deleteUnusedStateBlobs();
+        }
     }
 
     @Named
     private static class CleanerDao extends AbstractDao {
 
+        private static final int BLOB_CLEANUP_BATCH_SIZE = 1000;
+
         @Inject
         protected CleanerDao(@MainDB Configuration cfg) {
             super(cfg);
@@ -116,12 +127,17 @@ public class ProcessCleaner implements ScheduledTask {
                 }
 
                 int logDataEntries = 0;
+                int logArchiveEntries = 0;
                 int logSegmentEntries = 0;
                 if (jobCfg.isLogsCleanup()) {
                     logDataEntries = tx.deleteFrom(PROCESS_LOG_DATA)
                             .where(PROCESS_LOG_DATA.INSTANCE_ID.in(ids))
                             .execute();
 
+                    logArchiveEntries = tx.deleteFrom(PROCESS_LOG_ARCHIVE)
+                            .where(PROCESS_LOG_ARCHIVE.INSTANCE_ID.in(ids))
+                            .execute();
+
                     logSegmentEntries = tx.deleteFrom(PROCESS_LOG_SEGMENTS)
                             .where(PROCESS_LOG_SEGMENTS.INSTANCE_ID.in(ids))
                             .execute();
@@ -134,8 +150,8 @@ public class ProcessCleaner implements ScheduledTask {
                             .execute();
                 }
 
-                log.info("deleteOldState -> removed older than {}: {} queue entries, {} log data entries, {} log segments, {} state item(s), {} event(s), {} checkpoint(s)",
-                        cutoff, queueEntries, logDataEntries, logSegmentEntries, stateRecords, events, checkpoints);
+                log.info("deleteOldState -> removed older than {}: {} queue entries, {} log data entries, {} archived log segments, {} log segments, {} state item(s), {} event(s), {} checkpoint(s)",
+                        cutoff, queueEntries, logDataEntries, logArchiveEntries, logSegmentEntries, stateRecords, events, checkpoints);
             });
 
             long t2 = System.currentTimeMillis();
@@ -176,5 +192,53 @@ public class ProcessCleaner implements ScheduledTask {
             long t2 = System.currentTimeMillis();
             log.info("deleteOrphans -> took {}ms", (t2 - t1));
         }
+
+        /**
+         * Removes the state blobs which are no longer referenced by any process.
+         * <p>
+         * The unreferenced blobs are found and locked first, skipping the blobs locked
+         * by in-flight state imports. The references are checked again when the locked
+         * blobs are removed, the check sees the imports committed in the meantime.
+         */
+        void deleteUnusedStateBlobs() {
+            long t1 = System.currentTimeMillis();
+
+            int blobs = 0;
+            while (true) {
+                int[] result = txResult(tx -> {
+                    // mark
+                    List<byte[]> unused = tx.select(PROCESS_STATE_BLOBS.BLOB_HASH)
+                            .from(PROCESS_STATE_BLOBS)
+                            .where(notExists(selectOne().from(PROCESS_STATE)
+                                    .where(PROCESS_STATE.BLOB_HASH.eq(PROCESS_STATE_BLOBS.BLOB_HASH))))
+                            .limit(BLOB_CLEANUP_BATCH_SIZE)
+                            .forUpdate()
+                            .skipLocked()
+                            .fetch(PROCESS_STATE_BLOBS.BLOB_HASH);
+
+                    if (unused.isEmpty()) {
+                        return new int[]{0, 0};
+                    }
+
+                    // sweep
+                    int deleted = tx.deleteFrom(PROCESS_STATE_BLOBS)
+                            .where(PROCESS_STATE_BLOBS.BLOB_HASH.in(unused)
+                                    .and(notExists(selectOne().from(PROCESS_STATE)
+                                            .where(PROCESS_STATE.BLOB_HASH.eq(PROCESS_STATE_BLOBS.BLOB_HASH)))))
+                            .execute();
+
+                    return new int[]{unused.size(), deleted};
+                });
+
+                blobs += result[1];
+
+                if (result[0] < BLOB_CLEANUP_BATCH_SIZE) {
+                    break;
+                }
+            }
+
+            long t2 = System.currentTimeMillis();
+            log.info("deleteUnusedStateBlobs -> removed {} blob(s), took {}ms", blobs, (t2 - t1));
+        }
     }
 }
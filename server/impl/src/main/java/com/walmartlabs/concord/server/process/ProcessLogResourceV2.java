@@ -29,6 +29,7 @@ import com.walmartlabs.concord.server.process.logs.ProcessLogManager;
 import com.walmartlabs.concord.server.process.queue.ProcessKeyCache;
 import com.walmartlabs.concord.server.sdk.ConcordApplicationException;
 import com.walmartlabs.concord.server.sdk.ProcessKey;
+import com.walmartlabs.concord.server.sdk.Range;
 import com.walmartlabs.concord.server.sdk.metrics.WithTimer;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
@@ -44,11 +45,14 @@ import javax.ws.rs.*;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.StreamingOutput;
+import java.io.DataInputStream;
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.List;
-import java.util.UUID;
+import java.util.*;
+import java.util.zip.GZIPInputStream;
 
+import static com.walmartlabs.concord.server.process.logs.ProcessLogsDao.NewLogChunk;
 import static com.walmartlabs.concord.server.process.logs.ProcessLogsDao.ProcessLog;
 import static com.walmartlabs.concord.server.process.logs.ProcessLogsDao.ProcessLogChunk;
 
@@ -61,6 +65,9 @@ import static com.walmartlabs.concord.server.process.logs.ProcessLogsDao.Process
 @Path("/api/v2/process")
 public class ProcessLogResourceV2 implements Resource {
 
+    // instanceId, segmentId, length
+    private static final int CHUNK_HEADER_SIZE = 16 + 8 + 4;
+
     private final ProcessKeyCache processKeyCache;
     private final ProcessManager processManager;
     private final ProcessLogManager logManager;
@@ -173,15 +180,78 @@ public class ProcessLogResourceV2 implements Resource {
         try {
             byte[] ab = IOUtils.toByteArray(data);
             int upper = logManager.log(processKey, segmentId, ab);
+            checkLogSizeLimit(processKey, upper);
+        } catch (IOException e) {
+            throw new ConcordApplicationException("Error while appending a log: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Appends log chunks of one or multiple processes in a single request.
+     * <p>
+     * The request body is a sequence of
+     * {@code (instanceId: 2 x int64, segmentId: int64, length: int32, data: byte[length])}
+     * entries. The body can be gzip-compressed, in which case the request
+     * must include the {@code Content-Encoding: gzip} header. The uncompressed
+     * size of the body is limited by {@code process.logBatchMaxSize}.
+     */
+    @POST
+    @Path("log/batch")
+    @Consumes(MediaType.APPLICATION_OCTET_STREAM)
+    @WithTimer
+    public void appendBatch(@HeaderParam("Content-Encoding") String contentEncoding,
+                            InputStream data) {
+
+        Map<UUID, ProcessKey> processKeys = new HashMap<>();
+        List<NewLogChunk> chunks = new ArrayList<>();
+
+        int maxSize = processCfg.getLogBatchMaxSize();
+        long size = 0;
+
+        try (DataInputStream in = new DataInputStream(decode(contentEncoding, data))) {
+            while (true) {
+                long msb;
+                try {
+                    msb = in.readLong();
+                } catch (EOFException e) {
+                    break;
+                }
+
+                UUID instanceId = new UUID(msb, in.readLong());
+                long segmentId = in.readLong();
+
+                int len = in.readInt();
+                if (len < 0 || len > processCfg.getLogSizeLimit()) {
+                    throw new ValidationErrorsException("Invalid chunk length: " + len);
+                }
 
-            int logSizeLimit = processCfg.getLogSizeLimit();
-            if (upper >= logSizeLimit) {
-                logManager.error(processKey, "Maximum log size reached: {}. Process cancelled.", logSizeLimit);
-                processManager.kill(processKey);
+                // checked before the data is read, limits the decompressed size as well
+                size += CHUNK_HEADER_SIZE + len;
+                if (size > maxSize) {
+                    throw new ConcordApplicationException("Request is too large, the maximum (uncompressed) size is " + maxSize + " bytes",
+                            Response.Status.REQUEST_ENTITY_TOO_LARGE);
+                }
+
+                byte[] ab = new byte[len];
+                in.readFully(ab);
+
+                ProcessKey processKey = processKeys.computeIfAbsent(instanceId, logAccessManager::assertLogAccess);
+                if (len > 0) {
+                    chunks.add(new NewLogChunk(processKey, segmentId, ab));
+                }
             }
         } catch (IOException e) {
             throw new ConcordApplicationException("Error while appending a log: " + e.getMessage());
         }
+
+        List<Range> ranges = logManager.log(chunks);
+
+        Map<ProcessKey, Integer> uppers = new HashMap<>();
+        for (int i = 0; i < ranges.size(); i++) {
+            uppers.merge(chunks.get(i).getProcessKey(), ranges.get(i).upper(), Math::max);
+        }
+
+        uppers.forEach(this::checkLogSizeLimit);
     }
 
     public static Response toResponse(UUID instanceId, ProcessLog l, HttpUtils.Range range) {
@@ -207,6 +277,26 @@ public class ProcessLogResourceV2 implements Resource {
         return downloadableFile(instanceId, out, actualStart, actualEnd, l.getSize());
     }
 
+    private void checkLogSizeLimit(ProcessKey processKey, int upper) {
+        int logSizeLimit = processCfg.getLogSizeLimit();
+        if (upper >= logSizeLimit) {
+            logManager.error(processKey, "Maximum log size reached: {}. Process cancelled.", logSizeLimit);
+            processManager.kill(processKey);
+        }
+    }
+
+    private static InputStream decode(String contentEncoding, InputStream in) throws IOException {
+        if (contentEncoding == null || contentEncoding.isEmpty() || "identity".equalsIgnoreCase(contentEncoding)) {
+            return in;
+        }
+
+        if ("gzip".equalsIgnoreCase(contentEncoding)) {
+            return new GZIPInputStream(in);
+        }
+
+        throw new ConcordApplicationException("Unsupported content encoding: " + contentEncoding, Response.Status.UNSUPPORTED_MEDIA_TYPE);
+    }
+
     private ProcessKey assertProcessKey(UUID instanceId) {
         ProcessKey processKey = processKeyCache.get(instanceId);
         if (processKey == null) {
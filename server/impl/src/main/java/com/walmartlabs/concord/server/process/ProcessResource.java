@@ -62,6 +62,7 @@ import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
 import io.swagger.annotations.ApiParam;
 import io.swagger.annotations.Authorization;
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
 import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
 import org.apache.shiro.authz.UnauthorizedException;
 import org.jboss.resteasy.plugins.providers.multipart.MultipartInput;
@@ -87,6 +88,8 @@ import java.nio.file.StandardCopyOption;
 import java.text.MessageFormat;
 import java.util.*;
 import java.util.stream.Collectors;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 
 import static com.walmartlabs.concord.server.process.state.ProcessStateManager.path;
 import static com.walmartlabs.concord.server.process.state.ProcessStateManager.zipTo;
@@ -99,6 +102,11 @@ public class ProcessResource implements Resource {
 
     private static final Logger log = LoggerFactory.getLogger(ProcessResource.class);
 
+    /**
+     * gzip-compressed TAR archive, used for streaming transfers of the process state.
+     */
+    public static final String TAR_GZIP = "application/x-gtar";
+
     private final ProcessManager processManager;
     private final ProcessQueueDao queueDao;
     private final ProcessQueueManager processQueueManager;
@@ -884,6 +892,31 @@ public class ProcessResource implements Resource {
                 .build();
     }
 
+    /**
+     * Downloads the current state snapshot of a process as a gzip-compressed TAR archive.
+     * Unlike ZIP archives, the result can be unpacked while it is being downloaded.
+     */
+    @GET
+    @ApiOperation(value = "Download a process state snapshot as a TAR archive", response = File.class)
+    @javax.ws.rs.Path("/{id}/state/archive")
+    @Produces(TAR_GZIP)
+    public Response downloadStateArchive(@ApiParam @PathParam("id") UUID instanceId) {
+        ProcessEntry entry = assertProcess(PartialProcessKey.from(instanceId));
+        ProcessKey processKey = new ProcessKey(entry.instanceId(), entry.createdAt());
+
+        assertProcessAccess(entry, "attachments");
+
+        StreamingOutput out = output -> {
+            try (TarArchiveOutputStream dst = new TarArchiveOutputStream(new GZIPOutputStream(output))) {
+                stateManager.exportTar(processKey, dst);
+            }
+        };
+
+        return Response.ok(out, TAR_GZIP)
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + instanceId + ".tar.gz\"")
+                .build();
+    }
+
     /**
      * Downloads a single file from the current state snapshot of a process.
      */
@@ -935,22 +968,9 @@ public class ProcessResource implements Resource {
             Files.copy(data, tmpIn, StandardCopyOption.REPLACE_EXISTING);
 
             tmpDir = IOUtils.createTempDir("attachments");
-            IOUtils.unzip(tmpIn, tmpDir);
+            IOUtils.unzip(tmpIn, tmpDir, processCfg.getAttachmentsMaxSize(), processCfg.getAttachmentsMaxEntries());
 
-            assertAttachmentsPolicy(tmpDir, entry);
-
-            Path finalTmpDir = tmpDir;
-            stateManager.tx(tx -> {
-                stateManager.deleteDirectory(tx, processKey, path(Constants.Files.JOB_ATTACHMENTS_DIR_NAME, Constants.Files.JOB_STATE_DIR_NAME));
-                stateManager.importPath(tx, processKey, Constants.Files.JOB_ATTACHMENTS_DIR_NAME, finalTmpDir, (p, attrs) -> true);
-            });
-
-            Map<String, Object> out = OutVariablesUtils.read(tmpDir);
-            if (out.isEmpty()) {
-                queueDao.removeMeta(processKey, "out");
-            } else {
-                queueDao.updateMeta(processKey, Collections.singletonMap("out", out));
-            }
+            importAttachments(entry, processKey, tmpDir);
         } catch (PolicyException e) {
             throw new ConcordApplicationException(e.getMessage(), Status.FORBIDDEN);
         } catch (IOException e) {
@@ -974,6 +994,57 @@ public class ProcessResource implements Resource {
         }
     }
 
+    /**
+     * Upload process attachments as a gzip-compressed TAR archive.
+     * The archive is unpacked while it is being received.
+     */
+    @POST
+    @javax.ws.rs.Path("{id}/attachment")
+    @Consumes(TAR_GZIP)
+    public void uploadAttachmentsArchive(@PathParam("id") UUID instanceId, InputStream data) {
+        ProcessEntry entry = assertProcess(PartialProcessKey.from(instanceId));
+        ProcessKey processKey = new ProcessKey(entry.instanceId(), entry.createdAt());
+
+        Path tmpDir = null;
+        try {
+            tmpDir = IOUtils.createTempDir("attachments");
+            try (InputStream in = new GZIPInputStream(data)) {
+                IOUtils.untar(in, tmpDir, processCfg.getAttachmentsMaxSize(), processCfg.getAttachmentsMaxEntries());
+            }
+
+            importAttachments(entry, processKey, tmpDir);
+        } catch (PolicyException e) {
+            throw new ConcordApplicationException(e.getMessage(), Status.FORBIDDEN);
+        } catch (IOException e) {
+            log.error("uploadAttachmentsArchive ['{}'] -> error", processKey, e);
+            throw new ConcordApplicationException("upload error: " + e.getMessage());
+        } finally {
+            if (tmpDir != null) {
+                try {
+                    IOUtils.deleteRecursively(tmpDir);
+                } catch (IOException e) {
+                    log.warn("uploadAttachmentsArchive -> cleanup error: {}", e.getMessage());
+                }
+            }
+        }
+    }
+
+    private void importAttachments(ProcessEntry entry, ProcessKey processKey, Path src) throws IOException {
+        assertAttachmentsPolicy(src, entry);
+
+        stateManager.tx(tx -> {
+            stateManager.deleteDirectory(tx, processKey, path(Constants.Files.JOB_ATTACHMENTS_DIR_NAME, Constants.Files.JOB_STATE_DIR_NAME));
+            stateManager.importPath(tx, processKey, Constants.Files.JOB_ATTACHMENTS_DIR_NAME, src, (p, attrs) -> true);
+        });
+
+        Map<String, Object> out = OutVariablesUtils.read(src);
+        if (out.isEmpty()) {
+            queueDao.removeMeta(processKey, "out");
+        } else {
+            queueDao.updateMeta(processKey, Collections.singletonMap("out", out));
+        }
+    }
+
     /**
      * Decrypt a base64 string previosly encrypted with the process' project key.
      *
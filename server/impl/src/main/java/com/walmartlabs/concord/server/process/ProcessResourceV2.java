@@ -50,15 +50,16 @@ import javax.inject.Inject;
 import javax.inject.Named;
 import javax.inject.Singleton;
 import javax.ws.rs.*;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.Suspended;
 import javax.ws.rs.core.Context;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.Response.Status;
 import javax.ws.rs.core.UriInfo;
-import java.util.Collections;
-import java.util.List;
-import java.util.Set;
-import java.util.UUID;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
 import static com.walmartlabs.concord.server.Utils.unwrap;
 
@@ -70,6 +71,15 @@ public class ProcessResourceV2 implements Resource {
 
     private static final Logger log = LoggerFactory.getLogger(ProcessResourceV2.class);
 
+    private static final int MAX_WAIT_IDS = 1000;
+    private static final long MAX_WAIT_TIMEOUT = TimeUnit.MINUTES.toMillis(1);
+
+    private static final Set<ProcessStatus> FINAL_STATUSES = EnumSet.of(
+            ProcessStatus.FINISHED,
+            ProcessStatus.FAILED,
+            ProcessStatus.CANCELLED,
+            ProcessStatus.TIMED_OUT);
+
     private final ProcessQueueDao queueDao;
     private final ProcessQueueManager processQueueManager;
     private final ProjectDao projectDao;
@@ -77,6 +87,7 @@ public class ProcessResourceV2 implements Resource {
     private final UserDao userDao;
     private final OrganizationManager orgManager;
     private final ProjectAccessManager projectAccessManager;
+    private final ProcessCompletionWatcher completionWatcher;
 
     @Inject
     public ProcessResourceV2(ProcessQueueDao queueDao,
@@ -85,7 +96,8 @@ public class ProcessResourceV2 implements Resource {
                              RepositoryDao repositoryDao,
                              UserDao userDao,
                              OrganizationManager orgManager,
-                             ProjectAccessManager projectAccessManager) {
+                             ProjectAccessManager projectAccessManager,
+                             ProcessCompletionWatcher completionWatcher) {
 
         this.queueDao = queueDao;
         this.processQueueManager = processQueueManager;
@@ -94,6 +106,7 @@ public class ProcessResourceV2 implements Resource {
         this.userDao = userDao;
         this.orgManager = orgManager;
         this.projectAccessManager = projectAccessManager;
+        this.completionWatcher = completionWatcher;
     }
 
     /**
@@ -122,6 +135,65 @@ public class ProcessResourceV2 implements Resource {
         return e;
     }
 
+    /**
+     * Waits for the specified processes to finish. Returns the processes'
+     * details as soon as any or all of them (depending on the {@code mode})
+     * reach a final status or when the {@code timeout} expires, whichever
+     * comes first. The callers are expected to check the returned statuses
+     * and repeat the request if necessary.
+     */
+    @POST
+    @ApiOperation(value = "Wait for the processes to finish", responseContainer = "list", response = ProcessEntry.class)
+    @Path("/wait")
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Produces(MediaType.APPLICATION_JSON)
+    @WithTimer
+    public void waitForCompletion(@ApiParam List<UUID> instanceIds,
+                                  @ApiParam @QueryParam("mode") @DefaultValue("ALL") ProcessWaitMode mode,
+                                  @ApiParam @QueryParam("timeout") @DefaultValue("30000") long timeout,
+                                  @Suspended AsyncResponse asyncResponse) {
+
+        if (instanceIds == null || instanceIds.isEmpty()) {
+            throw new ValidationErrorsException("A list of process instance IDs is required");
+        }
+
+        Set<UUID> ids = new LinkedHashSet<>(instanceIds);
+        if (ids.size() > MAX_WAIT_IDS) {
+            throw new ValidationErrorsException("Too many process instance IDs, the maximum is " + MAX_WAIT_IDS);
+        }
+
+        List<PartialProcessKey> processKeys = ids.stream()
+                .map(PartialProcessKey::from)
+                .collect(Collectors.toList());
+
+        // the access is checked on the request's thread
+        assertWaitAccess(ids, queueDao.get(processKeys));
+
+        long t = timeout >= 0 ? Math.min(timeout, MAX_WAIT_TIMEOUT) : MAX_WAIT_TIMEOUT;
+
+        // the request's thread is released, the response is sent when the processes
+        // are finished or when the timeout expires
+        completionWatcher.watch(ids, t, new ProcessCompletionWatcher.Callback() {
+
+            private List<ProcessEntry> entries;
+
+            @Override
+            public boolean check() {
+                entries = queueDao.get(processKeys);
+                return isCompleted(entries, ids.size(), mode);
+            }
+
+            @Override
+            public void done(Exception error) {
+                if (error != null) {
+                    asyncResponse.resume(error);
+                } else {
+                    asyncResponse.resume(entries);
+                }
+            }
+        });
+    }
+
     /**
      * Returns a list of processes applying the specified filters.
      */
@@ -218,6 +290,40 @@ public class ProcessResourceV2 implements Resource {
         return queueDao.count(filter);
     }
 
+    private void assertWaitAccess(Set<UUID> ids, List<ProcessEntry> entries) {
+        if (entries.size() != ids.size()) {
+            Set<UUID> found = entries.stream()
+                    .map(ProcessEntry::instanceId)
+                    .collect(Collectors.toSet());
+
+            UUID missing = ids.stream()
+                    .filter(id -> !found.contains(id))
+                    .findFirst()
+                    .orElse(null);
+
+            log.warn("waitForCompletion ['{}'] -> not found", missing);
+            throw new ConcordApplicationException("Process instance not found: " + missing, Status.NOT_FOUND);
+        }
+
+        entries.stream()
+                .filter(e -> e.projectId() != null)
+                .map(e -> new AbstractMap.SimpleImmutableEntry<>(e.orgId(), e.projectId()))
+                .distinct()
+                .forEach(e -> projectAccessManager.assertAccess(e.getKey(), e.getValue(), null, ResourceAccessLevel.READER, false));
+    }
+
+    private static boolean isCompleted(List<ProcessEntry> entries, int expectedCount, ProcessWaitMode mode) {
+        long finished = entries.stream()
+                .filter(e -> FINAL_STATUSES.contains(e.status()))
+                .count();
+
+        if (mode == ProcessWaitMode.ANY) {
+            return finished > 0;
+        }
+
+        return finished >= expectedCount;
+    }
+
     private ProcessFilter createProcessFilter(UUID orgId,
                                               String orgName,
                                               UUID projectId,
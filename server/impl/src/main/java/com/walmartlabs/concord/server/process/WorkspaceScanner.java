@@ -0,0 +1,60 @@
+package com.walmartlabs.concord.server.process;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2020 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.MetricRegistry;
+import com.walmartlabs.concord.policyengine.WorkspaceScan;
+import com.walmartlabs.concord.server.cfg.ProcessConfiguration;
+import com.walmartlabs.concord.server.sdk.metrics.WithTimer;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Walks process workspaces. The result is used to check the workspace,
+ * file and state policies and to import the process state.
+ */
+@Named
+@Singleton
+public class WorkspaceScanner {
+
+    private final ForkJoinPool pool;
+    private final Histogram scannedEntries;
+
+    @Inject
+    public WorkspaceScanner(ProcessConfiguration cfg, MetricRegistry metricRegistry) {
+        int parallelism = cfg.getWorkspaceScanParallelism();
+        this.pool = parallelism > 0 ? new ForkJoinPool(parallelism) : null;
+        this.scannedEntries = metricRegistry.histogram("workspace-scan-entries");
+    }
+
+    @WithTimer
+    public WorkspaceScan scan(Path dir) throws IOException {
+        WorkspaceScan result = WorkspaceScan.scan(dir, pool);
+        scannedEntries.update(result.getEntries().size());
+        return result;
+    }
+}
@@ -23,18 +23,28 @@ package com.walmartlabs.concord.server.process.locks;
 import com.walmartlabs.concord.db.AbstractDao;
 import com.walmartlabs.concord.db.MainDB;
 import com.walmartlabs.concord.server.jooq.enums.ProcessLockScope;
+import com.walmartlabs.concord.server.jooq.tables.ProcessLockQueue;
 import com.walmartlabs.concord.server.jooq.tables.ProcessLocks;
 import com.walmartlabs.concord.server.jooq.tables.records.ProcessLocksRecord;
+import org.jooq.Condition;
 import org.jooq.Configuration;
 import org.jooq.DSLContext;
+import org.jooq.Record3;
 import org.jooq.SelectConditionStep;
 
 import javax.inject.Inject;
 import javax.inject.Named;
+import java.time.OffsetDateTime;
 import java.util.UUID;
 
 import static com.walmartlabs.concord.server.jooq.Tables.PROCESS_LOCKS;
+import static com.walmartlabs.concord.server.jooq.Tables.PROCESS_LOCK_QUEUE;
 
+/**
+ * Process locks and their queues of waiting processes. The methods that
+ * take a {@link DSLContext} expect the caller to serialize the access
+ * to the lock, see {@link ProcessLocksManager}.
+ */
 @Named
 public class ProcessLocksDao extends AbstractDao {
 
@@ -43,47 +53,16 @@ public class ProcessLocksDao extends AbstractDao {
         super(cfg);
     }
 
-    public LockEntry tryLock(UUID instanceId, UUID orgId, UUID projectId, ProcessLockScope scope, String lockName) {
-        while (true) {
-            boolean locked = insert(instanceId, orgId, projectId, scope, lockName);
-            if (locked) {
-                return LockEntry.builder()
-                        .instanceId(instanceId)
-                        .orgId(orgId)
-                        .projectId(projectId)
-                        .scope(scope)
-                        .name(lockName)
-                        .build();
-            } else {
-                LockEntry e = get(orgId, projectId, scope, lockName);
-                if (e != null) {
-                    return e;
-                }
-            }
-        }
+    @Override
+    public <T> T txResult(TxResult<T> t) {
+        return super.txResult(t);
     }
 
     public LockEntry get(UUID orgId, UUID projectId, ProcessLockScope scope, String lockName) {
         return txResult(tx -> get(tx, orgId, projectId, scope, lockName));
     }
 
-    public boolean insert(UUID instanceId, UUID orgId, UUID projectId, ProcessLockScope scope, String lockName) {
-        return txResult(tx -> insert(tx, instanceId, orgId, projectId, scope, lockName));
-    }
-
-    public void delete(UUID instanceId, UUID orgId, UUID projectId, ProcessLockScope scope, String lockName) {
-        tx(tx -> delete(tx, instanceId, orgId, projectId, scope, lockName));
-    }
-
-    private boolean insert(DSLContext tx, UUID instanceId, UUID orgId, UUID projectId, ProcessLockScope scope, String lockName) {
-        ProcessLocks l = PROCESS_LOCKS.as("l");
-        return tx.insertInto(l, l.INSTANCE_ID, l.ORG_ID, l.PROJECT_ID, l.LOCK_SCOPE, l.LOCK_NAME)
-                .values(instanceId, orgId, projectId, scope, lockName)
-                .onConflictDoNothing()
-                .execute() == 1;
-    }
-
-    private LockEntry get(DSLContext tx, UUID orgId, UUID projectId, ProcessLockScope scope, String lockName) {
+    public LockEntry get(DSLContext tx, UUID orgId, UUID projectId, ProcessLockScope scope, String lockName) {
         ProcessLocks l = PROCESS_LOCKS.as("l");
         SelectConditionStep<ProcessLocksRecord> q = tx.selectFrom(l)
                 .where(l.LOCK_NAME.eq(lockName)
@@ -109,14 +88,113 @@ public class ProcessLocksDao extends AbstractDao {
                 .build());
     }
 
-    private void delete(DSLContext tx, UUID instanceId, UUID orgId, UUID projectId, ProcessLockScope scope, String lockName) {
+    public boolean insert(DSLContext tx, UUID instanceId, UUID orgId, UUID projectId, ProcessLockScope scope, String lockName) {
         ProcessLocks l = PROCESS_LOCKS.as("l");
-        tx.deleteFrom(l)
+        return tx.insertInto(l, l.INSTANCE_ID, l.ORG_ID, l.PROJECT_ID, l.LOCK_SCOPE, l.LOCK_NAME)
+                .values(instanceId, orgId, projectId, scope, lockName)
+                .onConflictDoNothing()
+                .execute() == 1;
+    }
+
+    /**
+     * @return {@code true} if the lock was held by the process
+     */
+    public boolean delete(DSLContext tx, UUID instanceId, UUID orgId, UUID projectId, ProcessLockScope scope, String lockName) {
+        ProcessLocks l = PROCESS_LOCKS.as("l");
+        return tx.deleteFrom(l)
                 .where(l.INSTANCE_ID.eq(instanceId)
                         .and(l.ORG_ID.eq(orgId))
                         .and(l.PROJECT_ID.eq(projectId))
                         .and(l.LOCK_SCOPE.eq(scope))
                         .and(l.LOCK_NAME.eq(lockName)))
+                .execute() > 0;
+    }
+
+    /**
+     * Adds the process to the end of the lock's queue, unless it is already
+     * in the queue.
+     *
+     * @return {@code true} if the process was added to the queue
+     */
+    public boolean enqueue(DSLContext tx, UUID instanceId, UUID orgId, UUID projectId, ProcessLockScope scope, String lockName) {
+        ProcessLockQueue q = PROCESS_LOCK_QUEUE.as("q");
+        return tx.insertInto(q, q.INSTANCE_ID, q.ORG_ID, q.PROJECT_ID, q.LOCK_SCOPE, q.LOCK_NAME)
+                .values(instanceId, orgId, projectId, scope, lockName)
+                .onConflictDoNothing()
+                .execute() == 1;
+    }
+
+    public int queueSize(DSLContext tx, UUID orgId, UUID projectId, ProcessLockScope scope, String lockName) {
+        ProcessLockQueue q = PROCESS_LOCK_QUEUE.as("q");
+        return tx.fetchCount(q, queueCondition(q, orgId, projectId, scope, lockName));
+    }
+
+    /**
+     * Removes the first process from the lock's queue.
+     *
+     * @return the removed process or {@code null} if the queue is empty
+     */
+    public LockWaiter poll(DSLContext tx, UUID orgId, UUID projectId, ProcessLockScope scope, String lockName) {
+        ProcessLockQueue q = PROCESS_LOCK_QUEUE.as("q");
+        Record3<Long, UUID, OffsetDateTime> r = tx.select(q.QUEUE_SEQ, q.INSTANCE_ID, q.ENQUEUED_AT)
+                .from(q)
+                .where(queueCondition(q, orgId, projectId, scope, lockName))
+                .orderBy(q.QUEUE_SEQ)
+                .limit(1)
+                .fetchOne();
+
+        if (r == null) {
+            return null;
+        }
+
+        tx.deleteFrom(q)
+                .where(q.QUEUE_SEQ.eq(r.value1()))
+                .execute();
+
+        return new LockWaiter(r.value2(), r.value3());
+    }
+
+    /**
+     * Removes the process from the lock's queue.
+     */
+    public void remove(DSLContext tx, UUID instanceId, UUID orgId, UUID projectId, ProcessLockScope scope, String lockName) {
+        ProcessLockQueue q = PROCESS_LOCK_QUEUE.as("q");
+        tx.deleteFrom(q)
+                .where(q.INSTANCE_ID.eq(instanceId)
+                        .and(queueCondition(q, orgId, projectId, scope, lockName)))
                 .execute();
     }
+
+    private static Condition queueCondition(ProcessLockQueue q, UUID orgId, UUID projectId, ProcessLockScope scope, String lockName) {
+        Condition c = q.LOCK_NAME.eq(lockName)
+                .and(q.LOCK_SCOPE.eq(scope));
+
+        switch (scope) {
+            case ORG:
+                return c.and(q.ORG_ID.eq(orgId));
+            case PROJECT:
+                return c.and(q.PROJECT_ID.eq(projectId));
+            default:
+                throw new IllegalArgumentException("unknown lock scope: " + scope);
+        }
+    }
+
+    public static class LockWaiter {
+
+        private final UUID instanceId;
+        private final OffsetDateTime enqueuedAt;
+
+        public LockWaiter(UUID instanceId, OffsetDateTime enqueuedAt) {
+            this.instanceId = instanceId;
+            this.enqueuedAt = enqueuedAt;
+        }
+
+        public UUID getInstanceId() {
+            return instanceId;
+        }
+
+        public OffsetDateTime getEnqueuedAt() {
+            return enqueuedAt;
+        }
+    }
 }
@@ -0,0 +1,369 @@
+package com.walmartlabs.concord.server.process.locks;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2019 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.walmartlabs.concord.server.Locks;
+import com.walmartlabs.concord.server.jooq.enums.ProcessLockScope;
+import com.walmartlabs.concord.server.process.locks.ProcessLocksDao.LockWaiter;
+import com.walmartlabs.concord.server.process.queue.ProcessWaitIndex;
+import org.jooq.DSLContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Process locks with FIFO queues of waiting processes. A released lock is
+ * handed over to the first process in the lock's queue. A process can't
+ * acquire a lock while other processes are waiting for it.
+ * <p>
+ * Operations on the same lock are serialized using DB advisory locks.
+ * <p>
+ * The callers waiting for a lock don't hold a thread, the lock is re-checked
+ * on a small shared pool when it is handed over on the local server node
+ * and periodically.
+ */
+@Named
+@Singleton
+public class ProcessLocksManager {
+
+    private static final Logger log = LoggerFactory.getLogger(ProcessLocksManager.class);
+
+    // re-check interval for the locks handed over on other server nodes
+    private static final long ACQUIRE_RECHECK_INTERVAL = TimeUnit.SECONDS.toMillis(2);
+    private static final int SIGNAL_STRIPES = 64;
+    private static final int ACQUIRE_THREADS = 2;
+
+    private final ProcessLocksDao dao;
+    private final Locks locks;
+    private final ProcessWaitIndex waitIndex;
+    private final Signal[] signals;
+    private final ScheduledExecutorService scheduler;
+
+    private final Histogram waitTimeHistogram;
+    private final Histogram queueDepthHistogram;
+    private final Meter handOffMeter;
+
+    @Inject
+    public ProcessLocksManager(ProcessLocksDao dao,
+                               Locks locks,
+                               ProcessWaitIndex waitIndex,
+                               MetricRegistry metricRegistry) {
+
+        this.dao = dao;
+        this.locks = locks;
+        this.waitIndex = waitIndex;
+
+        this.signals = new Signal[SIGNAL_STRIPES];
+        for (int i = 0; i < signals.length; i++) {
+            signals[i] = new Signal();
+        }
+
+        this.scheduler = Executors.newScheduledThreadPool(ACQUIRE_THREADS, r -> {
+            Thread t = new Thread(r, "process-locks-acquire");
+            t.setDaemon(true);
+            return t;
+        });
+
+        this.waitTimeHistogram = metricRegistry.histogram("process-locks-wait-time");
+        this.queueDepthHistogram = metricRegistry.histogram("process-locks-queue-depth");
+        this.handOffMeter = metricRegistry.meter("process-locks-hand-offs");
+    }
+
+    /**
+     * Acquires the lock if it is available and no other processes are waiting
+     * for it. Otherwise adds the process to the lock's queue.
+     *
+     * @return the current owner of the lock
+     */
+    public LockEntry tryLock(UUID instanceId, UUID orgId, UUID projectId, ProcessLockScope scope, String lockName) {
+        AtomicBoolean handedOver = new AtomicBoolean();
+
+        LockEntry owner = dao.txResult(tx -> {
+            lock(tx, orgId, projectId, scope, lockName);
+
+            LockEntry current = dao.get(tx, orgId, projectId, scope, lockName);
+            if (current == null) {
+                // normally the lock is handed over on release, but the previous
+                // owner might have been removed by the watchdog
+                current = handOff(tx, orgId, projectId, scope, lockName);
+                handedOver.set(current != null);
+            }
+
+            if (current == null) {
+                dao.insert(tx, instanceId, orgId, projectId, scope, lockName);
+                return LockEntry.builder()
+                        .instanceId(instanceId)
+                        .orgId(orgId)
+                        .projectId(projectId)
+                        .scope(scope)
+                        .name(lockName)
+                        .build();
+            }
+
+            if (!current.instanceId().equals(instanceId)) {
+                if (dao.enqueue(tx, instanceId, orgId, projectId, scope, lockName)) {
+                    queueDepthHistogram.update(dao.queueSize(tx, orgId, projectId, scope, lockName));
+                }
+            }
+
+            return current;
+        });
+
+        if (handedOver.get()) {
+            onHandOff(orgId, projectId, scope, lockName);
+        }
+
+        return owner;
+    }
+
+    /**
+     * Acquires the lock or waits in the lock's queue until the lock is handed
+     * over to the process or {@code timeoutMs} expires. Doesn't block
+     * the caller's thread, the {@code callback} receives the current owner
+     * of the lock.
+     */
+    public void acquire(UUID instanceId, UUID orgId, UUID projectId, ProcessLockScope scope, String lockName, long timeoutMs, AcquireCallback callback) {
+        Signal signal = signal(orgId, projectId, scope, lockName);
+
+        Waiter w = new Waiter(instanceId, orgId, projectId, scope, lockName, System.currentTimeMillis() + timeoutMs, signal, callback);
+
+        // registered before the first check, the hand-offs made in between are not missed
+        signal.add(w);
+        w.schedule(0);
+    }
+
+    /**
+     * Releases the lock and hands it over to the next process in the lock's
+     * queue. If the process doesn't hold the lock, removes it from the queue.
+     */
+    public void unlock(UUID instanceId, UUID orgId, UUID projectId, ProcessLockScope scope, String lockName) {
+        boolean handedOver = dao.txResult(tx -> {
+            lock(tx, orgId, projectId, scope, lockName);
+
+            if (!dao.delete(tx, instanceId, orgId, projectId, scope, lockName)) {
+                // the process is no longer interested in the lock
+                dao.remove(tx, instanceId, orgId, projectId, scope, lockName);
+                return false;
+            }
+
+            return handOff(tx, orgId, projectId, scope, lockName) != null;
+        });
+
+        if (handedOver) {
+            onHandOff(orgId, projectId, scope, lockName);
+        }
+    }
+
+    /**
+     * Hands the lock over to the next process in the lock's queue if the lock
+     * is free, e.g. after the lock of a finished process was removed.
+     */
+    public void release(UUID orgId, UUID projectId, ProcessLockScope scope, String lockName) {
+        boolean handedOver = dao.txResult(tx -> {
+            lock(tx, orgId, projectId, scope, lockName);
+
+            if (dao.get(tx, orgId, projectId, scope, lockName) != null) {
+                return false;
+            }
+
+            return handOff(tx, orgId, projectId, scope, lockName) != null;
+        });
+
+        if (handedOver) {
+            onHandOff(orgId, projectId, scope, lockName);
+        }
+    }
+
+    private LockEntry handOff(DSLContext tx, UUID orgId, UUID projectId, ProcessLockScope scope, String lockName) {
+        LockWaiter next = dao.poll(tx, orgId, projectId, scope, lockName);
+        if (next == null) {
+            return null;
+        }
+
+        dao.insert(tx, next.getInstanceId(), orgId, projectId, scope, lockName);
+
+        long waitTime = Duration.between(next.getEnqueuedAt(), OffsetDateTime.now()).toMillis();
+        waitTimeHistogram.update(waitTime);
+        handOffMeter.mark();
+
+        log.info("handOff ['{}', '{}', '{}'] -> {}, waited {}ms", scope, scopeId(orgId, projectId, scope), lockName, next.getInstanceId(), waitTime);
+
+        return LockEntry.builder()
+                .instanceId(next.getInstanceId())
+                .orgId(orgId)
+                .projectId(projectId)
+                .scope(scope)
+                .name(lockName)
+                .build();
+    }
+
+    private void onHandOff(UUID orgId, UUID projectId, ProcessLockScope scope, String lockName) {
+        // wake up the waiting API calls and the suspended processes
+        signal(orgId, projectId, scope, lockName).fire();
+        waitIndex.onLockReleased(orgId, projectId, scope, lockName);
+    }
+
+    private void lock(DSLContext tx, UUID orgId, UUID projectId, ProcessLockScope scope, String lockName) {
+        locks.lock(tx, "process-lock/" + scope + "/" + scopeId(orgId, projectId, scope) + "/" + lockName);
+    }
+
+    private Signal signal(UUID orgId, UUID projectId, ProcessLockScope scope, String lockName) {
+        int h = Objects.hash(scope, scopeId(orgId, projectId, scope), lockName);
+        return signals[Math.floorMod(h, signals.length)];
+    }
+
+    private static UUID scopeId(UUID orgId, UUID projectId, ProcessLockScope scope) {
+        return scope == ProcessLockScope.ORG ? orgId : projectId;
+    }
+
+    public interface AcquireCallback {
+
+        /**
+         * Called once, when the lock is acquired, the timeout expires or
+         * an error occurs.
+         *
+         * @param owner the current owner of the lock or {@code null} on errors
+         */
+        void done(LockEntry owner, Exception error);
+    }
+
+    private static final class Signal {
+
+        private final Set<Waiter> waiters = ConcurrentHashMap.newKeySet();
+
+        private void add(Waiter w) {
+            waiters.add(w);
+        }
+
+        private void remove(Waiter w) {
+            waiters.remove(w);
+        }
+
+        private void fire() {
+            waiters.forEach(Waiter::signal);
+        }
+    }
+
+    private final class Waiter {
+
+        private final UUID instanceId;
+        private final UUID orgId;
+        private final UUID projectId;
+        private final ProcessLockScope scope;
+        private final String lockName;
+        private final long deadline;
+        private final Signal signal;
+        private final AcquireCallback callback;
+
+        private final Object checkMutex = new Object();
+
+        private ScheduledFuture<?> next;
+        private boolean signalled;
+        private boolean done;
+
+        private Waiter(UUID instanceId, UUID orgId, UUID projectId, ProcessLockScope scope, String lockName,
+                       long deadline, Signal signal, AcquireCallback callback) {
+
+            this.instanceId = instanceId;
+            this.orgId = orgId;
+            this.projectId = projectId;
+            this.scope = scope;
+            this.lockName = lockName;
+            this.deadline = deadline;
+            this.signal = signal;
+            this.callback = callback;
+        }
+
+        private synchronized void signal() {
+            signalled = true;
+            schedule(0);
+        }
+
+        private synchronized void schedule(long delay) {
+            if (done) {
+                return;
+            }
+
+            if (next != null) {
+                next.cancel(false);
+            }
+
+            long remaining = Math.max(0, deadline - System.currentTimeMillis());
+            next = scheduler.schedule(this::check, Math.min(delay, remaining), TimeUnit.MILLISECONDS);
+        }
+
+        private void check() {
+            // the checks of the same waiter don't overlap
+            synchronized (checkMutex) {
+                synchronized (this) {
+                    if (done) {
+                        return;
+                    }
+                    signalled = false;
+                }
+
+                LockEntry owner;
+                try {
+                    owner = tryLock(instanceId, orgId, projectId, scope, lockName);
+                } catch (Exception e) {
+                    log.warn("acquire ['{}', '{}'] -> error: {}", instanceId, lockName, e.getMessage());
+                    finish(null, e);
+                    return;
+                }
+
+                if (owner.instanceId().equals(instanceId) || System.currentTimeMillis() >= deadline) {
+                    finish(owner, null);
+                    return;
+                }
+
+                synchronized (this) {
+                    // signalled during the check or the lock was handed over on another server node
+                    schedule(signalled ? 0 : ACQUIRE_RECHECK_INTERVAL);
+                }
+            }
+        }
+
+        private void finish(LockEntry owner, Exception error) {
+            synchronized (this) {
+                done = true;
+                if (next != null) {
+                    next.cancel(false);
+                }
+            }
+
+            signal.remove(this);
+            callback.done(owner, error);
+        }
+    }
+}
@@ -38,9 +38,12 @@ import javax.inject.Inject;
 import javax.inject.Named;
 import javax.inject.Singleton;
 import javax.ws.rs.*;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.Suspended;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 import java.util.UUID;
+import java.util.concurrent.TimeUnit;
 
 @Named
 @Singleton
@@ -48,20 +51,23 @@ import java.util.UUID;
 @Path("/api/v1/process")
 public class ProcessLocksResource implements Resource {
 
+    private static final long MAX_ACQUIRE_TIMEOUT = TimeUnit.MINUTES.toMillis(1);
+
     private final ProcessQueueManager processQueueManager;
     private final ProcessQueueManager queueManager;
-    private final ProcessLocksDao dao;
+    private final ProcessLocksManager locksManager;
 
     @Inject
-    public ProcessLocksResource(ProcessQueueManager processQueueManager, ProcessQueueManager queueManager, ProcessLocksDao dao) {
+    public ProcessLocksResource(ProcessQueueManager processQueueManager, ProcessQueueManager queueManager, ProcessLocksManager locksManager) {
         this.processQueueManager = processQueueManager;
         this.queueManager = queueManager;
-        this.dao = dao;
+        this.locksManager = locksManager;
     }
 
     /**
      * Acquires the lock if it is available and returns the LockResult.acquired = true.
-     * If the lock is not available then this method will return the LockResult.acquired = false.
+     * If the lock is not available then this method will return the LockResult.acquired = false
+     * and the process is added to the lock's queue.
      */
     @POST
     @ApiOperation("Try lock")
@@ -74,14 +80,44 @@ public class ProcessLocksResource implements Resource {
 
         ProcessEntry e = assertProcess(instanceId);
 
-        LockEntry lock = dao.tryLock(e.instanceId(), e.orgId(), e.projectId(), scope, lockName);
-        boolean acquired = lock.instanceId().equals(instanceId);
-        AbstractWaitCondition waitCondition = acquired ? null : ProcessLockCondition.from(lock);
-        queueManager.updateWait(new ProcessKey(e.instanceId(), e.createdAt()), waitCondition);
-        return LockResult.builder()
-                .acquired(acquired)
-                .info(lock)
-                .build();
+        LockEntry lock = locksManager.tryLock(e.instanceId(), e.orgId(), e.projectId(), scope, lockName);
+        return toResult(e, lock);
+    }
+
+    /**
+     * Acquires the lock or waits until the lock is handed over to the process,
+     * but no longer than the specified timeout. Returns the LockResult.acquired = false
+     * if the timeout expired, the process stays in the lock's queue.
+     */
+    @POST
+    @ApiOperation(value = "Acquire the lock, wait if the lock is not available", response = LockResult.class)
+    @Path("/{processInstanceId}/lock/{lockName}/acquire")
+    @Produces(MediaType.APPLICATION_JSON)
+    @WithTimer
+    public void acquire(@PathParam("processInstanceId") UUID instanceId,
+                        @PathParam("lockName") String lockName,
+                        @QueryParam("scope") @DefaultValue("PROJECT") ProcessLockScope scope,
+                        @QueryParam("timeout") @DefaultValue("30000") long timeout,
+                        @Suspended AsyncResponse asyncResponse) {
+
+        ProcessEntry e = assertProcess(instanceId);
+
+        long t = timeout >= 0 ? Math.min(timeout, MAX_ACQUIRE_TIMEOUT) : MAX_ACQUIRE_TIMEOUT;
+
+        // the request's thread is released, the response is sent when the lock
+        // is handed over to the process or when the timeout expires
+        locksManager.acquire(e.instanceId(), e.orgId(), e.projectId(), scope, lockName, t, (lock, error) -> {
+            if (error != null) {
+                asyncResponse.resume(error);
+                return;
+            }
+
+            try {
+                asyncResponse.resume(toResult(e, lock));
+            } catch (Exception ex) {
+                asyncResponse.resume(ex);
+            }
+        });
     }
 
     /**
@@ -96,7 +132,17 @@ public class ProcessLocksResource implements Resource {
                        @QueryParam("scope") @DefaultValue("PROJECT") ProcessLockScope scope) {
 
         ProcessEntry e = assertProcess(instanceId);
-        dao.delete(e.instanceId(), e.orgId(), e.projectId(), scope, lockName);
+        locksManager.unlock(e.instanceId(), e.orgId(), e.projectId(), scope, lockName);
+    }
+
+    private LockResult toResult(ProcessEntry e, LockEntry lock) {
+        boolean acquired = lock.instanceId().equals(e.instanceId());
+        AbstractWaitCondition waitCondition = acquired ? null : ProcessLockCondition.from(lock);
+        queueManager.updateWait(new ProcessKey(e.instanceId(), e.createdAt()), waitCondition);
+        return LockResult.builder()
+                .acquired(acquired)
+                .info(lock)
+                .build();
     }
 
     private ProcessEntry assertProcess(UUID instanceId) {
@@ -23,8 +23,10 @@ package com.walmartlabs.concord.server.process.locks;
 import com.walmartlabs.concord.db.AbstractDao;
 import com.walmartlabs.concord.db.MainDB;
 import com.walmartlabs.concord.server.Utils;
+import com.walmartlabs.concord.server.jooq.tables.ProcessLockQueue;
 import com.walmartlabs.concord.server.jooq.tables.ProcessLocks;
 import com.walmartlabs.concord.server.jooq.tables.ProcessQueue;
+import com.walmartlabs.concord.server.jooq.tables.records.ProcessLocksRecord;
 import com.walmartlabs.concord.server.sdk.ProcessStatus;
 import com.walmartlabs.concord.server.sdk.ScheduledTask;
 import org.jooq.Configuration;
@@ -36,14 +38,17 @@ import org.slf4j.LoggerFactory;
 import javax.inject.Inject;
 import javax.inject.Named;
 import javax.inject.Singleton;
+import java.util.List;
 import java.util.UUID;
 
 import static com.walmartlabs.concord.server.jooq.Tables.PROCESS_LOCKS;
+import static com.walmartlabs.concord.server.jooq.Tables.PROCESS_LOCK_QUEUE;
 import static com.walmartlabs.concord.server.jooq.tables.ProcessQueue.PROCESS_QUEUE;
 
 /**
  * Takes care of processes dead process locks.
- * E.g. removes locks for finished processes.
+ * E.g. removes locks and lock queue entries for finished processes.
+ * The removed locks are handed over to the next waiting processes.
  */
 @Named("process-locks-watchdog")
 @Singleton
@@ -52,10 +57,12 @@ public class ProcessLocksWatchdog implements ScheduledTask {
     private static final Logger log = LoggerFactory.getLogger(ProcessLocksWatchdog.class);
 
     private final WatchdogDao dao;
+    private final ProcessLocksManager locksManager;
 
     @Inject
-    public ProcessLocksWatchdog(WatchdogDao dao) {
+    public ProcessLocksWatchdog(WatchdogDao dao, ProcessLocksManager locksManager) {
         this.dao = dao;
+        this.locksManager = locksManager;
     }
 
     @Override
@@ -66,12 +73,15 @@ public class ProcessLocksWatchdog implements ScheduledTask {
 
     @Override
     public void performTask() {
-        int count = dao.deleteStalledLocks();
-        log.debug("performTask -> {} locks deleted", count);
+        List<ProcessLocksRecord> locks = dao.deleteStalledLocks();
+        for (ProcessLocksRecord l : locks) {
+            locksManager.release(l.getOrgId(), l.getProjectId(), l.getLockScope(), l.getLockName());
+        }
+        log.debug("performTask -> {} locks deleted", locks.size());
     }
 
     @Named
-    private static final class WatchdogDao extends AbstractDao {
+    static final class WatchdogDao extends AbstractDao {
 
         private static final ProcessStatus[] FINISHED_STATUSES = {
                 ProcessStatus.FINISHED,
@@ -85,7 +95,7 @@ public class ProcessLocksWatchdog implements ScheduledTask {
             super(cfg);
         }
 
-        public int deleteStalledLocks() {
+        public List<ProcessLocksRecord> deleteStalledLocks() {
             return txResult(tx -> {
                 ProcessQueue q = PROCESS_QUEUE.as("q");
                 ProcessLocks l = PROCESS_LOCKS.as("l");
@@ -95,9 +105,18 @@ public class ProcessLocksWatchdog implements ScheduledTask {
                         .where(q.INSTANCE_ID.eq(l.INSTANCE_ID)
                                 .and(q.CURRENT_STATUS.in(Utils.toString(FINISHED_STATUSES))));
 
+                ProcessLockQueue lq = PROCESS_LOCK_QUEUE.as("lq");
+                tx.deleteFrom(lq)
+                        .where(lq.INSTANCE_ID.in(tx.select(q.INSTANCE_ID)
+                                .from(q)
+                                .where(q.INSTANCE_ID.eq(lq.INSTANCE_ID)
+                                        .and(q.CURRENT_STATUS.in(Utils.toString(FINISHED_STATUSES))))))
+                        .execute();
+
                 return tx.deleteFrom(l)
                         .where(l.INSTANCE_ID.in(finishedProcesses))
-                        .execute();
+                        .returning(l.ORG_ID, l.PROJECT_ID, l.LOCK_SCOPE, l.LOCK_NAME)
+                        .fetch();
             });
         }
     }
@@ -0,0 +1,174 @@
+package com.walmartlabs.concord.server.process.logs;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2020 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+import java.io.ByteArrayOutputStream;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Compresses archived log segments in fixed size blocks. Each block is compressed
+ * independently, so a range of the segment can be read without decompressing
+ * the whole segment.
+ */
+public final class LogArchiveUtils {
+
+    public static final int BLOCK_SIZE = 64 * 1024;
+
+    public static Archive compress(byte[] data) {
+        int blockCount = (data.length + BLOCK_SIZE - 1) / BLOCK_SIZE;
+        int[] blockOffsets = new int[blockCount];
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 4 + 64);
+        byte[] buf = new byte[BLOCK_SIZE];
+
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+        try {
+            for (int i = 0; i < blockCount; i++) {
+                blockOffsets[i] = out.size();
+
+                int off = i * BLOCK_SIZE;
+                int len = Math.min(BLOCK_SIZE, data.length - off);
+
+                deflater.reset();
+                deflater.setInput(data, off, len);
+                deflater.finish();
+                while (!deflater.finished()) {
+                    int n = deflater.deflate(buf);
+                    out.write(buf, 0, n);
+                }
+            }
+        } finally {
+            deflater.end();
+        }
+
+        return new Archive(out.toByteArray(), blockOffsets);
+    }
+
+    /**
+     * Returns the {@code [start, end)} range of the uncompressed data.
+     * Only the blocks overlapping the range are decompressed.
+     */
+    public static byte[] read(byte[] archive, int[] blockOffsets, int size, int start, int end) {
+        return read(archive, 0, blockOffsets, size, start, end);
+    }
+
+    /**
+     * Same as {@link #read(byte[], int[], int, int, int)}, but {@code blocks} contains
+     * only the part of the archive starting at {@code offset}, e.g. the blocks returned
+     * by {@link #blockRange(int[], int, int)}.
+     */
+    public static byte[] read(byte[] blocks, int offset, int[] blockOffsets, int size, int start, int end) {
+        if (start < 0 || end > size || start > end) {
+            throw new IllegalArgumentException("Invalid range [" + start + ", " + end + ") for an archive of size " + size);
+        }
+
+        byte[] result = new byte[end - start];
+        if (result.length == 0) {
+            return result;
+        }
+
+        int firstBlock = start / BLOCK_SIZE;
+        int lastBlock = (end - 1) / BLOCK_SIZE;
+
+        byte[] block = new byte[BLOCK_SIZE];
+
+        Inflater inflater = new Inflater();
+        try {
+            for (int i = firstBlock; i <= lastBlock; i++) {
+                int blockStart = i * BLOCK_SIZE;
+                int blockLen = Math.min(BLOCK_SIZE, size - blockStart);
+
+                int compressedStart = blockOffsets[i] - offset;
+                int compressedEnd = i + 1 < blockOffsets.length ? blockOffsets[i + 1] - offset : blocks.length;
+                if (compressedStart < 0 || compressedEnd > blocks.length) {
+                    throw new IllegalArgumentException("Archive block #" + i + " is out of the provided data");
+                }
+
+                inflater.reset();
+                inflater.setInput(blocks, compressedStart, compressedEnd - compressedStart);
+
+                int read = 0;
+                while (read < blockLen) {
+                    int n = inflater.inflate(block, read, blockLen - read);
+                    if (n == 0 && (inflater.finished() || inflater.needsInput())) {
+                        throw new IllegalStateException("Truncated archive block #" + i);
+                    }
+                    read += n;
+                }
+
+                int from = Math.max(start, blockStart);
+                int to = Math.min(end, blockStart + blockLen);
+                System.arraycopy(block, from - blockStart, result, from - start, to - from);
+            }
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("Invalid archive data: " + e.getMessage(), e);
+        } finally {
+            inflater.end();
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns the {@code [from, to)} range of the compressed data that contains
+     * the blocks overlapping the non-empty {@code [start, end)} range of
+     * the uncompressed data. {@code to} is {@code -1} if the range includes
+     * the last block.
+     */
+    public static int[] blockRange(int[] blockOffsets, int start, int end) {
+        if (start < 0 || start >= end) {
+            throw new IllegalArgumentException("Invalid range [" + start + ", " + end + ")");
+        }
+
+        int firstBlock = start / BLOCK_SIZE;
+        int lastBlock = (end - 1) / BLOCK_SIZE;
+        if (lastBlock >= blockOffsets.length) {
+            throw new IllegalArgumentException("Invalid range [" + start + ", " + end + ") for an archive of " + blockOffsets.length + " block(s)");
+        }
+
+        int to = lastBlock + 1 < blockOffsets.length ? blockOffsets[lastBlock + 1] : -1;
+        return new int[]{blockOffsets[firstBlock], to};
+    }
+
+    public static final class Archive {
+
+        private final byte[] data;
+        private final int[] blockOffsets;
+
+        private Archive(byte[] data, int[] blockOffsets) { // NOSONAR
+            this.data = data;
+            this.blockOffsets = blockOffsets;
+        }
+
+        public byte[] getData() {
+            return data;
+        }
+
+        public int[] getBlockOffsets() {
+            return blockOffsets;
+        }
+    }
+
+    private LogArchiveUtils() {
+    }
+}
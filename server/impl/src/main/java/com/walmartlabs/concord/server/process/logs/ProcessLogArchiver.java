@@ -0,0 +1,143 @@
+package com.walmartlabs.concord.server.process.logs;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2020 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+import com.codahale.metrics.Counter;
+import com.walmartlabs.concord.db.AbstractDao;
+import com.walmartlabs.concord.db.MainDB;
+import com.walmartlabs.concord.server.cfg.ProcessConfiguration;
+import com.walmartlabs.concord.server.sdk.ProcessKey;
+import com.walmartlabs.concord.server.sdk.ProcessStatus;
+import com.walmartlabs.concord.server.sdk.ScheduledTask;
+import com.walmartlabs.concord.server.sdk.metrics.InjectCounter;
+import org.jooq.Configuration;
+import org.jooq.Field;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+import java.time.OffsetDateTime;
+import java.util.List;
+
+import static com.walmartlabs.concord.db.PgUtils.interval;
+import static com.walmartlabs.concord.db.PgUtils.upperRange;
+import static com.walmartlabs.concord.server.jooq.Tables.PROCESS_LOG_DATA;
+import static com.walmartlabs.concord.server.jooq.tables.ProcessQueue.PROCESS_QUEUE;
+import static org.jooq.impl.DSL.*;
+
+/**
+ * Moves logs of finished processes into {@code PROCESS_LOG_ARCHIVE}.
+ *
+ * @see ProcessLogsDao#archive(ProcessKey)
+ */
+@Named("process-log-archiver")
+@Singleton
+public class ProcessLogArchiver implements ScheduledTask {
+
+    private static final Logger log = LoggerFactory.getLogger(ProcessLogArchiver.class);
+
+    private static final String[] FINAL_STATUSES = {
+            ProcessStatus.FINISHED.toString(),
+            ProcessStatus.FAILED.toString(),
+            ProcessStatus.CANCELLED.toString(),
+            ProcessStatus.TIMED_OUT.toString()
+    };
+
+    private final ProcessConfiguration cfg;
+    private final ArchiverDao archiverDao;
+    private final ProcessLogsDao logsDao;
+
+    @InjectCounter
+    private final Counter logChunksArchived;
+
+    @Inject
+    public ProcessLogArchiver(ProcessConfiguration cfg,
+                              ArchiverDao archiverDao,
+                              ProcessLogsDao logsDao,
+                              Counter logChunksArchived) {
+
+        this.cfg = cfg;
+        this.archiverDao = archiverDao;
+        this.logsDao = logsDao;
+        this.logChunksArchived = logChunksArchived;
+    }
+
+    @Override
+    public long getIntervalInSec() {
+        return cfg.getLogArchiveInterval().getSeconds();
+    }
+
+    @Override
+    public void performTask() {
+        Field<OffsetDateTime> cutoff = currentOffsetDateTime().minus(interval(cfg.getLogArchiveDelay()));
+
+        List<ProcessKey> keys = archiverDao.poll(cutoff, cfg.getLogArchiveMaxSize(), cfg.getLogArchiveBatchSize());
+        if (keys.isEmpty()) {
+            return;
+        }
+
+        long t1 = System.currentTimeMillis();
+
+        int chunks = 0;
+        for (ProcessKey k : keys) {
+            try {
+                chunks += logsDao.archive(k);
+            } catch (Exception e) {
+                log.warn("performTask -> error while archiving the log of {}: {}", k, e.getMessage());
+            }
+        }
+
+        logChunksArchived.inc(chunks);
+
+        long t2 = System.currentTimeMillis();
+        log.info("performTask -> archived {} chunk(s) of {} process(es), took {}ms", chunks, keys.size(), (t2 - t1));
+    }
+
+    @Named
+    private static class ArchiverDao extends AbstractDao {
+
+        @Inject
+        protected ArchiverDao(@MainDB Configuration cfg) {
+            super(cfg);
+        }
+
+        /**
+         * Returns finished processes with non-archived log data.
+         */
+        List<ProcessKey> poll(Field<OffsetDateTime> cutoff, int maxLogSize, int limit) {
+            return dsl().select(PROCESS_QUEUE.INSTANCE_ID, PROCESS_QUEUE.CREATED_AT)
+                    .from(PROCESS_QUEUE)
+                    .where(PROCESS_QUEUE.CURRENT_STATUS.in(FINAL_STATUSES)
+                            .and(PROCESS_QUEUE.LAST_UPDATED_AT.lessThan(cutoff))
+                            .and(exists(selectOne().from(PROCESS_LOG_DATA)
+                                    .where(PROCESS_LOG_DATA.INSTANCE_ID.eq(PROCESS_QUEUE.INSTANCE_ID)
+                                            .and(PROCESS_LOG_DATA.INSTANCE_CREATED_AT.eq(PROCESS_QUEUE.CREATED_AT)))))
+                            .and(notExists(selectOne().from(PROCESS_LOG_DATA)
+                                    .where(PROCESS_LOG_DATA.INSTANCE_ID.eq(PROCESS_QUEUE.INSTANCE_ID)
+                                            .and(PROCESS_LOG_DATA.INSTANCE_CREATED_AT.eq(PROCESS_QUEUE.CREATED_AT))
+                                            .and(upperRange(PROCESS_LOG_DATA.LOG_RANGE).greaterThan(maxLogSize))))))
+                    .limit(limit)
+                    .fetch(r -> new ProcessKey(r.value1(), r.value2()));
+        }
+    }
+}
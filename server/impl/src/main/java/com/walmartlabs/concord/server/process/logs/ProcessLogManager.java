@@ -21,6 +21,7 @@ package com.walmartlabs.concord.server.process.logs;
  */
 
 import com.codahale.metrics.Counter;
+import com.codahale.metrics.Meter;
 import com.walmartlabs.concord.common.LogUtils;
 import com.walmartlabs.concord.server.Listeners;
 import com.walmartlabs.concord.server.process.LogSegment;
@@ -28,16 +29,20 @@ import com.walmartlabs.concord.server.sdk.ProcessKey;
 import com.walmartlabs.concord.server.sdk.Range;
 import com.walmartlabs.concord.server.sdk.log.ProcessLogEntry;
 import com.walmartlabs.concord.server.sdk.metrics.InjectCounter;
+import com.walmartlabs.concord.server.sdk.metrics.InjectMeter;
 import org.jooq.DSLContext;
 
 import javax.inject.Inject;
 import javax.inject.Named;
 import javax.inject.Singleton;
 import java.time.OffsetDateTime;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.UUID;
 
 import static com.walmartlabs.concord.common.LogUtils.LogLevel;
+import static com.walmartlabs.concord.server.process.logs.ProcessLogsDao.ChunkRanges;
+import static com.walmartlabs.concord.server.process.logs.ProcessLogsDao.NewLogChunk;
 import static com.walmartlabs.concord.server.process.logs.ProcessLogsDao.ProcessLog;
 
 @Named
@@ -47,19 +52,32 @@ public class ProcessLogManager {
     private static final long SYSTEM_SEGMENT_ID = 0;
     private static final String SYSTEM_SEGMENT_NAME = "system";
     private final ProcessLogsDao logsDao;
+    private final ProcessLogTailCache tailCache;
     private final Listeners listeners;
 
     @InjectCounter
     private final Counter logBytesAppended;
 
+    @InjectMeter
+    private final Meter logChunksIngested;
+
+    @InjectMeter
+    private final Meter logBytesIngested;
+
     @Inject
     public ProcessLogManager(ProcessLogsDao logsDao,
+                             ProcessLogTailCache tailCache,
                              Listeners listeners,
-                             Counter logBytesAppended) {
+                             Counter logBytesAppended,
+                             Meter logChunksIngested,
+                             Meter logBytesIngested) {
 
         this.logsDao = logsDao;
+        this.tailCache = tailCache;
         this.listeners = listeners;
         this.logBytesAppended = logBytesAppended;
+        this.logChunksIngested = logChunksIngested;
+        this.logBytesIngested = logBytesIngested;
     }
 
     public void info(ProcessKey processKey, String log, Object... args) {
@@ -102,6 +120,10 @@ public class ProcessLogManager {
     }
 
     public ProcessLog segmentData(ProcessKey processKey, long segmentId, Integer start, Integer end) {
+        ProcessLog l = tailCache.get(processKey, segmentId, start, end);
+        if (l != null) {
+            return l;
+        }
         return logsDao.segmentData(processKey, segmentId, start, end);
     }
 
@@ -110,18 +132,52 @@ public class ProcessLogManager {
     }
 
     public int log(ProcessKey processKey, long segmentId, byte[] msg) {
-        Range range = logsDao.append(processKey, segmentId, msg);
+        ChunkRanges ranges = logsDao.append(processKey, segmentId, msg);
+        onAppend(processKey, segmentId, ranges, msg);
+        logChunksIngested.mark();
+        return ranges.getLogRange().upper();
+    }
+
+    /**
+     * Appends multiple log chunks in a single transaction. Empty chunks are skipped.
+     *
+     * @return the ranges of the appended chunks in the same order as {@code chunks}.
+     */
+    public List<Range> log(List<NewLogChunk> chunks) {
+        List<NewLogChunk> nonEmpty = new ArrayList<>(chunks.size());
+        for (NewLogChunk c : chunks) {
+            if (c.getData().length > 0) {
+                nonEmpty.add(c);
+            }
+        }
+
+        List<ChunkRanges> ranges = logsDao.append(nonEmpty);
+
+        List<Range> result = new ArrayList<>(ranges.size());
+        for (int i = 0; i < nonEmpty.size(); i++) {
+            NewLogChunk c = nonEmpty.get(i);
+            ChunkRanges r = ranges.get(i);
+            onAppend(c.getProcessKey(), c.getSegmentId(), r, c.getData());
+            result.add(r.getLogRange());
+        }
+        logChunksIngested.mark(nonEmpty.size());
+
+        return result;
+    }
+
+    private void onAppend(ProcessKey processKey, long segmentId, ChunkRanges ranges, byte[] msg) {
         logBytesAppended.inc(msg.length);
+        logBytesIngested.mark(msg.length);
+
+        tailCache.onAppend(processKey, segmentId, ranges.getSegmentRange().lower(), msg);
 
         ProcessLogEntry entry = ProcessLogEntry.builder()
                 .processKey(processKey)
-                .range(range)
+                .range(ranges.getLogRange())
                 .msg(msg)
                 .build();
 
         listeners.onProcessLogAppend(entry);
-
-        return range.upper();
     }
 
     private void log(ProcessKey processKey, LogLevel level, String msg, Object... args) {
@@ -0,0 +1,218 @@
+package com.walmartlabs.concord.server.process.logs;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2020 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+import com.codahale.metrics.Meter;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.walmartlabs.concord.server.cfg.ProcessConfiguration;
+import com.walmartlabs.concord.server.sdk.ProcessKey;
+import com.walmartlabs.concord.server.sdk.metrics.InjectMeter;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static com.walmartlabs.concord.server.process.logs.ProcessLogsDao.ProcessLog;
+import static com.walmartlabs.concord.server.process.logs.ProcessLogsDao.ProcessLogChunk;
+
+/**
+ * LRU cache of the last bytes appended to log segments. Only the segments
+ * appended since the first chunk are cached, so the cached size is always
+ * the actual size of the segment.
+ */
+@Named
+@Singleton
+public class ProcessLogTailCache {
+
+    private static final long MAX_IDLE_TIME = TimeUnit.MINUTES.toMillis(5);
+
+    private final Cache<Key, Tail> cache;
+    private final int segmentSize;
+
+    @InjectMeter
+    private final Meter logTailCacheHits;
+
+    @InjectMeter
+    private final Meter logTailCacheMisses;
+
+    @Inject
+    public ProcessLogTailCache(ProcessConfiguration cfg,
+                               Meter logTailCacheHits,
+                               Meter logTailCacheMisses) {
+
+        this.segmentSize = cfg.getLogTailCacheSegmentSize();
+
+        long maxSize = cfg.getLogTailCacheSize();
+        if (maxSize > 0 && segmentSize > 0) {
+            this.cache = CacheBuilder.newBuilder()
+                    .maximumWeight(maxSize)
+                    .<Key, Tail>weigher((k, v) -> v.capacity())
+                    .expireAfterAccess(MAX_IDLE_TIME, TimeUnit.MILLISECONDS)
+                    .build();
+        } else {
+            this.cache = null;
+        }
+
+        this.logTailCacheHits = logTailCacheHits;
+        this.logTailCacheMisses = logTailCacheMisses;
+    }
+
+    public void onAppend(ProcessKey processKey, long segmentId, int segmentOffset, byte[] data) {
+        if (cache == null) {
+            return;
+        }
+
+        Key key = new Key(processKey.getInstanceId(), segmentId);
+
+        Tail t = cache.getIfPresent(key);
+        if (t == null) {
+            if (segmentOffset == 0) {
+                t = new Tail(segmentSize);
+                t.append(0, data);
+                cache.put(key, t);
+            }
+            return;
+        }
+
+        if (!t.append(segmentOffset, data)) {
+            // missed some data, e.g. appended concurrently
+            cache.invalidate(key);
+        }
+    }
+
+    /**
+     * @return the requested range of the segment's data or {@code null}
+     * if the range is not cached.
+     */
+    public ProcessLog get(ProcessKey processKey, long segmentId, Integer start, Integer end) {
+        if (cache == null) {
+            return null;
+        }
+
+        Tail t = cache.getIfPresent(new Key(processKey.getInstanceId(), segmentId));
+        ProcessLog result = t != null ? t.read(start, end) : null;
+
+        if (result != null) {
+            logTailCacheHits.mark();
+        } else {
+            logTailCacheMisses.mark();
+        }
+
+        return result;
+    }
+
+    private static final class Tail {
+
+        private final byte[] buf;
+        private int len;
+        private int size;
+
+        private Tail(int capacity) {
+            this.buf = new byte[capacity];
+        }
+
+        private int capacity() {
+            return buf.length;
+        }
+
+        private synchronized boolean append(int offset, byte[] data) {
+            if (offset != size) {
+                return false;
+            }
+
+            if (data.length >= buf.length) {
+                System.arraycopy(data, data.length - buf.length, buf, 0, buf.length);
+                len = buf.length;
+            } else {
+                int overflow = len + data.length - buf.length;
+                if (overflow > 0) {
+                    System.arraycopy(buf, overflow, buf, 0, len - overflow);
+                    len -= overflow;
+                }
+                System.arraycopy(data, 0, buf, len, data.length);
+                len += data.length;
+            }
+
+            size += data.length;
+            return true;
+        }
+
+        private synchronized ProcessLog read(Integer start, Integer end) {
+            int tailStart = size - len;
+
+            int s;
+            int e;
+            if (start == null && end == null) {
+                s = 0;
+                e = size;
+            } else if (start != null) {
+                s = Math.min(Math.max(start, 0), size);
+                e = end != null ? Math.max(s, Math.min(end, size)) : size;
+            } else {
+                s = Math.max(size - end, 0);
+                e = size;
+            }
+
+            if (s < tailStart) {
+                return null;
+            }
+
+            List<ProcessLogChunk> chunks = Collections.emptyList();
+            if (s < e) {
+                byte[] ab = new byte[e - s];
+                System.arraycopy(buf, s - tailStart, ab, 0, ab.length);
+                chunks = Collections.singletonList(new ProcessLogChunk(s, ab));
+            }
+
+            return new ProcessLog(size, chunks);
+        }
+    }
+
+    private static final class Key {
+
+        private final UUID instanceId;
+        private final long segmentId;
+
+        private Key(UUID instanceId, long segmentId) {
+            this.instanceId = instanceId;
+            this.segmentId = segmentId;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            Key key = (Key) o;
+            return segmentId == key.segmentId && instanceId.equals(key.instanceId);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(instanceId, segmentId);
+        }
+    }
+}
@@ -23,22 +23,27 @@ package com.walmartlabs.concord.server.process.logs;
 import com.walmartlabs.concord.db.AbstractDao;
 import com.walmartlabs.concord.db.MainDB;
 import com.walmartlabs.concord.db.PgIntRange;
+import com.walmartlabs.concord.server.jooq.tables.records.ProcessLogArchiveRecord;
 import com.walmartlabs.concord.server.jooq.tables.records.ProcessLogDataRecord;
 import com.walmartlabs.concord.server.jooq.tables.records.ProcessLogSegmentsRecord;
 import com.walmartlabs.concord.server.process.LogSegment;
 import com.walmartlabs.concord.server.sdk.ProcessKey;
 import com.walmartlabs.concord.server.sdk.Range;
 import org.jooq.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import javax.inject.Inject;
 import javax.inject.Named;
+import java.io.ByteArrayOutputStream;
 import java.io.Serializable;
 import java.time.OffsetDateTime;
-import java.util.List;
-import java.util.UUID;
+import java.util.*;
 
+import static com.walmartlabs.concord.db.PgUtils.lowerRange;
 import static com.walmartlabs.concord.db.PgUtils.upperRange;
 import static com.walmartlabs.concord.server.jooq.Routines.*;
+import static com.walmartlabs.concord.server.jooq.Tables.PROCESS_LOG_ARCHIVE;
 import static com.walmartlabs.concord.server.jooq.Tables.PROCESS_LOG_DATA;
 import static com.walmartlabs.concord.server.jooq.Tables.PROCESS_LOG_SEGMENTS;
 import static org.jooq.impl.DSL.*;
@@ -46,6 +51,8 @@ import static org.jooq.impl.DSL.*;
 @Named
 public class ProcessLogsDao extends AbstractDao {
 
+    private static final Logger log = LoggerFactory.getLogger(ProcessLogsDao.class);
+
     @Inject
     public ProcessLogsDao(@MainDB Configuration cfg) {
         super(cfg);
@@ -54,9 +61,9 @@ public class ProcessLogsDao extends AbstractDao {
     /**
      * Appends a chunk to the process log. Automatically calculates the chunk's range.
      *
-     * @return the new chunk range.
+     * @return the new chunk ranges.
      */
-    public Range append(ProcessKey processKey, long segmentId, byte[] data) {
+    public ChunkRanges append(ProcessKey processKey, long segmentId, byte[] data) {
         UUID instanceId = processKey.getInstanceId();
         OffsetDateTime createdAt = processKey.getCreatedAt();
 
@@ -73,10 +80,98 @@ public class ProcessLogsDao extends AbstractDao {
                         processLogDataSegmentNextRange2(instanceId, createdAt, segmentId, data.length),
                         processLogDataNextRange2(instanceId, createdAt, data.length),
                         value(data))
-                .returning(PROCESS_LOG_DATA.LOG_RANGE)
+                .returning(PROCESS_LOG_DATA.LOG_RANGE, PROCESS_LOG_DATA.SEGMENT_RANGE)
                 .fetchOne());
 
-        return PgIntRange.parse(r.getLogRange().toString());
+        return new ChunkRanges(PgIntRange.parse(r.getLogRange().toString()), PgIntRange.parse(r.getSegmentRange().toString()));
+    }
+
+    /**
+     * Appends multiple chunks, possibly for different processes and segments,
+     * using a single multi-row insert. Chunks are appended in the order
+     * of the list, ranges are calculated from the current sizes of the process
+     * logs and the log segments.
+     *
+     * @return the new chunk ranges in the same order as {@code chunks}.
+     */
+    public List<ChunkRanges> append(List<NewLogChunk> chunks) {
+        return txResult(tx -> append(tx, chunks));
+    }
+
+    public List<ChunkRanges> append(DSLContext tx, List<NewLogChunk> chunks) {
+        if (chunks.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        Set<Row2<UUID, OffsetDateTime>> processes = new HashSet<>();
+        Set<Row3<UUID, OffsetDateTime, Long>> segments = new HashSet<>();
+        for (NewLogChunk c : chunks) {
+            ProcessKey pk = c.getProcessKey();
+            processes.add(row(pk.getInstanceId(), pk.getCreatedAt()));
+            segments.add(row(pk.getInstanceId(), pk.getCreatedAt(), c.getSegmentId()));
+        }
+
+        Field<Integer> logUpper = max(upperRange(PROCESS_LOG_DATA.LOG_RANGE));
+        Map<UUID, Integer> logOffsets = new HashMap<>();
+        tx.select(PROCESS_LOG_DATA.INSTANCE_ID, logUpper)
+                .from(PROCESS_LOG_DATA)
+                .where(row(PROCESS_LOG_DATA.INSTANCE_ID, PROCESS_LOG_DATA.INSTANCE_CREATED_AT).in(processes))
+                .groupBy(PROCESS_LOG_DATA.INSTANCE_ID)
+                .forEach(r -> logOffsets.put(r.value1(), r.value2()));
+
+        Field<Integer> segmentUpper = max(upperRange(PROCESS_LOG_DATA.SEGMENT_RANGE));
+        Map<UUID, Map<Long, Integer>> segmentOffsets = new HashMap<>();
+        tx.select(PROCESS_LOG_DATA.INSTANCE_ID, PROCESS_LOG_DATA.SEGMENT_ID, segmentUpper)
+                .from(PROCESS_LOG_DATA)
+                .where(row(PROCESS_LOG_DATA.INSTANCE_ID, PROCESS_LOG_DATA.INSTANCE_CREATED_AT, PROCESS_LOG_DATA.SEGMENT_ID).in(segments))
+                .groupBy(PROCESS_LOG_DATA.INSTANCE_ID, PROCESS_LOG_DATA.SEGMENT_ID)
+                .forEach(r -> segmentOffsets.computeIfAbsent(r.value1(), k -> new HashMap<>()).put(r.value2(), r.value3()));
+
+        // the archived data of the same processes, if any
+        tx.select(PROCESS_LOG_ARCHIVE.INSTANCE_ID, max(PROCESS_LOG_ARCHIVE.LOG_UPPER))
+                .from(PROCESS_LOG_ARCHIVE)
+                .where(row(PROCESS_LOG_ARCHIVE.INSTANCE_ID, PROCESS_LOG_ARCHIVE.INSTANCE_CREATED_AT).in(processes))
+                .groupBy(PROCESS_LOG_ARCHIVE.INSTANCE_ID)
+                .forEach(r -> logOffsets.merge(r.value1(), r.value2(), Math::max));
+
+        tx.select(PROCESS_LOG_ARCHIVE.INSTANCE_ID, PROCESS_LOG_ARCHIVE.SEGMENT_ID, PROCESS_LOG_ARCHIVE.SEGMENT_SIZE)
+                .from(PROCESS_LOG_ARCHIVE)
+                .where(row(PROCESS_LOG_ARCHIVE.INSTANCE_ID, PROCESS_LOG_ARCHIVE.INSTANCE_CREATED_AT, PROCESS_LOG_ARCHIVE.SEGMENT_ID).in(segments))
+                .forEach(r -> segmentOffsets.computeIfAbsent(r.value1(), k -> new HashMap<>()).merge(r.value2(), r.value3(), Math::max));
+
+        InsertValuesStep6<ProcessLogDataRecord, UUID, OffsetDateTime, Long, Object, Object, byte[]> q = tx.insertInto(PROCESS_LOG_DATA)
+                .columns(PROCESS_LOG_DATA.INSTANCE_ID,
+                        PROCESS_LOG_DATA.INSTANCE_CREATED_AT,
+                        PROCESS_LOG_DATA.SEGMENT_ID,
+                        PROCESS_LOG_DATA.SEGMENT_RANGE,
+                        PROCESS_LOG_DATA.LOG_RANGE,
+                        PROCESS_LOG_DATA.CHUNK_DATA);
+
+        List<ChunkRanges> result = new ArrayList<>(chunks.size());
+        for (NewLogChunk c : chunks) {
+            UUID instanceId = c.getProcessKey().getInstanceId();
+            int len = c.getData().length;
+
+            int logStart = logOffsets.getOrDefault(instanceId, 0);
+            logOffsets.put(instanceId, logStart + len);
+
+            Map<Long, Integer> m = segmentOffsets.computeIfAbsent(instanceId, k -> new HashMap<>());
+            int segmentStart = m.getOrDefault(c.getSegmentId(), 0);
+            m.put(c.getSegmentId(), segmentStart + len);
+
+            q.values(value(instanceId),
+                    value(c.getProcessKey().getCreatedAt()),
+                    value(c.getSegmentId()),
+                    intRange(segmentStart, segmentStart + len),
+                    intRange(logStart, logStart + len),
+                    value(c.getData()));
+
+            result.add(new ChunkRanges(range(logStart, logStart + len), range(segmentStart, segmentStart + len)));
+        }
+
+        q.execute();
+
+        return result;
     }
 
     public long createSegment(ProcessKey processKey, UUID correlationId, String name, OffsetDateTime createdAt, String status) {
@@ -150,42 +245,308 @@ public class ProcessLogsDao extends AbstractDao {
     }
 
     public ProcessLog segmentData(ProcessKey processKey, long segmentId, Integer start, Integer end) {
-        UUID instanceId = processKey.getInstanceId();
-        OffsetDateTime createdAt = processKey.getCreatedAt();
-
         DSLContext tx = dsl();
 
-        List<ProcessLogChunk> chunks = getSegmentChunks(tx, processKey, segmentId, start, end);
+        ArchivedSegment archived = getArchivedSegmentInfo(tx, processKey, segmentId);
+        if (archived == null) {
+            List<ProcessLogChunk> chunks = getSegmentChunks(tx, processKey, segmentId, start, end);
+            int size = getSegmentSize(tx, processKey, segmentId);
+            return new ProcessLog(size, chunks);
+        }
+
+        // the segment was archived, the chunks appended after that (if any) are still in PROCESS_LOG_DATA
+        int size = Math.max(archived.size, getSegmentSize(tx, processKey, segmentId));
+        Bounds b = Bounds.of(size, start, end);
 
-        Field<Integer> upperRange = max(upperRange(PROCESS_LOG_DATA.SEGMENT_RANGE));
-        int size = tx.select(upperRange)
-                .from(PROCESS_LOG_DATA)
-                .where(PROCESS_LOG_DATA.INSTANCE_ID.eq(instanceId)
-                        .and(PROCESS_LOG_DATA.INSTANCE_CREATED_AT.eq(createdAt))
-                        .and(PROCESS_LOG_DATA.SEGMENT_ID.eq(segmentId)))
-                .fetchOptional(upperRange)
-                .orElse(0);
+        List<ProcessLogChunk> chunks = new ArrayList<>();
+        if (b.start < b.end && b.start < archived.size) {
+            int archivedEnd = Math.min(b.end, archived.size);
+
+            // fetch only the compressed blocks overlapping the range
+            int[] r = LogArchiveUtils.blockRange(archived.blockOffsets, b.start, archivedEnd);
+            byte[] blocks = getArchiveData(tx, processKey, segmentId, r[0], r[1]);
+
+            byte[] ab = LogArchiveUtils.read(blocks, r[0], archived.blockOffsets, archived.size, b.start, archivedEnd);
+            chunks.add(new ProcessLogChunk(b.start, ab));
+        }
 
-        return new ProcessLogsDao.ProcessLog(size, chunks);
+        if (b.end > archived.size) {
+            chunks.addAll(getSegmentChunks(tx, processKey, segmentId, Math.max(b.start, archived.size), b.end));
+        }
+
+        return new ProcessLog(size, chunks);
     }
 
     public ProcessLog data(ProcessKey processKey, Integer start, Integer end) {
+        DSLContext tx = dsl();
+
+        List<ArchivedSegment> archived = getArchivedSegmentsInfo(tx, processKey);
+        if (archived.isEmpty()) {
+            List<ProcessLogChunk> chunks = getDataChunks(tx, processKey, start, end);
+            int size = getLogSize(tx, processKey);
+            return new ProcessLog(size, chunks);
+        }
+
+        int size = getLogSize(tx, processKey);
+        for (ArchivedSegment a : archived) {
+            size = Math.max(size, a.logUpper);
+        }
+
+        Bounds b = Bounds.of(size, start, end);
+
+        List<ProcessLogChunk> chunks = new ArrayList<>();
+        for (ArchivedSegment a : archived) {
+            chunks.addAll(getArchivedChunks(tx, processKey, a, b));
+        }
+
+        if (b.start < b.end) {
+            chunks.addAll(getDataChunks(tx, processKey, b.start, b.end));
+        }
+
+        chunks.sort(Comparator.comparingInt(ProcessLogChunk::getStart));
+
+        return new ProcessLog(size, chunks);
+    }
+
+    /**
+     * Returns the chunks of the archived segment that overlap the specified bounds
+     * of the process log. Only the compressed blocks containing these chunks are
+     * fetched and decompressed.
+     */
+    private List<ProcessLogChunk> getArchivedChunks(DSLContext tx, ProcessKey processKey, ArchivedSegment a, Bounds b) {
+        // the [from, to) range of the segment data that contains the overlapping chunks
+        int from = -1;
+        int to = -1;
+
+        int segmentOffset = 0;
+        for (int i = 0; i < a.chunkLogOffsets.length; i++) {
+            int logStart = a.chunkLogOffsets[i];
+            int len = a.chunkSizes[i];
+
+            if (logStart < b.end && logStart + len > b.start) {
+                if (from < 0) {
+                    from = segmentOffset;
+                }
+                to = segmentOffset + len;
+            }
+
+            segmentOffset += len;
+        }
+
+        if (from < 0 || from == to) {
+            return Collections.emptyList();
+        }
+
+        int[] r = LogArchiveUtils.blockRange(a.blockOffsets, from, to);
+        byte[] blocks = getArchiveData(tx, processKey, a.segmentId, r[0], r[1]);
+        byte[] segmentData = LogArchiveUtils.read(blocks, r[0], a.blockOffsets, a.size, from, to);
+
+        List<ProcessLogChunk> result = new ArrayList<>();
+
+        segmentOffset = 0;
+        for (int i = 0; i < a.chunkLogOffsets.length; i++) {
+            int logStart = a.chunkLogOffsets[i];
+            int len = a.chunkSizes[i];
+
+            if (logStart < b.end && logStart + len > b.start) {
+                result.add(new ProcessLogChunk(logStart, Arrays.copyOfRange(segmentData, segmentOffset - from, segmentOffset - from + len)));
+            }
+
+            segmentOffset += len;
+        }
+
+        return result;
+    }
+
+    /**
+     * Moves all chunks of the specified process from {@code PROCESS_LOG_DATA} into
+     * {@code PROCESS_LOG_ARCHIVE}, one compressed record per segment. Chunks appended
+     * after a segment was archived are merged into the existing record.
+     *
+     * @return number of archived chunks
+     */
+    public int archive(ProcessKey processKey) {
+        return txResult(tx -> archive(tx, processKey));
+    }
+
+    private int archive(DSLContext tx, ProcessKey processKey) {
         UUID instanceId = processKey.getInstanceId();
         OffsetDateTime createdAt = processKey.getCreatedAt();
 
-        DSLContext tx = dsl();
+        Map<Long, Result<Record5<Long, Long, Integer, Integer, byte[]>>> segments = tx.select(PROCESS_LOG_DATA.LOG_SEQ,
+                PROCESS_LOG_DATA.SEGMENT_ID,
+                lowerRange(PROCESS_LOG_DATA.SEGMENT_RANGE),
+                lowerRange(PROCESS_LOG_DATA.LOG_RANGE),
+                PROCESS_LOG_DATA.CHUNK_DATA)
+                .from(PROCESS_LOG_DATA)
+                .where(PROCESS_LOG_DATA.INSTANCE_ID.eq(instanceId)
+                        .and(PROCESS_LOG_DATA.INSTANCE_CREATED_AT.eq(createdAt)))
+                .orderBy(PROCESS_LOG_DATA.SEGMENT_ID, PROCESS_LOG_DATA.SEGMENT_RANGE)
+                .fetchGroups(PROCESS_LOG_DATA.SEGMENT_ID);
+
+        List<Long> archivedSeqs = new ArrayList<>();
+
+        for (Map.Entry<Long, Result<Record5<Long, Long, Integer, Integer, byte[]>>> e : segments.entrySet()) {
+            long segmentId = e.getKey();
+            Result<Record5<Long, Long, Integer, Integer, byte[]>> rows = e.getValue();
+
+            ArchivedSegment prev = getArchivedSegment(tx, processKey, segmentId);
+
+            ByteArrayOutputStream data = new ByteArrayOutputStream();
+            List<Integer> logOffsets = new ArrayList<>();
+            List<Integer> sizes = new ArrayList<>();
+            int logUpper = 0;
+
+            if (prev != null) {
+                data.write(LogArchiveUtils.read(prev.data, prev.blockOffsets, prev.size, 0, prev.size), 0, prev.size);
+                logOffsets.addAll(Arrays.asList(prev.chunkLogOffsets));
+                sizes.addAll(Arrays.asList(prev.chunkSizes));
+                logUpper = prev.logUpper;
+            }
+
+            boolean contiguous = true;
+            for (Record5<Long, Long, Integer, Integer, byte[]> r : rows) {
+                if (r.value3() != data.size()) {
+                    contiguous = false;
+                    break;
+                }
+
+                byte[] ab = r.value5();
+                data.write(ab, 0, ab.length);
+                logOffsets.add(r.value4());
+                sizes.add(ab.length);
+                logUpper = Math.max(logUpper, r.value4() + ab.length);
+            }
+
+            if (!contiguous) {
+                // shouldn't happen unless the chunks were appended concurrently, keep the segment as is
+                log.warn("archive ['{}', {}] -> non-contiguous segment data, skipping", processKey, segmentId);
+                continue;
+            }
+
+            byte[] ab = data.toByteArray();
+            LogArchiveUtils.Archive archive = LogArchiveUtils.compress(ab);
+
+            tx.insertInto(PROCESS_LOG_ARCHIVE)
+                    .set(PROCESS_LOG_ARCHIVE.INSTANCE_ID, instanceId)
+                    .set(PROCESS_LOG_ARCHIVE.INSTANCE_CREATED_AT, createdAt)
+                    .set(PROCESS_LOG_ARCHIVE.SEGMENT_ID, segmentId)
+                    .set(PROCESS_LOG_ARCHIVE.SEGMENT_SIZE, ab.length)
+                    .set(PROCESS_LOG_ARCHIVE.LOG_UPPER, logUpper)
+                    .set(PROCESS_LOG_ARCHIVE.CHUNK_LOG_OFFSETS, logOffsets.toArray(new Integer[0]))
+                    .set(PROCESS_LOG_ARCHIVE.CHUNK_SIZES, sizes.toArray(new Integer[0]))
+                    .set(PROCESS_LOG_ARCHIVE.BLOCK_OFFSETS, toObjects(archive.getBlockOffsets()))
+                    .set(PROCESS_LOG_ARCHIVE.ARCHIVE_DATA, archive.getData())
+                    .onConflict(PROCESS_LOG_ARCHIVE.INSTANCE_ID, PROCESS_LOG_ARCHIVE.INSTANCE_CREATED_AT, PROCESS_LOG_ARCHIVE.SEGMENT_ID)
+                    .doUpdate()
+                    .set(PROCESS_LOG_ARCHIVE.SEGMENT_SIZE, ab.length)
+                    .set(PROCESS_LOG_ARCHIVE.LOG_UPPER, logUpper)
+                    .set(PROCESS_LOG_ARCHIVE.CHUNK_LOG_OFFSETS, logOffsets.toArray(new Integer[0]))
+                    .set(PROCESS_LOG_ARCHIVE.CHUNK_SIZES, sizes.toArray(new Integer[0]))
+                    .set(PROCESS_LOG_ARCHIVE.BLOCK_OFFSETS, toObjects(archive.getBlockOffsets()))
+                    .set(PROCESS_LOG_ARCHIVE.ARCHIVE_DATA, archive.getData())
+                    .set(PROCESS_LOG_ARCHIVE.ARCHIVED_AT, currentOffsetDateTime())
+                    .execute();
+
+            for (Record5<Long, Long, Integer, Integer, byte[]> r : rows) {
+                archivedSeqs.add(r.value1());
+            }
+        }
 
-        List<ProcessLogChunk> chunks = getDataChunks(tx, processKey, start, end);
+        if (archivedSeqs.isEmpty()) {
+            return 0;
+        }
 
+        // delete only the archived rows, the chunks appended concurrently stay in PROCESS_LOG_DATA
+        return tx.deleteFrom(PROCESS_LOG_DATA)
+                .where(PROCESS_LOG_DATA.INSTANCE_ID.eq(instanceId)
+                        .and(PROCESS_LOG_DATA.INSTANCE_CREATED_AT.eq(createdAt))
+                        .and(PROCESS_LOG_DATA.LOG_SEQ.eq(any(archivedSeqs.toArray(new Long[0])))))
+                .execute();
+    }
+
+    private int getSegmentSize(DSLContext tx, ProcessKey processKey, long segmentId) {
+        Field<Integer> upperRange = max(upperRange(PROCESS_LOG_DATA.SEGMENT_RANGE));
+        return tx.select(upperRange)
+                .from(PROCESS_LOG_DATA)
+                .where(PROCESS_LOG_DATA.INSTANCE_ID.eq(processKey.getInstanceId())
+                        .and(PROCESS_LOG_DATA.INSTANCE_CREATED_AT.eq(processKey.getCreatedAt()))
+                        .and(PROCESS_LOG_DATA.SEGMENT_ID.eq(segmentId)))
+                .fetchOptional(upperRange)
+                .orElse(0);
+    }
+
+    private int getLogSize(DSLContext tx, ProcessKey processKey) {
         Field<Integer> upperRange = max(upperRange(PROCESS_LOG_DATA.LOG_RANGE));
-        int size = tx.select(upperRange)
+        return tx.select(upperRange)
                 .from(PROCESS_LOG_DATA)
-                .where(PROCESS_LOG_DATA.INSTANCE_ID.eq(instanceId)
-                        .and(PROCESS_LOG_DATA.INSTANCE_CREATED_AT.eq(createdAt)))
+                .where(PROCESS_LOG_DATA.INSTANCE_ID.eq(processKey.getInstanceId())
+                        .and(PROCESS_LOG_DATA.INSTANCE_CREATED_AT.eq(processKey.getCreatedAt())))
                 .fetchOptional(upperRange)
                 .orElse(0);
+    }
 
-        return new ProcessLog(size, chunks);
+    private ArchivedSegment getArchivedSegment(DSLContext tx, ProcessKey processKey, long segmentId) {
+        return tx.selectFrom(PROCESS_LOG_ARCHIVE)
+                .where(PROCESS_LOG_ARCHIVE.INSTANCE_ID.eq(processKey.getInstanceId())
+                        .and(PROCESS_LOG_ARCHIVE.INSTANCE_CREATED_AT.eq(processKey.getCreatedAt()))
+                        .and(PROCESS_LOG_ARCHIVE.SEGMENT_ID.eq(segmentId)))
+                .fetchOne(ProcessLogsDao::toArchivedSegment);
+    }
+
+    /**
+     * Same as {@link #getArchivedSegment(DSLContext, ProcessKey, long)}, but without
+     * the archive data.
+     */
+    private ArchivedSegment getArchivedSegmentInfo(DSLContext tx, ProcessKey processKey, long segmentId) {
+        return tx.select(PROCESS_LOG_ARCHIVE.SEGMENT_SIZE,
+                PROCESS_LOG_ARCHIVE.LOG_UPPER,
+                PROCESS_LOG_ARCHIVE.CHUNK_LOG_OFFSETS,
+                PROCESS_LOG_ARCHIVE.CHUNK_SIZES,
+                PROCESS_LOG_ARCHIVE.BLOCK_OFFSETS)
+                .from(PROCESS_LOG_ARCHIVE)
+                .where(PROCESS_LOG_ARCHIVE.INSTANCE_ID.eq(processKey.getInstanceId())
+                        .and(PROCESS_LOG_ARCHIVE.INSTANCE_CREATED_AT.eq(processKey.getCreatedAt()))
+                        .and(PROCESS_LOG_ARCHIVE.SEGMENT_ID.eq(segmentId)))
+                .fetchOne(r -> toArchivedSegment(r.into(PROCESS_LOG_ARCHIVE)));
+    }
+
+    /**
+     * Returns the {@code [from, to)} range of the compressed data, or the data
+     * starting at {@code from} if {@code to} is {@code -1}. Relies on the external
+     * storage of {@code ARCHIVE_DATA}: substring() reads only the requested range.
+     */
+    private byte[] getArchiveData(DSLContext tx, ProcessKey processKey, long segmentId, int from, int to) {
+        Field<byte[]> data;
+        if (to < 0) {
+            data = field("substring({0} from {1})", byte[].class, PROCESS_LOG_ARCHIVE.ARCHIVE_DATA, val(from + 1));
+        } else {
+            data = field("substring({0} from {1} for {2})", byte[].class, PROCESS_LOG_ARCHIVE.ARCHIVE_DATA, val(from + 1), val(to - from));
+        }
+
+        return tx.select(data)
+                .from(PROCESS_LOG_ARCHIVE)
+                .where(PROCESS_LOG_ARCHIVE.INSTANCE_ID.eq(processKey.getInstanceId())
+                        .and(PROCESS_LOG_ARCHIVE.INSTANCE_CREATED_AT.eq(processKey.getCreatedAt()))
+                        .and(PROCESS_LOG_ARCHIVE.SEGMENT_ID.eq(segmentId)))
+                .fetchOne(data);
+    }
+
+    /**
+     * Returns all archived segments of the specified process, without the archive data.
+     */
+    private List<ArchivedSegment> getArchivedSegmentsInfo(DSLContext tx, ProcessKey processKey) {
+        return tx.select(PROCESS_LOG_ARCHIVE.SEGMENT_ID,
+                PROCESS_LOG_ARCHIVE.SEGMENT_SIZE,
+                PROCESS_LOG_ARCHIVE.LOG_UPPER,
+                PROCESS_LOG_ARCHIVE.CHUNK_LOG_OFFSETS,
+                PROCESS_LOG_ARCHIVE.CHUNK_SIZES,
+                PROCESS_LOG_ARCHIVE.BLOCK_OFFSETS)
+                .from(PROCESS_LOG_ARCHIVE)
+                .where(PROCESS_LOG_ARCHIVE.INSTANCE_ID.eq(processKey.getInstanceId())
+                        .and(PROCESS_LOG_ARCHIVE.INSTANCE_CREATED_AT.eq(processKey.getCreatedAt())))
+                .orderBy(PROCESS_LOG_ARCHIVE.SEGMENT_ID)
+                .fetch(r -> toArchivedSegment(r.into(PROCESS_LOG_ARCHIVE)));
     }
 
     private List<ProcessLogChunk> getSegmentChunks(DSLContext tx, ProcessKey processKey, long segmentId, Integer start, Integer end) {
@@ -271,6 +632,37 @@ public class ProcessLogsDao extends AbstractDao {
         }
     }
 
+    private static Range range(int lower, int upper) {
+        return Range.builder()
+                .lowerMode(Range.Mode.INCLUSIVE)
+                .lower(lower)
+                .upper(upper)
+                .upperMode(Range.Mode.EXCLUSIVE)
+                .build();
+    }
+
+    private static Field<Object> intRange(int lower, int upper) {
+        return field("int4range({0}, {1})", Object.class, value(lower), value(upper));
+    }
+
+    private static ArchivedSegment toArchivedSegment(ProcessLogArchiveRecord r) {
+        Integer[] blockOffsets = r.getBlockOffsets();
+        int[] offsets = new int[blockOffsets.length];
+        for (int i = 0; i < offsets.length; i++) {
+            offsets[i] = blockOffsets[i];
+        }
+
+        return new ArchivedSegment(r.getSegmentId(), r.getSegmentSize(), r.getLogUpper(), r.getChunkLogOffsets(), r.getChunkSizes(), offsets, r.getArchiveData());
+    }
+
+    private static Integer[] toObjects(int[] values) {
+        Integer[] result = new Integer[values.length];
+        for (int i = 0; i < values.length; i++) {
+            result[i] = values[i];
+        }
+        return result;
+    }
+
     private static ProcessLogChunk toChunk(Record2<Object, byte[]> r) {
         return new ProcessLogChunk((Integer) r.value1(), r.value2());
     }
@@ -307,6 +699,104 @@ public class ProcessLogsDao extends AbstractDao {
         }
     }
 
+    private static final class ArchivedSegment {
+
+        private final Long segmentId;
+        private final int size;
+        private final int logUpper;
+        private final Integer[] chunkLogOffsets;
+        private final Integer[] chunkSizes;
+        private final int[] blockOffsets;
+        private final byte[] data;
+
+        private ArchivedSegment(Long segmentId, int size, int logUpper, Integer[] chunkLogOffsets, Integer[] chunkSizes, int[] blockOffsets, byte[] data) { // NOSONAR
+            this.segmentId = segmentId;
+            this.size = size;
+            this.logUpper = logUpper;
+            this.chunkLogOffsets = chunkLogOffsets;
+            this.chunkSizes = chunkSizes;
+            this.blockOffsets = blockOffsets;
+            this.data = data;
+        }
+    }
+
+    /**
+     * Effective {@code [start, end)} bounds of a range request.
+     */
+    private static final class Bounds {
+
+        private static Bounds of(int size, Integer start, Integer end) {
+            int s;
+            int e;
+            if (start == null && end == null) {
+                // entire file
+                s = 0;
+                e = size;
+            } else if (start != null) {
+                // [start, end)
+                s = Math.min(Math.max(start, 0), size);
+                e = end != null ? Math.min(end, size) : size;
+            } else {
+                // last N bytes
+                s = Math.max(size - end, 0);
+                e = size;
+            }
+            return new Bounds(s, Math.max(s, e));
+        }
+
+        private final int start;
+        private final int end;
+
+        private Bounds(int start, int end) {
+            this.start = start;
+            this.end = end;
+        }
+    }
+
+    public static final class ChunkRanges {
+
+        private final Range logRange;
+        private final Range segmentRange;
+
+        public ChunkRanges(Range logRange, Range segmentRange) {
+            this.logRange = logRange;
+            this.segmentRange = segmentRange;
+        }
+
+        public Range getLogRange() {
+            return logRange;
+        }
+
+        public Range getSegmentRange() {
+            return segmentRange;
+        }
+    }
+
+    public static final class NewLogChunk {
+
+        private final ProcessKey processKey;
+        private final long segmentId;
+        private final byte[] data;
+
+        public NewLogChunk(ProcessKey processKey, long segmentId, byte[] data) { // NOSONAR
+            this.processKey = processKey;
+            this.segmentId = segmentId;
+            this.data = data;
+        }
+
+        public ProcessKey getProcessKey() {
+            return processKey;
+        }
+
+        public long getSegmentId() {
+            return segmentId;
+        }
+
+        public byte[] getData() {
+            return data;
+        }
+    }
+
     public static final class ProcessLog implements Serializable {
 
         private final int size;
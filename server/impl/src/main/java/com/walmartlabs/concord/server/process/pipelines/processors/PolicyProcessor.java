@@ -23,6 +23,7 @@ package com.walmartlabs.concord.server.process.pipelines.processors;
 import com.walmartlabs.concord.policyengine.PolicyEngine;
 import com.walmartlabs.concord.server.process.Payload;
 import com.walmartlabs.concord.server.process.ProcessException;
+import com.walmartlabs.concord.server.process.WorkspaceScanner;
 import com.walmartlabs.concord.server.process.logs.ProcessLogManager;
 import com.walmartlabs.concord.server.process.pipelines.processors.policy.PolicyApplier;
 import com.walmartlabs.concord.server.sdk.ProcessKey;
@@ -39,11 +40,13 @@ public class PolicyProcessor implements PayloadProcessor {
 
     private final ProcessLogManager logManager;
     private final Set<PolicyApplier> appliers;
+    private final WorkspaceScanner workspaceScanner;
 
     @Inject
-    public PolicyProcessor(ProcessLogManager logManager, Set<PolicyApplier> appliers) {
+    public PolicyProcessor(ProcessLogManager logManager, Set<PolicyApplier> appliers, WorkspaceScanner workspaceScanner) {
         this.logManager = logManager;
         this.appliers = appliers;
+        this.workspaceScanner = workspaceScanner;
     }
 
     @Override
@@ -58,9 +61,16 @@ public class PolicyProcessor implements PayloadProcessor {
         logManager.info(processKey, "Applying policies...");
 
         try {
+            // walk the workspace once for all policies that need it
+            // the scan is not passed further, the next processors might modify the workspace
+            Payload p = payload;
+            if (policy.getWorkspacePolicy().requiresScan() || policy.getFilePolicy().requiresScan()) {
+                p = payload.putHeader(Payload.WORKSPACE_SCAN, workspaceScanner.scan(payload.getHeader(Payload.WORKSPACE_DIR)));
+            }
+
             // TODO merge check results
             for (PolicyApplier a : appliers) {
-                a.apply(payload, policy);
+                a.apply(p, policy);
             }
         } catch (ProcessException e) {
             throw e;
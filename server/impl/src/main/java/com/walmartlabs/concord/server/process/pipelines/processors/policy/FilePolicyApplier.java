@@ -24,6 +24,7 @@ import com.codahale.metrics.Counter;
 import com.walmartlabs.concord.policyengine.CheckResult;
 import com.walmartlabs.concord.policyengine.FileRule;
 import com.walmartlabs.concord.policyengine.PolicyEngine;
+import com.walmartlabs.concord.policyengine.WorkspaceScan;
 import com.walmartlabs.concord.server.process.Payload;
 import com.walmartlabs.concord.server.process.ProcessException;
 import com.walmartlabs.concord.server.process.logs.ProcessLogManager;
@@ -56,8 +57,9 @@ public class FilePolicyApplier implements PolicyApplier {
     public void apply(Payload payload, PolicyEngine policy) throws Exception {
         ProcessKey processKey = payload.getProcessKey();
         Path workDir = payload.getHeader(Payload.WORKSPACE_DIR);
+        WorkspaceScan scan = payload.getHeader(Payload.WORKSPACE_SCAN);
 
-        CheckResult<FileRule, Path> result = policy.getFilePolicy().check(workDir);
+        CheckResult<FileRule, Path> result = scan != null ? policy.getFilePolicy().check(scan) : policy.getFilePolicy().check(workDir);
 
         result.getWarn().forEach(i -> {
             policyWarn.inc();
@@ -24,6 +24,7 @@ import com.codahale.metrics.Counter;
 import com.walmartlabs.concord.policyengine.CheckResult;
 import com.walmartlabs.concord.policyengine.PolicyEngine;
 import com.walmartlabs.concord.policyengine.WorkspaceRule;
+import com.walmartlabs.concord.policyengine.WorkspaceScan;
 import com.walmartlabs.concord.server.process.Payload;
 import com.walmartlabs.concord.server.process.ProcessException;
 import com.walmartlabs.concord.server.process.logs.ProcessLogManager;
@@ -58,8 +59,9 @@ public class WorkspacePolicyApplier implements PolicyApplier {
     public void apply(Payload payload, PolicyEngine policy) throws Exception {
         ProcessKey processKey = payload.getProcessKey();
         Path workDir = payload.getHeader(Payload.WORKSPACE_DIR);
+        WorkspaceScan scan = payload.getHeader(Payload.WORKSPACE_SCAN);
 
-        CheckResult<WorkspaceRule, Path> result = policy.getWorkspacePolicy().check(workDir);
+        CheckResult<WorkspaceRule, Path> result = scan != null ? policy.getWorkspacePolicy().check(scan) : policy.getWorkspacePolicy().check(workDir);
 
         result.getWarn().forEach(i -> {
             policyWarn.inc();
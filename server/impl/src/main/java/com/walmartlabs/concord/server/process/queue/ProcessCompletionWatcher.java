@@ -0,0 +1,214 @@
+package com.walmartlabs.concord.server.process.queue;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2019 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+import com.walmartlabs.concord.server.sdk.ProcessStatus;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Named;
+import javax.inject.Singleton;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Notifies the callers waiting for processes to finish, e.g. long-polling
+ * API requests. Only the status changes made on the local server node are
+ * tracked, the processes are also re-checked periodically.
+ * <p>
+ * The checks run on a small shared pool, the callers don't hold a thread
+ * while waiting.
+ */
+@Named
+@Singleton
+public class ProcessCompletionWatcher {
+
+    private static final Logger log = LoggerFactory.getLogger(ProcessCompletionWatcher.class);
+
+    private static final Set<ProcessStatus> FINAL_STATUSES = new HashSet<>(Arrays.asList(
+            ProcessStatus.FINISHED,
+            ProcessStatus.FAILED,
+            ProcessStatus.CANCELLED,
+            ProcessStatus.TIMED_OUT));
+
+    private static final int CHECK_THREADS = 2;
+
+    // re-check interval for the processes updated on other server nodes
+    private static final long RECHECK_INTERVAL = TimeUnit.SECONDS.toMillis(5);
+
+    // signals can arrive before the status update is committed
+    private static final long RETRY_DELAY = TimeUnit.SECONDS.toMillis(1);
+
+    private final ConcurrentMap<UUID, Set<Watch>> watches = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService scheduler;
+
+    public ProcessCompletionWatcher() {
+        this.scheduler = Executors.newScheduledThreadPool(CHECK_THREADS, r -> {
+            Thread t = new Thread(r, "process-completion-watcher");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Starts watching the specified processes. The {@code callback} is called
+     * right away, when any of the processes is finished on the local node and
+     * periodically, until it returns {@code true} or until the {@code timeoutMs}
+     * expires.
+     */
+    public void watch(Collection<UUID> instanceIds, long timeoutMs, Callback callback) {
+        Watch w = new Watch(new HashSet<>(instanceIds), System.currentTimeMillis() + timeoutMs, callback);
+        for (UUID id : w.instanceIds) {
+            watches.compute(id, (k, v) -> {
+                Set<Watch> s = v != null ? v : ConcurrentHashMap.newKeySet();
+                s.add(w);
+                return s;
+            });
+        }
+
+        // registered before the first check, the updates made in between are not missed
+        w.schedule(0);
+    }
+
+    void onStatusChange(UUID instanceId, ProcessStatus status) {
+        if (!FINAL_STATUSES.contains(status)) {
+            return;
+        }
+
+        Set<Watch> s = watches.get(instanceId);
+        if (s == null) {
+            return;
+        }
+
+        s.forEach(Watch::signal);
+    }
+
+    private void unregister(Watch w) {
+        for (UUID id : w.instanceIds) {
+            watches.computeIfPresent(id, (k, v) -> {
+                v.remove(w);
+                return v.isEmpty() ? null : v;
+            });
+        }
+    }
+
+    public interface Callback {
+
+        /**
+         * @return {@code true} if the caller is no longer waiting.
+         */
+        boolean check();
+
+        /**
+         * Called once, after {@link #check()} returns {@code true}, throws
+         * an exception or after the timeout expires.
+         */
+        void done(Exception error);
+    }
+
+    private final class Watch {
+
+        private final Set<UUID> instanceIds;
+        private final long deadline;
+        private final Callback callback;
+
+        private final Object checkMutex = new Object();
+
+        private ScheduledFuture<?> next;
+        private boolean signalled;
+        private boolean done;
+
+        private Watch(Set<UUID> instanceIds, long deadline, Callback callback) {
+            this.instanceIds = instanceIds;
+            this.deadline = deadline;
+            this.callback = callback;
+        }
+
+        private synchronized void signal() {
+            signalled = true;
+            schedule(0);
+        }
+
+        private synchronized void schedule(long delay) {
+            if (done) {
+                return;
+            }
+
+            if (next != null) {
+                next.cancel(false);
+            }
+
+            long remaining = Math.max(0, deadline - System.currentTimeMillis());
+            next = scheduler.schedule(this::check, Math.min(delay, remaining), TimeUnit.MILLISECONDS);
+        }
+
+        private void check() {
+            // the checks of the same watch don't overlap
+            synchronized (checkMutex) {
+                boolean retry;
+                synchronized (this) {
+                    if (done) {
+                        return;
+                    }
+
+                    retry = signalled;
+                    signalled = false;
+                }
+
+                boolean completed;
+                try {
+                    completed = callback.check();
+                } catch (Exception e) {
+                    log.warn("check ['{}'] -> error: {}", instanceIds, e.getMessage());
+                    finish(e);
+                    return;
+                }
+
+                if (completed || System.currentTimeMillis() >= deadline) {
+                    finish(null);
+                    return;
+                }
+
+                synchronized (this) {
+                    if (signalled) {
+                        // signalled during the check
+                        schedule(0);
+                    } else {
+                        // after a signal check once more shortly, the status update might not be committed yet
+                        schedule(retry ? RETRY_DELAY : RECHECK_INTERVAL);
+                    }
+                }
+            }
+        }
+
+        private void finish(Exception error) {
+            synchronized (this) {
+                done = true;
+                if (next != null) {
+                    next.cancel(false);
+                }
+            }
+
+            unregister(this);
+            callback.done(error);
+        }
+    }
+}
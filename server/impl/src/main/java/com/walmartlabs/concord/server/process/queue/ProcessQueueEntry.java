@@ -25,6 +25,7 @@ import com.walmartlabs.concord.server.sdk.ProcessKey;
 import org.immutables.value.Value;
 
 import javax.annotation.Nullable;
+import java.time.OffsetDateTime;
 import java.util.Map;
 import java.util.UUID;
 
@@ -66,6 +67,15 @@ public interface ProcessQueueEntry {
     @Nullable
     Map<String, Object> requirements();
 
+    @Nullable
+    OffsetDateTime lastUpdatedAt();
+
+    /**
+     * The DB time of the query that fetched the entry.
+     */
+    @Nullable
+    OffsetDateTime fetchedAt();
+
     static ImmutableProcessQueueEntry.Builder builder() {
         return ImmutableProcessQueueEntry.builder();
     }
@@ -29,9 +29,11 @@ import com.walmartlabs.concord.server.process.*;
 import com.walmartlabs.concord.server.process.event.NewProcessEvent;
 import com.walmartlabs.concord.server.process.event.ProcessEventManager;
 import com.walmartlabs.concord.server.process.logs.ProcessLogManager;
+import com.walmartlabs.concord.server.process.queue.dispatcher.DispatcherSignal;
 import com.walmartlabs.concord.server.sdk.PartialProcessKey;
 import com.walmartlabs.concord.server.sdk.ProcessKey;
 import com.walmartlabs.concord.server.sdk.ProcessStatus;
+import com.walmartlabs.concord.server.security.AuthenticationCache;
 import org.jooq.DSLContext;
 
 import javax.inject.Inject;
@@ -49,19 +51,31 @@ public class ProcessQueueManager {
     private final ProcessKeyCache keyCache;
     private final ProcessEventManager eventManager;
     private final ProcessLogManager processLogManager;
+    private final DispatcherSignal dispatcherSignal;
+    private final ProcessWaitIndex waitIndex;
+    private final ProcessCompletionWatcher completionWatcher;
+    private final AuthenticationCache authCache;
 
     @Inject
     public ProcessQueueManager(ProcessQueueDao queueDao,
                                ConcordObjectMapper objectMapper,
                                ProcessKeyCache keyCache,
                                ProcessEventManager eventManager,
-                               ProcessLogManager processLogManager) {
+                               ProcessLogManager processLogManager,
+                               DispatcherSignal dispatcherSignal,
+                               ProcessWaitIndex waitIndex,
+                               ProcessCompletionWatcher completionWatcher,
+                               AuthenticationCache authCache) {
 
         this.queueDao = queueDao;
         this.eventManager = eventManager;
         this.objectMapper = objectMapper;
         this.keyCache = keyCache;
         this.processLogManager = processLogManager;
+        this.dispatcherSignal = dispatcherSignal;
+        this.waitIndex = waitIndex;
+        this.completionWatcher = completionWatcher;
+        this.authCache = authCache;
     }
 
     /**
@@ -115,6 +129,8 @@ public class ProcessQueueManager {
             queueDao.enqueue(tx, processKey, tags, startAt, requirements, processTimeout, handlers, meta, imports, exclusive, runtime, dependencies);
             eventManager.insertStatusHistory(tx, processKey, ProcessStatus.ENQUEUED, Collections.emptyMap());
         });
+
+        dispatcherSignal.signal();
     }
 
     /**
@@ -144,6 +160,8 @@ public class ProcessQueueManager {
     public void updateStatus(DSLContext tx, ProcessKey processKey, ProcessStatus status, Map<String, Object> statusPayload) {
         queueDao.updateStatus(tx, processKey, status);
         eventManager.insertStatusHistory(tx, processKey, status, statusPayload);
+
+        onStatusChange(processKey.getInstanceId(), status);
     }
 
     /**
@@ -155,6 +173,11 @@ public class ProcessQueueManager {
         return queueDao.txResult(tx -> {
             boolean success = queueDao.updateStatus(tx, processKey, expected, status);
             eventManager.insertStatusHistory(tx, processKey, status, Collections.emptyMap());
+
+            if (success) {
+                onStatusChange(processKey.getInstanceId(), status);
+            }
+
             return success;
         });
     }
@@ -169,6 +192,9 @@ public class ProcessQueueManager {
         return queueDao.txResult(tx -> {
             boolean success = queueDao.updateStatus(processKeys, expected, status);
             eventManager.insertStatusHistory(tx, processKeys, status);
+
+            processKeys.forEach(k -> onStatusChange(k.getInstanceId(), status));
+
             return success;
         });
     }
@@ -186,6 +212,8 @@ public class ProcessQueueManager {
     public void updateAgentId(DSLContext tx, ProcessKey processKey, String agentId, ProcessStatus status) {
         queueDao.updateAgentId(tx, processKey, agentId, status);
         eventManager.insertStatusHistory(tx, processKey, status, Collections.emptyMap());
+
+        onStatusChange(processKey.getInstanceId(), status);
     }
 
     /**
@@ -193,6 +221,11 @@ public class ProcessQueueManager {
      */
     public void updateWait(ProcessKey key, AbstractWaitCondition wait) {
         queueDao.tx(tx -> updateWait(tx, key, wait));
+
+        if (wait == null) {
+            // the process can be dispatched now
+            dispatcherSignal.signal();
+        }
     }
 
     /**
@@ -200,6 +233,7 @@ public class ProcessQueueManager {
      */
     public void updateWait(DSLContext tx, ProcessKey processKey, AbstractWaitCondition wait) {
         queueDao.updateWait(tx, processKey, wait);
+        waitIndex.update(processKey, wait);
 
         Map<String, Object> eventData = objectMapper.convertToMap(wait != null ? wait : new NoneCondition());
         NewProcessEvent e = NewProcessEvent.builder()
@@ -242,6 +276,12 @@ public class ProcessQueueManager {
         return queueDao.get(key, includes);
     }
 
+    private void onStatusChange(UUID instanceId, ProcessStatus status) {
+        waitIndex.onStatusChange(instanceId, status);
+        completionWatcher.onStatusChange(instanceId, status);
+        authCache.onStatusChange(instanceId, status);
+    }
+
     private static Map<String, Object> getCfg(Payload payload) {
         return payload.getHeader(Payload.CONFIGURATION, Collections.emptyMap());
     }
@@ -0,0 +1,265 @@
+package com.walmartlabs.concord.server.process.queue;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2019 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+import com.walmartlabs.concord.server.jooq.enums.ProcessLockScope;
+import com.walmartlabs.concord.server.sdk.ProcessKey;
+import com.walmartlabs.concord.server.sdk.ProcessStatus;
+
+import javax.inject.Named;
+import javax.inject.Singleton;
+import java.util.*;
+
+/**
+ * Reverse index of the local server node's wait conditions: from the awaited
+ * resource (a process, a lock or a point in time) to the waiting processes.
+ * <p>
+ * Status changes and lock releases mark the affected waiting processes
+ * as "ready", {@link ProcessWaitWakeUpTask} re-checks their wait conditions
+ * immediately. Signals may arrive before the corresponding transaction is
+ * committed, so each signalled process is checked once more after
+ * {@link #RETRY_DELAY}. Changes made by other server nodes are handled by
+ * the regular {@link ProcessWaitWatchdog} scans.
+ */
+@Named
+@Singleton
+public class ProcessWaitIndex {
+
+    private static final long RETRY_DELAY = 1000;
+
+    private final Map<ProcessKey, Entry> entries = new HashMap<>();
+    private final Map<UUID, Set<ProcessKey>> byProcess = new HashMap<>();
+    private final Map<LockKey, Set<ProcessKey>> byLock = new HashMap<>();
+    private final NavigableMap<Long, Set<ProcessKey>> byDeadline = new TreeMap<>();
+    private final Set<ProcessKey> ready = new LinkedHashSet<>();
+
+    /**
+     * Updates the process' wait conditions. Removes the process from
+     * the index if {@code wait} is {@code null}.
+     */
+    public synchronized void update(ProcessKey processKey, AbstractWaitCondition wait) {
+        Entry prev = entries.remove(processKey);
+        if (prev != null) {
+            unindex(processKey, prev.wait);
+        }
+
+        if (wait == null) {
+            return;
+        }
+
+        entries.put(processKey, new Entry(wait, System.currentTimeMillis()));
+
+        switch (wait.type()) {
+            case PROCESS_COMPLETION: {
+                for (UUID id : ((ProcessCompletionCondition) wait).processes()) {
+                    byProcess.computeIfAbsent(id, k -> new HashSet<>()).add(processKey);
+                }
+                break;
+            }
+            case PROCESS_LOCK: {
+                byLock.computeIfAbsent(LockKey.from((ProcessLockCondition) wait), k -> new HashSet<>()).add(processKey);
+                break;
+            }
+            case PROCESS_SLEEP: {
+                long until = ((ProcessSleepCondition) wait).until().getTime();
+                schedule(processKey, until);
+                break;
+            }
+            default:
+                // nothing to index
+        }
+    }
+
+    /**
+     * Removes the processes registered before {@code timestamp} that are not
+     * in the {@code keys}, e.g. processes whose waits were cleared by
+     * other server nodes.
+     */
+    public synchronized void retain(Set<ProcessKey> keys, long timestamp) {
+        List<ProcessKey> stale = new ArrayList<>();
+        entries.forEach((k, v) -> {
+            if (v.registeredAt < timestamp && !keys.contains(k)) {
+                stale.add(k);
+            }
+        });
+
+        stale.forEach(k -> update(k, null));
+    }
+
+    public synchronized void onStatusChange(UUID instanceId, ProcessStatus status) {
+        Set<ProcessKey> waiters = byProcess.get(instanceId);
+        if (waiters == null) {
+            return;
+        }
+
+        for (ProcessKey k : waiters) {
+            Entry e = entries.get(k);
+            if (e != null && ((ProcessCompletionCondition) e.wait).finalStatuses().contains(status)) {
+                signal(k);
+            }
+        }
+    }
+
+    public synchronized void onLockReleased(UUID orgId, UUID projectId, ProcessLockScope scope, String lockName) {
+        Set<ProcessKey> waiters = byLock.get(LockKey.from(orgId, projectId, scope, lockName));
+        if (waiters == null) {
+            return;
+        }
+
+        waiters.forEach(this::signal);
+    }
+
+    /**
+     * Returns the processes to re-check: signalled processes and processes
+     * with expired deadlines. Doesn't block.
+     */
+    public synchronized Set<ProcessKey> poll() {
+        long t = System.currentTimeMillis();
+
+        Map.Entry<Long, Set<ProcessKey>> due;
+        while ((due = byDeadline.firstEntry()) != null && due.getKey() <= t) {
+            byDeadline.remove(due.getKey());
+            due.getValue().stream()
+                    .filter(entries::containsKey)
+                    .forEach(ready::add);
+        }
+
+        if (ready.isEmpty()) {
+            return Collections.emptySet();
+        }
+
+        Set<ProcessKey> result = new LinkedHashSet<>(ready);
+        ready.clear();
+        return result;
+    }
+
+    /**
+     * Waits until there are processes to re-check, but no longer than
+     * {@code timeoutMs}.
+     */
+    public synchronized void await(long timeoutMs) throws InterruptedException {
+        long t = System.currentTimeMillis();
+        long until = t + timeoutMs;
+
+        while (ready.isEmpty()) {
+            long next = until;
+            if (!byDeadline.isEmpty()) {
+                next = Math.min(next, byDeadline.firstKey());
+            }
+
+            if (next <= t) {
+                return;
+            }
+
+            wait(next - t);
+            t = System.currentTimeMillis();
+        }
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    private void signal(ProcessKey processKey) {
+        ready.add(processKey);
+        schedule(processKey, System.currentTimeMillis() + RETRY_DELAY);
+        notifyAll();
+    }
+
+    private void schedule(ProcessKey processKey, long t) {
+        byDeadline.computeIfAbsent(t, k -> new HashSet<>()).add(processKey);
+        notifyAll();
+    }
+
+    private void unindex(ProcessKey processKey, AbstractWaitCondition wait) {
+        switch (wait.type()) {
+            case PROCESS_COMPLETION: {
+                for (UUID id : ((ProcessCompletionCondition) wait).processes()) {
+                    remove(byProcess, id, processKey);
+                }
+                break;
+            }
+            case PROCESS_LOCK: {
+                remove(byLock, LockKey.from((ProcessLockCondition) wait), processKey);
+                break;
+            }
+            default:
+                // the deadlines are removed lazily, see poll()
+        }
+    }
+
+    private static <K> void remove(Map<K, Set<ProcessKey>> m, K k, ProcessKey processKey) {
+        Set<ProcessKey> s = m.get(k);
+        if (s == null) {
+            return;
+        }
+
+        s.remove(processKey);
+        if (s.isEmpty()) {
+            m.remove(k);
+        }
+    }
+
+    private static final class Entry {
+
+        private final AbstractWaitCondition wait;
+        private final long registeredAt;
+
+        private Entry(AbstractWaitCondition wait, long registeredAt) {
+            this.wait = wait;
+            this.registeredAt = registeredAt;
+        }
+    }
+
+    private static final class LockKey {
+
+        private final ProcessLockScope scope;
+        private final UUID scopeId;
+        private final String name;
+
+        private static LockKey from(ProcessLockCondition c) {
+            return from(c.orgId(), c.projectId(), c.scope(), c.name());
+        }
+
+        private static LockKey from(UUID orgId, UUID projectId, ProcessLockScope scope, String name) {
+            return new LockKey(scope, scope == ProcessLockScope.ORG ? orgId : projectId, name);
+        }
+
+        private LockKey(ProcessLockScope scope, UUID scopeId, String name) {
+            this.scope = scope;
+            this.scopeId = scopeId;
+            this.name = name;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            LockKey lockKey = (LockKey) o;
+            return scope == lockKey.scope && Objects.equals(scopeId, lockKey.scopeId) && name.equals(lockKey.name);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(scope, scopeId, name);
+        }
+    }
+}
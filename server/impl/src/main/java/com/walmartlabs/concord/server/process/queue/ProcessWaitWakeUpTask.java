@@ -0,0 +1,87 @@
+package com.walmartlabs.concord.server.process.queue;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2019 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.walmartlabs.concord.server.PeriodicTask;
+import com.walmartlabs.concord.server.cfg.ProcessWaitWatchdogConfiguration;
+import com.walmartlabs.concord.server.sdk.ProcessKey;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Re-checks the wait conditions of the processes signalled via
+ * {@link ProcessWaitIndex} without waiting for the next
+ * {@link ProcessWaitWatchdog} scan.
+ */
+@Named
+@Singleton
+public class ProcessWaitWakeUpTask extends PeriodicTask {
+
+    private static final long ERROR_DELAY = TimeUnit.SECONDS.toMillis(5);
+
+    private final ProcessWaitIndex waitIndex;
+    private final ProcessWaitWatchdog watchdog;
+
+    private final Meter wakeUpMeter;
+
+    @Inject
+    public ProcessWaitWakeUpTask(ProcessWaitWatchdogConfiguration cfg,
+                                 ProcessWaitIndex waitIndex,
+                                 ProcessWaitWatchdog watchdog,
+                                 MetricRegistry metricRegistry) {
+
+        super(cfg.getPeriod().toMillis(), ERROR_DELAY);
+
+        this.waitIndex = waitIndex;
+        this.watchdog = watchdog;
+
+        this.wakeUpMeter = metricRegistry.meter("process-wait-wake-ups");
+        metricRegistry.gauge("process-wait-index-size", () -> waitIndex::size);
+    }
+
+    @Override
+    protected boolean performTask() {
+        Set<ProcessKey> keys = waitIndex.poll();
+        if (keys.isEmpty()) {
+            return false;
+        }
+
+        wakeUpMeter.mark(keys.size());
+        watchdog.process(keys);
+
+        return true;
+    }
+
+    @Override
+    protected void idle(long ms) {
+        try {
+            waitIndex.await(ms);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -23,6 +23,7 @@ package com.walmartlabs.concord.server.process.queue;
 import com.walmartlabs.concord.db.AbstractDao;
 import com.walmartlabs.concord.db.MainDB;
 import com.walmartlabs.concord.server.ConcordObjectMapper;
+import com.walmartlabs.concord.server.Locks;
 import com.walmartlabs.concord.server.cfg.ProcessWaitWatchdogConfiguration;
 import com.walmartlabs.concord.server.jooq.tables.ProcessQueue;
 import com.walmartlabs.concord.server.sdk.ProcessKey;
@@ -41,12 +42,23 @@ import javax.inject.Named;
 import javax.inject.Singleton;
 import java.time.OffsetDateTime;
 import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 import static com.walmartlabs.concord.server.jooq.tables.ProcessQueue.PROCESS_QUEUE;
 
 /**
  * Takes care of processes with wait conditions.
  * E.g. waiting for other processes to finish, locking, etc.
+ * <p>
+ * Processes affected by local status changes and lock releases are re-checked
+ * immediately by {@link ProcessWaitWakeUpTask}. The periodic scan catches
+ * the changes made by other server nodes and keeps {@link ProcessWaitIndex}
+ * up to date.
+ * <p>
+ * Both paths can pick up the same process at the same time, also on different
+ * server nodes. The re-checks are serialized using a per-process DB lock, the wait
+ * conditions are re-read after the lock is acquired.
  */
 @Named("process-wait-watchdog")
 @Singleton
@@ -63,6 +75,7 @@ public class ProcessWaitWatchdog implements ScheduledTask {
     private final ProcessWaitWatchdogConfiguration cfg;
     private final WatchdogDao dao;
     private final ProcessQueueManager queueManager;
+    private final ProcessWaitIndex waitIndex;
     private final Map<WaitType, ProcessWaitHandler<AbstractWaitCondition>> processWaitHandlers;
 
     @Inject
@@ -70,11 +83,13 @@ public class ProcessWaitWatchdog implements ScheduledTask {
     public ProcessWaitWatchdog(ProcessWaitWatchdogConfiguration cfg,
                                WatchdogDao dao,
                                ProcessQueueManager queueManager,
+                               ProcessWaitIndex waitIndex,
                                Set<ProcessWaitHandler> handlers) {
 
         this.cfg = cfg;
         this.dao = dao;
         this.queueManager = queueManager;
+        this.waitIndex = waitIndex;
         this.processWaitHandlers = new HashMap<>();
 
         handlers.forEach(h -> this.processWaitHandlers.put(h.getType(), h));
@@ -87,44 +102,93 @@ public class ProcessWaitWatchdog implements ScheduledTask {
 
     @Override
     public void performTask() {
+        long t = System.currentTimeMillis();
+        Set<ProcessKey> waiting = new HashSet<>();
+
         Long lastId = null;
         while (true) {
             List<WaitingProcess> processes = dao.nextWaitItems(lastId, cfg.getPollLimit());
             if (processes.isEmpty()) {
-                return;
+                break;
             }
 
             for (WaitingProcess p : processes) {
-                WaitType type = p.waits().type();
-                processHandler(type, p);
+                if (processHandler(p) != null) {
+                    waiting.add(p.processKey());
+                }
                 lastId = p.id();
             }
         }
+
+        // forget the processes that are no longer waiting
+        waitIndex.retain(waiting, t);
+    }
+
+    /**
+     * Re-checks the wait conditions of the specified processes.
+     */
+    void process(Collection<ProcessKey> processKeys) {
+        Set<ProcessKey> remaining = new HashSet<>(processKeys);
+
+        for (WaitingProcess p : dao.getWaitItems(processKeys)) {
+            remaining.remove(p.processKey());
+            processHandler(p);
+        }
+
+        // the wait conditions were removed in the meantime
+        remaining.forEach(k -> waitIndex.update(k, null));
+    }
+
+    /**
+     * @return the process' wait conditions after processing or {@code null}
+     * if the process is no longer waiting.
+     */
+    private AbstractWaitCondition processHandler(WaitingProcess p) {
+        // the lock is held until the changes made by the handler are committed
+        return dao.withLock(p.processKey(), current -> {
+            if (current == null) {
+                // processed by someone else in the meantime
+                waitIndex.update(p.processKey(), null);
+                return null;
+            }
+
+            return processLocked(current);
+        });
     }
 
-    private void processHandler(WaitType type, WaitingProcess p) {
+    private AbstractWaitCondition processLocked(WaitingProcess p) {
+        WaitType type = p.waits().type();
+        ProcessKey processKey = p.processKey();
+
         ProcessWaitHandler<AbstractWaitCondition> handler = processWaitHandlers.get(type);
         if (handler == null) {
             log.warn("processHandler ['{}'] -> handler '{}' not found", p.instanceId(), type);
-            return;
+            return p.waits();
         }
 
         if (!handler.getProcessStatuses().contains(p.status())) {
             // clear wait conditions for finished processes
             if (FINAL_STATUSES.contains(p.status())) {
-                queueManager.updateWait(new ProcessKey(p.instanceId(), p.instanceCreatedAt()), null);
+                queueManager.updateWait(processKey, null);
+                return null;
             }
-            return;
+
+            waitIndex.update(processKey, p.waits());
+            return p.waits();
         }
 
         try {
             AbstractWaitCondition originalWaits = p.waits();
             AbstractWaitCondition processedWaits = handler.process(p.instanceId(), p.status(), originalWaits);
             if (!originalWaits.equals(processedWaits)) {
-                queueManager.updateWait(new ProcessKey(p.instanceId(), p.instanceCreatedAt()), processedWaits);
+                queueManager.updateWait(processKey, processedWaits);
+            } else {
+                waitIndex.update(processKey, originalWaits);
             }
+            return processedWaits;
         } catch (Exception e) {
             log.info("processHandler ['{}', '{}'] -> error", type, p, e);
+            return p.waits();
         }
     }
 
@@ -141,23 +205,62 @@ public class ProcessWaitWatchdog implements ScheduledTask {
 
         AbstractWaitCondition waits();
 
+        @Value.Derived
+        default ProcessKey processKey() {
+            return new ProcessKey(instanceId(), instanceCreatedAt());
+        }
+
         static ImmutableWaitingProcess.Builder builder() {
             return ImmutableWaitingProcess.builder();
         }
     }
 
     @Named
-    private static final class WatchdogDao extends AbstractDao {
+    static final class WatchdogDao extends AbstractDao {
+
+        private static final int LOCK_NAMESPACE = 1605534722;
 
+        private final Locks locks;
         private final ConcordObjectMapper objectMapper;
 
         @Inject
-        public WatchdogDao(@MainDB Configuration cfg, ConcordObjectMapper objectMapper) {
+        public WatchdogDao(@MainDB Configuration cfg, Locks locks, ConcordObjectMapper objectMapper) {
             super(cfg);
 
+            this.locks = locks;
             this.objectMapper = objectMapper;
         }
 
+        /**
+         * Locks the process' wait conditions, re-reads them and calls the specified
+         * function. The function receives {@code null} if the process is no longer
+         * waiting. The lock is released after the function returns.
+         * <p>
+         * The lock uses a separate key space, so the function can safely take other
+         * {@link Locks} in its own transactions.
+         */
+        public <T> T withLock(ProcessKey processKey, Function<WaitingProcess, T> f) {
+            return txResult(tx -> {
+                locks.lock(tx, LOCK_NAMESPACE, processKey.getInstanceId().hashCode());
+
+                // no "for update": the function updates the row in its own transactions
+                ProcessQueue q = PROCESS_QUEUE.as("q");
+                WaitingProcess p = tx.select(
+                        q.INSTANCE_ID,
+                        q.CURRENT_STATUS,
+                        q.CREATED_AT,
+                        q.ID_SEQ,
+                        q.WAIT_CONDITIONS)
+                        .from(q)
+                        .where(q.CREATED_AT.eq(processKey.getCreatedAt())
+                                .and(q.INSTANCE_ID.eq(processKey.getInstanceId()))
+                                .and(q.WAIT_CONDITIONS.isNotNull()))
+                        .fetchOne(this::toWaitingProcess);
+
+                return f.apply(p);
+            });
+        }
+
         public List<WaitingProcess> nextWaitItems(Long lastId, int pollLimit) {
             return txResult(tx -> {
                 ProcessQueue q = PROCESS_QUEUE.as("q");
@@ -176,14 +279,38 @@ public class ProcessWaitWatchdog implements ScheduledTask {
 
                 return s.orderBy(q.ID_SEQ)
                         .limit(pollLimit)
-                        .fetch(r -> WaitingProcess.builder()
-                                .instanceId(r.value1())
-                                .status(ProcessStatus.valueOf(r.value2()))
-                                .instanceCreatedAt(r.value3())
-                                .id(r.value4())
-                                .waits(objectMapper.fromJSONB(r.value5(), AbstractWaitCondition.class))
-                                .build());
+                        .fetch(this::toWaitingProcess);
+            });
+        }
+
+        public List<WaitingProcess> getWaitItems(Collection<ProcessKey> processKeys) {
+            Set<UUID> ids = processKeys.stream()
+                    .map(ProcessKey::getInstanceId)
+                    .collect(Collectors.toSet());
+
+            return txResult(tx -> {
+                ProcessQueue q = PROCESS_QUEUE.as("q");
+                return tx.select(
+                        q.INSTANCE_ID,
+                        q.CURRENT_STATUS,
+                        q.CREATED_AT,
+                        q.ID_SEQ,
+                        q.WAIT_CONDITIONS)
+                        .from(q)
+                        .where(q.INSTANCE_ID.in(ids)
+                                .and(q.WAIT_CONDITIONS.isNotNull()))
+                        .fetch(this::toWaitingProcess);
             });
         }
+
+        private WaitingProcess toWaitingProcess(Record5<UUID, String, OffsetDateTime, Long, JSONB> r) {
+            return WaitingProcess.builder()
+                    .instanceId(r.value1())
+                    .status(ProcessStatus.valueOf(r.value2()))
+                    .instanceCreatedAt(r.value3())
+                    .id(r.value4())
+                    .waits(objectMapper.fromJSONB(r.value5(), AbstractWaitCondition.class))
+                    .build();
+        }
     }
 }
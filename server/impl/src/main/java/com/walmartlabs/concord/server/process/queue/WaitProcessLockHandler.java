@@ -24,7 +24,7 @@ import com.walmartlabs.concord.server.process.Payload;
 import com.walmartlabs.concord.server.process.PayloadManager;
 import com.walmartlabs.concord.server.process.ProcessManager;
 import com.walmartlabs.concord.server.process.locks.LockEntry;
-import com.walmartlabs.concord.server.process.locks.ProcessLocksDao;
+import com.walmartlabs.concord.server.process.locks.ProcessLocksManager;
 import com.walmartlabs.concord.server.sdk.ConcordApplicationException;
 import com.walmartlabs.concord.server.sdk.PartialProcessKey;
 import com.walmartlabs.concord.server.sdk.ProcessStatus;
@@ -47,13 +47,13 @@ public class WaitProcessLockHandler implements ProcessWaitHandler<ProcessLockCon
 
     private static final Set<ProcessStatus> STATUSES = Collections.singleton(ProcessStatus.SUSPENDED);
 
-    private final ProcessLocksDao locksDao;
+    private final ProcessLocksManager locksManager;
     private final ProcessManager processManager;
     private final PayloadManager payloadManager;
 
     @Inject
-    public WaitProcessLockHandler(ProcessLocksDao locksDao, ProcessManager processManager, PayloadManager payloadManager) {
-        this.locksDao = locksDao;
+    public WaitProcessLockHandler(ProcessLocksManager locksManager, ProcessManager processManager, PayloadManager payloadManager) {
+        this.locksManager = locksManager;
         this.processManager = processManager;
         this.payloadManager = payloadManager;
     }
@@ -70,7 +70,7 @@ public class WaitProcessLockHandler implements ProcessWaitHandler<ProcessLockCon
 
     @Override
     public ProcessLockCondition process(UUID instanceId, ProcessStatus status, ProcessLockCondition wait) {
-        LockEntry lock = locksDao.tryLock(instanceId, wait.orgId(), wait.projectId(), wait.scope(), wait.name());
+        LockEntry lock = locksManager.tryLock(instanceId, wait.orgId(), wait.projectId(), wait.scope(), wait.name());
         if (lock.instanceId().equals(instanceId)) {
             resumeProcess(instanceId, wait.name());
             return null;
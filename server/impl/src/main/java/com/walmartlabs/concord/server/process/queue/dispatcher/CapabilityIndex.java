@@ -0,0 +1,115 @@
+package com.walmartlabs.concord.server.process.queue.dispatcher;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2020 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+import com.walmartlabs.concord.common.MapMatcher;
+
+import java.util.*;
+
+/**
+ * Groups waiting agent requests by their capabilities. Agents of the same pool
+ * usually report identical capabilities, so each distinct set of requirements
+ * is matched against each distinct set of capabilities only once.
+ * <p>
+ * Not thread-safe, intended to be used for a single dispatch cycle.
+ */
+final class CapabilityIndex<T> {
+
+    private final Map<Map<String, Object>, Bucket<T>> buckets = new LinkedHashMap<>();
+    private final Map<MapMatcher.Compiled, List<Bucket<T>>> matchingBuckets = new IdentityHashMap<>();
+
+    private int size;
+
+    public void add(Map<String, Object> capabilities, T item) {
+        Map<String, Object> key = capabilities != null ? capabilities : Collections.emptyMap();
+
+        Bucket<T> b = buckets.get(key);
+        if (b == null) {
+            b = new Bucket<>(key);
+            buckets.put(key, b);
+
+            // a new bucket can match any of the already seen requirements
+            matchingBuckets.clear();
+        }
+
+        b.items.add(item);
+        size++;
+    }
+
+    /**
+     * Returns the first item with capabilities matching the specified requirements.
+     *
+     * @return the item or {@code null} if there are no matching items
+     */
+    public T peek(MapMatcher.Compiled requirements) {
+        Bucket<T> b = findBucket(requirements);
+        return b != null ? b.items.peekFirst() : null;
+    }
+
+    /**
+     * Removes and returns the first item with capabilities matching the specified requirements.
+     *
+     * @return the item or {@code null} if there are no matching items
+     */
+    public T poll(MapMatcher.Compiled requirements) {
+        Bucket<T> b = findBucket(requirements);
+        if (b == null) {
+            return null;
+        }
+
+        size--;
+        return b.items.pollFirst();
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    private Bucket<T> findBucket(MapMatcher.Compiled requirements) {
+        List<Bucket<T>> l = matchingBuckets.computeIfAbsent(requirements, this::findBuckets);
+        for (Bucket<T> b : l) {
+            if (!b.items.isEmpty()) {
+                return b;
+            }
+        }
+        return null;
+    }
+
+    private List<Bucket<T>> findBuckets(MapMatcher.Compiled requirements) {
+        List<Bucket<T>> result = new ArrayList<>();
+        for (Bucket<T> b : buckets.values()) {
+            if (requirements.matches(b.capabilities)) {
+                result.add(b);
+            }
+        }
+        return result;
+    }
+
+    private static final class Bucket<T> {
+
+        private final Map<String, Object> capabilities;
+        private final Deque<T> items = new ArrayDeque<>();
+
+        private Bucket(Map<String, Object> capabilities) {
+            this.capabilities = capabilities;
+        }
+    }
+}
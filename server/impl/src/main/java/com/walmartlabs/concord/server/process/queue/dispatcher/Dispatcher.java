@@ -20,9 +20,14 @@ package com.walmartlabs.concord.server.process.queue.dispatcher;
  * =====
  */
 
+import com.codahale.metrics.Counter;
 import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Meter;
 import com.codahale.metrics.MetricRegistry;
 import com.codahale.metrics.Timer;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
 import com.walmartlabs.concord.common.MapMatcher;
 import com.walmartlabs.concord.db.AbstractDao;
 import com.walmartlabs.concord.db.MainDB;
@@ -31,13 +36,16 @@ import com.walmartlabs.concord.server.ConcordObjectMapper;
 import com.walmartlabs.concord.server.Locks;
 import com.walmartlabs.concord.server.PeriodicTask;
 import com.walmartlabs.concord.server.cfg.ProcessQueueConfiguration;
+import com.walmartlabs.concord.server.cfg.ProcessQueueConfiguration.DispatcherMode;
 import com.walmartlabs.concord.server.jooq.tables.ProcessQueue;
 import com.walmartlabs.concord.server.process.ImportsNormalizerFactory;
 import com.walmartlabs.concord.server.process.SessionTokenCreator;
 import com.walmartlabs.concord.server.process.logs.ProcessLogManager;
 import com.walmartlabs.concord.server.process.queue.ProcessQueueEntry;
 import com.walmartlabs.concord.server.process.queue.ProcessQueueManager;
+import com.walmartlabs.concord.server.queueclient.message.Message;
 import com.walmartlabs.concord.server.queueclient.message.MessageType;
+import com.walmartlabs.concord.server.queueclient.message.ProcessBatchResponse;
 import com.walmartlabs.concord.server.queueclient.message.ProcessRequest;
 import com.walmartlabs.concord.server.queueclient.message.ProcessResponse;
 import com.walmartlabs.concord.server.sdk.ProcessKey;
@@ -52,8 +60,10 @@ import org.slf4j.LoggerFactory;
 import javax.inject.Inject;
 import javax.inject.Named;
 import javax.inject.Singleton;
+import java.time.Duration;
 import java.time.OffsetDateTime;
 import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
@@ -67,6 +77,14 @@ import static org.jooq.impl.DSL.*;
 
 /**
  * Dispatches processes to agents.
+ * <p>
+ * In the {@link DispatcherMode#GLOBAL} mode all server nodes take the same
+ * DB lock for the whole matching phase. In the {@link DispatcherMode#SHARDED}
+ * mode the queue is partitioned by organization and each shard is locked
+ * separately. Shards locked by other nodes are skipped.
+ * <p>
+ * The dispatcher runs when signalled via {@link DispatcherSignal} or, as a
+ * fallback, after the configured poll delay.
  */
 @Named
 @Singleton
@@ -76,6 +94,8 @@ public class Dispatcher extends PeriodicTask {
 
     private static final long ERROR_DELAY = TimeUnit.SECONDS.toMillis(30);
     private static final long LOCK_KEY = 1552468327245L;
+    private static final long SHARD_LOCK_KEY = 1605534721000L;
+    private static final long REQUIREMENTS_CACHE_SIZE = 1024;
 
     private final Locks locks;
     private final DispatcherDao dao;
@@ -84,14 +104,28 @@ public class Dispatcher extends PeriodicTask {
     private final ProcessQueueManager queueManager;
     private final Set<Filter> filters;
     private final ImportsNormalizerFactory importsNormalizerFactory;
+    private final DispatcherSignal signal;
 
     private final int batchSize;
+    private final DispatcherMode mode;
+    private final int shardCount;
 
     private final Histogram dispatchedCountHistogram;
     private final Timer responseTimer;
+    private final Timer matchTimer;
+    private final Meter dispatchedMeter;
+    private final Counter busyShardsCounter;
+    private final Counter failedShardsCounter;
+    private final Meter wakeUpMeter;
+    private final Histogram timeInQueueHistogram;
 
     private final SessionTokenCreator sessionTokenCreator;
 
+    // compiled agent requirements, the same requirements are typically shared by many processes
+    private final LoadingCache<Map<String, Object>, MapMatcher.Compiled> requirementsCache = CacheBuilder.newBuilder()
+            .maximumSize(REQUIREMENTS_CACHE_SIZE)
+            .build(CacheLoader.from(MapMatcher::compile));
+
     @Inject
     public Dispatcher(Locks locks,
                       DispatcherDao dao,
@@ -102,7 +136,8 @@ public class Dispatcher extends PeriodicTask {
                       ImportsNormalizerFactory importsNormalizerFactory,
                       ProcessQueueConfiguration cfg,
                       MetricRegistry metricRegistry,
-                      SessionTokenCreator sessionTokenCreator) {
+                      SessionTokenCreator sessionTokenCreator,
+                      DispatcherSignal signal) {
 
         super(cfg.getDispatcherPollDelay().toMillis(), ERROR_DELAY);
 
@@ -113,19 +148,33 @@ public class Dispatcher extends PeriodicTask {
         this.queueManager = queueManager;
         this.filters = filters;
         this.importsNormalizerFactory = importsNormalizerFactory;
+        this.signal = signal;
 
         this.batchSize = cfg.getDispatcherBatchSize();
+        this.mode = cfg.getDispatcherMode();
+        this.shardCount = cfg.getDispatcherShardCount();
         this.sessionTokenCreator = sessionTokenCreator;
 
+        if (mode == DispatcherMode.SHARDED && (shardCount <= 0 || shardCount > DispatcherDao.SHARD_KEY_COUNT)) {
+            throw new IllegalArgumentException("Invalid queue.dispatcher.shardCount value: " + shardCount);
+        }
+
         this.dispatchedCountHistogram = metricRegistry.histogram("process-queue-dispatcher-dispatched-count");
         this.responseTimer = metricRegistry.timer("process-queue-dispatcher-response-timer");
+
+        // per-mode metrics, to compare the dispatching modes with each other
+        String modeName = mode.name().toLowerCase();
+        this.matchTimer = metricRegistry.timer("process-queue-dispatcher-" + modeName + "-match-timer");
+        this.dispatchedMeter = metricRegistry.meter("process-queue-dispatcher-" + modeName + "-dispatched");
+        this.busyShardsCounter = metricRegistry.counter("process-queue-dispatcher-busy-shards");
+        this.failedShardsCounter = metricRegistry.counter("process-queue-dispatcher-failed-shards");
+        this.wakeUpMeter = metricRegistry.meter("process-queue-dispatcher-wake-ups");
+        this.timeInQueueHistogram = metricRegistry.histogram("process-queue-dispatcher-time-in-queue");
     }
 
     @Override
     @WithTimer
     protected boolean performTask() {
-        // TODO the WebSocketChannelManager business can be replaced with an async jax-rs endpoint and an "inbox" queue
-
         // grab the requests w/o responses
         Map<WebSocketChannel, ProcessRequest> requests = this.channelManager.getRequests(MessageType.PROCESS_REQUEST);
         if (requests.isEmpty()) {
@@ -136,60 +185,165 @@ public class Dispatcher extends PeriodicTask {
                 .map(e -> new Request(e.getKey(), e.getValue()))
                 .collect(Collectors.toList());
 
-        // prepare all responses in a single transaction
-        // take a global lock to avoid races
-        List<Match> matches = dao.txResult(tx -> {
-            locks.lock(tx, LOCK_KEY);
-            try {
-                return match(tx, l);
-            } finally {
-                filters.forEach(Filter::cleanup);
+        List<Match> matches;
+        Timer.Context matchCtx = matchTimer.time();
+        try {
+            if (mode == DispatcherMode.SHARDED) {
+                matches = matchSharded(l);
+            } else {
+                matches = matchGlobal(l);
             }
-        });
+        } finally {
+            matchCtx.stop();
+        }
 
         dispatchedCountHistogram.update(matches.size());
+        dispatchedMeter.mark(matches.size());
+
+        // measured using the DB clock, both values come from the DB
+        for (Match m : matches) {
+            OffsetDateTime enqueuedAt = m.response.lastUpdatedAt();
+            OffsetDateTime fetchedAt = m.response.fetchedAt();
+            if (enqueuedAt != null && fetchedAt != null) {
+                timeInQueueHistogram.update(Math.max(0, Duration.between(enqueuedAt, fetchedAt).toMillis()));
+            }
+        }
 
         // no matches, retry after a delay
         if (matches.isEmpty()) {
             return false;
         }
 
+        // group up the matches by request, agents can ask for multiple processes at once
+        Map<Request, List<ProcessQueueEntry>> responses = new LinkedHashMap<>();
+        for (Match m : matches) {
+            responses.computeIfAbsent(m.request, k -> new ArrayList<>()).add(m.response);
+        }
+
         // send all responses in parallel
-        withTimer(responseTimer, () -> matches.stream()
+        withTimer(responseTimer, () -> responses.entrySet().stream()
                 .parallel()
-                .forEach(this::sendResponse));
+                .forEach(e -> sendResponse(e.getKey(), e.getValue())));
 
         return true;
     }
 
-    private List<Match> match(DSLContext tx, List<Request> requests) {
+    @Override
+    protected void idle(long ms) {
+        // new processes and agent requests wake the dispatcher up immediately
+        // the poll delay is used as a fallback, e.g. for processes enqueued on other server nodes
+        try {
+            if (signal.await(ms)) {
+                wakeUpMeter.mark();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private List<Match> matchGlobal(List<Request> requests) {
+        // prepare all responses in a single transaction
+        // take a global lock to avoid races
+        return dao.txResult(tx -> {
+            locks.lock(tx, LOCK_KEY);
+            try {
+                return match(tx, requests, new OffsetCursor(dao, batchSize));
+            } finally {
+                filters.forEach(Filter::cleanup);
+            }
+        });
+    }
+
+    private List<Match> matchSharded(List<Request> requests) {
         // we need it modifiable
         List<Request> inbox = new ArrayList<>(requests);
 
-        int offset = 0;
+        List<Match> result = new ArrayList<>();
+
+        // start from a random shard to spread the server nodes across the shards
+        int start = ThreadLocalRandom.current().nextInt(shardCount);
+        for (int i = 0; i < shardCount && !inbox.isEmpty(); i++) {
+            int shard = (start + i) % shardCount;
+
+            // restored if the shard fails, its matches are rolled back
+            int[] slots = new int[inbox.size()];
+            for (int j = 0; j < slots.length; j++) {
+                slots[j] = inbox.get(j).remainingSlots;
+            }
+
+            // each shard is processed in its own transaction
+            // all filters work within a single organization, so they can't race with other shards
+            List<Match> matches;
+            try {
+                matches = dao.txResult(tx -> {
+                    if (!locks.tryLock(tx, SHARD_LOCK_KEY + shard)) {
+                        // another server node is working on this shard
+                        busyShardsCounter.inc();
+                        return Collections.emptyList();
+                    }
+
+                    try {
+                        return match(tx, inbox, new KeysetCursor(dao, shard, shardCount, batchSize));
+                    } finally {
+                        filters.forEach(Filter::cleanup);
+                    }
+                });
+            } catch (Exception e) {
+                // the matches of the previous shards are already committed, they must be dispatched anyway
+                log.error("matchSharded -> error while processing shard {}: {}", shard, e.getMessage(), e);
+                failedShardsCounter.inc();
+
+                for (int j = 0; j < slots.length; j++) {
+                    inbox.get(j).remainingSlots = slots[j];
+                }
+                continue;
+            }
+
+            result.addAll(matches);
+
+            // remove the requests without free slots
+            inbox.removeIf(r -> r.remainingSlots == 0);
+        }
+
+        return result;
+    }
+
+    private List<Match> match(DSLContext tx, List<Request> requests, CandidateCursor cursor) {
+        // group up the requests by the agent capabilities
+        CapabilityIndex<Request> inbox = new CapabilityIndex<>();
+        requests.forEach(r -> inbox.add(r.request.getCapabilities(), r));
+
         List<Match> matches = new ArrayList<>();
+
+        // "startingProcesses" are the currently collected "matches"
+        // we keep them in a separate collection to simplify the filtering
+        List<ProcessQueueEntry> startingProcesses = new ArrayList<>();
+
         while (true) {
             // fetch the next few ENQUEUED processes from the DB
-            List<ProcessQueueEntry> candidates = dao.next(tx, offset, batchSize);
+            List<ProcessQueueEntry> candidates = cursor.next(tx);
             if (candidates.isEmpty()) {
                 break;
             }
 
             // filter out the candidates that shouldn't be dispatched at the moment (e.g. due to concurrency limits)
             for (ProcessQueueEntry e : candidates) {
+                MapMatcher.Compiled requirements = requirementsCache.getUnchecked(getAgentRequirements(e));
+
                 // find request/agent who can handle process
-                Request req = findRequest(e, inbox);
+                Request req = inbox.peek(requirements);
                 if (req == null) {
                     continue;
                 }
 
-                // "startingProcesses" are the currently collected "matches"
-                // we keep them in a separate collection to simplify the filtering
-                List<ProcessQueueEntry> startingProcesses = matches.stream().map(m -> m.response).collect(Collectors.toList());
-
                 if (pass(tx, e, startingProcesses)) {
                     matches.add(new Match(req, e));
-                    inbox.remove(req);
+                    startingProcesses.add(e);
+
+                    // the agent might've asked for multiple processes
+                    if (--req.remainingSlots == 0) {
+                        inbox.poll(requirements);
+                    }
 
                     if (inbox.isEmpty()) {
                         break;
@@ -200,8 +354,6 @@ public class Dispatcher extends PeriodicTask {
             if (inbox.isEmpty()) {
                 break;
             }
-
-            offset += batchSize;
         }
 
         for (Match m : matches) {
@@ -214,18 +366,6 @@ public class Dispatcher extends PeriodicTask {
         return matches;
     }
 
-    private static Request findRequest(ProcessQueueEntry candidate, List<Request> requests) {
-        for (Request req : requests) {
-            Map<String, Object> capabilities = req.request.getCapabilities();
-            Map<String, Object> m = getAgentRequirements(candidate);
-            if (MapMatcher.matches(capabilities, m)) {
-                return req;
-            }
-        }
-
-        return null;
-    }
-
     @SuppressWarnings("unchecked")
     private static Map<String, Object> getAgentRequirements(ProcessQueueEntry entry) {
         Map<String, Object> requirements = entry.requirements();
@@ -251,44 +391,76 @@ public class Dispatcher extends PeriodicTask {
         return true;
     }
 
-    private void sendResponse(Match match) {
-        WebSocketChannel channel = match.request.channel;
-        long correlationId = match.request.request.getCorrelationId();
-        ProcessQueueEntry item = match.response;
+    private void sendResponse(Request request, List<ProcessQueueEntry> items) {
+        WebSocketChannel channel = request.channel;
+        long correlationId = request.request.getCorrelationId();
 
-        try {
-            SecretReference secret = null;
-            if (item.repoId() != null) {
-                secret = dao.getSecretReference(item.repoId());
+        List<ProcessQueueEntry> acquired = new ArrayList<>(items.size());
+        List<ProcessResponse> responses = new ArrayList<>(items.size());
+        for (ProcessQueueEntry item : items) {
+            try {
+                responses.add(toResponse(correlationId, item));
+                acquired.add(item);
+            } catch (Exception e) {
+                log.error("sendResponse ['{}'] -> failed (instanceId: {})", correlationId, item.key().getInstanceId());
             }
+        }
 
-            // backward compatibility with old process queue entries that are not normalized
-            Imports imports = importsNormalizerFactory.forProject(item.projectId())
-                    .normalize(item.imports());
+        if (responses.isEmpty()) {
+            return;
+        }
 
-            ProcessResponse resp = new ProcessResponse(correlationId,
-                    sessionTokenCreator.create(item.key()),
-                    item.key().getInstanceId(),
-                    secret != null ? secret.orgName : null,
-                    item.repoUrl(),
-                    item.repoPath(),
-                    item.commitId(),
-                    secret != null ? secret.secretName : null,
-                    imports);
+        try {
+            Message resp;
+            if (request.request.getSlots() > 1) {
+                resp = new ProcessBatchResponse(correlationId, responses);
+            } else {
+                resp = responses.get(0);
+            }
 
             if (!channelManager.sendResponse(channel.getChannelId(), resp)) {
                 log.warn("sendResponse ['{}'] -> failed", correlationId);
             }
 
-            logManager.info(item.key(), "Acquired by: " + channel.getUserAgent());
+            for (ProcessQueueEntry item : acquired) {
+                logManager.info(item.key(), "Acquired by: " + channel.getUserAgent());
+            }
         } catch (Exception e) {
-            log.error("sendResponse ['{}'] -> failed (instanceId: {})", correlationId, item.key().getInstanceId());
+            log.error("sendResponse ['{}'] -> failed (instanceIds: {})", correlationId,
+                    acquired.stream().map(i -> i.key().getInstanceId()).collect(Collectors.toList()));
+        }
+    }
+
+    private ProcessResponse toResponse(long correlationId, ProcessQueueEntry item) {
+        SecretReference secret = null;
+        if (item.repoId() != null) {
+            secret = dao.getSecretReference(item.repoId());
         }
+
+        // backward compatibility with old process queue entries that are not normalized
+        Imports imports = importsNormalizerFactory.forProject(item.projectId())
+                .normalize(item.imports());
+
+        return new ProcessResponse(correlationId,
+                sessionTokenCreator.create(item.key()),
+                item.key().getInstanceId(),
+                secret != null ? secret.orgName : null,
+                item.repoUrl(),
+                item.repoPath(),
+                item.commitId(),
+                secret != null ? secret.secretName : null,
+                imports);
     }
 
     @Named
     public static class DispatcherDao extends AbstractDao {
 
+        /**
+         * Number of distinct {@code PROCESS_QUEUE.SHARD_KEY} values,
+         * must match the {@code PROCESS_QUEUE_SHARD_KEY} trigger.
+         */
+        static final int SHARD_KEY_COUNT = 1024;
+
         private final ConcordObjectMapper objectMapper;
         private final Histogram offsetHistogram;
 
@@ -313,50 +485,97 @@ public class Dispatcher extends PeriodicTask {
 
             ProcessQueue q = PROCESS_QUEUE.as("q");
 
-            Field<UUID> orgIdField = select(PROJECTS.ORG_ID).from(PROJECTS).where(PROJECTS.PROJECT_ID.eq(q.PROJECT_ID)).asField();
-
-            SelectJoinStep<Record13<UUID, OffsetDateTime, UUID, UUID, UUID, UUID, String, String, String, UUID, JSONB, JSONB, JSONB>> s =
-                    tx.select(
-                            q.INSTANCE_ID,
-                            q.CREATED_AT,
-                            q.PROJECT_ID,
-                            orgIdField,
-                            q.INITIATOR_ID,
-                            q.PARENT_INSTANCE_ID,
-                            q.REPO_PATH,
-                            q.REPO_URL,
-                            q.COMMIT_ID,
-                            q.REPO_ID,
-                            q.IMPORTS,
-                            q.REQUIREMENTS,
-                            q.EXCLUSIVE)
-                            .from(q);
-
-            s.where(q.CURRENT_STATUS.eq(ProcessStatus.ENQUEUED.toString())
-                    .and(or(q.START_AT.isNull(),
-                            q.START_AT.le(currentOffsetDateTime())))
-                    .and(q.WAIT_CONDITIONS.isNull()));
-
-            return s.orderBy(q.LAST_UPDATED_AT)
+            return selectEntries(tx, q)
+                    .where(isReady(q))
+                    .orderBy(q.LAST_UPDATED_AT)
                     .offset(offset)
                     .limit(limit)
                     .forUpdate()
                     .of(q)
                     .skipLocked()
-                    .fetch(r -> ProcessQueueEntry.builder()
-                            .key(new ProcessKey(r.value1(), r.value2()))
-                            .projectId(r.value3())
-                            .orgId(r.value4())
-                            .initiatorId(r.value5())
-                            .parentInstanceId(r.value6())
-                            .repoPath(r.value7())
-                            .repoUrl(r.value8())
-                            .commitId(r.value9())
-                            .repoId(r.value10())
-                            .imports(objectMapper.fromJSONB(r.value11(), Imports.class))
-                            .requirements(objectMapper.fromJSONB(r.value12()))
-                            .exclusive(objectMapper.fromJSONB(r.value13()))
-                            .build());
+                    .fetch(this::toEntry);
+        }
+
+        /**
+         * Returns the next {@code limit} ENQUEUED processes of the specified
+         * shard. Uses keyset pagination, the {@code after} value must be the
+         * last entry of the previous page or {@code null} for the first page.
+         * <p>
+         * Each shard owns a contiguous range of {@code PROCESS_QUEUE.SHARD_KEY}
+         * values, so the query can use the {@code IDX_PROC_Q_SHARD} index.
+         * The keys are calculated from the process' organization ID by a DB
+         * trigger.
+         */
+        @WithTimer
+        public List<ProcessQueueEntry> next(DSLContext tx, int shard, int shardCount, ProcessQueueEntry after, int limit) {
+            ProcessQueue q = PROCESS_QUEUE.as("q");
+
+            int from = shard * SHARD_KEY_COUNT / shardCount;
+            int to = (shard + 1) * SHARD_KEY_COUNT / shardCount;
+
+            Condition c = isReady(q).and(q.SHARD_KEY.ge(from)).and(q.SHARD_KEY.lt(to));
+            if (after != null) {
+                c = c.and(row(q.LAST_UPDATED_AT, q.INSTANCE_ID).gt(after.lastUpdatedAt(), after.key().getInstanceId()));
+            }
+
+            return selectEntries(tx, q)
+                    .where(c)
+                    .orderBy(q.LAST_UPDATED_AT, q.INSTANCE_ID)
+                    .limit(limit)
+                    .forUpdate()
+                    .of(q)
+                    .skipLocked()
+                    .fetch(this::toEntry);
+        }
+
+        private static Field<UUID> orgIdField(ProcessQueue q) {
+            return select(PROJECTS.ORG_ID).from(PROJECTS).where(PROJECTS.PROJECT_ID.eq(q.PROJECT_ID)).asField();
+        }
+
+        private static Condition isReady(ProcessQueue q) {
+            return q.CURRENT_STATUS.eq(ProcessStatus.ENQUEUED.toString())
+                    .and(or(q.START_AT.isNull(),
+                            q.START_AT.le(currentOffsetDateTime())))
+                    .and(q.WAIT_CONDITIONS.isNull());
+        }
+
+        private static SelectJoinStep<Record15<UUID, OffsetDateTime, UUID, UUID, UUID, UUID, String, String, String, UUID, JSONB, JSONB, JSONB, OffsetDateTime, OffsetDateTime>> selectEntries(DSLContext tx, ProcessQueue q) {
+            return tx.select(
+                    q.INSTANCE_ID,
+                    q.CREATED_AT,
+                    q.PROJECT_ID,
+                    orgIdField(q),
+                    q.INITIATOR_ID,
+                    q.PARENT_INSTANCE_ID,
+                    q.REPO_PATH,
+                    q.REPO_URL,
+                    q.COMMIT_ID,
+                    q.REPO_ID,
+                    q.IMPORTS,
+                    q.REQUIREMENTS,
+                    q.EXCLUSIVE,
+                    q.LAST_UPDATED_AT,
+                    currentOffsetDateTime())
+                    .from(q);
+        }
+
+        private ProcessQueueEntry toEntry(Record15<UUID, OffsetDateTime, UUID, UUID, UUID, UUID, String, String, String, UUID, JSONB, JSONB, JSONB, OffsetDateTime, OffsetDateTime> r) {
+            return ProcessQueueEntry.builder()
+                    .key(new ProcessKey(r.value1(), r.value2()))
+                    .projectId(r.value3())
+                    .orgId(r.value4())
+                    .initiatorId(r.value5())
+                    .parentInstanceId(r.value6())
+                    .repoPath(r.value7())
+                    .repoUrl(r.value8())
+                    .commitId(r.value9())
+                    .repoId(r.value10())
+                    .imports(objectMapper.fromJSONB(r.value11(), Imports.class))
+                    .requirements(objectMapper.fromJSONB(r.value12()))
+                    .exclusive(objectMapper.fromJSONB(r.value13()))
+                    .lastUpdatedAt(r.value14())
+                    .fetchedAt(r.value15())
+                    .build();
         }
 
         public SecretReference getSecretReference(UUID repoId) {
@@ -369,14 +588,71 @@ public class Dispatcher extends PeriodicTask {
         }
     }
 
+    private interface CandidateCursor {
+
+        /**
+         * @return the next page of candidates or an empty list if there are no more
+         */
+        List<ProcessQueueEntry> next(DSLContext tx);
+    }
+
+    private static final class OffsetCursor implements CandidateCursor {
+
+        private final DispatcherDao dao;
+        private final int batchSize;
+
+        private int offset = 0;
+
+        private OffsetCursor(DispatcherDao dao, int batchSize) {
+            this.dao = dao;
+            this.batchSize = batchSize;
+        }
+
+        @Override
+        public List<ProcessQueueEntry> next(DSLContext tx) {
+            List<ProcessQueueEntry> result = dao.next(tx, offset, batchSize);
+            offset += batchSize;
+            return result;
+        }
+    }
+
+    private static final class KeysetCursor implements CandidateCursor {
+
+        private final DispatcherDao dao;
+        private final int shard;
+        private final int shardCount;
+        private final int batchSize;
+
+        private ProcessQueueEntry last;
+
+        private KeysetCursor(DispatcherDao dao, int shard, int shardCount, int batchSize) {
+            this.dao = dao;
+            this.shard = shard;
+            this.shardCount = shardCount;
+            this.batchSize = batchSize;
+        }
+
+        @Override
+        public List<ProcessQueueEntry> next(DSLContext tx) {
+            List<ProcessQueueEntry> result = dao.next(tx, shard, shardCount, last, batchSize);
+            if (!result.isEmpty()) {
+                last = result.get(result.size() - 1);
+            }
+            return result;
+        }
+    }
+
     private static final class Request {
 
         private final WebSocketChannel channel;
         private final ProcessRequest request;
 
+        private int remainingSlots;
+
         private Request(WebSocketChannel channel, ProcessRequest request) {
             this.channel = channel;
             this.request = request;
+            this.remainingSlots = request.getSlots();
         }
     }
 
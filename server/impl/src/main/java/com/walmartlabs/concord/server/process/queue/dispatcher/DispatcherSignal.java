@@ -0,0 +1,57 @@
+package com.walmartlabs.concord.server.process.queue.dispatcher;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2020 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+import javax.inject.Named;
+import javax.inject.Singleton;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Wakes up the {@link Dispatcher} when there's potentially new work for it:
+ * a newly enqueued process or a new agent request. Multiple signals received
+ * while the dispatcher is busy are collapsed into one.
+ * <p>
+ * Only the local server node is notified, the dispatcher's regular polling
+ * remains as a fallback for changes made by other nodes.
+ */
+@Named
+@Singleton
+public class DispatcherSignal {
+
+    private static final Object TOKEN = new Object();
+
+    private final BlockingQueue<Object> queue = new ArrayBlockingQueue<>(1);
+
+    public void signal() {
+        queue.offer(TOKEN);
+    }
+
+    /**
+     * Waits for a signal or until the specified timeout expires.
+     *
+     * @return {@code true} if a signal was received
+     */
+    public boolean await(long timeoutMs) throws InterruptedException {
+        return queue.poll(timeoutMs, TimeUnit.MILLISECONDS) != null;
+    }
+}
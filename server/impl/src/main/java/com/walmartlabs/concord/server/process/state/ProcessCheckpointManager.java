@@ -20,6 +20,8 @@ package com.walmartlabs.concord.server.process.state;
  * =====
  */
 
+import com.google.common.hash.Hashing;
+import com.google.common.io.ByteStreams;
 import com.walmartlabs.concord.common.IOUtils;
 import com.walmartlabs.concord.common.TemporaryPath;
 import com.walmartlabs.concord.sdk.Constants;
@@ -32,6 +34,9 @@ import com.walmartlabs.concord.server.process.queue.ProcessQueueDao;
 import com.walmartlabs.concord.server.sdk.ProcessKey;
 import com.walmartlabs.concord.server.security.Roles;
 import com.walmartlabs.concord.server.security.UserPrincipal;
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
+import org.apache.commons.compress.archivers.zip.ZipFile;
 import org.apache.shiro.authz.UnauthorizedException;
 import org.immutables.value.Value;
 
@@ -39,18 +44,33 @@ import javax.annotation.Nullable;
 import javax.inject.Inject;
 import javax.inject.Named;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.Collections;
-import java.util.List;
-import java.util.Map;
-import java.util.UUID;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
 
 import static com.walmartlabs.concord.sdk.Constants.Files.CHECKPOINT_META_FILE_NAME;
 
 @Named
 public class ProcessCheckpointManager {
 
+    /**
+     * The process definition file in checkpoints of the "concord-v2" runtime.
+     */
+    private static final String DEFINITION_ENTRY = Constants.Files.JOB_ATTACHMENTS_DIR_NAME + "/" + Constants.Files.JOB_STATE_DIR_NAME + "/definition";
+
+    /**
+     * Replaces {@link #DEFINITION_ENTRY} in stored checkpoints, contains the definition's hash.
+     */
+    private static final String DEFINITION_REF_ENTRY = DEFINITION_ENTRY + ".ref";
+
+    /**
+     * Process state directory with the definitions referenced by the stored checkpoints.
+     */
+    private static final String DEFINITIONS_PATH = Constants.Files.JOB_CHECKPOINTS_DIR_NAME + "/definitions/";
+
     private final ProcessCheckpointDao checkpointDao;
     private final ProcessQueueDao queueDao;
     private final ProcessStateManager stateManager;
@@ -74,14 +94,24 @@ public class ProcessCheckpointManager {
 
     /**
      * Import checkpoints data from the specified directory or a file.
+     * <p>
+     * The process definition doesn't change between checkpoints of the same
+     * process. It is stored once in the process state, the stored checkpoint
+     * archives reference it by hash.
      *
      * @param processKey     process key
      * @param checkpointId   process checkpoint ID
      * @param checkpointName process checkpoint name
      * @param data           checkpoint data file
      */
-    public void importCheckpoint(ProcessKey processKey, UUID checkpointId, String checkpointName, Path data) {
-        checkpointDao.importCheckpoint(processKey, checkpointId, checkpointName, data);
+    public void importCheckpoint(ProcessKey processKey, UUID checkpointId, String checkpointName, Path data) throws IOException {
+        try (TemporaryPath tmp = IOUtils.tempFile("checkpoint", ".zip")) {
+            if (extractDefinition(processKey, data, tmp.path())) {
+                data = tmp.path();
+            }
+
+            checkpointDao.importCheckpoint(processKey, checkpointId, checkpointName, data);
+        }
     }
 
     /**
@@ -97,6 +127,7 @@ public class ProcessCheckpointManager {
 
             try (TemporaryPath extractedDir = IOUtils.tempDir("unzipped-checkpoint")) {
                 IOUtils.unzip(checkpointArchive.path(), extractedDir.path());
+                restoreDefinition(processKey, extractedDir.path());
 
                 // TODO: only for v1 runtime
                 String eventName = readCheckpointEventName(extractedDir.path());
@@ -170,6 +201,82 @@ public class ProcessCheckpointManager {
         }
     }
 
+    /**
+     * Stores the process definition from the specified checkpoint archive in
+     * the process state and writes the archive without the definition into {@code dst}.
+     *
+     * @return {@code false} if the archive doesn't contain a process definition.
+     */
+    private boolean extractDefinition(ProcessKey processKey, Path src, Path dst) throws IOException {
+        try (ZipFile zip = new ZipFile(src.toFile())) {
+            ZipArchiveEntry definition = zip.getEntry(DEFINITION_ENTRY);
+            if (definition == null) {
+                return false;
+            }
+
+            byte[] data;
+            try (InputStream in = zip.getInputStream(definition)) {
+                data = ByteStreams.toByteArray(in);
+            }
+
+            String hash = Hashing.sha256().hashBytes(data).toString();
+            String path = DEFINITIONS_PATH + hash;
+            if (!stateManager.exists(processKey, path)) {
+                stateManager.replace(processKey, path, data);
+            }
+
+            try (ZipArchiveOutputStream out = new ZipArchiveOutputStream(Files.newOutputStream(dst))) {
+                Enumeration<ZipArchiveEntry> entries = zip.getEntries();
+                while (entries.hasMoreElements()) {
+                    ZipArchiveEntry e = entries.nextElement();
+                    if (e.getName().equals(DEFINITION_ENTRY)) {
+                        continue;
+                    }
+
+                    // copy the entries without recompressing them
+                    try (InputStream in = zip.getRawInputStream(e)) {
+                        out.addRawArchiveEntry(e, in);
+                    }
+                }
+
+                out.putArchiveEntry(new ZipArchiveEntry(DEFINITION_REF_ENTRY));
+                out.write(hash.getBytes(StandardCharsets.UTF_8));
+                out.closeArchiveEntry();
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Replaces the process definition reference in the unpacked checkpoint
+     * with the definition stored in the process state.
+     */
+    private void restoreDefinition(ProcessKey processKey, Path checkpointDir) throws IOException {
+        Path ref = checkpointDir.resolve(DEFINITION_REF_ENTRY);
+        if (Files.notExists(ref)) {
+            return;
+        }
+
+        String hash = new String(Files.readAllBytes(ref), StandardCharsets.UTF_8).trim();
+        Path dst = checkpointDir.resolve(DEFINITION_ENTRY);
+
+        Optional<Path> result = stateManager.get(processKey, DEFINITIONS_PATH + hash, in -> {
+            try {
+                Files.copy(in, dst, StandardCopyOption.REPLACE_EXISTING);
+                return Optional.of(dst);
+            } catch (IOException e) {
+                throw new RuntimeException("Error while copying the process definition: " + e.getMessage(), e);
+            }
+        });
+
+        if (!result.isPresent()) {
+            throw new IOException("Process definition not found: " + hash);
+        }
+
+        Files.delete(ref);
+    }
+
     private String readCheckpointEventName(Path checkpointDir) throws IOException {
         Path checkpoint = checkpointDir.resolve(CHECKPOINT_META_FILE_NAME);
         if (!Files.exists(checkpoint)) {
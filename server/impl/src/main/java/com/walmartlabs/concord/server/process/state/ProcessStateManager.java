@@ -20,6 +20,9 @@ package com.walmartlabs.concord.server.process.state;
  * =====
  */
 
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hashing;
+import com.google.common.io.MoreFiles;
 import com.walmartlabs.concord.common.IOUtils;
 import com.walmartlabs.concord.common.Posix;
 import com.walmartlabs.concord.db.AbstractDao;
@@ -29,21 +32,26 @@ import com.walmartlabs.concord.policyengine.CheckResult;
 import com.walmartlabs.concord.policyengine.PolicyEngine;
 import com.walmartlabs.concord.policyengine.StatePolicy;
 import com.walmartlabs.concord.policyengine.StateRule;
+import com.walmartlabs.concord.policyengine.WorkspaceScan;
 import com.walmartlabs.concord.server.cfg.ProcessConfiguration;
 import com.walmartlabs.concord.server.cfg.SecretStoreConfiguration;
 import com.walmartlabs.concord.server.org.secret.SecretUtils;
 import com.walmartlabs.concord.server.policy.PolicyException;
 import com.walmartlabs.concord.server.policy.PolicyManager;
+import com.walmartlabs.concord.server.process.WorkspaceScanner;
 import com.walmartlabs.concord.server.process.logs.ProcessLogManager;
 import com.walmartlabs.concord.server.process.queue.ProcessKeyCache;
 import com.walmartlabs.concord.server.sdk.PartialProcessKey;
 import com.walmartlabs.concord.server.sdk.ProcessKey;
 import com.walmartlabs.concord.server.sdk.metrics.WithTimer;
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
 import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
 import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
 import org.jooq.Configuration;
 import org.jooq.DSLContext;
 import org.jooq.Field;
+import org.jooq.Table;
 import org.jooq.impl.DSL;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -51,23 +59,27 @@ import org.slf4j.LoggerFactory;
 import javax.inject.Inject;
 import javax.inject.Named;
 import javax.inject.Singleton;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.nio.file.*;
 import java.nio.file.attribute.BasicFileAttributes;
-import java.nio.file.attribute.PosixFilePermission;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Types;
 import java.time.OffsetDateTime;
 import java.util.*;
 import java.util.function.BiFunction;
 import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 import static com.walmartlabs.concord.server.jooq.tables.ProcessQueue.PROCESS_QUEUE;
 import static com.walmartlabs.concord.server.jooq.tables.ProcessState.PROCESS_STATE;
+import static com.walmartlabs.concord.server.jooq.tables.ProcessStateBlobs.PROCESS_STATE_BLOBS;
 import static com.walmartlabs.concord.server.jooq.tables.Projects.PROJECTS;
 import static org.jooq.impl.DSL.*;
 
@@ -79,11 +91,24 @@ public class ProcessStateManager extends AbstractDao {
 
     private static final String PATH_SEPARATOR = "/";
     private static final int INSERT_BATCH_SIZE = 10;
+    private static final int LOCK_BATCH_SIZE = 1000;
+    private static final int MAX_BLOB_ATTEMPTS = 3;
+
+    /**
+     * Unencrypted items are stored in {@code PROCESS_STATE_BLOBS} and referenced
+     * by their SHA-256 hash. Older items and encrypted items are stored in
+     * {@code PROCESS_STATE.ITEM_DATA}.
+     */
+    private static final Table<?> STATE_WITH_BLOBS = PROCESS_STATE.leftJoin(PROCESS_STATE_BLOBS)
+            .on(PROCESS_STATE_BLOBS.BLOB_HASH.eq(PROCESS_STATE.BLOB_HASH));
+
+    private static final Field<byte[]> ITEM_DATA = coalesce(PROCESS_STATE.ITEM_DATA, PROCESS_STATE_BLOBS.BLOB_DATA);
 
     private final SecretStoreConfiguration secretCfg;
     private final PolicyManager policyManager;
     private final ProcessLogManager logManager;
     private final ProcessKeyCache processKeyCache;
+    private final WorkspaceScanner workspaceScanner;
 
     private final Set<String> secureFiles;
 
@@ -93,12 +118,14 @@ public class ProcessStateManager extends AbstractDao {
                                   ProcessConfiguration stateCfg,
                                   PolicyManager policyManager,
                                   ProcessLogManager logManager,
-                                  ProcessKeyCache processKeyCache) {
+                                  ProcessKeyCache processKeyCache,
+                                  WorkspaceScanner workspaceScanner) {
         super(cfg);
         this.secretCfg = secretCfg;
         this.policyManager = policyManager;
         this.logManager = logManager;
         this.processKeyCache = processKeyCache;
+        this.workspaceScanner = workspaceScanner;
 
         this.secureFiles = Collections.unmodifiableSet(new HashSet<>(stateCfg.getSecureFiles()));
     }
@@ -121,8 +148,8 @@ public class ProcessStateManager extends AbstractDao {
     }
 
     private <T> Optional<T> get(DSLContext tx, ProcessKey processKey, String path, Function<InputStream, Optional<T>> converter) {
-        String sql = tx.select(PROCESS_STATE.IS_ENCRYPTED, PROCESS_STATE.ITEM_DATA)
-                .from(PROCESS_STATE)
+        String sql = tx.select(PROCESS_STATE.IS_ENCRYPTED, ITEM_DATA)
+                .from(STATE_WITH_BLOBS)
                 .where(PROCESS_STATE.INSTANCE_ID.eq((UUID) null)
                         .and(PROCESS_STATE.INSTANCE_CREATED_AT.eq((OffsetDateTime) null))
                         .and(PROCESS_STATE.ITEM_PATH.eq((String) null)))
@@ -155,8 +182,8 @@ public class ProcessStateManager extends AbstractDao {
     public <T> List<T> forEach(ProcessKey processKey, String path, Function<InputStream, Optional<T>> converter) {
         DSLContext tx = dsl();
 
-        String sql = tx.select(PROCESS_STATE.IS_ENCRYPTED, PROCESS_STATE.ITEM_DATA)
-                .from(PROCESS_STATE)
+        String sql = tx.select(PROCESS_STATE.IS_ENCRYPTED, ITEM_DATA)
+                .from(STATE_WITH_BLOBS)
                 .where(PROCESS_STATE.INSTANCE_ID.eq((UUID) null)
                         .and(PROCESS_STATE.INSTANCE_CREATED_AT.eq((OffsetDateTime) null))
                         .and(PROCESS_STATE.ITEM_PATH.startsWith((String) null)))
@@ -276,13 +303,20 @@ public class ProcessStateManager extends AbstractDao {
      */
     public void insert(DSLContext tx, ProcessKey processKey, String path, byte[] in) {
         boolean needEncrypt = secureFiles.contains(path);
-        byte[] data = in;
         if (needEncrypt) {
-            data = encrypt(in);
+            tx.insertInto(PROCESS_STATE)
+                    .columns(PROCESS_STATE.INSTANCE_ID, PROCESS_STATE.INSTANCE_CREATED_AT, PROCESS_STATE.ITEM_PATH, PROCESS_STATE.ITEM_DATA, PROCESS_STATE.IS_ENCRYPTED)
+                    .values(processKey.getInstanceId(), processKey.getCreatedAt(), path, encrypt(in), true)
+                    .execute();
+            return;
         }
+
+        Blob blob = Blob.of(in);
+        addBlobs(tx, Collections.singletonList(blob));
+
         tx.insertInto(PROCESS_STATE)
-                .columns(PROCESS_STATE.INSTANCE_ID, PROCESS_STATE.INSTANCE_CREATED_AT, PROCESS_STATE.ITEM_PATH, PROCESS_STATE.ITEM_DATA, PROCESS_STATE.IS_ENCRYPTED)
-                .values(processKey.getInstanceId(), processKey.getCreatedAt(), path, data, needEncrypt)
+                .columns(PROCESS_STATE.INSTANCE_ID, PROCESS_STATE.INSTANCE_CREATED_AT, PROCESS_STATE.ITEM_PATH, PROCESS_STATE.BLOB_HASH, PROCESS_STATE.IS_ENCRYPTED)
+                .values(processKey.getInstanceId(), processKey.getCreatedAt(), path, blob.hash.asBytes(), false)
                 .execute();
     }
 
@@ -296,7 +330,7 @@ public class ProcessStateManager extends AbstractDao {
 
         tx(tx -> {
             delete(tx, instanceId, instanceCreatedAt);
-            importPath(tx, processKey, null, src, filter);
+            importPath(tx, processKey, null, src, filter, true);
         });
     }
 
@@ -310,60 +344,76 @@ public class ProcessStateManager extends AbstractDao {
 
     @WithTimer
     public void importPath(DSLContext tx, ProcessKey processKey, String path, Path src, BiFunction<Path, BasicFileAttributes, Boolean> filter) {
-        PolicyEngine policyEngine = assertPolicy(tx, processKey, src, filter);
+        importPath(tx, processKey, path, src, filter, false);
+    }
 
+    /**
+     * Imports data from the specified directory or a file. The directory is walked once,
+     * the result is used to check the state policy and to import the files.
+     *
+     * @param replaceAll if {@code true} the process has no other state data, the imported
+     *                   files are used to calculate the state's size without querying the DB
+     */
+    private void importPath(DSLContext tx, ProcessKey processKey, String path, Path src, BiFunction<Path, BasicFileAttributes, Boolean> filter, boolean replaceAll) {
         String prefix = fixPath(path);
 
-        List<BatchItem> batch = new ArrayList<>();
+        List<BatchItem> items = new ArrayList<>();
+        long totalSize = 0;
         try {
-            Files.walkFileTree(src, new SimpleFileVisitor<Path>() {
-                @Override
-                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
-                    if (!filter.apply(file, attrs)) {
-                        return FileVisitResult.CONTINUE;
-                    }
-
-                    Path p = src.relativize(file);
+            WorkspaceScan scan = workspaceScanner.scan(src);
 
-                    // can't import directories or symlinks
-                    // the caller shouldn't attempt to import anything but regular files
-                    if (!Files.isRegularFile(file, LinkOption.NOFOLLOW_LINKS)) {
-                        throw new IllegalStateException("Can't import non-regular files into the process state: " + p +
-                                " This is most likely a bug.");
-                    }
+            PolicyEngine policyEngine = assertPolicy(tx, processKey, scan, filter);
 
-                    String n = p.toString();
-                    if (prefix != null) {
-                        n = prefix + n;
-                    }
+            for (WorkspaceScan.Entry e : scan.getEntries()) {
+                if (e.isDirectory()) {
+                    continue;
+                }
 
-                    Set<PosixFilePermission> permissions = Files.getPosixFilePermissions(file);
-                    int unixMode = Posix.unixMode(permissions);
-                    boolean needsEncryption = secureFiles.contains(n);
+                Path file = e.getPath();
+                if (!filter.apply(file, e.getAttributes())) {
+                    continue;
+                }
 
-                    tx.deleteFrom(PROCESS_STATE).where(PROCESS_STATE.INSTANCE_ID.eq(processKey.getInstanceId())
-                            .and(PROCESS_STATE.INSTANCE_CREATED_AT.eq(processKey.getCreatedAt()))
-                            .and(PROCESS_STATE.ITEM_PATH.eq(n)))
-                            .execute();
+                Path p = src.relativize(file);
 
-                    batch.add(new BatchItem(n, file, unixMode, needsEncryption));
-                    if (batch.size() >= INSERT_BATCH_SIZE) {
-                        insert(tx, processKey.getInstanceId(), processKey.getCreatedAt(), batch);
-                        batch.clear();
-                    }
+                // can't import directories or symlinks
+                // the caller shouldn't attempt to import anything but regular files
+                if (!e.isRegularFile()) {
+                    throw new IllegalStateException("Can't import non-regular files into the process state: " + p +
+                            " This is most likely a bug.");
+                }
 
-                    return FileVisitResult.CONTINUE;
+                String n = p.toString();
+                if (prefix != null) {
+                    n = prefix + n;
                 }
-            });
 
-            if (!batch.isEmpty()) {
-                insert(tx, processKey.getInstanceId(), processKey.getCreatedAt(), batch);
+                int unixMode = Posix.unixMode(e.getPermissions());
+                boolean needsEncryption = secureFiles.contains(n);
+
+                items.add(new BatchItem(n, file, unixMode, needsEncryption));
+                totalSize += e.getSize();
+            }
+
+            if (!items.isEmpty()) {
+                String[] paths = items.stream().map(i -> i.itemPath).toArray(String[]::new);
+                tx.deleteFrom(PROCESS_STATE).where(PROCESS_STATE.INSTANCE_ID.eq(processKey.getInstanceId())
+                        .and(PROCESS_STATE.INSTANCE_CREATED_AT.eq(processKey.getCreatedAt()))
+                        .and(PROCESS_STATE.ITEM_PATH.eq(any(paths))))
+                        .execute();
+
+                insert(tx, processKey.getInstanceId(), processKey.getCreatedAt(), items);
+            }
+
+            if (replaceAll) {
+                StatePolicy.StateStats stats = new StatePolicy.StateStats(totalSize, items.size());
+                assertPolicy(tx, processKey, policyEngine, () -> stats);
+            } else {
+                assertPolicy(tx, processKey, policyEngine, () -> getStateStats(tx, processKey));
             }
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
-
-        assertPolicy(tx, processKey, policyEngine);
     }
 
     /**
@@ -373,8 +423,8 @@ public class ProcessStateManager extends AbstractDao {
         DSLContext tx = dsl();
 
         String sql = tx
-                .select(PROCESS_STATE.ITEM_PATH, PROCESS_STATE.UNIX_MODE, PROCESS_STATE.IS_ENCRYPTED, PROCESS_STATE.ITEM_DATA)
-                .from(PROCESS_STATE)
+                .select(PROCESS_STATE.ITEM_PATH, PROCESS_STATE.UNIX_MODE, PROCESS_STATE.IS_ENCRYPTED, ITEM_DATA)
+                .from(STATE_WITH_BLOBS)
                 .where(PROCESS_STATE.INSTANCE_ID.eq((UUID) null).and(PROCESS_STATE.INSTANCE_CREATED_AT.eq((OffsetDateTime) null)))
                 .getSQL();
 
@@ -403,6 +453,61 @@ public class ProcessStateManager extends AbstractDao {
         });
     }
 
+    /**
+     * Exports all data of a process instance into a TAR archive. The data is written
+     * directly from the result set, only encrypted items are decrypted in memory.
+     */
+    public boolean exportTar(ProcessKey processKey, TarArchiveOutputStream dst) {
+        DSLContext tx = dsl();
+
+        String sql = tx
+                .select(PROCESS_STATE.ITEM_PATH, PROCESS_STATE.UNIX_MODE, PROCESS_STATE.IS_ENCRYPTED, PgUtils.length(ITEM_DATA), ITEM_DATA)
+                .from(STATE_WITH_BLOBS)
+                .where(PROCESS_STATE.INSTANCE_ID.eq((UUID) null).and(PROCESS_STATE.INSTANCE_CREATED_AT.eq((OffsetDateTime) null)))
+                .getSQL();
+
+        dst.setLongFileMode(TarArchiveOutputStream.LONGFILE_POSIX);
+        dst.setBigNumberMode(TarArchiveOutputStream.BIGNUMBER_POSIX);
+
+        return tx.connectionResult(conn -> {
+            try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                ps.setObject(1, processKey.getInstanceId());
+                ps.setObject(2, processKey.getCreatedAt());
+
+                boolean found = false;
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        found = true;
+
+                        TarArchiveEntry e = new TarArchiveEntry(rs.getString(1));
+                        e.setMode(rs.getInt(2));
+
+                        boolean encrypted = rs.getBoolean(3);
+                        try (InputStream in = rs.getBinaryStream(5)) {
+                            InputStream src = in;
+                            long size = rs.getLong(4);
+
+                            if (encrypted) {
+                                // the size of the decrypted data is not known in advance
+                                byte[] ab = IOUtils.toByteArray(decrypt(in));
+                                src = new ByteArrayInputStream(ab);
+                                size = ab.length;
+                            }
+
+                            e.setSize(size);
+
+                            dst.putArchiveEntry(e);
+                            IOUtils.copy(src, dst);
+                            dst.closeArchiveEntry();
+                        }
+                    }
+                }
+
+                return found;
+            }
+        });
+    }
+
     /**
      * Exports elements whose path begins with the specified value.
      */
@@ -412,8 +517,8 @@ public class ProcessStateManager extends AbstractDao {
         DSLContext tx = dsl();
 
         String sql = tx
-                .select(PROCESS_STATE.ITEM_PATH, PROCESS_STATE.UNIX_MODE, PROCESS_STATE.IS_ENCRYPTED, PROCESS_STATE.ITEM_DATA)
-                .from(PROCESS_STATE)
+                .select(PROCESS_STATE.ITEM_PATH, PROCESS_STATE.UNIX_MODE, PROCESS_STATE.IS_ENCRYPTED, ITEM_DATA)
+                .from(STATE_WITH_BLOBS)
                 .where(PROCESS_STATE.INSTANCE_ID.eq((UUID) null)
                         .and(PROCESS_STATE.INSTANCE_CREATED_AT.eq((OffsetDateTime) null))
                         .and(PROCESS_STATE.ITEM_PATH.startsWith((String) null)))
@@ -493,10 +598,31 @@ public class ProcessStateManager extends AbstractDao {
                 .execute();
     }
 
-    private void insert(DSLContext tx, UUID instanceId, OffsetDateTime instanceCreatedAt, Collection<BatchItem> batch) {
+    private void insert(DSLContext tx, UUID instanceId, OffsetDateTime instanceCreatedAt, List<BatchItem> items) throws IOException {
+        // only the blobs missing in the DB are uploaded, the rest is referenced by hash
+        Map<HashCode, Blob> blobs = new HashMap<>();
+        for (BatchItem item : items) {
+            if (item.needsEncryption) {
+                continue;
+            }
+
+            HashCode hash = MoreFiles.asByteSource(item.path).hash(Hashing.sha256());
+            item.blobHash = hash;
+
+            blobs.putIfAbsent(hash, Blob.of(hash, item.path));
+        }
+
+        addBlobs(tx, blobs.values());
+
+        for (int i = 0; i < items.size(); i += INSERT_BATCH_SIZE) {
+            insertBatch(tx, instanceId, instanceCreatedAt, items.subList(i, Math.min(i + INSERT_BATCH_SIZE, items.size())));
+        }
+    }
+
+    private void insertBatch(DSLContext tx, UUID instanceId, OffsetDateTime instanceCreatedAt, Collection<BatchItem> batch) {
         String sql = tx.insertInto(PROCESS_STATE)
-                .columns(PROCESS_STATE.INSTANCE_ID, PROCESS_STATE.INSTANCE_CREATED_AT, PROCESS_STATE.ITEM_PATH, PROCESS_STATE.UNIX_MODE, PROCESS_STATE.ITEM_DATA, PROCESS_STATE.IS_ENCRYPTED)
-                .values((UUID) null, null, null, null, null, null)
+                .columns(PROCESS_STATE.INSTANCE_ID, PROCESS_STATE.INSTANCE_CREATED_AT, PROCESS_STATE.ITEM_PATH, PROCESS_STATE.UNIX_MODE, PROCESS_STATE.ITEM_DATA, PROCESS_STATE.BLOB_HASH, PROCESS_STATE.IS_ENCRYPTED)
+                .values((UUID) null, null, null, null, null, null, null)
                 .getSQL();
 
         List<InputStream> streams = new LinkedList<>();
@@ -516,19 +642,96 @@ public class ProcessStateManager extends AbstractDao {
                         // UNIX_MODE
                         ps.setInt(4, item.unixMode);
 
-                        InputStream in = Files.newInputStream(item.path);
-                        streams.add(in); // keep the streams open until the batch is committed
-
                         if (item.needsEncryption) {
-                            in = encrypt(in);
-                        }
+                            InputStream in = Files.newInputStream(item.path);
+                            streams.add(in); // keep the streams open until the batch is committed
+
+                            // ITEM_DATA
+                            ps.setBinaryStream(5, encrypt(in));
 
-                        // ITEM_DATA
-                        ps.setBinaryStream(5, in);
+                            // BLOB_HASH
+                            ps.setNull(6, Types.BINARY);
+                        } else {
+                            // ITEM_DATA
+                            ps.setNull(5, Types.BINARY);
+
+                            // BLOB_HASH
+                            ps.setBytes(6, item.blobHash.asBytes());
+                        }
 
                         // IS_ENCRYPTED
-                        ps.setBoolean(6, item.needsEncryption);
+                        ps.setBoolean(7, item.needsEncryption);
+
+                        ps.addBatch();
+                    }
+
+                    ps.executeBatch();
+                } catch (SQLException e) {
+                    throw new RuntimeException(e);
+                }
+            });
+        } finally {
+            streams.forEach(ProcessStateManager::closeSilently);
+        }
+    }
+
+    /**
+     * Makes sure the specified blobs are in the DB. The data is sent only for
+     * the blobs that are not in the DB yet.
+     * <p>
+     * The blobs are locked with {@code FOR KEY SHARE} until the end of the
+     * transaction. The lock doesn't block concurrent imports of the same blobs,
+     * but prevents {@link com.walmartlabs.concord.server.process.ProcessCleaner}
+     * from removing them before the references are committed. If the cleaner
+     * removes a blob before it is locked, the blob is inserted again.
+     */
+    private static void addBlobs(DSLContext tx, Collection<Blob> blobs) {
+        Map<HashCode, Blob> missing = new HashMap<>();
+        blobs.forEach(b -> missing.put(b.hash, b));
+
+        for (int attempt = 0; !missing.isEmpty(); attempt++) {
+            if (attempt >= MAX_BLOB_ATTEMPTS) {
+                throw new IllegalStateException("Can't store the state blobs, missing: " + missing.size());
+            }
+
+            if (attempt > 0) {
+                insertBlobs(tx, missing.values());
+            }
 
+            List<HashCode> hashes = new ArrayList<>(missing.keySet());
+            for (int i = 0; i < hashes.size(); i += LOCK_BATCH_SIZE) {
+                List<byte[]> batch = hashes.subList(i, Math.min(i + LOCK_BATCH_SIZE, hashes.size())).stream()
+                        .map(HashCode::asBytes)
+                        .collect(Collectors.toList());
+
+                tx.select(PROCESS_STATE_BLOBS.BLOB_HASH)
+                        .from(PROCESS_STATE_BLOBS)
+                        .where(PROCESS_STATE_BLOBS.BLOB_HASH.in(batch))
+                        .forKeyShare()
+                        .fetch(PROCESS_STATE_BLOBS.BLOB_HASH)
+                        .forEach(h -> missing.remove(HashCode.fromBytes(h)));
+            }
+        }
+    }
+
+    private static void insertBlobs(DSLContext tx, Collection<Blob> blobs) {
+        // the same blob can be inserted concurrently by another process
+        String sql = tx.insertInto(PROCESS_STATE_BLOBS)
+                .columns(PROCESS_STATE_BLOBS.BLOB_HASH, PROCESS_STATE_BLOBS.BLOB_DATA)
+                .values((byte[]) null, null)
+                .onConflictDoNothing()
+                .getSQL();
+
+        List<InputStream> streams = new LinkedList<>();
+        try {
+            tx.connection(conn -> {
+                try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                    for (Blob b : blobs) {
+                        InputStream in = b.open();
+                        streams.add(in); // keep the streams open until the batch is committed
+
+                        ps.setBytes(1, b.hash.asBytes());
+                        ps.setBinaryStream(2, in);
                         ps.addBatch();
                     }
 
@@ -574,18 +777,14 @@ public class ProcessStateManager extends AbstractDao {
         return child.substring(parent.length());
     }
 
-    private PolicyEngine assertPolicy(DSLContext tx, ProcessKey processKey, Path src, BiFunction<Path, BasicFileAttributes, Boolean> filter) {
+    private PolicyEngine assertPolicy(DSLContext tx, ProcessKey processKey, WorkspaceScan scan, BiFunction<Path, BasicFileAttributes, Boolean> filter) {
         PolicyEngine pe = getPolicyEngine(tx, processKey);
         if (pe == null) {
             return null;
         }
 
-        CheckResult<StateRule, Path> result;
-        try {
-            result = pe.getStatePolicy().check(src, filter);
-        } catch (IOException e) {
-            throw new RuntimeException(e);
-        }
+        Path src = scan.getRoot();
+        CheckResult<StateRule, Path> result = pe.getStatePolicy().check(scan, filter);
 
         result.getWarn().forEach(w -> logManager.warn(processKey, "Potentially restricted state file '{}' (state policy: {})", src.relativize(w.getEntity()), w.getRule().getMsg()));
         result.getDeny().forEach(e -> logManager.error(processKey, "State file '{}' is forbidden by the state policy {}", src.relativize(e.getEntity()), e.getRule().getMsg()));
@@ -597,12 +796,12 @@ public class ProcessStateManager extends AbstractDao {
         return pe;
     }
 
-    private void assertPolicy(DSLContext tx, ProcessKey processKey, PolicyEngine policyEngine) {
+    private void assertPolicy(DSLContext tx, ProcessKey processKey, PolicyEngine policyEngine, Supplier<StatePolicy.StateStats> stats) {
         if (policyEngine == null) {
             return;
         }
 
-        CheckResult<StateRule, StatePolicy.StateStats> result = policyEngine.getStatePolicy().check(() -> getStateStats(tx, processKey));
+        CheckResult<StateRule, StatePolicy.StateStats> result = policyEngine.getStatePolicy().check(stats);
 
         result.getWarn().forEach(w -> logManager.warn(processKey, "Potentially restricted state: '{}' (state policy: {})", w.getMsg(), w.getRule().getMsg()));
         result.getDeny().forEach(e -> logManager.error(processKey, "State is forbidden: '{}' (state policy {})", e.getMsg(), e.getRule().getMsg()));
@@ -613,8 +812,8 @@ public class ProcessStateManager extends AbstractDao {
     }
 
     private static StatePolicy.StateStats getStateStats(DSLContext tx, ProcessKey processKey) {
-        return tx.select(DSL.sum(PgUtils.length(PROCESS_STATE.ITEM_DATA)), count(PROCESS_STATE.ITEM_DATA))
-                .from(PROCESS_STATE)
+        return tx.select(DSL.sum(PgUtils.length(ITEM_DATA)), count())
+                .from(STATE_WITH_BLOBS)
                 .where(PROCESS_STATE.INSTANCE_ID.eq(processKey.getInstanceId())
                         .and(PROCESS_STATE.INSTANCE_CREATED_AT.eq(processKey.getCreatedAt())))
                 .fetchOne(r -> new StatePolicy.StateStats(r.value1().longValue(), r.value2()));
@@ -749,6 +948,8 @@ public class ProcessStateManager extends AbstractDao {
         private final int unixMode;
         private final boolean needsEncryption;
 
+        private HashCode blobHash;
+
         private BatchItem(String itemPath, Path path, int unixMode, boolean needsEncryption) {
             this.itemPath = itemPath;
             this.path = path;
@@ -756,4 +957,32 @@ public class ProcessStateManager extends AbstractDao {
             this.needsEncryption = needsEncryption;
         }
     }
+
+    private static final class Blob {
+
+        private static Blob of(byte[] data) {
+            return new Blob(Hashing.sha256().hashBytes(data), null, data);
+        }
+
+        private static Blob of(HashCode hash, Path path) {
+            return new Blob(hash, path, null);
+        }
+
+        private final HashCode hash;
+        private final Path path;
+        private final byte[] data;
+
+        private Blob(HashCode hash, Path path, byte[] data) { // NOSONAR
+            this.hash = hash;
+            this.path = path;
+            this.data = data;
+        }
+
+        private InputStream open() throws IOException {
+            if (data != null) {
+                return new ByteArrayInputStream(data);
+            }
+            return Files.newInputStream(path);
+        }
+    }
 }
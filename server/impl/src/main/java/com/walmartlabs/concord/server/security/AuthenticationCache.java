@@ -0,0 +1,266 @@
+package com.walmartlabs.concord.server.security;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2020 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.walmartlabs.concord.server.cfg.AuthenticationCacheConfiguration;
+import com.walmartlabs.concord.server.sdk.ProcessStatus;
+import com.walmartlabs.concord.server.security.apikey.ApiKeyEntry;
+import com.walmartlabs.concord.server.user.UserEntry;
+import org.apache.shiro.subject.PrincipalCollection;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+import java.time.OffsetDateTime;
+import java.util.Deque;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * Short-lived cache of the data resolved when authenticating API keys and
+ * session keys. Entries are invalidated when the local server node disables
+ * or removes users, revokes API keys or finishes processes. The changes made
+ * by other server nodes are picked up after {@code authCache.ttl}.
+ * <p>
+ * The invalidation methods can be called before the changes are committed.
+ */
+@Named
+@Singleton
+public class AuthenticationCache {
+
+    private static final Set<ProcessStatus> FINAL_STATUSES = EnumSet.of(
+            ProcessStatus.FINISHED,
+            ProcessStatus.FAILED,
+            ProcessStatus.CANCELLED,
+            ProcessStatus.TIMED_OUT);
+
+    private final Region<String, ApiKeyEntry> apiKeys;
+    private final Region<UUID, UserEntry> users;
+    private final Region<UUID, PrincipalCollection> sessions;
+    private final Cache<UUID, Boolean> auditedKeys;
+
+    private final Meter accessAuditSkipped;
+
+    @Inject
+    public AuthenticationCache(AuthenticationCacheConfiguration cfg, MetricRegistry metricRegistry) {
+        long ttl = cfg.getTtl().toMillis();
+        int maxSize = cfg.getMaxSize();
+
+        this.apiKeys = new Region<>(ttl, maxSize, metricRegistry, "api-keys");
+        this.users = new Region<>(ttl, maxSize, metricRegistry, "users");
+        this.sessions = new Region<>(ttl, maxSize, metricRegistry, "session-keys");
+
+        long auditInterval = cfg.getAccessAuditInterval().toMillis();
+        if (auditInterval > 0) {
+            this.auditedKeys = CacheBuilder.newBuilder()
+                    .maximumSize(maxSize)
+                    .expireAfterWrite(auditInterval, TimeUnit.MILLISECONDS)
+                    .build();
+        } else {
+            this.auditedKeys = null;
+        }
+
+        this.accessAuditSkipped = metricRegistry.meter("auth-cache-access-audit-skipped");
+    }
+
+    /**
+     * Returns the API key's entry by the key's hash. Expired keys are
+     * re-validated using the {@code loader}.
+     */
+    public ApiKeyEntry getApiKey(String keyHash, Supplier<ApiKeyEntry> loader) {
+        ApiKeyEntry e = apiKeys.get(keyHash, loader);
+        if (e != null && e.getExpiredAt() != null && !e.getExpiredAt().isAfter(OffsetDateTime.now())) {
+            apiKeys.invalidate(keyHash);
+            return loader.get();
+        }
+        return e;
+    }
+
+    public UserEntry getUser(UUID userId, Supplier<UserEntry> loader) {
+        return users.get(userId, loader);
+    }
+
+    /**
+     * Returns the principals of the process' session key.
+     */
+    public PrincipalCollection getSession(UUID instanceId, Supplier<PrincipalCollection> loader) {
+        return sessions.get(instanceId, loader);
+    }
+
+    /**
+     * Returns {@code true} if the ACCESS audit event must be recorded for
+     * the specified API key, i.e. if the key wasn't used during the last
+     * {@code authCache.accessAuditInterval}.
+     */
+    public boolean shouldAuditAccess(UUID apiKeyId) {
+        if (auditedKeys == null) {
+            return true;
+        }
+
+        if (auditedKeys.asMap().putIfAbsent(apiKeyId, Boolean.TRUE) == null) {
+            return true;
+        }
+
+        accessAuditSkipped.mark();
+        return false;
+    }
+
+    public void onApiKeyRevoked(UUID apiKeyId) {
+        apiKeys.invalidateIf(e -> apiKeyId.equals(e.getId()));
+    }
+
+    /**
+     * Should be called when a user is updated, disabled or removed.
+     */
+    public void onUserChange(UUID userId) {
+        users.invalidate(userId);
+        // API keys are removed together with their users
+        apiKeys.invalidateIf(e -> userId.equals(e.getUserId()));
+    }
+
+    public void onStatusChange(UUID instanceId, ProcessStatus status) {
+        if (FINAL_STATUSES.contains(status)) {
+            sessions.invalidate(instanceId);
+        }
+    }
+
+    /**
+     * The invalidations can happen before the changes are committed, so
+     * a value loaded right after an invalidation can still be stale. Each
+     * invalidation is remembered for {@code ttl} and the values loaded in
+     * the meantime that match it are returned, but not cached.
+     */
+    private static final class Region<K, V> {
+
+        private final Cache<K, V> cache;
+        private final Cache<K, Boolean> invalidatedKeys;
+        private final Deque<Invalidation<V>> invalidations = new ConcurrentLinkedDeque<>();
+        private final long ttlNanos;
+
+        private final Meter hits;
+        private final Meter misses;
+
+        private Region(long ttl, int maxSize, MetricRegistry metricRegistry, String name) {
+            if (ttl > 0 && maxSize > 0) {
+                this.cache = CacheBuilder.newBuilder()
+                        .maximumSize(maxSize)
+                        .expireAfterWrite(ttl, TimeUnit.MILLISECONDS)
+                        .build();
+                this.invalidatedKeys = CacheBuilder.newBuilder()
+                        .expireAfterWrite(ttl, TimeUnit.MILLISECONDS)
+                        .build();
+            } else {
+                this.cache = null;
+                this.invalidatedKeys = null;
+            }
+
+            this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttl);
+
+            this.hits = metricRegistry.meter("auth-cache-" + name + "-hits");
+            this.misses = metricRegistry.meter("auth-cache-" + name + "-misses");
+        }
+
+        private V get(K k, Supplier<V> loader) {
+            if (cache == null) {
+                return loader.get();
+            }
+
+            V v = cache.getIfPresent(k);
+            if (v != null) {
+                hits.mark();
+                return v;
+            }
+
+            misses.mark();
+
+            v = loader.get();
+            if (v == null) {
+                return null;
+            }
+
+            // check after "put", the invalidations first record themselves and then remove the values
+            cache.put(k, v);
+            if (isInvalidated(k, v)) {
+                cache.asMap().remove(k, v);
+            }
+
+            return v;
+        }
+
+        private void invalidate(K k) {
+            if (cache == null) {
+                return;
+            }
+
+            invalidatedKeys.put(k, Boolean.TRUE);
+            cache.invalidate(k);
+        }
+
+        private void invalidateIf(Predicate<V> p) {
+            if (cache == null) {
+                return;
+            }
+
+            invalidations.add(new Invalidation<>(p, System.nanoTime() + ttlNanos));
+            cache.asMap().values().removeIf(p);
+        }
+
+        private boolean isInvalidated(K k, V v) {
+            if (invalidatedKeys.getIfPresent(k) != null) {
+                return true;
+            }
+
+            long now = System.nanoTime();
+            for (Invalidation<V> i : invalidations) {
+                if (i.expiresAt - now <= 0) {
+                    invalidations.remove(i);
+                    continue;
+                }
+
+                if (i.predicate.test(v)) {
+                    return true;
+                }
+            }
+
+            return false;
+        }
+    }
+
+    private static final class Invalidation<V> {
+
+        private final Predicate<V> predicate;
+        private final long expiresAt;
+
+        private Invalidation(Predicate<V> predicate, long expiresAt) {
+            this.predicate = predicate;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
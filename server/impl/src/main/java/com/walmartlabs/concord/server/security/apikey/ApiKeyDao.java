@@ -114,7 +114,7 @@ public class ApiKeyDao extends AbstractDao {
         return dsl().fetchCount(selectFrom(API_KEYS).where(API_KEYS.USER_ID.eq(userId)));
     }
 
-    private static String hash(String s) {
+    public static String hash(String s) {
         MessageDigest md;
         try {
             md = MessageDigest.getInstance("SHA-256");
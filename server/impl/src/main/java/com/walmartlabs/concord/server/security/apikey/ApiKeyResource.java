@@ -28,6 +28,7 @@ import com.walmartlabs.concord.server.audit.AuditLog;
 import com.walmartlabs.concord.server.audit.AuditObject;
 import com.walmartlabs.concord.server.cfg.ApiKeyConfiguration;
 import com.walmartlabs.concord.server.sdk.ConcordApplicationException;
+import com.walmartlabs.concord.server.security.AuthenticationCache;
 import com.walmartlabs.concord.server.security.Roles;
 import com.walmartlabs.concord.server.security.UserPrincipal;
 import com.walmartlabs.concord.server.user.UserManager;
@@ -67,13 +68,20 @@ public class ApiKeyResource implements Resource {
     private final ApiKeyDao apiKeyDao;
     private final UserManager userManager;
     private final AuditLog auditLog;
+    private final AuthenticationCache authCache;
 
     @Inject
-    public ApiKeyResource(ApiKeyConfiguration cfg, ApiKeyDao apiKeyDao, UserManager userManager, AuditLog auditLog) {
+    public ApiKeyResource(ApiKeyConfiguration cfg,
+                          ApiKeyDao apiKeyDao,
+                          UserManager userManager,
+                          AuditLog auditLog,
+                          AuthenticationCache authCache) {
+
         this.cfg = cfg;
         this.apiKeyDao = apiKeyDao;
         this.userManager = userManager;
         this.auditLog = auditLog;
+        this.authCache = authCache;
     }
 
     @GET
@@ -161,6 +169,7 @@ public class ApiKeyResource implements Resource {
         assertOwner(userId);
 
         apiKeyDao.delete(id);
+        authCache.onApiKeyRevoked(id);
 
         auditLog.add(AuditObject.API_KEY, AuditAction.DELETE)
                 .field("id", id)
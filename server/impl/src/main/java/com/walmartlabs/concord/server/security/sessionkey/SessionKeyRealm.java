@@ -27,6 +27,7 @@ import com.walmartlabs.concord.server.process.queue.ProcessQueueManager;
 import com.walmartlabs.concord.server.sdk.PartialProcessKey;
 import com.walmartlabs.concord.server.sdk.ProcessStatus;
 import com.walmartlabs.concord.server.sdk.metrics.WithTimer;
+import com.walmartlabs.concord.server.security.AuthenticationCache;
 import org.apache.shiro.authc.AuthenticationException;
 import org.apache.shiro.authc.AuthenticationInfo;
 import org.apache.shiro.authc.AuthenticationToken;
@@ -52,6 +53,7 @@ public class SessionKeyRealm extends AuthorizingRealm {
 
     private final ProcessSecurityContext processSecurityContext;
     private final ProcessQueueManager processQueueManager;
+    private final AuthenticationCache authCache;
 
     private static final Set<ProcessStatus> FINISHED_STATUSES = ImmutableSet.of(
             ProcessStatus.FINISHED,
@@ -61,10 +63,12 @@ public class SessionKeyRealm extends AuthorizingRealm {
 
     @Inject
     public SessionKeyRealm(ProcessSecurityContext processSecurityContext,
-                           ProcessQueueManager processQueueManager) {
+                           ProcessQueueManager processQueueManager,
+                           AuthenticationCache authCache) {
 
         this.processSecurityContext = processSecurityContext;
         this.processQueueManager = processQueueManager;
+        this.authCache = authCache;
     }
 
     @Override
@@ -76,26 +80,13 @@ public class SessionKeyRealm extends AuthorizingRealm {
     @WithTimer
     protected AuthenticationInfo doGetAuthenticationInfo(AuthenticationToken token) throws AuthenticationException {
         SessionKey t = (SessionKey) token;
-        PartialProcessKey processKey = PartialProcessKey.from(t.getInstanceId());
 
         try {
-            ProcessInitiatorEntry p = processQueueManager.getInitiator(processKey);
-            if (p == null) {
-                log.warn("doGetAuthenticationInfo -> process not found: {}", t.getInstanceId());
-                return null;
-            }
-
-            if (p.initiatorId() == null) {
-                log.warn("doGetAuthenticationInfo -> initiator not found: {}", t.getInstanceId());
+            PrincipalCollection principals = authCache.getSession(t.getInstanceId(), () -> loadPrincipals(t));
+            if (principals == null) {
                 return null;
             }
 
-            if (isFinished(p)) {
-                log.warn("doGetAuthenticationInfo -> process is finished: {}", t.getInstanceId());
-                return null;
-            }
-
-            PrincipalCollection principals = getPrincipals(processKey);
             return new SimpleAccount(principals, t.getInstanceId(), getName());
         } catch (Exception e) {
             log.error("doGetAuthenticationInfo ['{}'] -> error", t.getInstanceId(), e);
@@ -103,6 +94,28 @@ public class SessionKeyRealm extends AuthorizingRealm {
         }
     }
 
+    private PrincipalCollection loadPrincipals(SessionKey t) {
+        PartialProcessKey processKey = PartialProcessKey.from(t.getInstanceId());
+
+        ProcessInitiatorEntry p = processQueueManager.getInitiator(processKey);
+        if (p == null) {
+            log.warn("doGetAuthenticationInfo -> process not found: {}", t.getInstanceId());
+            return null;
+        }
+
+        if (p.initiatorId() == null) {
+            log.warn("doGetAuthenticationInfo -> initiator not found: {}", t.getInstanceId());
+            return null;
+        }
+
+        if (isFinished(p)) {
+            log.warn("doGetAuthenticationInfo -> process is finished: {}", t.getInstanceId());
+            return null;
+        }
+
+        return getPrincipals(processKey);
+    }
+
     private PrincipalCollection getPrincipals(PartialProcessKey processKey) {
         PrincipalCollection principals = processSecurityContext.getPrincipals(processKey);
 
@@ -28,6 +28,7 @@ import com.walmartlabs.concord.server.org.team.TeamDao;
 import com.walmartlabs.concord.server.org.team.TeamManager;
 import com.walmartlabs.concord.server.org.team.TeamRole;
 import com.walmartlabs.concord.server.sdk.ConcordApplicationException;
+import com.walmartlabs.concord.server.security.AuthenticationCache;
 import com.walmartlabs.concord.server.security.UserPrincipal;
 import com.walmartlabs.concord.server.security.ldap.LdapGroupSearchResult;
 import org.jooq.DSLContext;
@@ -44,13 +45,20 @@ public class UserManager {
     private final UserDao userDao;
     private final TeamDao teamDao;
     private final AuditLog auditLog;
+    private final AuthenticationCache authCache;
     private final Map<UserType, UserInfoProvider> userInfoProviders;
 
     @Inject
-    public UserManager(UserDao userDao, TeamDao teamDao, AuditLog auditLog, List<UserInfoProvider> providers) {
+    public UserManager(UserDao userDao,
+                       TeamDao teamDao,
+                       AuditLog auditLog,
+                       AuthenticationCache authCache,
+                       List<UserInfoProvider> providers) {
+
         this.userDao = userDao;
         this.teamDao = teamDao;
         this.auditLog = auditLog;
+        this.authCache = authCache;
 
         this.userInfoProviders = new HashMap<>();
         providers.forEach(p -> this.userInfoProviders.put(p.getUserType(), p));
@@ -110,6 +118,8 @@ public class UserManager {
             return Optional.empty();
         }
 
+        authCache.onUserChange(userId);
+
         Map<String, Object> changes = DiffUtils.compare(prevEntry, newEntry);
         // some callers (e.g. the LDAP realm) update user records regardless of whether there was
         // any actual changes or not
@@ -185,6 +195,7 @@ public class UserManager {
         }
 
         userDao.enable(userId);
+        authCache.onUserChange(userId);
 
         auditLog.add(AuditObject.USER, AuditAction.UPDATE)
                 .field("userId", userId)
@@ -201,6 +212,7 @@ public class UserManager {
         }
 
         userDao.disable(userId);
+        authCache.onUserChange(userId);
 
         auditLog.add(AuditObject.USER, AuditAction.UPDATE)
                 .field("userId", userId)
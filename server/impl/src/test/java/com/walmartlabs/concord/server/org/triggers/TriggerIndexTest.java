@@ -0,0 +1,163 @@
+package com.walmartlabs.concord.server.org.triggers;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2020 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+import com.codahale.metrics.MetricRegistry;
+import com.walmartlabs.concord.server.cfg.TriggersConfiguration;
+import com.walmartlabs.concord.server.events.DefaultEventFilter;
+import com.walmartlabs.concord.server.org.triggers.TriggerIndex.CompiledTrigger;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+public class TriggerIndexTest {
+
+    private static final UUID PROJECT_A = UUID.randomUUID();
+    private static final UUID PROJECT_B = UUID.randomUUID();
+
+    private TriggersDao dao;
+    private TriggerIndex index;
+
+    @Before
+    public void init() {
+        TriggersConfiguration cfg = mock(TriggersConfiguration.class);
+        when(cfg.getIndexRefreshPeriod()).thenReturn(Duration.ofSeconds(10));
+
+        dao = mock(TriggersDao.class);
+        when(dao.fingerprint()).thenReturn("a");
+
+        index = new TriggerIndex(cfg, dao, new MetricRegistry());
+    }
+
+    @Test
+    public void testGithubLookup() {
+        TriggerEntry literal = github(PROJECT_A, "org", "repo");
+        TriggerEntry other = github(PROJECT_A, "org", "other");
+        TriggerEntry regex = github(PROJECT_B, "org", "re.*");
+        TriggerEntry v1 = trigger(PROJECT_A, "github", conditions("org", "repo", 1));
+
+        when(dao.listAll()).thenReturn(Arrays.asList(literal, other, regex, v1));
+
+        assertEquals(ids(literal, regex), ids(index.list(null, "github", 2, keys("org", "repo"))));
+        assertEquals(ids(literal), ids(index.list(PROJECT_A, "github", 2, keys("org", "repo"))));
+        assertEquals(ids(literal, other, regex), ids(index.list(null, "github", 2, null)));
+        assertEquals(ids(v1), ids(index.list(null, "github", 1, keys("org", "repo"))));
+        assertTrue(index.list("github", 3).isEmpty());
+
+        verify(dao, times(1)).listAll();
+    }
+
+    @Test
+    public void testMatching() {
+        TriggerEntry regex = github(PROJECT_A, "org", "re.*");
+        TriggerEntry invalid = github(PROJECT_A, "org", "[");
+
+        when(dao.listAll()).thenReturn(Arrays.asList(regex, invalid));
+
+        Map<String, Object> event = new HashMap<>(conditions("org", "repo", 2));
+
+        List<CompiledTrigger> l = index.list(null, "github", 2, keys("org", "repo"));
+        assertEquals(ids(regex), l.stream()
+                .filter(t -> DefaultEventFilter.filter(event, t))
+                .map(t -> t.getTrigger().getId())
+                .collect(Collectors.toSet()));
+    }
+
+    @Test
+    public void testVersion1() {
+        TriggerEntry noVersion = trigger(PROJECT_A, "test", Collections.emptyMap());
+        TriggerEntry v1 = trigger(PROJECT_A, "test", Collections.singletonMap("version", 1));
+        TriggerEntry v2 = trigger(PROJECT_A, "test", Collections.singletonMap("version", "2"));
+
+        when(dao.listAll()).thenReturn(Arrays.asList(noVersion, v1, v2));
+
+        assertEquals(ids(noVersion, v1), ids(index.list("test", 1)));
+        assertEquals(ids(v2), ids(index.list("test", 2)));
+    }
+
+    @Test
+    public void testInvalidate() throws Exception {
+        TriggerEntry a = trigger(PROJECT_A, "test", Collections.emptyMap());
+        TriggerEntry b = trigger(PROJECT_A, "test", Collections.emptyMap());
+
+        when(dao.listAll()).thenReturn(Collections.singletonList(a));
+        assertEquals(ids(a), ids(index.list("test", 1)));
+
+        // no changes
+        when(dao.listAll()).thenReturn(Arrays.asList(a, b));
+        index.performTask();
+        assertEquals(ids(a), ids(index.list("test", 1)));
+
+        // local changes
+        index.invalidate();
+        assertEquals(ids(a, b), ids(index.list("test", 1)));
+
+        // changes made by other nodes
+        when(dao.listAll()).thenReturn(Collections.singletonList(b));
+        when(dao.fingerprint()).thenReturn("b");
+        index.performTask();
+        assertEquals(ids(b), ids(index.list("test", 1)));
+
+        verify(dao, times(3)).listAll();
+    }
+
+    private static TriggerEntry github(UUID projectId, String org, String repo) {
+        return trigger(projectId, "github", conditions(org, repo, 2));
+    }
+
+    private static TriggerEntry trigger(UUID projectId, String eventSource, Map<String, Object> conditions) {
+        return new TriggerEntry(UUID.randomUUID(), null, null, projectId, null, null, null,
+                eventSource, null, null, conditions, Collections.emptyMap());
+    }
+
+    private static Map<String, Object> conditions(String org, String repo, int version) {
+        Map<String, Object> m = new HashMap<>();
+        m.put("githubOrg", org);
+        m.put("githubRepo", repo);
+        m.put("version", version);
+        return m;
+    }
+
+    private static Map<String, String> keys(String org, String repo) {
+        Map<String, String> m = new HashMap<>();
+        m.put("githubOrg", org);
+        m.put("githubRepo", repo);
+        return m;
+    }
+
+    private static Set<UUID> ids(TriggerEntry... triggers) {
+        return Arrays.stream(triggers)
+                .map(TriggerEntry::getId)
+                .collect(Collectors.toSet());
+    }
+
+    private static Set<UUID> ids(List<CompiledTrigger> triggers) {
+        return triggers.stream()
+                .map(t -> t.getTrigger().getId())
+                .collect(Collectors.toSet());
+    }
+}
@@ -0,0 +1,160 @@
+package com.walmartlabs.concord.server.org.triggers;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2019 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+import com.walmartlabs.concord.sdk.Constants;
+import com.walmartlabs.concord.server.AbstractDaoTest;
+import com.walmartlabs.concord.server.ConcordObjectMapper;
+import com.walmartlabs.concord.server.TestObjectMapper;
+import com.walmartlabs.concord.server.org.OrganizationManager;
+import com.walmartlabs.concord.server.org.project.ProjectDao;
+import com.walmartlabs.concord.server.org.project.RepositoryDao;
+import org.jooq.impl.DSL;
+import org.junit.Before;
+import org.junit.Ignore;
+import org.junit.Test;
+
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static com.walmartlabs.concord.server.jooq.tables.TriggerSchedule.TRIGGER_SCHEDULE;
+import static org.junit.Assert.*;
+
+@Ignore("requires a local DB instance")
+public class TriggerScheduleDaoTest extends AbstractDaoTest {
+
+    // far in the past, so the test triggers are claimed before any other due triggers
+    private static final OffsetDateTime T0 = OffsetDateTime.of(1970, 1, 1, 0, 0, 0, 0, ZoneOffset.UTC);
+
+    private TriggersDao triggersDao;
+    private TriggerScheduleDao scheduleDao;
+
+    private UUID projectId;
+    private UUID repoId;
+
+    @Before
+    public void setUp() {
+        ConcordObjectMapper objectMapper = new ConcordObjectMapper(TestObjectMapper.INSTANCE);
+
+        triggersDao = new TriggersDao(getConfiguration(), objectMapper);
+        scheduleDao = new TriggerScheduleDao(getConfiguration(), objectMapper);
+
+        ProjectDao projectDao = new ProjectDao(getConfiguration(), objectMapper);
+        projectId = projectDao.insert(OrganizationManager.DEFAULT_ORG_ID, "project#" + System.currentTimeMillis(), "test", null, null, null, null, new byte[0], null, null);
+
+        RepositoryDao repositoryDao = new RepositoryDao(getConfiguration(), objectMapper);
+        repoId = repositoryDao.insert(projectId, "repo#" + System.currentTimeMillis(), "n/a", null, null, null, null, false, null);
+    }
+
+    @Test
+    public void testPoll() {
+        UUID a = newTrigger("* * * * *", T0.plusSeconds(1));
+        UUID b = newTrigger("* * * * *", T0.plusSeconds(2));
+        UUID c = newTrigger("* * * * *", T0.plusSeconds(3));
+
+        // the oldest triggers are claimed first
+        TriggerScheduleDao.Batch batch = scheduleDao.poll(2);
+        assertEquals(Arrays.asList(a, b), ids(batch));
+        assertNotNull(batch.getClaimedAt());
+
+        // the entries keep the time they were due
+        assertEquals(T0.plusSeconds(1).toInstant(), batch.getEntries().get(0).getFireAt().toInstant());
+
+        // the claimed triggers are moved to their next execution time
+        assertTrue(fireAt(a).isAfter(batch.getClaimedAt()));
+        assertTrue(fireAt(b).isAfter(batch.getClaimedAt()));
+        assertEquals(T0.plusSeconds(3).toInstant(), fireAt(c).toInstant());
+
+        batch = scheduleDao.poll(1);
+        assertEquals(Collections.singletonList(c), ids(batch));
+        assertTrue(fireAt(c).isAfter(batch.getClaimedAt()));
+    }
+
+    @Test
+    public void testFutureTrigger() {
+        OffsetDateTime future = OffsetDateTime.now().plusHours(1);
+        UUID a = newTrigger("* * * * *", future);
+
+        scheduleDao.poll(1000);
+
+        assertEquals(future.toInstant(), fireAt(a).toInstant());
+    }
+
+    @Test
+    public void testUnschedulable() {
+        UUID a = newTrigger("not a cron spec", T0.plusSeconds(1));
+        UUID b = newTrigger("* * * * *", T0.plusSeconds(2));
+
+        TriggerScheduleDao.Batch batch = scheduleDao.poll(2);
+        assertEquals(Collections.singletonList(b), ids(batch));
+
+        // the trigger itself is kept, only its schedule is removed
+        assertNotNull(triggersDao.get(a));
+        assertNull(fireAt(a));
+        assertNotNull(fireAt(b));
+    }
+
+    @Test
+    public void testSkipLocked() {
+        UUID a = newTrigger("* * * * *", T0.plusSeconds(1));
+        UUID b = newTrigger("* * * * *", T0.plusSeconds(2));
+
+        tx(tx -> {
+            // another node holds the oldest trigger
+            tx.selectFrom(TRIGGER_SCHEDULE)
+                    .where(TRIGGER_SCHEDULE.TRIGGER_ID.eq(a))
+                    .forUpdate()
+                    .fetch();
+
+            TriggerScheduleDao.Batch batch = scheduleDao.poll(1);
+            assertEquals(Collections.singletonList(b), ids(batch));
+        });
+
+        assertEquals(T0.plusSeconds(1).toInstant(), fireAt(a).toInstant());
+    }
+
+    private UUID newTrigger(String spec, OffsetDateTime fireAt) {
+        Map<String, Object> conditions = Collections.singletonMap(Constants.Trigger.CRON_SPEC, spec);
+
+        UUID[] result = new UUID[1];
+        tx(tx -> {
+            UUID triggerId = triggersDao.insert(tx, projectId, repoId, "cron", null, null, conditions, null);
+            scheduleDao.insert(tx, triggerId, fireAt);
+            result[0] = triggerId;
+        });
+        return result[0];
+    }
+
+    private OffsetDateTime fireAt(UUID triggerId) {
+        return DSL.using(getConfiguration()).select(TRIGGER_SCHEDULE.FIRE_AT)
+                .from(TRIGGER_SCHEDULE)
+                .where(TRIGGER_SCHEDULE.TRIGGER_ID.eq(triggerId))
+                .fetchOne(TRIGGER_SCHEDULE.FIRE_AT);
+    }
+
+    private static List<UUID> ids(TriggerScheduleDao.Batch batch) {
+        return batch.getEntries().stream()
+                .map(TriggerSchedulerEntry::getTriggerId)
+                .collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,234 @@
+package com.walmartlabs.concord.server.process.locks;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2019 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+import com.codahale.metrics.MetricRegistry;
+import com.walmartlabs.concord.server.AbstractDaoTest;
+import com.walmartlabs.concord.server.ConcordObjectMapper;
+import com.walmartlabs.concord.server.Locks;
+import com.walmartlabs.concord.server.TestObjectMapper;
+import com.walmartlabs.concord.server.cfg.LockingConfiguration;
+import com.walmartlabs.concord.server.jooq.enums.ProcessLockScope;
+import com.walmartlabs.concord.server.org.OrganizationManager;
+import com.walmartlabs.concord.server.org.project.ProjectDao;
+import com.walmartlabs.concord.server.process.ProcessKind;
+import com.walmartlabs.concord.server.process.queue.ProcessQueueDao;
+import com.walmartlabs.concord.server.process.queue.ProcessWaitIndex;
+import com.walmartlabs.concord.server.sdk.ProcessKey;
+import com.walmartlabs.concord.server.sdk.ProcessStatus;
+import org.junit.Before;
+import org.junit.Ignore;
+import org.junit.Test;
+
+import java.time.OffsetDateTime;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+import static com.walmartlabs.concord.server.jooq.tables.ProcessQueue.PROCESS_QUEUE;
+import static org.junit.Assert.*;
+
+@Ignore("requires a local DB instance")
+public class ProcessLocksManagerTest extends AbstractDaoTest {
+
+    private static final UUID ORG_ID = OrganizationManager.DEFAULT_ORG_ID;
+    private static final ProcessLockScope SCOPE = ProcessLockScope.PROJECT;
+
+    private ProcessQueueDao queueDao;
+    private ProcessLocksDao locksDao;
+    private ProcessLocksManager locksManager;
+
+    private UUID projectId;
+    private String lockName;
+
+    @Before
+    public void setUp() {
+        queueDao = new ProcessQueueDao(getConfiguration(), new ConcordObjectMapper(TestObjectMapper.INSTANCE));
+        locksDao = new ProcessLocksDao(getConfiguration());
+        locksManager = new ProcessLocksManager(locksDao, new Locks(new LockingConfiguration(16)), new ProcessWaitIndex(), new MetricRegistry());
+
+        ProjectDao projectDao = new ProjectDao(getConfiguration(), new ConcordObjectMapper(TestObjectMapper.INSTANCE));
+        projectId = projectDao.insert(ORG_ID, "project#" + System.currentTimeMillis(), "test", null, null, null, null, new byte[0], null, null);
+
+        lockName = "lock#" + System.currentTimeMillis();
+    }
+
+    @Test
+    public void testFifo() {
+        UUID a = newProcess();
+        UUID b = newProcess();
+        UUID c = newProcess();
+
+        assertEquals(a, tryLock(a));
+        assertEquals(a, tryLock(b));
+        assertEquals(a, tryLock(c));
+
+        // the lock is handed over in the order of the requests
+        unlock(a);
+        assertEquals(b, owner());
+
+        unlock(b);
+        assertEquals(c, owner());
+
+        unlock(c);
+        assertNull(owner());
+    }
+
+    @Test
+    public void testNoBarging() {
+        UUID a = newProcess();
+        UUID b = newProcess();
+        UUID c = newProcess();
+
+        assertEquals(a, tryLock(a));
+        assertEquals(a, tryLock(b));
+
+        unlock(a);
+        assertEquals(b, owner());
+
+        // A can't take the lock back while other processes are waiting for it
+        assertEquals(b, tryLock(a));
+        assertEquals(b, tryLock(c));
+
+        unlock(b);
+        assertEquals(a, owner());
+
+        unlock(a);
+        assertEquals(c, owner());
+    }
+
+    @Test
+    public void testUnlockWaiting() {
+        UUID a = newProcess();
+        UUID b = newProcess();
+        UUID c = newProcess();
+
+        assertEquals(a, tryLock(a));
+        assertEquals(a, tryLock(b));
+        assertEquals(a, tryLock(c));
+
+        // B is no longer interested in the lock
+        unlock(b);
+        assertEquals(a, owner());
+
+        unlock(a);
+        assertEquals(c, owner());
+    }
+
+    @Test(timeout = 10000)
+    public void testAcquireTimeout() throws Exception {
+        UUID a = newProcess();
+        UUID b = newProcess();
+
+        assertEquals(a, tryLock(a));
+
+        long t1 = System.currentTimeMillis();
+        LockEntry owner = acquire(b, 500);
+        long t2 = System.currentTimeMillis();
+
+        assertEquals(a, owner.instanceId());
+        assertTrue(t2 - t1 >= 500);
+
+        // B stays in the queue
+        unlock(a);
+        assertEquals(b, owner());
+    }
+
+    @Test(timeout = 10000)
+    public void testAcquireHandOff() throws Exception {
+        UUID a = newProcess();
+        UUID b = newProcess();
+
+        assertEquals(a, tryLock(a));
+
+        Thread t = new Thread(() -> {
+            try {
+                Thread.sleep(500);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            unlock(a);
+        });
+        t.start();
+
+        LockEntry owner = acquire(b, 5000);
+        assertEquals(b, owner.instanceId());
+
+        t.join();
+    }
+
+    @Test
+    public void testFinishedOwner() {
+        UUID a = newProcess();
+        UUID b = newProcess();
+        UUID c = newProcess();
+
+        assertEquals(a, tryLock(a));
+        assertEquals(a, tryLock(b));
+        assertEquals(a, tryLock(c));
+
+        // A finishes without releasing the lock, B finishes while waiting for it
+        finish(a);
+        finish(b);
+
+        ProcessLocksWatchdog watchdog = new ProcessLocksWatchdog(new ProcessLocksWatchdog.WatchdogDao(getConfiguration()), locksManager);
+        watchdog.performTask();
+
+        assertEquals(c, owner());
+    }
+
+    private UUID newProcess() {
+        ProcessKey processKey = new ProcessKey(UUID.randomUUID(), OffsetDateTime.now());
+        tx(tx -> queueDao.insert(tx, processKey, ProcessStatus.RUNNING, ProcessKind.DEFAULT, null, projectId, null, null, null, null));
+        return processKey.getInstanceId();
+    }
+
+    private void finish(UUID instanceId) {
+        tx(tx -> tx.update(PROCESS_QUEUE)
+                .set(PROCESS_QUEUE.CURRENT_STATUS, ProcessStatus.FINISHED.toString())
+                .where(PROCESS_QUEUE.INSTANCE_ID.eq(instanceId))
+                .execute());
+    }
+
+    private UUID tryLock(UUID instanceId) {
+        return locksManager.tryLock(instanceId, ORG_ID, projectId, SCOPE, lockName).instanceId();
+    }
+
+    private LockEntry acquire(UUID instanceId, long timeoutMs) throws Exception {
+        CompletableFuture<LockEntry> result = new CompletableFuture<>();
+        locksManager.acquire(instanceId, ORG_ID, projectId, SCOPE, lockName, timeoutMs, (owner, error) -> {
+            if (error != null) {
+                result.completeExceptionally(error);
+            } else {
+                result.complete(owner);
+            }
+        });
+        return result.get();
+    }
+
+    private void unlock(UUID instanceId) {
+        locksManager.unlock(instanceId, ORG_ID, projectId, SCOPE, lockName);
+    }
+
+    private UUID owner() {
+        LockEntry e = locksDao.get(ORG_ID, projectId, SCOPE, lockName);
+        return e != null ? e.instanceId() : null;
+    }
+}
@@ -0,0 +1,87 @@
+package com.walmartlabs.concord.server.process.logs;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2020 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class LogArchiveUtilsTest {
+
+    @Test
+    public void testRanges() {
+        byte[] data = new byte[LogArchiveUtils.BLOCK_SIZE * 3 + 123];
+        Random rnd = new Random(42);
+        for (int i = 0; i < data.length; i++) {
+            // compressible, but not trivially
+            data[i] = (byte) ('a' + rnd.nextInt(4));
+        }
+
+        LogArchiveUtils.Archive a = LogArchiveUtils.compress(data);
+        assertEquals(4, a.getBlockOffsets().length);
+
+        int[][] ranges = {
+                {0, data.length},
+                {0, 0},
+                {10, 20},
+                {LogArchiveUtils.BLOCK_SIZE - 5, LogArchiveUtils.BLOCK_SIZE + 5},
+                {LogArchiveUtils.BLOCK_SIZE, LogArchiveUtils.BLOCK_SIZE * 2},
+                {data.length - 100, data.length}
+        };
+
+        for (int[] r : ranges) {
+            byte[] ab = LogArchiveUtils.read(a.getData(), a.getBlockOffsets(), data.length, r[0], r[1]);
+            assertArrayEquals(Arrays.copyOfRange(data, r[0], r[1]), ab);
+
+            if (r[0] == r[1]) {
+                continue;
+            }
+
+            // same, but only the necessary blocks are provided
+            int[] br = LogArchiveUtils.blockRange(a.getBlockOffsets(), r[0], r[1]);
+            byte[] blocks = Arrays.copyOfRange(a.getData(), br[0], br[1] < 0 ? a.getData().length : br[1]);
+            ab = LogArchiveUtils.read(blocks, br[0], a.getBlockOffsets(), data.length, r[0], r[1]);
+            assertArrayEquals(Arrays.copyOfRange(data, r[0], r[1]), ab);
+        }
+    }
+
+    @Test
+    public void testBlockRange() {
+        int[] blockOffsets = {0, 100, 250, 300};
+        int bs = LogArchiveUtils.BLOCK_SIZE;
+
+        assertArrayEquals(new int[]{0, 100}, LogArchiveUtils.blockRange(blockOffsets, 0, 10));
+        assertArrayEquals(new int[]{0, 250}, LogArchiveUtils.blockRange(blockOffsets, bs - 1, bs + 1));
+        assertArrayEquals(new int[]{100, 250}, LogArchiveUtils.blockRange(blockOffsets, bs, bs * 2));
+        assertArrayEquals(new int[]{250, -1}, LogArchiveUtils.blockRange(blockOffsets, bs * 2, bs * 3 + 1));
+    }
+
+    @Test
+    public void testEmpty() {
+        LogArchiveUtils.Archive a = LogArchiveUtils.compress(new byte[0]);
+        assertEquals(0, a.getBlockOffsets().length);
+        assertEquals(0, LogArchiveUtils.read(a.getData(), a.getBlockOffsets(), 0, 0, 0).length);
+    }
+}
@@ -0,0 +1,124 @@
+package com.walmartlabs.concord.server.process.queue;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2019 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+import com.walmartlabs.concord.server.sdk.ProcessStatus;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class ProcessCompletionWatcherTest {
+
+    @Test(timeout = 10000)
+    public void testFinalStatus() throws Exception {
+        ProcessCompletionWatcher watcher = new ProcessCompletionWatcher();
+
+        UUID a = UUID.randomUUID();
+        UUID b = UUID.randomUUID();
+
+        TestCallback cb = new TestCallback();
+        watcher.watch(Arrays.asList(a, b), 30000, cb);
+
+        // the first check is made right away
+        cb.awaitChecks(1);
+
+        watcher.onStatusChange(b, ProcessStatus.RUNNING);
+        Thread.sleep(100);
+        assertEquals(1, cb.checks.get());
+
+        cb.completed.set(true);
+        watcher.onStatusChange(b, ProcessStatus.FINISHED);
+
+        assertNull(cb.done.get(5, TimeUnit.SECONDS));
+        assertEquals(2, cb.checks.get());
+
+        // no checks after completion
+        watcher.onStatusChange(a, ProcessStatus.FINISHED);
+        Thread.sleep(100);
+        assertEquals(2, cb.checks.get());
+    }
+
+    @Test(timeout = 10000)
+    public void testTimeout() throws Exception {
+        ProcessCompletionWatcher watcher = new ProcessCompletionWatcher();
+
+        TestCallback cb = new TestCallback();
+
+        long t1 = System.currentTimeMillis();
+        watcher.watch(Collections.singletonList(UUID.randomUUID()), 500, cb);
+
+        assertNull(cb.done.get(5, TimeUnit.SECONDS));
+        long t2 = System.currentTimeMillis();
+
+        // checked once more when the timeout expires
+        assertTrue(t2 - t1 >= 500);
+        assertEquals(2, cb.checks.get());
+    }
+
+    @Test(timeout = 10000)
+    public void testError() throws Exception {
+        ProcessCompletionWatcher watcher = new ProcessCompletionWatcher();
+
+        TestCallback cb = new TestCallback();
+        cb.error = new RuntimeException("test");
+
+        watcher.watch(Collections.singletonList(UUID.randomUUID()), 30000, cb);
+
+        assertSame(cb.error, cb.done.get(5, TimeUnit.SECONDS));
+    }
+
+    private static class TestCallback implements ProcessCompletionWatcher.Callback {
+
+        private final AtomicInteger checks = new AtomicInteger();
+        private final AtomicBoolean completed = new AtomicBoolean();
+        private final CompletableFuture<Exception> done = new CompletableFuture<>();
+
+        private volatile RuntimeException error;
+
+        @Override
+        public boolean check() {
+            checks.incrementAndGet();
+            if (error != null) {
+                throw error;
+            }
+            return completed.get();
+        }
+
+        @Override
+        public void done(Exception error) {
+            done.complete(error);
+        }
+
+        private void awaitChecks(int n) throws InterruptedException {
+            while (checks.get() < n) {
+                Thread.sleep(10);
+            }
+        }
+    }
+}
@@ -0,0 +1,240 @@
+package com.walmartlabs.concord.server.process.queue;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2019 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+import com.walmartlabs.concord.server.jooq.enums.ProcessLockScope;
+import com.walmartlabs.concord.server.sdk.ProcessKey;
+import com.walmartlabs.concord.server.sdk.ProcessStatus;
+import org.junit.Test;
+
+import java.time.OffsetDateTime;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class ProcessWaitIndexTest {
+
+    private static final UUID ORG_ID = UUID.randomUUID();
+    private static final UUID PROJECT_ID = UUID.randomUUID();
+
+    @Test
+    public void testProcessCompletion() throws Exception {
+        ProcessWaitIndex index = new ProcessWaitIndex();
+
+        ProcessKey waiter = newKey();
+        UUID child = UUID.randomUUID();
+        index.update(waiter, completion(child));
+
+        // not a final status
+        index.onStatusChange(child, ProcessStatus.RUNNING);
+        assertTrue(index.poll().isEmpty());
+
+        // some other process
+        index.onStatusChange(UUID.randomUUID(), ProcessStatus.FINISHED);
+        assertTrue(index.poll().isEmpty());
+
+        index.onStatusChange(child, ProcessStatus.FINISHED);
+        assertEquals(Collections.singleton(waiter), index.poll());
+        assertTrue(index.poll().isEmpty());
+
+        // the signalled process is checked once more after a delay
+        Thread.sleep(1100);
+        assertEquals(Collections.singleton(waiter), index.poll());
+        assertTrue(index.poll().isEmpty());
+    }
+
+    @Test
+    public void testRetryOfRemovedProcess() throws Exception {
+        ProcessWaitIndex index = new ProcessWaitIndex();
+
+        ProcessKey waiter = newKey();
+        UUID child = UUID.randomUUID();
+        index.update(waiter, completion(child));
+
+        index.onStatusChange(child, ProcessStatus.FAILED);
+        assertEquals(Collections.singleton(waiter), index.poll());
+
+        // the wait condition is cleared, the delayed re-check is dropped
+        index.update(waiter, null);
+        assertEquals(0, index.size());
+
+        Thread.sleep(1100);
+        assertTrue(index.poll().isEmpty());
+    }
+
+    @Test
+    public void testUpdate() {
+        ProcessWaitIndex index = new ProcessWaitIndex();
+
+        ProcessKey waiter = newKey();
+        UUID childA = UUID.randomUUID();
+        UUID childB = UUID.randomUUID();
+
+        index.update(waiter, completion(childA));
+        index.update(waiter, completion(childB));
+        assertEquals(1, index.size());
+
+        // the previous condition is no longer indexed
+        index.onStatusChange(childA, ProcessStatus.FINISHED);
+        assertTrue(index.poll().isEmpty());
+
+        index.onStatusChange(childB, ProcessStatus.FINISHED);
+        assertEquals(Collections.singleton(waiter), index.poll());
+    }
+
+    @Test
+    public void testLockReleased() {
+        ProcessWaitIndex index = new ProcessWaitIndex();
+
+        ProcessKey projectWaiter = newKey();
+        index.update(projectWaiter, lock(ProcessLockScope.PROJECT, PROJECT_ID, "a"));
+
+        ProcessKey orgWaiter = newKey();
+        index.update(orgWaiter, lock(ProcessLockScope.ORG, PROJECT_ID, "a"));
+
+        index.onLockReleased(ORG_ID, PROJECT_ID, ProcessLockScope.PROJECT, "b");
+        index.onLockReleased(ORG_ID, UUID.randomUUID(), ProcessLockScope.PROJECT, "a");
+        assertTrue(index.poll().isEmpty());
+
+        index.onLockReleased(ORG_ID, PROJECT_ID, ProcessLockScope.PROJECT, "a");
+        assertEquals(Collections.singleton(projectWaiter), index.poll());
+
+        // org-level locks don't depend on the project
+        index.onLockReleased(ORG_ID, UUID.randomUUID(), ProcessLockScope.ORG, "a");
+        assertEquals(Collections.singleton(orgWaiter), index.poll());
+    }
+
+    @Test
+    public void testRetain() {
+        ProcessWaitIndex index = new ProcessWaitIndex();
+
+        ProcessKey a = newKey();
+        ProcessKey b = newKey();
+        UUID childA = UUID.randomUUID();
+        UUID childB = UUID.randomUUID();
+
+        index.update(a, completion(childA));
+        index.update(b, completion(childB));
+
+        // the processes registered after the timestamp are kept
+        index.retain(Collections.emptySet(), System.currentTimeMillis() - 60_000);
+        assertEquals(2, index.size());
+
+        index.retain(Collections.singleton(a), System.currentTimeMillis() + 1);
+        assertEquals(1, index.size());
+
+        index.onStatusChange(childB, ProcessStatus.FINISHED);
+        assertTrue(index.poll().isEmpty());
+
+        index.onStatusChange(childA, ProcessStatus.FINISHED);
+        assertEquals(Collections.singleton(a), index.poll());
+    }
+
+    @Test(timeout = 10000)
+    public void testSleep() throws Exception {
+        ProcessWaitIndex index = new ProcessWaitIndex();
+
+        ProcessKey expired = newKey();
+        index.update(expired, sleep(System.currentTimeMillis() - 1000));
+
+        ProcessKey sleeping = newKey();
+        long until = System.currentTimeMillis() + 500;
+        index.update(sleeping, sleep(until));
+
+        assertEquals(Collections.singleton(expired), index.poll());
+        assertTrue(index.poll().isEmpty());
+
+        // wakes up at the deadline, not after the timeout
+        index.await(5000);
+        assertTrue(System.currentTimeMillis() >= until);
+        assertTrue(System.currentTimeMillis() < until + 4000);
+
+        assertEquals(Collections.singleton(sleeping), index.poll());
+    }
+
+    @Test(timeout = 10000)
+    public void testSleepRemoved() throws Exception {
+        ProcessWaitIndex index = new ProcessWaitIndex();
+
+        ProcessKey sleeping = newKey();
+        index.update(sleeping, sleep(System.currentTimeMillis() + 200));
+        index.update(sleeping, null);
+
+        Thread.sleep(300);
+        assertTrue(index.poll().isEmpty());
+    }
+
+    @Test(timeout = 10000)
+    public void testAwait() throws Exception {
+        ProcessWaitIndex index = new ProcessWaitIndex();
+
+        // nothing to wait for
+        long t1 = System.currentTimeMillis();
+        index.await(200);
+        assertTrue(System.currentTimeMillis() - t1 >= 200);
+
+        ProcessKey waiter = newKey();
+        UUID child = UUID.randomUUID();
+        index.update(waiter, completion(child));
+
+        Thread t = new Thread(() -> {
+            try {
+                Thread.sleep(200);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            index.onStatusChange(child, ProcessStatus.FINISHED);
+        });
+        t.start();
+
+        index.await(5000);
+        assertEquals(Collections.singleton(waiter), index.poll());
+
+        t.join();
+    }
+
+    private static ProcessKey newKey() {
+        return new ProcessKey(UUID.randomUUID(), OffsetDateTime.now());
+    }
+
+    private static ProcessCompletionCondition completion(UUID... processes) {
+        return ProcessCompletionCondition.builder()
+                .processes(Arrays.asList(processes))
+                .build();
+    }
+
+    private static ProcessLockCondition lock(ProcessLockScope scope, UUID projectId, String name) {
+        return ProcessLockCondition.builder()
+                .instanceId(UUID.randomUUID())
+                .orgId(ORG_ID)
+                .projectId(projectId)
+                .scope(scope)
+                .name(name)
+                .build();
+    }
+
+    private static ProcessSleepCondition sleep(long until) {
+        return ProcessSleepCondition.builder()
+                .resumeEvent("test")
+                .until(new Date(until))
+                .build();
+    }
+}
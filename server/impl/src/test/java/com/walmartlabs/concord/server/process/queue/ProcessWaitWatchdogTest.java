@@ -0,0 +1,180 @@
+package com.walmartlabs.concord.server.process.queue;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2019 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+import com.walmartlabs.concord.server.AbstractDaoTest;
+import com.walmartlabs.concord.server.ConcordObjectMapper;
+import com.walmartlabs.concord.server.Locks;
+import com.walmartlabs.concord.server.TestObjectMapper;
+import com.walmartlabs.concord.server.cfg.LockingConfiguration;
+import com.walmartlabs.concord.server.cfg.ProcessWaitWatchdogConfiguration;
+import com.walmartlabs.concord.server.process.ProcessKind;
+import com.walmartlabs.concord.server.sdk.ProcessKey;
+import com.walmartlabs.concord.server.sdk.ProcessStatus;
+import org.junit.Before;
+import org.junit.Ignore;
+import org.junit.Test;
+
+import java.time.OffsetDateTime;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.walmartlabs.concord.server.jooq.tables.ProcessQueue.PROCESS_QUEUE;
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@Ignore("requires a local DB instance")
+public class ProcessWaitWatchdogTest extends AbstractDaoTest {
+
+    private ConcordObjectMapper objectMapper;
+    private ProcessQueueDao queueDao;
+    private TestHandler handler;
+    private ProcessWaitWatchdog watchdog;
+
+    @Before
+    @SuppressWarnings("rawtypes")
+    public void setUp() {
+        objectMapper = new ConcordObjectMapper(TestObjectMapper.INSTANCE);
+        queueDao = new ProcessQueueDao(getConfiguration(), objectMapper);
+        handler = new TestHandler();
+
+        ProcessWaitWatchdogConfiguration cfg = mock(ProcessWaitWatchdogConfiguration.class);
+        when(cfg.getPollLimit()).thenReturn(100);
+
+        ProcessQueueManager queueManager = mock(ProcessQueueManager.class);
+        doAnswer(inv -> {
+            ProcessKey key = inv.getArgument(0);
+            AbstractWaitCondition waits = inv.getArgument(1);
+            tx(tx -> queueDao.updateWait(tx, key, waits));
+            return null;
+        }).when(queueManager).updateWait(any(ProcessKey.class), any());
+
+        ProcessWaitWatchdog.WatchdogDao dao = new ProcessWaitWatchdog.WatchdogDao(getConfiguration(), new Locks(new LockingConfiguration(16)), objectMapper);
+        watchdog = new ProcessWaitWatchdog(cfg, dao, queueManager, new ProcessWaitIndex(), Collections.<ProcessWaitHandler>singleton(handler));
+    }
+
+    @Test(timeout = 30000)
+    public void testConcurrentRecheck() throws Exception {
+        ProcessKey processKey = newWaitingProcess();
+        handler.target = processKey.getInstanceId();
+
+        // the periodic scan and the wake-up task pick up the same process
+        CyclicBarrier barrier = new CyclicBarrier(2);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<?> scan = executor.submit(() -> {
+                barrier.await();
+                watchdog.performTask();
+                return null;
+            });
+
+            Future<?> wakeUp = executor.submit(() -> {
+                barrier.await();
+                watchdog.process(Collections.singleton(processKey));
+                return null;
+            });
+
+            scan.get();
+            wakeUp.get();
+        } finally {
+            executor.shutdownNow();
+        }
+
+        // the process is resumed only once
+        assertEquals(1, handler.calls.get());
+        assertNull(waitConditions(processKey));
+    }
+
+    @Test
+    public void testProcessedInTheMeantime() {
+        ProcessKey processKey = newWaitingProcess();
+        handler.target = processKey.getInstanceId();
+
+        watchdog.process(Collections.singleton(processKey));
+        watchdog.process(Collections.singleton(processKey));
+
+        assertEquals(1, handler.calls.get());
+    }
+
+    private ProcessKey newWaitingProcess() {
+        ProcessKey processKey = new ProcessKey(UUID.randomUUID(), OffsetDateTime.now());
+
+        AbstractWaitCondition waits = ProcessCompletionCondition.builder()
+                .processes(Collections.singleton(UUID.randomUUID()))
+                .resumeEvent("test")
+                .build();
+
+        tx(tx -> {
+            queueDao.insert(tx, processKey, ProcessStatus.SUSPENDED, ProcessKind.DEFAULT, null, null, null, null, null, null);
+            queueDao.updateWait(tx, processKey, waits);
+        });
+
+        return processKey;
+    }
+
+    private AbstractWaitCondition waitConditions(ProcessKey processKey) {
+        Object[] result = new Object[1];
+        tx(tx -> result[0] = tx.select(PROCESS_QUEUE.WAIT_CONDITIONS)
+                .from(PROCESS_QUEUE)
+                .where(PROCESS_QUEUE.INSTANCE_ID.eq(processKey.getInstanceId()))
+                .fetchOne(r -> objectMapper.fromJSONB(r.value1(), AbstractWaitCondition.class)));
+        return (AbstractWaitCondition) result[0];
+    }
+
+    /**
+     * Simulates a handler that resumes the target process.
+     */
+    private static class TestHandler implements ProcessWaitHandler<AbstractWaitCondition> {
+
+        private final AtomicInteger calls = new AtomicInteger();
+        private volatile UUID target;
+
+        @Override
+        public WaitType getType() {
+            return WaitType.PROCESS_COMPLETION;
+        }
+
+        @Override
+        public Set<ProcessStatus> getProcessStatuses() {
+            return Collections.singleton(ProcessStatus.SUSPENDED);
+        }
+
+        @Override
+        public AbstractWaitCondition process(UUID instanceId, ProcessStatus processStatus, AbstractWaitCondition waits) {
+            if (!instanceId.equals(target)) {
+                return waits;
+            }
+
+            calls.incrementAndGet();
+
+            try {
+                // give the other path a chance to pick up the process
+                Thread.sleep(500);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+
+            return null;
+        }
+    }
+}
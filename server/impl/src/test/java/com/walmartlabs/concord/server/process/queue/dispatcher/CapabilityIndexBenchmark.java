@@ -0,0 +1,143 @@
+package com.walmartlabs.concord.server.process.queue.dispatcher;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2020 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+import com.walmartlabs.concord.common.MapMatcher;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the linear {@link MapMatcher} scan with the {@link CapabilityIndex}
+ * on a single dispatch cycle: 500 agents in several pools and 1000 candidates.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CapabilityIndexBenchmark {
+
+    private static final String[] FLAVORS = {"default", "ansible", "k8s-small", "k8s-large", "windows"};
+
+    @Param({"500"})
+    public int agents;
+
+    @Param({"1000"})
+    public int candidates;
+
+    private List<Map<String, Object>> capabilities;
+    private List<Map<String, Object>> requirements;
+    private Map<Map<String, Object>, MapMatcher.Compiled> compiled;
+
+    @Setup
+    public void setup() {
+        Random rnd = new Random(42);
+
+        capabilities = new ArrayList<>(agents);
+        for (int i = 0; i < agents; i++) {
+            Map<String, Object> m = new HashMap<>();
+            m.put("type", "concord-agent");
+            m.put("flavor", FLAVORS[rnd.nextInt(FLAVORS.length)]);
+            m.put("os", Collections.singletonMap("family", "linux"));
+            capabilities.add(m);
+        }
+
+        requirements = new ArrayList<>(candidates);
+        for (int i = 0; i < candidates; i++) {
+            switch (rnd.nextInt(4)) {
+                case 0: {
+                    requirements.add(Collections.emptyMap());
+                    break;
+                }
+                case 1: {
+                    requirements.add(Collections.singletonMap("flavor", "k8s-.*"));
+                    break;
+                }
+                case 2: {
+                    requirements.add(Collections.singletonMap("flavor", "windows"));
+                    break;
+                }
+                default: {
+                    Map<String, Object> m = new HashMap<>();
+                    m.put("flavor", "ansible");
+                    m.put("os", Collections.singletonMap("family", "linux"));
+                    requirements.add(m);
+                }
+            }
+        }
+
+        compiled = new HashMap<>();
+        for (Map<String, Object> r : requirements) {
+            compiled.computeIfAbsent(r, MapMatcher::compile);
+        }
+    }
+
+    @Benchmark
+    public void linearScan(Blackhole bh) {
+        List<Map<String, Object>> inbox = new ArrayList<>(capabilities);
+        for (Map<String, Object> r : requirements) {
+            for (Iterator<Map<String, Object>> it = inbox.iterator(); it.hasNext(); ) {
+                Map<String, Object> c = it.next();
+                if (MapMatcher.matches(c, r)) {
+                    bh.consume(c);
+                    it.remove();
+                    break;
+                }
+            }
+
+            if (inbox.isEmpty()) {
+                break;
+            }
+        }
+    }
+
+    @Benchmark
+    public void indexed(Blackhole bh) {
+        CapabilityIndex<Map<String, Object>> inbox = new CapabilityIndex<>();
+        for (Map<String, Object> c : capabilities) {
+            inbox.add(c, c);
+        }
+
+        for (Map<String, Object> r : requirements) {
+            MapMatcher.Compiled m = compiled.get(r);
+            if (inbox.peek(m) != null) {
+                bh.consume(inbox.poll(m));
+            }
+
+            if (inbox.isEmpty()) {
+                break;
+            }
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(CapabilityIndexBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
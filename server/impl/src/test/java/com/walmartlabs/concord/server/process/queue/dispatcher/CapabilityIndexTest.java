@@ -0,0 +1,69 @@
+package com.walmartlabs.concord.server.process.queue.dispatcher;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2020 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+import com.walmartlabs.concord.common.MapMatcher;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class CapabilityIndexTest {
+
+    @Test
+    public void testMatching() {
+        CapabilityIndex<String> idx = new CapabilityIndex<>();
+        idx.add(flavor("default"), "a");
+        idx.add(flavor("ansible"), "b");
+        idx.add(flavor("default"), "c");
+
+        MapMatcher.Compiled ansible = MapMatcher.compile(flavor("ansible"));
+        MapMatcher.Compiled any = MapMatcher.compile(Collections.emptyMap());
+
+        assertEquals("b", idx.peek(ansible));
+        assertEquals("b", idx.poll(ansible));
+        assertNull(idx.peek(ansible));
+
+        assertEquals("a", idx.poll(any));
+        assertEquals("c", idx.poll(any));
+        assertTrue(idx.isEmpty());
+        assertNull(idx.poll(any));
+    }
+
+    @Test
+    public void testNewBucketAfterLookup() {
+        CapabilityIndex<String> idx = new CapabilityIndex<>();
+        idx.add(flavor("default"), "a");
+
+        MapMatcher.Compiled k8s = MapMatcher.compile(flavor("k8s-.*"));
+        assertNull(idx.peek(k8s));
+
+        idx.add(flavor("k8s-large"), "b");
+        assertEquals("b", idx.poll(k8s));
+        assertFalse(idx.isEmpty());
+    }
+
+    private static Map<String, Object> flavor(String flavor) {
+        return Collections.singletonMap("flavor", flavor);
+    }
+}
@@ -0,0 +1,123 @@
+package com.walmartlabs.concord.server.process.queue.dispatcher;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2019 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+import com.codahale.metrics.MetricRegistry;
+import com.walmartlabs.concord.db.AbstractDao;
+import com.walmartlabs.concord.server.Locks;
+import com.walmartlabs.concord.server.cfg.ProcessQueueConfiguration;
+import com.walmartlabs.concord.server.cfg.ProcessQueueConfiguration.DispatcherMode;
+import com.walmartlabs.concord.server.process.ImportsNormalizerFactory;
+import com.walmartlabs.concord.server.process.SessionTokenCreator;
+import com.walmartlabs.concord.server.process.logs.ProcessLogManager;
+import com.walmartlabs.concord.server.process.queue.ProcessQueueEntry;
+import com.walmartlabs.concord.server.process.queue.ProcessQueueManager;
+import com.walmartlabs.concord.server.process.queue.dispatcher.Dispatcher.DispatcherDao;
+import com.walmartlabs.concord.server.queueclient.message.Message;
+import com.walmartlabs.concord.server.queueclient.message.MessageType;
+import com.walmartlabs.concord.server.queueclient.message.ProcessBatchResponse;
+import com.walmartlabs.concord.server.queueclient.message.ProcessRequest;
+import com.walmartlabs.concord.server.sdk.ProcessKey;
+import com.walmartlabs.concord.server.sdk.ProcessStatus;
+import com.walmartlabs.concord.server.websocket.WebSocketChannel;
+import com.walmartlabs.concord.server.websocket.WebSocketChannelManager;
+import org.jooq.DSLContext;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.Collections;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+public class DispatcherTest {
+
+    @Test
+    public void testShardFailure() {
+        ProcessQueueConfiguration cfg = mock(ProcessQueueConfiguration.class);
+        when(cfg.getDispatcherPollDelay()).thenReturn(Duration.ofSeconds(2));
+        when(cfg.getDispatcherBatchSize()).thenReturn(10);
+        when(cfg.getDispatcherMode()).thenReturn(DispatcherMode.SHARDED);
+        when(cfg.getDispatcherShardCount()).thenReturn(2);
+
+        DSLContext tx = mock(DSLContext.class);
+
+        Locks locks = mock(Locks.class);
+        when(locks.tryLock(any(), anyLong())).thenReturn(true);
+
+        ProcessQueueEntry entry = ProcessQueueEntry.builder()
+                .key(new ProcessKey(UUID.randomUUID(), OffsetDateTime.now()))
+                .build();
+
+        // the first processed shard returns a process, the other one fails
+        AtomicInteger firstShard = new AtomicInteger(-1);
+
+        DispatcherDao dao = mock(DispatcherDao.class);
+        when(dao.txResult(any())).thenAnswer(i -> i.<AbstractDao.TxResult<?>>getArgument(0).run(tx));
+        when(dao.next(any(), anyInt(), anyInt(), any(), anyInt())).thenAnswer(i -> {
+            int shard = i.getArgument(1);
+            if (firstShard.compareAndSet(-1, shard)) {
+                return Collections.singletonList(entry);
+            }
+
+            if (firstShard.get() == shard) {
+                return Collections.emptyList();
+            }
+
+            throw new RuntimeException("test error");
+        });
+
+        WebSocketChannel channel = mock(WebSocketChannel.class);
+        UUID channelId = UUID.randomUUID();
+        when(channel.getChannelId()).thenReturn(channelId);
+
+        // the agent asks for two processes, so both shards are processed
+        WebSocketChannelManager channelManager = mock(WebSocketChannelManager.class);
+        doReturn(Collections.singletonMap(channel, new ProcessRequest(Collections.emptyMap(), 2)))
+                .when(channelManager).getRequests(MessageType.PROCESS_REQUEST);
+        when(channelManager.sendResponse(any(), any())).thenReturn(true);
+
+        ProcessQueueManager queueManager = mock(ProcessQueueManager.class);
+
+        Dispatcher dispatcher = new Dispatcher(locks, dao, channelManager, mock(ProcessLogManager.class), queueManager,
+                Collections.emptySet(), new ImportsNormalizerFactory(null, null), cfg, new MetricRegistry(),
+                mock(SessionTokenCreator.class), mock(DispatcherSignal.class));
+
+        // ---
+
+        assertTrue(dispatcher.performTask());
+
+        verify(dao, times(2)).txResult(any());
+        verify(queueManager).updateStatus(eq(tx), eq(entry.key()), eq(ProcessStatus.STARTING));
+
+        // the match committed before the failure is sent to the agent
+        ArgumentCaptor<Message> resp = ArgumentCaptor.forClass(Message.class);
+        verify(channelManager).sendResponse(eq(channelId), resp.capture());
+
+        ProcessBatchResponse batch = (ProcessBatchResponse) resp.getValue();
+        assertEquals(1, batch.getProcesses().size());
+        assertEquals(entry.key().getInstanceId(), batch.getProcesses().get(0).getProcessId());
+    }
+}
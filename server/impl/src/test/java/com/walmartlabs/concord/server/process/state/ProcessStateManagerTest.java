@@ -20,18 +20,22 @@ package com.walmartlabs.concord.server.process.state;
  * =====
  */
 
+import com.codahale.metrics.MetricRegistry;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.common.base.Charsets;
+import com.google.common.hash.Hashing;
 import com.walmartlabs.concord.sdk.Constants;
 import com.walmartlabs.concord.server.AbstractDaoTest;
 import com.walmartlabs.concord.server.ConcordObjectMapper;
 import com.walmartlabs.concord.server.cfg.ProcessConfiguration;
 import com.walmartlabs.concord.server.cfg.SecretStoreConfiguration;
 import com.walmartlabs.concord.server.policy.PolicyManager;
+import com.walmartlabs.concord.server.process.WorkspaceScanner;
 import com.walmartlabs.concord.server.sdk.ProcessKey;
 import com.walmartlabs.concord.server.process.logs.ProcessLogManager;
 import com.walmartlabs.concord.server.process.queue.ProcessKeyCache;
 import com.walmartlabs.concord.server.process.queue.ProcessQueueDao;
+import org.jooq.impl.DSL;
 import org.junit.Ignore;
 import org.junit.Test;
 
@@ -45,6 +49,8 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.UUID;
 
+import static com.walmartlabs.concord.server.jooq.tables.ProcessState.PROCESS_STATE;
+import static com.walmartlabs.concord.server.jooq.tables.ProcessStateBlobs.PROCESS_STATE_BLOBS;
 import static com.walmartlabs.concord.server.process.state.ProcessStateManager.copyTo;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
@@ -65,7 +71,7 @@ public class ProcessStateManagerTest extends AbstractDaoTest {
         //
         ProcessKeyCache processKeyCache = new ProcessKeyCache(new ProcessQueueDao(getConfiguration(), new ConcordObjectMapper(new ObjectMapper())));
         ProcessConfiguration stateCfg = new ProcessConfiguration("24 hours", Collections.singletonList(Constants.Files.CONFIGURATION_FILE_NAME));
-        ProcessStateManager stateManager = new ProcessStateManager(getConfiguration(), mock(SecretStoreConfiguration.class), stateCfg, mock(PolicyManager.class), mock(ProcessLogManager.class), processKeyCache);
+        ProcessStateManager stateManager = new ProcessStateManager(getConfiguration(), mock(SecretStoreConfiguration.class), stateCfg, mock(PolicyManager.class), mock(ProcessLogManager.class), processKeyCache, new WorkspaceScanner(stateCfg, new MetricRegistry()));
         stateManager.importPath(processKey, null, baseDir, (p, attrs) -> true);
 
         Path tmpDir = Files.createTempDirectory("testExport");
@@ -87,6 +93,47 @@ public class ProcessStateManagerTest extends AbstractDaoTest {
         assertFileContent("456", tmpDir.resolve("file-2"));
     }
 
+    @Test
+    public void testDeduplication() throws Exception {
+        ProcessKey processKeyA = new ProcessKey(UUID.randomUUID(), OffsetDateTime.now());
+        ProcessKey processKeyB = new ProcessKey(UUID.randomUUID(), OffsetDateTime.now());
+
+        Path baseDir = Files.createTempDirectory("testDedup");
+
+        byte[] ab = ("dedup-" + UUID.randomUUID()).getBytes();
+        writeTempFile(baseDir.resolve("file-1"), ab);
+        writeTempFile(baseDir.resolve("file-2"), ab);
+
+        ProcessKeyCache processKeyCache = new ProcessKeyCache(new ProcessQueueDao(getConfiguration(), new ConcordObjectMapper(new ObjectMapper())));
+        ProcessConfiguration stateCfg = new ProcessConfiguration("24 hours", Collections.singletonList(Constants.Files.CONFIGURATION_FILE_NAME));
+        ProcessStateManager stateManager = new ProcessStateManager(getConfiguration(), mock(SecretStoreConfiguration.class), stateCfg, mock(PolicyManager.class), mock(ProcessLogManager.class), processKeyCache, new WorkspaceScanner(stateCfg, new MetricRegistry()));
+        stateManager.importPath(processKeyA, null, baseDir, (p, attrs) -> true);
+        stateManager.importPath(processKeyB, null, baseDir, (p, attrs) -> true);
+
+        byte[] hash = Hashing.sha256().hashBytes(ab).asBytes();
+        assertEquals(1, countBlobs(hash));
+        assertEquals(4, countRefs(hash));
+
+        Path tmpDir = Files.createTempDirectory("testDedupExport");
+        assertTrue(stateManager.export(processKeyB, copyTo(tmpDir)));
+        assertFileContent(new String(ab), tmpDir.resolve("file-2"));
+
+        // --- delete
+
+        stateManager.delete(processKeyA);
+        assertEquals(2, countRefs(hash));
+
+        // the blob is kept until it is removed by the process cleaner
+        stateManager.delete(processKeyB);
+        assertEquals(0, countRefs(hash));
+        assertEquals(1, countBlobs(hash));
+
+        // re-importing an unreferenced blob doesn't upload it again
+        stateManager.importPath(processKeyA, null, baseDir, (p, attrs) -> true);
+        assertEquals(1, countBlobs(hash));
+        assertEquals(2, countRefs(hash));
+    }
+
     @Ignore
     @Test
     public void testLargeImport() throws Exception {
@@ -111,10 +158,18 @@ public class ProcessStateManagerTest extends AbstractDaoTest {
 
         ProcessKeyCache processKeyCache = new ProcessKeyCache(new ProcessQueueDao(getConfiguration(), new ConcordObjectMapper(new ObjectMapper())));
         ProcessConfiguration stateCfg = new ProcessConfiguration("24 hours", Collections.singletonList(Constants.Files.CONFIGURATION_FILE_NAME));
-        ProcessStateManager stateManager = new ProcessStateManager(getConfiguration(), mock(SecretStoreConfiguration.class), stateCfg, mock(PolicyManager.class), mock(ProcessLogManager.class), processKeyCache);
+        ProcessStateManager stateManager = new ProcessStateManager(getConfiguration(), mock(SecretStoreConfiguration.class), stateCfg, mock(PolicyManager.class), mock(ProcessLogManager.class), processKeyCache, new WorkspaceScanner(stateCfg, new MetricRegistry()));
         stateManager.importPath(processKey, "/", baseDir, (p, attrs) -> true);
     }
 
+    private int countBlobs(byte[] hash) {
+        return DSL.using(getConfiguration()).fetchCount(PROCESS_STATE_BLOBS, PROCESS_STATE_BLOBS.BLOB_HASH.eq(hash));
+    }
+
+    private int countRefs(byte[] hash) {
+        return DSL.using(getConfiguration()).fetchCount(PROCESS_STATE, PROCESS_STATE.BLOB_HASH.eq(hash));
+    }
+
     private static void assertFileContent(String expected, Path f) throws IOException {
         String str = com.google.common.io.Files.asCharSource(f.toFile(), Charsets.UTF_8).read();
         assertEquals(expected, str);
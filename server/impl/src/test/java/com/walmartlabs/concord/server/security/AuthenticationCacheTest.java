@@ -0,0 +1,136 @@
+package com.walmartlabs.concord.server.security;
+
+/*-
+ * *****
+ * Concord
+ * -----
+ * Copyright (C) 2017 - 2020 Walmart Inc.
+ * -----
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * =====
+ */
+
+import com.codahale.metrics.MetricRegistry;
+import com.walmartlabs.concord.server.cfg.AuthenticationCacheConfiguration;
+import com.walmartlabs.concord.server.sdk.ProcessStatus;
+import com.walmartlabs.concord.server.security.apikey.ApiKeyEntry;
+import org.apache.shiro.subject.PrincipalCollection;
+import org.apache.shiro.subject.SimplePrincipalCollection;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class AuthenticationCacheTest {
+
+    private AuthenticationCache cache;
+
+    @Before
+    public void init() {
+        AuthenticationCacheConfiguration cfg = mock(AuthenticationCacheConfiguration.class);
+        when(cfg.getTtl()).thenReturn(Duration.ofMinutes(1));
+        when(cfg.getMaxSize()).thenReturn(100);
+        when(cfg.getAccessAuditInterval()).thenReturn(Duration.ofMinutes(1));
+
+        cache = new AuthenticationCache(cfg, new MetricRegistry());
+    }
+
+    @Test
+    public void testApiKeys() {
+        UUID userId = UUID.randomUUID();
+        ApiKeyEntry key = new ApiKeyEntry(UUID.randomUUID(), userId, "test", null);
+
+        AtomicInteger loads = new AtomicInteger();
+        cache.getApiKey("a", () -> load(loads, key));
+        assertSame(key, cache.getApiKey("a", () -> load(loads, key)));
+        assertEquals(1, loads.get());
+
+        // revoked keys are loaded again
+        cache.onApiKeyRevoked(key.getId());
+        assertNull(cache.getApiKey("a", () -> load(loads, null)));
+        assertEquals(2, loads.get());
+
+        // expired keys are re-validated
+        ApiKeyEntry expired = new ApiKeyEntry(UUID.randomUUID(), userId, "expired", OffsetDateTime.now().minusSeconds(1));
+        cache.getApiKey("b", () -> expired);
+        assertNull(cache.getApiKey("b", () -> null));
+
+        // keys of the removed users are loaded again
+        cache.getApiKey("a", () -> load(loads, key));
+        cache.onUserChange(userId);
+        cache.getApiKey("a", () -> load(loads, key));
+        assertEquals(4, loads.get());
+    }
+
+    @Test
+    public void testSessions() {
+        UUID instanceId = UUID.randomUUID();
+        PrincipalCollection principals = new SimplePrincipalCollection("test", "test");
+
+        AtomicInteger loads = new AtomicInteger();
+        cache.getSession(instanceId, () -> load(loads, principals));
+
+        cache.onStatusChange(instanceId, ProcessStatus.RUNNING);
+        assertSame(principals, cache.getSession(instanceId, () -> load(loads, principals)));
+        assertEquals(1, loads.get());
+
+        cache.onStatusChange(instanceId, ProcessStatus.FINISHED);
+        assertNull(cache.getSession(instanceId, () -> load(loads, null)));
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    public void testUncommittedInvalidation() {
+        UUID instanceId = UUID.randomUUID();
+        PrincipalCollection principals = new SimplePrincipalCollection("test", "test");
+
+        // the status change is not committed yet, the loader still sees the running process
+        cache.onStatusChange(instanceId, ProcessStatus.FINISHED);
+
+        AtomicInteger loads = new AtomicInteger();
+        assertSame(principals, cache.getSession(instanceId, () -> load(loads, principals)));
+        assertNull(cache.getSession(instanceId, () -> load(loads, null)));
+        assertEquals(2, loads.get());
+
+        // same for the users' API keys
+        UUID userId = UUID.randomUUID();
+        ApiKeyEntry key = new ApiKeyEntry(UUID.randomUUID(), userId, "test", null);
+
+        cache.onUserChange(userId);
+        assertSame(key, cache.getApiKey("a", () -> load(loads, key)));
+        assertNull(cache.getApiKey("a", () -> load(loads, null)));
+        assertEquals(4, loads.get());
+    }
+
+    @Test
+    public void testAccessAudit() {
+        UUID a = UUID.randomUUID();
+        UUID b = UUID.randomUUID();
+
+        assertTrue(cache.shouldAuditAccess(a));
+        assertFalse(cache.shouldAuditAccess(a));
+        assertTrue(cache.shouldAuditAccess(b));
+    }
+
+    private static <T> T load(AtomicInteger counter, T value) {
+        counter.incrementAndGet();
+        return value;
+    }
+}
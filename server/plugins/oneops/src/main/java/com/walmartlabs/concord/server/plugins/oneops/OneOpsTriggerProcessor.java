@@ -22,7 +22,8 @@ package com.walmartlabs.concord.server.plugins.oneops;
 
 import com.walmartlabs.concord.server.events.DefaultEventFilter;
 import com.walmartlabs.concord.server.org.triggers.TriggerEntry;
-import com.walmartlabs.concord.server.org.triggers.TriggersDao;
+import com.walmartlabs.concord.server.org.triggers.TriggerIndex;
+import com.walmartlabs.concord.server.org.triggers.TriggerIndex.CompiledTrigger;
 
 import java.util.*;
 
@@ -42,24 +43,24 @@ public abstract class OneOpsTriggerProcessor {
     private static final String AUTHOR_KEY = "author";
     private static final String EVENT_SOURCE = "oneops";
 
-    private final TriggersDao triggersDao;
+    private final TriggerIndex triggerIndex;
     private final int version;
 
-    public OneOpsTriggerProcessor(TriggersDao triggersDao, int version) {
-        this.triggersDao = triggersDao;
+    public OneOpsTriggerProcessor(TriggerIndex triggerIndex, int version) {
+        this.triggerIndex = triggerIndex;
         this.version = version;
     }
 
     public void process(Map<String, Object> event, List<Result> result) {
-        List<TriggerEntry> triggers = triggersDao.list(EVENT_SOURCE, version);
+        List<CompiledTrigger> triggers = triggerIndex.list(EVENT_SOURCE, version);
 
         Map<String, Object> triggerConditions = buildConditions(event);
         enrichTriggerConditions(triggerConditions, version);
         Map<String, Object> triggerEvent = buildTriggerEvent(event, triggerConditions);
 
-        for (TriggerEntry triggerEntry : triggers) {
-            if (DefaultEventFilter.filter(triggerConditions, triggerEntry)) {
-                result.add(Result.from(triggerEvent, triggerEntry));
+        for (CompiledTrigger t : triggers) {
+            if (DefaultEventFilter.filter(triggerConditions, t)) {
+                result.add(Result.from(triggerEvent, t.getTrigger()));
             }
         }
     }
@@ -28,23 +28,39 @@ import java.util.Map;
 public class ProcessRequest extends Message {
 
     private final Map<String, Object> capabilities;
+    private final int slots;
 
+    public ProcessRequest(Map<String, Object> capabilities) {
+        this(capabilities, null);
+    }
+
+    /**
+     * @param slots number of processes the agent is ready to accept. If greater
+     *              than 1, the server replies with a {@link ProcessBatchResponse}.
+     */
     @JsonCreator
     public ProcessRequest(
-            @JsonProperty("capabilities") Map<String, Object> capabilities) {
+            @JsonProperty("capabilities") Map<String, Object> capabilities,
+            @JsonProperty("slots") Integer slots) {
         super(MessageType.PROCESS_REQUEST);
         this.capabilities = capabilities;
+        this.slots = slots != null && slots > 0 ? slots : 1;
     }
 
     public Map<String, Object> getCapabilities() {
         return capabilities;
     }
 
+    public int getSlots() {
+        return slots;
+    }
+
     @Override
     public String toString() {
         return "ProcessRequest{" +
                 "correlationId='" + getCorrelationId() + "', " +
-                "capabilities='" + capabilities + "'" +
+                "capabilities='" + capabilities + "', " +
+                "slots=" + slots +
                 '}';
     }
 }
@@ -26,6 +26,7 @@ import com.walmartlabs.concord.imports.Imports;
 import com.walmartlabs.concord.server.queueclient.message.*;
 import org.junit.Test;
 
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.UUID;
 
@@ -77,6 +78,36 @@ public class MessageSerializerTest {
         assertEquals(r.getMessageType(), MessageType.PROCESS_REQUEST);
         assertEquals(r.getCapabilities(), rDeserialized.getCapabilities());
         assertEquals(r.getCorrelationId(), rDeserialized.getCorrelationId());
+        assertEquals(1, rDeserialized.getSlots());
+    }
+
+    @Test
+    public void testProcessRequestWithSlots() {
+        ProcessRequest r = new ProcessRequest(Collections.singletonMap("k", "v"), 5);
+        r.setCorrelationId(123);
+
+        // ---
+        ProcessRequest rDeserialized = MessageSerializer.deserialize(MessageSerializer.serialize(r));
+        assertEquals(5, rDeserialized.getSlots());
+        assertEquals(r.getCapabilities(), rDeserialized.getCapabilities());
+    }
+
+    @Test
+    public void testProcessBatchResponse() {
+        ProcessResponse a = new ProcessResponse(123, "token-a", UUID.randomUUID(), null, null, null, null, null, null);
+        ProcessResponse b = new ProcessResponse(123, "token-b", UUID.randomUUID(), "org-name", "repo-url", "repo-path", "commit-id", "secret-name", null);
+        ProcessBatchResponse r = new ProcessBatchResponse(123, Arrays.asList(a, b));
+
+        // ---
+        String rSerialized = MessageSerializer.serialize(r);
+        assertNotNull(rSerialized);
+
+        ProcessBatchResponse rDeserialized = MessageSerializer.deserialize(rSerialized);
+        assertEquals(MessageType.PROCESS_BATCH_RESPONSE, rDeserialized.getMessageType());
+        assertEquals(r.getCorrelationId(), rDeserialized.getCorrelationId());
+        assertEquals(2, rDeserialized.getProcesses().size());
+        assertEquals(a.getProcessId(), rDeserialized.getProcesses().get(0).getProcessId());
+        assertEquals(b.getRepoUrl(), rDeserialized.getProcesses().get(1).getRepoUrl());
     }
 
     @Test